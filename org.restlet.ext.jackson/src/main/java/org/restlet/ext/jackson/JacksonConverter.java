@@ -26,6 +26,8 @@ package org.restlet.ext.jackson;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.restlet.engine.converter.ConverterHelper;
 import org.restlet.engine.resource.VariantInfo;
@@ -35,9 +37,22 @@ import org.restlet.representation.Representation;
 import org.restlet.representation.Variant;
 import org.restlet.resource.Resource;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+
 /**
  * Converter between the JSON, JSON Smile, CSV, XML, YAML and Representation
- * classes based on Jackson.
+ * classes based on Jackson.<br>
+ * <br>
+ * The converter owns one Jackson object mapper per supported format, shared by
+ * all the representations it creates so that Jackson can reuse its serializer
+ * and deserializer caches. The object readers and writers derived from them are
+ * cached per object class. The shared mappers can be customized via
+ * {@link #getObjectMapper(MediaType)} or replaced via
+ * {@link #setObjectMapper(MediaType, ObjectMapper)}, but only at startup,
+ * before the first conversion.
  * 
  * @author Jerome Louvel
  * @author Thierry Boileau
@@ -73,6 +88,54 @@ public class JacksonConverter extends ConverterHelper {
     private static final VariantInfo VARIANT_TEXT_YAML = new VariantInfo(
             MediaType.TEXT_YAML);
 
+    /**
+     * Returns the media type identifying the object mapper able to process a
+     * given media type.
+     * 
+     * @param mediaType
+     *            The media type to process.
+     * @return The media type identifying the object mapper.
+     */
+    private static MediaType getMapperType(MediaType mediaType) {
+        MediaType result = MediaType.APPLICATION_JSON;
+
+        if (MediaType.APPLICATION_JSON.isCompatible(mediaType)) {
+            result = MediaType.APPLICATION_JSON;
+        } else if (MediaType.APPLICATION_JSON_SMILE.isCompatible(mediaType)) {
+            result = MediaType.APPLICATION_JSON_SMILE;
+            // [ifndef android]
+        } else if (MediaType.APPLICATION_XML.isCompatible(mediaType)
+                || MediaType.TEXT_XML.isCompatible(mediaType)) {
+            result = MediaType.APPLICATION_XML;
+            // [enddef]
+        } else if (MediaType.APPLICATION_YAML.isCompatible(mediaType)
+                || MediaType.TEXT_YAML.isCompatible(mediaType)) {
+            result = MediaType.APPLICATION_YAML;
+        } else if (MediaType.TEXT_CSV.isCompatible(mediaType)) {
+            result = MediaType.TEXT_CSV;
+        }
+
+        return result;
+    }
+
+    /** The shared object mappers, per mapper type. */
+    private final Map<MediaType, ObjectMapper> objectMappers;
+
+    /** The cached object readers, per mapper type and object class. */
+    private final Map<MediaType, Map<Class<?>, ObjectReader>> objectReaders;
+
+    /** The cached object writers, per mapper type and object class. */
+    private final Map<MediaType, Map<Class<?>, ObjectWriter>> objectWriters;
+
+    /**
+     * Constructor.
+     */
+    public JacksonConverter() {
+        this.objectMappers = new ConcurrentHashMap<MediaType, ObjectMapper>();
+        this.objectReaders = new ConcurrentHashMap<MediaType, Map<Class<?>, ObjectReader>>();
+        this.objectWriters = new ConcurrentHashMap<MediaType, Map<Class<?>, ObjectWriter>>();
+    }
+
     /**
      * Creates the marshaling {@link JacksonRepresentation}.
      * 
@@ -84,7 +147,16 @@ public class JacksonConverter extends ConverterHelper {
      * @return The marshaling {@link JacksonRepresentation}.
      */
     protected <T> JacksonRepresentation<T> create(MediaType mediaType, T source) {
-        return new JacksonRepresentation<T>(mediaType, source);
+        JacksonRepresentation<T> result = new JacksonRepresentation<T>(
+                mediaType, source);
+        result.setSharedObjectMapper(getObjectMapper(mediaType));
+
+        if (result.getObjectClass() != null) {
+            result.setObjectWriter(getObjectWriter(mediaType,
+                    result.getObjectClass()));
+        }
+
+        return result;
     }
 
     /**
@@ -99,7 +171,79 @@ public class JacksonConverter extends ConverterHelper {
      */
     protected <T> JacksonRepresentation<T> create(Representation source,
             Class<T> objectClass) {
-        return new JacksonRepresentation<T>(source, objectClass);
+        JacksonRepresentation<T> result = new JacksonRepresentation<T>(source,
+                objectClass);
+        result.setSharedObjectMapper(getObjectMapper(result.getMediaType()));
+
+        if (objectClass != null) {
+            result.setObjectReader(getObjectReader(result.getMediaType(),
+                    objectClass));
+        }
+
+        return result;
+    }
+
+    /**
+     * Creates a shared Jackson object mapper for a given media type. By
+     * default, it relies on {@link JacksonRepresentation#createObjectMapper()}
+     * so that shared and standalone mappers are configured alike.
+     * 
+     * @param mediaType
+     *            The media type to process.
+     * @return The new Jackson object mapper.
+     */
+    protected ObjectMapper createObjectMapper(MediaType mediaType) {
+        return new JacksonRepresentation<Object>(mediaType, null)
+                .createObjectMapper();
+    }
+
+    /**
+     * Creates a Jackson object reader for a given media type and object class,
+     * based on the shared mapper. Has a special handling for CSV media types.
+     * 
+     * @param mediaType
+     *            The media type to process.
+     * @param objectClass
+     *            The object class to instantiate.
+     * @return The new Jackson object reader.
+     */
+    protected ObjectReader createObjectReader(MediaType mediaType,
+            Class<?> objectClass) {
+        ObjectReader result = null;
+
+        if (MediaType.TEXT_CSV.isCompatible(mediaType)) {
+            CsvMapper csvMapper = (CsvMapper) getObjectMapper(mediaType);
+            result = csvMapper.readerFor(objectClass).with(
+                    csvMapper.schemaFor(objectClass));
+        } else {
+            result = getObjectMapper(mediaType).readerFor(objectClass);
+        }
+
+        return result;
+    }
+
+    /**
+     * Creates a Jackson object writer for a given media type and object class,
+     * based on the shared mapper. Has a special handling for CSV media types.
+     * 
+     * @param mediaType
+     *            The media type to process.
+     * @param objectClass
+     *            The object class to serialize.
+     * @return The new Jackson object writer.
+     */
+    protected ObjectWriter createObjectWriter(MediaType mediaType,
+            Class<?> objectClass) {
+        ObjectWriter result = null;
+
+        if (MediaType.TEXT_CSV.isCompatible(mediaType)) {
+            CsvMapper csvMapper = (CsvMapper) getObjectMapper(mediaType);
+            result = csvMapper.writer(csvMapper.schemaFor(objectClass));
+        } else {
+            result = getObjectMapper(mediaType).writerFor(objectClass);
+        }
+
+        return result;
     }
 
     @Override
@@ -114,6 +258,57 @@ public class JacksonConverter extends ConverterHelper {
         return result;
     }
 
+    /**
+     * Returns the shared Jackson object mapper for a given media type, creating
+     * it if necessary. Useful to customize mappings at startup.
+     * 
+     * @param mediaType
+     *            The media type to process.
+     * @return The shared Jackson object mapper.
+     */
+    public ObjectMapper getObjectMapper(MediaType mediaType) {
+        return this.objectMappers.computeIfAbsent(getMapperType(mediaType),
+                k -> createObjectMapper(k));
+    }
+
+    /**
+     * Returns the cached Jackson object reader for a given media type and
+     * object class, creating it if necessary.
+     * 
+     * @param mediaType
+     *            The media type to process.
+     * @param objectClass
+     *            The object class to instantiate.
+     * @return The cached Jackson object reader.
+     */
+    public ObjectReader getObjectReader(MediaType mediaType,
+            Class<?> objectClass) {
+        Map<Class<?>, ObjectReader> readers = this.objectReaders
+                .computeIfAbsent(getMapperType(mediaType),
+                        k -> new ConcurrentHashMap<Class<?>, ObjectReader>());
+        return readers.computeIfAbsent(objectClass,
+                k -> createObjectReader(mediaType, k));
+    }
+
+    /**
+     * Returns the cached Jackson object writer for a given media type and
+     * object class, creating it if necessary.
+     * 
+     * @param mediaType
+     *            The media type to process.
+     * @param objectClass
+     *            The object class to serialize.
+     * @return The cached Jackson object writer.
+     */
+    public ObjectWriter getObjectWriter(MediaType mediaType,
+            Class<?> objectClass) {
+        Map<Class<?>, ObjectWriter> writers = this.objectWriters
+                .computeIfAbsent(getMapperType(mediaType),
+                        k -> new ConcurrentHashMap<Class<?>, ObjectWriter>());
+        return writers.computeIfAbsent(objectClass,
+                k -> createObjectWriter(mediaType, k));
+    }
+
     @Override
     public List<VariantInfo> getVariants(Class<?> source) {
         List<VariantInfo> result = null;
@@ -237,6 +432,29 @@ public class JacksonConverter extends ConverterHelper {
         return result;
     }
 
+    /**
+     * Replaces the shared Jackson object mapper for a given media type. The
+     * object readers and writers derived from the previous mapper are
+     * discarded.
+     * 
+     * @param mediaType
+     *            The media type to process.
+     * @param objectMapper
+     *            The new shared Jackson object mapper.
+     */
+    public void setObjectMapper(MediaType mediaType, ObjectMapper objectMapper) {
+        MediaType mapperType = getMapperType(mediaType);
+
+        if (objectMapper == null) {
+            this.objectMappers.remove(mapperType);
+        } else {
+            this.objectMappers.put(mapperType, objectMapper);
+        }
+
+        this.objectReaders.remove(mapperType);
+        this.objectWriters.remove(mapperType);
+    }
+
     @Override
     public <T> void updatePreferences(List<Preference<MediaType>> preferences,
             Class<T> entity) {
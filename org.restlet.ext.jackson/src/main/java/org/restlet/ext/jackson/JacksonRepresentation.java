@@ -108,6 +108,9 @@ public class JacksonRepresentation<T> extends OutputRepresentation {
     /** The representation to parse. */
     private volatile Representation representation;
 
+    /** Indicates if the object mapper is shared with a converter. */
+    private volatile boolean sharedObjectMapper;
+
     // [ifndef android] member
     /**
      * Indicates the desire for validating this type of XML representations
@@ -137,6 +140,7 @@ public class JacksonRepresentation<T> extends OutputRepresentation {
         this.objectReader = null;
         this.objectWriter = null;
         this.csvSchema = null;
+        this.sharedObjectMapper = false;
         // [ifndef android] instruction
         this.expandingEntityRefs = XML_EXPANDING_ENTITY_REFS;
         // [ifndef android] instruction
@@ -161,6 +165,7 @@ public class JacksonRepresentation<T> extends OutputRepresentation {
         this.objectReader = null;
         this.objectWriter = null;
         this.csvSchema = null;
+        this.sharedObjectMapper = false;
         // [ifndef android] instruction
         this.expandingEntityRefs = XML_EXPANDING_ENTITY_REFS;
         // [ifndef android] instruction
@@ -252,8 +257,7 @@ public class JacksonRepresentation<T> extends OutputRepresentation {
 
         if (MediaType.TEXT_CSV.isCompatible(getMediaType())) {
             CsvMapper csvMapper = (CsvMapper) getObjectMapper();
-            CsvSchema csvSchema = createCsvSchema(csvMapper);
-            result = csvMapper.readerFor(getObjectClass()).with(csvSchema);
+            result = csvMapper.readerFor(getObjectClass()).with(getCsvSchema());
         } else {
             result = getObjectMapper().readerFor(getObjectClass());
         }
@@ -272,8 +276,7 @@ public class JacksonRepresentation<T> extends OutputRepresentation {
 
         if (MediaType.TEXT_CSV.isCompatible(getMediaType())) {
             CsvMapper csvMapper = (CsvMapper) getObjectMapper();
-            CsvSchema csvSchema = createCsvSchema(csvMapper);
-            result = csvMapper.writer(csvSchema);
+            result = csvMapper.writer(getCsvSchema());
         } else {
             result = getObjectMapper().writerFor(getObjectClass());
         }
@@ -325,7 +328,9 @@ public class JacksonRepresentation<T> extends OutputRepresentation {
 
     /**
      * Returns the modifiable Jackson object mapper. Useful to customize
-     * mappings.
+     * mappings. Note that representations created by {@link JacksonConverter}
+     * share its mappers, use {@link #setObjectMapper(ObjectMapper)} to
+     * customize a single representation.
      * 
      * @return The modifiable Jackson object mapper.
      */
@@ -388,13 +393,31 @@ public class JacksonRepresentation<T> extends OutputRepresentation {
     }
 
     /**
-     * Sets the Jackson CSV schema.
+     * Resets the object mapper, reader and writer if they are shared with a
+     * converter, so that new ones reflecting the XML parsing settings of this
+     * representation are created.
+     */
+    private void resetSharedObjectMapper() {
+        if (this.sharedObjectMapper) {
+            this.sharedObjectMapper = false;
+            this.objectMapper = null;
+            this.objectReader = null;
+            this.objectWriter = null;
+            this.csvSchema = null;
+        }
+    }
+
+    /**
+     * Sets the Jackson CSV schema. The object reader and writer are reset so
+     * that they use the new schema.
      * 
      * @param csvSchema
      *            The Jackson CSV schema.
      */
     public void setCsvSchema(CsvSchema csvSchema) {
         this.csvSchema = csvSchema;
+        this.objectReader = null;
+        this.objectWriter = null;
     }
 
     // [ifndef android] method
@@ -406,7 +429,10 @@ public class JacksonRepresentation<T> extends OutputRepresentation {
      *            True if the parser will expand entity reference nodes.
      */
     public void setExpandingEntityRefs(boolean expandEntityRefs) {
-        this.expandingEntityRefs = expandEntityRefs;
+        if (this.expandingEntityRefs != expandEntityRefs) {
+            this.expandingEntityRefs = expandEntityRefs;
+            resetSharedObjectMapper();
+        }
     }
 
     /**
@@ -430,13 +456,18 @@ public class JacksonRepresentation<T> extends OutputRepresentation {
     }
 
     /**
-     * Sets the Jackson object mapper.
+     * Sets the Jackson object mapper. The CSV schema, the object reader and
+     * the object writer are reset so that they are based on the new mapper.
      * 
      * @param objectMapper
      *            The Jackson object mapper.
      */
     public void setObjectMapper(ObjectMapper objectMapper) {
         this.objectMapper = objectMapper;
+        this.objectReader = null;
+        this.objectWriter = null;
+        this.csvSchema = null;
+        this.sharedObjectMapper = false;
     }
 
     /**
@@ -459,6 +490,20 @@ public class JacksonRepresentation<T> extends OutputRepresentation {
         this.objectWriter = objectWriter;
     }
 
+    /**
+     * Sets the Jackson object mapper shared with a converter. Unlike
+     * {@link #setObjectMapper(ObjectMapper)}, changing the XML parsing
+     * settings of this representation afterwards replaces it with a dedicated
+     * mapper.
+     * 
+     * @param objectMapper
+     *            The shared Jackson object mapper.
+     */
+    void setSharedObjectMapper(ObjectMapper objectMapper) {
+        setObjectMapper(objectMapper);
+        this.sharedObjectMapper = true;
+    }
+
     // [ifndef android] method
     /**
      * Indicates the desire for validating this type of XML representations
@@ -468,7 +513,10 @@ public class JacksonRepresentation<T> extends OutputRepresentation {
      *            The new validation flag to set.
      */
     public void setValidatingDtd(boolean validating) {
-        this.validatingDtd = validating;
+        if (this.validatingDtd != validating) {
+            this.validatingDtd = validating;
+            resetSharedObjectMapper();
+        }
     }
 
     @Override
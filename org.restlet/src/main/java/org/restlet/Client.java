@@ -29,6 +29,7 @@ import java.util.List;
 
 import org.restlet.engine.Engine;
 import org.restlet.engine.RestletHelper;
+import org.restlet.engine.connector.ClientHelper;
 import org.restlet.message.Request;
 import org.restlet.message.Response;
 import org.restlet.message.Status;
@@ -160,6 +161,12 @@ public class Client extends Connector {
             sb.append(" Please add the JAR of a matching connector to your classpath.");
             response.setStatus(Status.CONNECTOR_ERROR_INTERNAL, sb.toString());
         }
+
+        // Invoke the response callback if the helper didn't take care of it
+        if (request.isAsynchronous()
+                && !((getHelper() instanceof ClientHelper) && ((ClientHelper) getHelper()).isAsynchronous())) {
+            request.getOnResponse().handle(request, response);
+        }
     }
 
     /**
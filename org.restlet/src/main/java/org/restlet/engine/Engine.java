@@ -48,6 +48,11 @@ import java.util.concurrent.CopyOnWriteArrayList;
  * Engine supporting the Restlet API. The engine acts as a registry of various {@link Helper} types:
  * {@link org.restlet.engine.security.AuthenticatorHelper} , {@link org.restlet.engine.connector.ClientHelper},
  * {@link org.restlet.engine.converter.ConverterHelper} and {@link org.restlet.engine.connector.ServerHelper} classes.<br>
+ * <br>
+ * The registries are copy-on-write lists, so lookups iterate over immutable
+ * snapshots without acquiring any lock, while registrations swap the snapshot
+ * atomically. The registry setters likewise copy the given list into a new
+ * snapshot, so that readers never see a partially filled list.
  *
  * @author Jerome Louvel
  */
@@ -120,7 +125,8 @@ public class Engine {
 
     /**
      * Creates a new standalone thread with local Restlet thread variable
-     * properly set.
+     * properly set. A virtual thread is created if the engine is configured to
+     * use virtual threads and if they are supported by the JVM.
      *
      * @param runnable The runnable task to execute.
      * @param name     The thread name.
@@ -152,6 +158,14 @@ public class Engine {
             }
         };
 
+        Engine engine = getInstance();
+
+        if (engine.isVirtualThreads()
+                && org.restlet.engine.util.SystemUtils.isVirtualThreadsSupported()) {
+            return org.restlet.engine.util.SystemUtils.createVirtualThread(r,
+                    name);
+        }
+
         return new Thread(r, name);
     }
 
@@ -166,15 +180,22 @@ public class Engine {
     }
 
     /**
-     * Returns the registered Restlet engine.
+     * Returns the registered Restlet engine. Once registered, the engine is
+     * read without acquiring any lock.
      *
      * @return The registered Restlet engine.
      */
-    public static synchronized Engine getInstance() {
+    public static Engine getInstance() {
         Engine result = instance;
 
         if (result == null) {
-            result = register();
+            synchronized (Engine.class) {
+                result = instance;
+
+                if (result == null) {
+                    result = register();
+                }
+            }
         }
 
         return result;
@@ -267,33 +288,39 @@ public class Engine {
     /**
      * List of available authenticator helpers.
      */
-    private final List<org.restlet.engine.security.AuthenticatorHelper> registeredAuthenticators;
+    private volatile List<org.restlet.engine.security.AuthenticatorHelper> registeredAuthenticators;
 
     /**
      * List of available client connectors.
      */
-    private final List<org.restlet.engine.connector.ConnectorHelper<Client>> registeredClients;
+    private volatile List<org.restlet.engine.connector.ConnectorHelper<Client>> registeredClients;
 
     /**
      * List of available converter helpers.
      */
-    private final List<org.restlet.engine.converter.ConverterHelper> registeredConverters;
+    private volatile List<org.restlet.engine.converter.ConverterHelper> registeredConverters;
 
     /**
      * List of available protocol helpers.
      */
-    private final List<org.restlet.engine.connector.ProtocolHelper> registeredProtocols;
+    private volatile List<org.restlet.engine.connector.ProtocolHelper> registeredProtocols;
 
     /**
      * List of available server connectors.
      */
-    private final List<org.restlet.engine.connector.ConnectorHelper<org.restlet.Server>> registeredServers;
+    private volatile List<org.restlet.engine.connector.ConnectorHelper<org.restlet.Server>> registeredServers;
 
     /**
      * User class loader to use for dynamic class loading.
      */
     private volatile ClassLoader userClassLoader;
 
+    /**
+     * Indicates if virtual threads should be used, when supported by the JVM.
+     * Initialized by the "org.restlet.engine.virtualThreads" system property.
+     */
+    private volatile boolean virtualThreads;
+
     /**
      * Constructor that will automatically attempt to discover connectors.
      */
@@ -312,6 +339,8 @@ public class Engine {
 
         this.classLoader = createClassLoader();
         this.userClassLoader = null;
+        this.virtualThreads = Boolean
+                .getBoolean("org.restlet.engine.virtualThreads");
 
         this.registeredClients = new CopyOnWriteArrayList<>();
         this.registeredProtocols = new CopyOnWriteArrayList<>();
@@ -518,21 +547,16 @@ public class Engine {
     public org.restlet.engine.security.AuthenticatorHelper findHelper(
             ChallengeScheme challengeScheme, boolean clientSide,
             boolean serverSide) {
-        org.restlet.engine.security.AuthenticatorHelper result = null;
-        List<org.restlet.engine.security.AuthenticatorHelper> helpers = getRegisteredAuthenticators();
-        org.restlet.engine.security.AuthenticatorHelper current;
-
-        for (int i = 0; (result == null) && (i < helpers.size()); i++) {
-            current = helpers.get(i);
-
+        // Iterates over a snapshot of the registered helpers
+        for (org.restlet.engine.security.AuthenticatorHelper current : getRegisteredAuthenticators()) {
             if (current.getChallengeScheme().equals(challengeScheme)
                     && ((clientSide && current.isClientSide()) || !clientSide)
                     && ((serverSide && current.isServerSide()) || !serverSide)) {
-                result = helpers.get(i);
+                return current;
             }
         }
 
-        return result;
+        return null;
     }
 
     /**
@@ -617,6 +641,19 @@ public class Engine {
         return userClassLoader;
     }
 
+    /**
+     * Indicates if virtual threads should be used, when supported by the JVM.
+     * This is the default value of the corresponding option of the task
+     * service and of the server connectors. False by default, unless the
+     * "org.restlet.engine.virtualThreads" system property is set to true.
+     *
+     * @return True if virtual threads should be used.
+     * @see org.restlet.engine.util.SystemUtils#isVirtualThreadsSupported()
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
     /**
      * Registers the default authentication helpers.
      */
@@ -635,6 +672,8 @@ public class Engine {
                 new org.restlet.engine.connector.FtpClientHelper(null));
         getRegisteredClients().add(
                 new org.restlet.engine.connector.HttpClientHelper(null));
+        getRegisteredClients().add(
+                new org.restlet.engine.netty.HttpClientHelper(null));
         getRegisteredClients().add(
                 new org.restlet.engine.local.ClapClientHelper(null));
         getRegisteredClients().add(
@@ -832,15 +871,9 @@ public class Engine {
      */
     public void setRegisteredAuthenticators(
             List<org.restlet.engine.security.AuthenticatorHelper> registeredAuthenticators) {
-        synchronized (this.registeredAuthenticators) {
-            if (registeredAuthenticators != this.registeredAuthenticators) {
-                this.registeredAuthenticators.clear();
-
-                if (registeredAuthenticators != null) {
-                    this.registeredAuthenticators
-                            .addAll(registeredAuthenticators);
-                }
-            }
+        if (registeredAuthenticators != this.registeredAuthenticators) {
+            this.registeredAuthenticators = (registeredAuthenticators == null) ? new CopyOnWriteArrayList<>()
+                    : new CopyOnWriteArrayList<>(registeredAuthenticators);
         }
     }
 
@@ -851,14 +884,9 @@ public class Engine {
      */
     public void setRegisteredClients(
             List<org.restlet.engine.connector.ConnectorHelper<Client>> registeredClients) {
-        synchronized (this.registeredClients) {
-            if (registeredClients != this.registeredClients) {
-                this.registeredClients.clear();
-
-                if (registeredClients != null) {
-                    this.registeredClients.addAll(registeredClients);
-                }
-            }
+        if (registeredClients != this.registeredClients) {
+            this.registeredClients = (registeredClients == null) ? new CopyOnWriteArrayList<>()
+                    : new CopyOnWriteArrayList<>(registeredClients);
         }
     }
 
@@ -869,14 +897,9 @@ public class Engine {
      */
     public void setRegisteredConverters(
             List<org.restlet.engine.converter.ConverterHelper> registeredConverters) {
-        synchronized (this.registeredConverters) {
-            if (registeredConverters != this.registeredConverters) {
-                this.registeredConverters.clear();
-
-                if (registeredConverters != null) {
-                    this.registeredConverters.addAll(registeredConverters);
-                }
-            }
+        if (registeredConverters != this.registeredConverters) {
+            this.registeredConverters = (registeredConverters == null) ? new CopyOnWriteArrayList<>()
+                    : new CopyOnWriteArrayList<>(registeredConverters);
         }
     }
 
@@ -887,14 +910,9 @@ public class Engine {
      */
     public void setRegisteredProtocols(
             List<org.restlet.engine.connector.ProtocolHelper> registeredProtocols) {
-        synchronized (this.registeredProtocols) {
-            if (registeredProtocols != this.registeredProtocols) {
-                this.registeredProtocols.clear();
-
-                if (registeredProtocols != null) {
-                    this.registeredProtocols.addAll(registeredProtocols);
-                }
-            }
+        if (registeredProtocols != this.registeredProtocols) {
+            this.registeredProtocols = (registeredProtocols == null) ? new CopyOnWriteArrayList<>()
+                    : new CopyOnWriteArrayList<>(registeredProtocols);
         }
     }
 
@@ -905,14 +923,9 @@ public class Engine {
      */
     public void setRegisteredServers(
             List<org.restlet.engine.connector.ConnectorHelper<org.restlet.Server>> registeredServers) {
-        synchronized (this.registeredServers) {
-            if (registeredServers != this.registeredServers) {
-                this.registeredServers.clear();
-
-                if (registeredServers != null) {
-                    this.registeredServers.addAll(registeredServers);
-                }
-            }
+        if (registeredServers != this.registeredServers) {
+            this.registeredServers = (registeredServers == null) ? new CopyOnWriteArrayList<>()
+                    : new CopyOnWriteArrayList<>(registeredServers);
         }
     }
 
@@ -925,4 +938,13 @@ public class Engine {
         this.userClassLoader = newClassLoader;
     }
 
+    /**
+     * Indicates if virtual threads should be used, when supported by the JVM.
+     *
+     * @param virtualThreads True if virtual threads should be used.
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
 }
@@ -28,6 +28,7 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import org.restlet.Context;
+import org.restlet.engine.header.HeaderSeries;
 import org.restlet.engine.header.HeaderUtils;
 import org.restlet.representation.InputRepresentation;
 import org.restlet.representation.Representation;
@@ -136,9 +137,9 @@ public abstract class Call {
         this.method = null;
         this.protocol = null;
         this.reasonPhrase = "";
-        this.requestHeaders = new Series<>(Header.class);
+        this.requestHeaders = new HeaderSeries();
         this.requestUri = null;
-        this.responseHeaders = new Series<Header>(Header.class);
+        this.responseHeaders = new HeaderSeries();
         this.serverAddress = null;
         this.serverPort = -1;
         this.statusCode = 200;
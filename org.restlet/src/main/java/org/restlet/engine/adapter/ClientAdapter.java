@@ -26,6 +26,7 @@ package org.restlet.engine.adapter;
 
 import org.restlet.Context;
 import org.restlet.Uniform;
+import org.restlet.engine.connector.ClientHelper;
 import org.restlet.engine.header.HeaderConstants;
 import org.restlet.engine.header.HeaderUtils;
 import org.restlet.message.Method;
@@ -75,6 +76,10 @@ public class ClientAdapter extends Adapter {
             if (request.isAsynchronous()) {
                 final Uniform userCallback = request.getOnResponse();
 
+                // Let the caller know that the callback will be invoked later
+                response.getAttributes().put(
+                        ClientHelper.ATTRIBUTE_PENDING_CALLBACK, userCallback);
+
                 // Send the request to the client
                 httpCall.sendRequest(request, response, new Uniform() {
                     public void handle(Request request, Response response) {
@@ -83,7 +88,14 @@ public class ClientAdapter extends Adapter {
                                     new Status(httpCall.getStatusCode(),
                                             httpCall.getReasonPhrase()),
                                     httpCall);
+                        } catch (Throwable t) {
+                            getLogger()
+                                    .debug("An error occurred during the processing of the HTTP response.",
+                                            t);
+                            response.setStatus(Status.CONNECTOR_ERROR_INTERNAL, t);
+                        }
 
+                        try {
                             if (userCallback != null) {
                                 userCallback.handle(request, response);
                             }
@@ -28,7 +28,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
-import org.restlet.Context;
 import org.restlet.engine.connector.ConnectorHelper;
 import org.restlet.engine.header.HeaderConstants;
 import org.restlet.engine.header.HeaderUtils;
@@ -285,7 +284,9 @@ public abstract class ClientCall extends Call {
 
     /**
      * Sends the request to the client. Commits the request line, headers and
-     * optional entity and send them over the network.
+     * optional entity and send them over the network. By default, the request
+     * is synchronously sent and the callback is then invoked by the current
+     * thread.
      * 
      * @param request
      *            The high-level request.
@@ -296,7 +297,14 @@ public abstract class ClientCall extends Call {
      */
     public void sendRequest(Request request, Response response,
             org.restlet.Uniform callback) throws Exception {
-        Context.getCurrentLogger().warn("Currently callbacks are not available for this connector.");
+        Status status = sendRequest(request);
+
+        if ((status != null) && status.isConnectorError()) {
+            setStatusCode(status.getCode());
+            setReasonPhrase(status.getReasonPhrase());
+        }
+
+        callback.handle(request, response);
     }
 
     /**
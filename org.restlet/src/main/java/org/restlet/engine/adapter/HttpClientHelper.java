@@ -117,9 +117,23 @@ public abstract class HttpClientHelper extends ClientHelper {
         } catch (Exception e) {
             getLogger().info("Error while handling an HTTP client call", e);
             response.setStatus(Status.CONNECTOR_ERROR_INTERNAL, e);
+
+            // The response callback won't be invoked by the adapter
+            response.getAttributes().remove(ATTRIBUTE_PENDING_CALLBACK);
         }
     }
 
+    /**
+     * Returns true as the {@link ClientAdapter} invokes the response callbacks
+     * of asynchronous calls.
+     * 
+     * @return True.
+     */
+    @Override
+    public boolean isAsynchronous() {
+        return true;
+    }
+
     /**
      * Sets the adapter from uniform calls to HTTP calls.
      * 
@@ -61,7 +61,9 @@ import org.restlet.util.Series;
 import org.restlet.util.Tag;
 
 /**
- * Request wrapper for server HTTP calls.
+ * Request wrapper for server HTTP calls. Most properties, including the host,
+ * resource and original references and the date, are lazily extracted from the
+ * low-level call the first time they are requested.
  * 
  * @author Jerome Louvel
  */
@@ -93,12 +95,24 @@ public class HttpRequest extends Request {
     /** Indicates if the cookies were parsed and added. */
     private volatile boolean cookiesAdded;
 
+    /** The creation time, used as date when the client didn't send one. */
+    private final long creationTime;
+
+    /** Indicates if the date was parsed and added. */
+    private volatile boolean dateAdded;
+
     /** Indicates if the request entity was added. */
     private volatile boolean entityAdded;
 
+    /** Indicates if the host reference was added. */
+    private volatile boolean hostRefAdded;
+
     /** The low-level HTTP call. */
     private volatile ServerCall httpCall;
 
+    /** Indicates if the original reference was added. */
+    private volatile boolean originalRefAdded;
+
     /** Indicates if the proxy security data was parsed and added. */
     private volatile boolean proxySecurityAdded;
 
@@ -111,6 +125,9 @@ public class HttpRequest extends Request {
     /** Indicates if the referrer was parsed and added. */
     private volatile boolean referrerAdded;
 
+    /** Indicates if the resource reference was added. */
+    private volatile boolean resourceRefAdded;
+
     /** Indicates if the security data was parsed and added. */
     private volatile boolean securityAdded;
 
@@ -130,8 +147,13 @@ public class HttpRequest extends Request {
         this.clientAdded = false;
         this.conditionAdded = false;
         this.cookiesAdded = false;
+        this.creationTime = System.currentTimeMillis();
+        this.dateAdded = false;
         this.entityAdded = false;
+        this.hostRefAdded = false;
+        this.originalRefAdded = false;
         this.referrerAdded = false;
+        this.resourceRefAdded = false;
         this.securityAdded = false;
         this.proxySecurityAdded = false;
         this.recipientsInfoAdded = false;
@@ -140,49 +162,61 @@ public class HttpRequest extends Request {
 
         // Set the properties
         setMethod(Method.valueOf(httpCall.getMethod()));
+    }
+
+    @Override
+    public boolean abort() {
+        return getHttpCall().abort();
+    }
 
-        // Set the host reference
-        StringBuilder sb = new StringBuilder();
+    /**
+     * Appends the host URI of the low-level call, made of the scheme, the host
+     * domain and the port if it isn't the default one.
+     * 
+     * @param sb
+     *            The target string builder.
+     * @return The target string builder.
+     */
+    private StringBuilder appendHostUri(StringBuilder sb) {
+        ServerCall httpCall = getHttpCall();
+        int hostPort = httpCall.getHostPort();
         sb.append(httpCall.getProtocol().getSchemeName()).append("://");
         sb.append(httpCall.getHostDomain());
-        if ((httpCall.getHostPort() != -1) && (httpCall.getHostPort() != httpCall.getProtocol().getDefaultPort())) {
-            sb.append(':').append(httpCall.getHostPort());
+
+        if ((hostPort != -1) && (hostPort != httpCall.getProtocol().getDefaultPort())) {
+            sb.append(':').append(hostPort);
         }
-        setHostRef(sb.toString());
 
-        // Set the resource reference
-        if (httpCall.getRequestUri() != null) {
-            setResourceRef(new Reference(getHostRef(), httpCall.getRequestUri()));
+        return sb;
+    }
 
-            if (getResourceRef().isRelative()) {
-                // Take care of the "/" between the host part and the segments.
-                if (!httpCall.getRequestUri().startsWith("/")) {
-                    setResourceRef(new Reference(getHostRef().toString() + "/" + httpCall.getRequestUri()));
-                } else {
-                    setResourceRef(new Reference(getHostRef().toString() + httpCall.getRequestUri()));
+    /**
+     * Creates a new resource reference from the request URI of the low-level
+     * call.
+     * 
+     * @return The new resource reference or null.
+     */
+    private Reference createResourceRef() {
+        String requestUri = getHttpCall().getRequestUri();
+        Reference result = null;
+
+        if (requestUri != null) {
+            if (requestUri.startsWith("/")) {
+                // Origin form, the most frequent case
+                StringBuilder sb = new StringBuilder(32 + requestUri.length());
+                result = new Reference(appendHostUri(sb).append(requestUri).toString());
+            } else {
+                String hostUri = appendHostUri(new StringBuilder()).toString();
+                result = new Reference(new Reference(hostUri), requestUri);
+
+                if (result.isRelative()) {
+                    // Take care of the "/" between the host part and the segments.
+                    result = new Reference(hostUri + "/" + requestUri);
                 }
             }
-
-            setOriginalRef(ReferenceUtils.getOriginalRef(getResourceRef(), httpCall.getRequestHeaders()));
-        }
-
-        // Set the request date
-        String dateHeader = httpCall.getRequestHeaders().getFirstValue(HeaderConstants.HEADER_DATE, true);
-        Date date = null;
-        if (dateHeader != null) {
-            date = DateUtils.parse(dateHeader);
-        }
-
-        if (date == null) {
-            date = new Date();
         }
 
-        setDate(date);
-    }
-
-    @Override
-    public boolean abort() {
-        return getHttpCall().abort();
+        return result;
     }
 
     @Override
@@ -476,6 +510,27 @@ public class HttpRequest extends Request {
         return result;
     }
 
+    /**
+     * Returns the date sent by the client or the creation date of the request.
+     * 
+     * @return The date sent by the client or the creation date of the request.
+     */
+    @Override
+    public Date getDate() {
+        if (!this.dateAdded) {
+            String dateHeader = getHttpCall().getRequestHeaders().getFirstValue(HeaderConstants.HEADER_DATE, true);
+            Date date = null;
+
+            if (dateHeader != null) {
+                date = DateUtils.parse(dateHeader);
+            }
+
+            setDate((date == null) ? new Date(this.creationTime) : date);
+        }
+
+        return super.getDate();
+    }
+
     /**
      * Returns the representation provided by the client.
      * 
@@ -491,6 +546,20 @@ public class HttpRequest extends Request {
         return super.getEntity();
     }
 
+    /**
+     * Returns the host reference of the low-level call.
+     * 
+     * @return The host reference.
+     */
+    @Override
+    public Reference getHostRef() {
+        if (!this.hostRefAdded) {
+            setHostRef(new Reference(appendHostUri(new StringBuilder()).toString()));
+        }
+
+        return super.getHostRef();
+    }
+
     /**
      * Returns the low-level HTTP call.
      * 
@@ -500,6 +569,28 @@ public class HttpRequest extends Request {
         return this.httpCall;
     }
 
+    /**
+     * Returns the original reference, as requested by the client. It is
+     * computed from the request URI of the low-level call, so it isn't
+     * affected by later updates of the resource reference.
+     * 
+     * @return The original reference.
+     */
+    @Override
+    public Reference getOriginalRef() {
+        if (!this.originalRefAdded) {
+            Reference resourceRef = createResourceRef();
+
+            if (resourceRef != null) {
+                setOriginalRef(ReferenceUtils.getOriginalRef(resourceRef, getHttpCall().getRequestHeaders()));
+            } else {
+                this.originalRefAdded = true;
+            }
+        }
+
+        return super.getOriginalRef();
+    }
+
     @Override
     public ChallengeResponse getProxyChallengeResponse() {
         ChallengeResponse result = super.getProxyChallengeResponse();
@@ -564,6 +655,26 @@ public class HttpRequest extends Request {
         return super.getReferrerRef();
     }
 
+    /**
+     * Returns the resource reference of the low-level call.
+     * 
+     * @return The resource reference.
+     */
+    @Override
+    public Reference getResourceRef() {
+        if (!this.resourceRefAdded) {
+            Reference resourceRef = createResourceRef();
+
+            if (resourceRef != null) {
+                setResourceRef(resourceRef);
+            } else {
+                this.resourceRefAdded = true;
+            }
+        }
+
+        return super.getResourceRef();
+    }
+
     @Override
     public List<Warning> getWarnings() {
         List<Warning> result = super.getWarnings();
@@ -595,12 +706,30 @@ public class HttpRequest extends Request {
         this.securityAdded = true;
     }
 
+    @Override
+    public void setDate(Date date) {
+        super.setDate(date);
+        this.dateAdded = true;
+    }
+
     @Override
     public void setEntity(Representation entity) {
         super.setEntity(entity);
         this.entityAdded = true;
     }
 
+    @Override
+    public void setHostRef(Reference hostRef) {
+        super.setHostRef(hostRef);
+        this.hostRefAdded = true;
+    }
+
+    @Override
+    public void setOriginalRef(Reference originalRef) {
+        super.setOriginalRef(originalRef);
+        this.originalRefAdded = true;
+    }
+
     @Override
     public void setProxyChallengeResponse(ChallengeResponse response) {
         super.setProxyChallengeResponse(response);
@@ -613,6 +742,12 @@ public class HttpRequest extends Request {
         this.recipientsInfoAdded = true;
     }
 
+    @Override
+    public void setResourceRef(Reference resourceRef) {
+        super.setResourceRef(resourceRef);
+        this.resourceRefAdded = true;
+    }
+
     @Override
     public void setWarnings(List<Warning> warnings) {
         super.setWarnings(warnings);
@@ -0,0 +1,321 @@
+/**
+ * Copyright 2005-2016 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.application;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.restlet.message.CacheDirective;
+import org.restlet.message.Dimension;
+import org.restlet.message.Method;
+import org.restlet.message.Response;
+import org.restlet.representation.ByteArrayRepresentation;
+import org.restlet.representation.Disposition;
+import org.restlet.representation.EmptyRepresentation;
+import org.restlet.representation.Encoding;
+import org.restlet.representation.Language;
+import org.restlet.representation.Representation;
+import org.restlet.representation.RepresentationInfo;
+import org.restlet.util.Header;
+import org.restlet.util.Reference;
+
+/**
+ * Response cached by the {@link org.restlet.service.CacheService}. It holds
+ * the description of the response entity, optionally its content, and the
+ * other response fields to restore on a hit, such as the cache directives,
+ * dimensions, extension headers or allowed methods. Instances are shared by
+ * concurrent calls and aren't modified once created.
+ * 
+ * @author Jerome Louvel
+ */
+public final class CacheEntry {
+
+    /** The "Access-Control-Allow-Credentials" value of the response. */
+    private final Boolean accessControlAllowCredentials;
+
+    /** The "Access-Control-Allow-Headers" values of the response. */
+    private final Set<String> accessControlAllowHeaders;
+
+    /** The "Access-Control-Allow-Methods" values of the response. */
+    private final Set<Method> accessControlAllowMethods;
+
+    /** The "Access-Control-Allow-Origin" value of the response. */
+    private final String accessControlAllowOrigin;
+
+    /** The "Access-Control-Expose-Headers" values of the response. */
+    private final Set<String> accessControlExposeHeaders;
+
+    /** The "Access-Control-Max-Age" value of the response. */
+    private final int accessControlMaxAge;
+
+    /** The methods allowed on the resource. */
+    private final Set<Method> allowedMethods;
+
+    /** The cache directives of the response. */
+    private final List<CacheDirective> cacheDirectives;
+
+    /** The content of the entity or null if only its metadata are cached. */
+    private final byte[] content;
+
+    /** The dimensions on which the response varies. */
+    private final Set<Dimension> dimensions;
+
+    /** The disposition of the entity. */
+    private final Disposition disposition;
+
+    /** The expiration date of the entity. */
+    private final Date expirationDate;
+
+    /** The time in milliseconds after which the entry is stale. */
+    private final long expires;
+
+    /** The extension headers of the response. */
+    private final List<Header> headers;
+
+    /** The description of the entity. */
+    private final RepresentationInfo info;
+
+    /** The location reference of the response. */
+    private final Reference locationRef;
+
+    /** The date after which the client may retry. */
+    private final Date retryAfter;
+
+    /** The time in milliseconds when the entry was stored. */
+    private final long stored;
+
+    /**
+     * Constructor.
+     * 
+     * @param response
+     *            The response to cache.
+     * @param content
+     *            The content of the response entity or null.
+     * @param stored
+     *            The time in milliseconds when the entry is stored.
+     * @param expires
+     *            The time in milliseconds after which the entry is stale.
+     */
+    public CacheEntry(Response response, byte[] content, long stored,
+            long expires) {
+        Representation entity = response.getEntity();
+        List<CacheDirective> directives = new ArrayList<CacheDirective>();
+        List<Header> extensionHeaders = new ArrayList<Header>();
+
+        for (CacheDirective directive : response.getCacheDirectives()) {
+            directives.add(new CacheDirective(directive.getName(), directive
+                    .getValue(), directive.isDigit()));
+        }
+
+        for (Header header : response.getHeaders()) {
+            extensionHeaders.add(new Header(header.getName(), header
+                    .getValue()));
+        }
+
+        this.accessControlAllowCredentials = response
+                .getAccessControlAllowCredentials();
+        this.accessControlAllowHeaders = Collections
+                .unmodifiableSet(new HashSet<String>(response
+                        .getAccessControlAllowHeaders()));
+        this.accessControlAllowMethods = Collections
+                .unmodifiableSet(new HashSet<Method>(response
+                        .getAccessControlAllowMethods()));
+        this.accessControlAllowOrigin = response.getAccessControlAllowOrigin();
+        this.accessControlExposeHeaders = Collections
+                .unmodifiableSet(new HashSet<String>(response
+                        .getAccessControlExposeHeaders()));
+        this.accessControlMaxAge = response.getAccessControlMaxAge();
+        this.allowedMethods = Collections.unmodifiableSet(new HashSet<Method>(
+                response.getAllowedMethods()));
+        this.cacheDirectives = Collections.unmodifiableList(directives);
+        this.content = content;
+        this.dimensions = response.getDimensions().isEmpty() ? Collections
+                .<Dimension> emptySet() : Collections.unmodifiableSet(EnumSet
+                .copyOf(response.getDimensions()));
+        this.disposition = entity.getDisposition();
+        this.expirationDate = entity.getExpirationDate();
+        this.expires = expires;
+        this.headers = Collections.unmodifiableList(extensionHeaders);
+        this.info = new RepresentationInfo(entity.getMediaType(),
+                entity.getModificationDate(), entity.getTag());
+        this.info.setCharacterSet(entity.getCharacterSet());
+        this.info.setEncodings(new ArrayList<Encoding>(entity.getEncodings()));
+        this.info.setLanguages(new ArrayList<Language>(entity.getLanguages()));
+        this.info.setLocationRef(entity.getLocationRef());
+        this.locationRef = (response.getLocationRef() == null) ? null
+                : new Reference(response.getLocationRef());
+        this.retryAfter = (response.getRetryAfter() == null) ? null
+                : new Date(response.getRetryAfter().getTime());
+        this.stored = stored;
+    }
+
+    /**
+     * Creates a new representation with the cached metadata. Its content is
+     * the cached one, or empty if only the metadata were cached.
+     * 
+     * @return A new representation with the cached metadata.
+     */
+    public Representation createRepresentation() {
+        Representation result;
+
+        if (hasContent()) {
+            result = new ByteArrayRepresentation(this.content,
+                    this.info.getMediaType(), this.content.length);
+        } else {
+            result = new EmptyRepresentation();
+            result.setMediaType(this.info.getMediaType());
+        }
+
+        result.setCharacterSet(this.info.getCharacterSet());
+        result.getEncodings().addAll(this.info.getEncodings());
+        result.getLanguages().addAll(this.info.getLanguages());
+        result.setLocationRef(this.info.getLocationRef());
+        result.setModificationDate(this.info.getModificationDate());
+        result.setTag(this.info.getTag());
+        result.setDisposition(this.disposition);
+        result.setExpirationDate(this.expirationDate);
+        return result;
+    }
+
+    /**
+     * Returns the age of the entry in seconds.
+     * 
+     * @param now
+     *            The current time in milliseconds.
+     * @return The age of the entry in seconds.
+     */
+    public int getAge(long now) {
+        return (int) (Math.max(0, now - this.stored) / 1000);
+    }
+
+    /**
+     * Returns the cache directives of the response.
+     * 
+     * @return The cache directives of the response.
+     */
+    public List<CacheDirective> getCacheDirectives() {
+        return this.cacheDirectives;
+    }
+
+    /**
+     * Returns the size of the cached content.
+     * 
+     * @return The size of the cached content or 0 if only the metadata were
+     *         cached.
+     */
+    public int getContentSize() {
+        return hasContent() ? this.content.length : 0;
+    }
+
+    /**
+     * Returns the dimensions on which the response varies.
+     * 
+     * @return The dimensions on which the response varies.
+     */
+    public Set<Dimension> getDimensions() {
+        return this.dimensions;
+    }
+
+    /**
+     * Returns the description of the entity, used to evaluate the request
+     * conditions.
+     * 
+     * @return The description of the entity.
+     */
+    public RepresentationInfo getInfo() {
+        return this.info;
+    }
+
+    /**
+     * Indicates if the content of the entity has been cached.
+     * 
+     * @return True if the content of the entity has been cached.
+     */
+    public boolean hasContent() {
+        return this.content != null;
+    }
+
+    /**
+     * Indicates if the entry is stale.
+     * 
+     * @param now
+     *            The current time in milliseconds.
+     * @return True if the entry is stale.
+     */
+    public boolean isExpired(long now) {
+        return now >= this.expires;
+    }
+
+    /**
+     * Updates a response with the cache directives, dimensions, extension
+     * headers and other non-entity fields of the cached response, and with the
+     * age of the entry.
+     * 
+     * @param response
+     *            The response to update.
+     * @param now
+     *            The current time in milliseconds.
+     */
+    public void updateResponse(Response response, long now) {
+        for (CacheDirective directive : this.cacheDirectives) {
+            response.getCacheDirectives().add(
+                    new CacheDirective(directive.getName(), directive
+                            .getValue(), directive.isDigit()));
+        }
+
+        for (Header header : this.headers) {
+            response.getHeaders().add(
+                    new Header(header.getName(), header.getValue()));
+        }
+
+        response.getDimensions().addAll(this.dimensions);
+        response.getAllowedMethods().addAll(this.allowedMethods);
+        response.getAccessControlAllowHeaders().addAll(
+                this.accessControlAllowHeaders);
+        response.getAccessControlAllowMethods().addAll(
+                this.accessControlAllowMethods);
+        response.getAccessControlExposeHeaders().addAll(
+                this.accessControlExposeHeaders);
+        response.setAccessControlAllowCredentials(
+                this.accessControlAllowCredentials);
+        response.setAccessControlAllowOrigin(this.accessControlAllowOrigin);
+        response.setAccessControlMaxAge(this.accessControlMaxAge);
+        response.setAge(getAge(now));
+
+        if (this.locationRef != null) {
+            response.setLocationRef(new Reference(this.locationRef));
+        }
+
+        if (this.retryAfter != null) {
+            response.setRetryAfter(new Date(this.retryAfter.getTime()));
+        }
+    }
+
+}
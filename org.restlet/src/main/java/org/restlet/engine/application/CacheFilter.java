@@ -0,0 +1,344 @@
+/**
+ * Copyright 2005-2016 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.application;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.restlet.Context;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.message.CacheDirective;
+import org.restlet.message.Dimension;
+import org.restlet.message.Method;
+import org.restlet.message.Request;
+import org.restlet.message.Response;
+import org.restlet.message.Status;
+import org.restlet.representation.Representation;
+import org.restlet.routing.Filter;
+import org.restlet.service.CacheService;
+
+/**
+ * Filter answering the requests from the responses cached by the
+ * {@link CacheService} and caching the new responses. Conditional requests are
+ * evaluated against the cached tag and modification date, without invoking the
+ * target resource.
+ * 
+ * Concurrency note: instances of this class or its subclasses can be invoked by
+ * several threads at the same time and therefore must be thread-safe. You
+ * should be especially careful when storing state in member variables.
+ * 
+ * @author Jerome Louvel
+ */
+public class CacheFilter extends Filter {
+
+    /** The dimensions covered by the cache key. */
+    private static final Set<Dimension> KEY_DIMENSIONS = EnumSet.of(
+            Dimension.CHARACTER_SET, Dimension.ENCODING, Dimension.LANGUAGE,
+            Dimension.MEDIA_TYPE);
+
+    /**
+     * Returns the value of a cache directive as a number of seconds.
+     * 
+     * @param directive
+     *            The cache directive.
+     * @return The number of seconds or 0 if the value is missing or invalid.
+     */
+    private static int getSeconds(CacheDirective directive) {
+        int result = 0;
+
+        if (directive.getValue() != null) {
+            try {
+                result = Integer.parseInt(directive.getValue().trim());
+            } catch (NumberFormatException e) {
+                result = 0;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Indicates if a request carries credentials, either as a challenge
+     * response or as cookies.
+     * 
+     * @param request
+     *            The request to test.
+     * @return True if the request carries credentials.
+     */
+    private static boolean hasCredentials(Request request) {
+        return (request.getChallengeResponse() != null)
+                || !request.getCookies().isEmpty();
+    }
+
+    /** The parent cache service. */
+    private final CacheService cacheService;
+
+    /**
+     * Constructor.
+     * 
+     * @param context
+     *            The context.
+     * @param cacheService
+     *            The parent cache service.
+     */
+    public CacheFilter(Context context, CacheService cacheService) {
+        super(context);
+        this.cacheService = cacheService;
+    }
+
+    /**
+     * Invalidates the cached entries of the resource after a successful unsafe
+     * call, or caches the response to a GET call if allowed.
+     * 
+     * @param request
+     *            The request to filter.
+     * @param response
+     *            The response to filter.
+     */
+    @Override
+    protected void afterHandle(Request request, Response response) {
+        Status status = response.getStatus();
+
+        if (!request.getMethod().isSafe()) {
+            if (status.isSuccess() || status.isRedirection()) {
+                getCacheService().invalidate(request.getResourceRef());
+
+                if (response.getLocationRef() != null) {
+                    getCacheService().invalidate(response.getLocationRef());
+                }
+            }
+        } else if (Method.GET.equals(request.getMethod())
+                && Status.SUCCESS_OK.equals(status)) {
+            long maxAge = getFreshness(request, response);
+
+            if (maxAge > 0) {
+                String key = getCacheService().getCacheKey(request);
+
+                if (key != null) {
+                    long now = System.currentTimeMillis();
+                    byte[] content = readContent(response);
+
+                    if (content != null) {
+                        CacheEntry entry = new CacheEntry(response, content,
+                                now, now + maxAge);
+                        response.setEntity(entry.createRepresentation());
+                        getCacheService().cache(key, entry);
+                    } else if (response.isEntityAvailable()) {
+                        getCacheService().cache(key,
+                                new CacheEntry(response, null, now,
+                                        now + maxAge));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Answers the GET and HEAD requests from the cache when a fresh entry
+     * exists, either with its content or with the status resulting from the
+     * evaluation of the request conditions.
+     * 
+     * @param request
+     *            The request to filter.
+     * @param response
+     *            The response to filter.
+     * @return The continuation status.
+     */
+    @Override
+    protected int beforeHandle(Request request, Response response) {
+        int result = CONTINUE;
+
+        if ((Method.GET.equals(request.getMethod()) || Method.HEAD
+                .equals(request.getMethod()))
+                && !isRevalidating(request)
+                && !hasCredentials(request)) {
+            String key = getCacheService().getCacheKey(request);
+            CacheEntry entry = (key == null) ? null : getCacheService()
+                    .getCached(key);
+            long now = System.currentTimeMillis();
+
+            if ((entry != null) && !entry.isExpired(now)) {
+                Status status = request.getConditions().hasSome() ? request
+                        .getConditions().getStatus(request.getMethod(),
+                                entry.getInfo()) : null;
+
+                if (status != null) {
+                    response.setStatus(status);
+
+                    if (!status.isError()) {
+                        response.setEntity(entry.createRepresentation());
+                        entry.updateResponse(response, now);
+                    }
+
+                    result = STOP;
+                } else if (entry.hasContent()) {
+                    response.setStatus(Status.SUCCESS_OK);
+                    response.setEntity(entry.createRepresentation());
+                    entry.updateResponse(response, now);
+                    result = STOP;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the parent cache service.
+     * 
+     * @return The parent cache service.
+     */
+    public CacheService getCacheService() {
+        return this.cacheService;
+    }
+
+    /**
+     * Returns the freshness lifetime in milliseconds of a response, or 0 if it
+     * can't be cached. Responses carrying fields that only apply to the
+     * current call, such as authentication information, challenges, warnings
+     * or an origin-specific "Access-Control-Allow-Origin" value, are never
+     * cached. The "s-maxage" directive takes precedence over the
+     * "max-age" one, which takes precedence over the expiration date of the
+     * entity.
+     * 
+     * @param request
+     *            The handled request.
+     * @param response
+     *            The response to cache.
+     * @return The freshness lifetime in milliseconds.
+     */
+    private long getFreshness(Request request, Response response) {
+        Representation entity = response.getEntity();
+
+        if ((entity == null) || (entity.getRange() != null)
+                || !response.getCookieSettings().isEmpty()
+                || (response.getAuthenticationInfo() != null)
+                || !response.getChallengeRequests().isEmpty()
+                || !response.getProxyChallengeRequests().isEmpty()
+                || !response.getWarnings().isEmpty()
+                || ((response.getAccessControlAllowOrigin() != null) && !"*"
+                        .equals(response.getAccessControlAllowOrigin()))
+                || !KEY_DIMENSIONS.containsAll(response.getDimensions())) {
+            return 0;
+        }
+
+        boolean publicInfo = false;
+        int maxAge = -1;
+        int sharedMaxAge = -1;
+
+        for (CacheDirective directive : response.getCacheDirectives()) {
+            String name = directive.getName();
+
+            if (HeaderConstants.CACHE_NO_STORE.equals(name)
+                    || HeaderConstants.CACHE_NO_CACHE.equals(name)
+                    || HeaderConstants.CACHE_PRIVATE.equals(name)) {
+                return 0;
+            } else if (HeaderConstants.CACHE_PUBLIC.equals(name)) {
+                publicInfo = true;
+            } else if (HeaderConstants.CACHE_MAX_AGE.equals(name)) {
+                maxAge = getSeconds(directive);
+            } else if (HeaderConstants.CACHE_SHARED_MAX_AGE.equals(name)) {
+                sharedMaxAge = getSeconds(directive);
+            }
+        }
+
+        long result;
+
+        if (!publicInfo && hasCredentials(request)) {
+            result = 0;
+        } else if (sharedMaxAge >= 0) {
+            result = sharedMaxAge * 1000L;
+        } else if (maxAge >= 0) {
+            result = maxAge * 1000L;
+        } else if (entity.getExpirationDate() != null) {
+            result = entity.getExpirationDate().getTime()
+                    - System.currentTimeMillis();
+        } else {
+            result = getCacheService().getDefaultMaxAge() * 1000L;
+        }
+
+        return Math.max(0, result);
+    }
+
+    /**
+     * Indicates if the client requires the response to be revalidated by the
+     * target resource, with a "no-cache", "no-store" or "max-age=0" cache
+     * directive.
+     * 
+     * @param request
+     *            The request to test.
+     * @return True if the cached response can't be used.
+     */
+    private boolean isRevalidating(Request request) {
+        boolean result = false;
+
+        for (CacheDirective directive : request.getCacheDirectives()) {
+            String name = directive.getName();
+            result = result
+                    || HeaderConstants.CACHE_NO_CACHE.equals(name)
+                    || HeaderConstants.CACHE_NO_STORE.equals(name)
+                    || (HeaderConstants.CACHE_MAX_AGE.equals(name) && (getSeconds(directive) == 0));
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads the content of the response entity if its size is known and small
+     * enough to be cached.
+     * 
+     * @param response
+     *            The response to cache.
+     * @return The content of the response entity or null.
+     */
+    private byte[] readContent(Response response) {
+        byte[] result = null;
+        Representation entity = response.getEntity();
+
+        if (response.isEntityAvailable() && entity.hasKnownSize()
+                && (entity.getSize() <= getCacheService()
+                        .getMaxCachedEntrySize())) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(
+                    (int) entity.getSize());
+
+            try {
+                entity.write(out);
+                result = out.toByteArray();
+            } catch (IOException e) {
+                getLogger().warn(
+                        "Unable to cache the response entity of resource \""
+                                + response.getRequest().getResourceRef()
+                                + "\".", e);
+                response.setStatus(Status.SERVER_ERROR_INTERNAL, e);
+                response.setEntity(null);
+            }
+        }
+
+        return result;
+    }
+
+}
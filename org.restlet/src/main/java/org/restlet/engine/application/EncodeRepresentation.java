@@ -24,6 +24,8 @@
 
 package org.restlet.engine.application;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -32,25 +34,93 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.zip.CRC32;
 import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
 import java.util.zip.DeflaterOutputStream;
-import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
+import org.restlet.Context;
 import org.restlet.engine.io.IoUtils;
 import org.restlet.representation.Disposition;
 import org.restlet.representation.Encoding;
 import org.restlet.representation.Representation;
+import org.restlet.service.EncoderService;
 import org.restlet.util.WrapperList;
 import org.restlet.util.WrapperRepresentation;
 
 /**
  * Content that encodes a wrapped content. Allows to apply only one encoding.
+ * When created with an {@link EncoderService}, the deflaters are taken from its
+ * pool and the compressed content of static entities can be cached.
  * 
  * @author Jerome Louvel
  */
 public class EncodeRepresentation extends WrapperRepresentation {
+
+    /**
+     * GZIP output stream relying on a given deflater, which must produce raw
+     * deflate data.
+     */
+    private static class GzipOutputStream extends DeflaterOutputStream {
+
+        /** The GZIP header, without optional fields. */
+        private static final byte[] HEADER = { 0x1f, (byte) 0x8b,
+                Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+        /** The checksum of the uncompressed data. */
+        private final CRC32 crc;
+
+        /**
+         * Constructor. Writes the GZIP header.
+         * 
+         * @param out
+         *            The target output stream.
+         * @param deflater
+         *            The deflater producing raw deflate data.
+         * @param size
+         *            The output buffer size.
+         * @throws IOException
+         */
+        public GzipOutputStream(OutputStream out, Deflater deflater, int size)
+                throws IOException {
+            super(out, deflater, size);
+            this.crc = new CRC32();
+            out.write(HEADER);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (!def.finished()) {
+                super.finish();
+                writeInt((int) this.crc.getValue());
+                writeInt((int) def.getBytesRead());
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+                throws IOException {
+            super.write(b, off, len);
+            this.crc.update(b, off, len);
+        }
+
+        /**
+         * Writes an integer in little-endian order.
+         * 
+         * @param value
+         *            The value to write.
+         * @throws IOException
+         */
+        private void writeInt(int value) throws IOException {
+            out.write(value & 0xff);
+            out.write((value >> 8) & 0xff);
+            out.write((value >> 16) & 0xff);
+            out.write((value >> 24) & 0xff);
+        }
+    }
+
     /**
      * Returns the list of supported encodings.
      * 
@@ -64,6 +134,12 @@ public class EncodeRepresentation extends WrapperRepresentation {
     /** Indicates if the encoding can happen. */
     private volatile boolean canEncode;
 
+    /** The cached encoded content. */
+    private volatile byte[] content;
+
+    /** The encoder service or null. */
+    private final EncoderService encoderService;
+
     /** The encoding to apply. */
     private volatile Encoding encoding;
 
@@ -80,12 +156,45 @@ public class EncodeRepresentation extends WrapperRepresentation {
      */
     public EncodeRepresentation(Encoding encoding,
             Representation wrappedRepresentation) {
+        this(encoding, wrappedRepresentation, null);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param encoding
+     *            Encoder algorithm.
+     * @param wrappedRepresentation
+     *            The wrapped representation.
+     * @param encoderService
+     *            The encoder service providing the deflaters, the compression
+     *            settings and the cache, or null.
+     */
+    public EncodeRepresentation(Encoding encoding,
+            Representation wrappedRepresentation, EncoderService encoderService) {
         super(wrappedRepresentation);
         this.canEncode = getSupportedEncodings().contains(encoding);
+        this.content = null;
+        this.encoderService = encoderService;
         this.encodings = null;
         this.encoding = encoding;
     }
 
+    /**
+     * Returns a deflater, from the encoder service pool if available.
+     * 
+     * @param nowrap
+     *            True to produce raw deflate data.
+     * @return A deflater.
+     */
+    private Deflater acquireDeflater(boolean nowrap) {
+        if (this.encoderService != null) {
+            return this.encoderService.acquireDeflater(nowrap);
+        }
+
+        return new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap);
+    }
+
     /**
      * Indicates if the encoding can happen.
      * 
@@ -95,6 +204,68 @@ public class EncodeRepresentation extends WrapperRepresentation {
         return this.canEncode;
     }
 
+    /**
+     * Encodes the wrapped representation to an output stream.
+     * 
+     * @param outputStream
+     *            The output stream.
+     * @throws IOException
+     */
+    private void encode(OutputStream outputStream) throws IOException {
+        DeflaterOutputStream encoderOutputStream = null;
+        Deflater deflater = null;
+        boolean nowrap = true;
+        int bufferSize = (this.encoderService == null) ? IoUtils.BUFFER_SIZE
+                : this.encoderService.getBufferSize();
+
+        if (this.encoding.equals(Encoding.GZIP)) {
+            deflater = acquireDeflater(nowrap);
+            encoderOutputStream = new GzipOutputStream(outputStream, deflater,
+                    bufferSize);
+        } else if (this.encoding.equals(Encoding.DEFLATE)) {
+            nowrap = false;
+            deflater = acquireDeflater(nowrap);
+            encoderOutputStream = new DeflaterOutputStream(outputStream,
+                    deflater, bufferSize);
+        } else if (this.encoding.equals(Encoding.DEFLATE_NOWRAP)) {
+            deflater = acquireDeflater(nowrap);
+            encoderOutputStream = new DeflaterOutputStream(outputStream,
+                    deflater, bufferSize);
+        } else if (this.encoding.equals(Encoding.ZIP)) {
+            final ZipOutputStream stream = new ZipOutputStream(outputStream);
+            String name = "entry";
+
+            if (getWrappedRepresentation().getDisposition() != null) {
+                name = getWrappedRepresentation().getDisposition()
+                        .getParameters()
+                        .getFirstValue(Disposition.NAME_FILENAME, true, name);
+            }
+
+            if (this.encoderService != null) {
+                stream.setLevel(this.encoderService.getCompressionLevel());
+            }
+
+            stream.putNextEntry(new ZipEntry(name));
+            encoderOutputStream = stream;
+        } else if (this.encoding.equals(Encoding.IDENTITY)) {
+            // Encoder unnecessary for identity encoding
+        }
+
+        if (encoderOutputStream != null) {
+            try {
+                getWrappedRepresentation().write(encoderOutputStream);
+                encoderOutputStream.flush();
+                encoderOutputStream.finish();
+            } finally {
+                if (deflater != null) {
+                    releaseDeflater(deflater, nowrap);
+                }
+            }
+        } else {
+            getWrappedRepresentation().write(outputStream);
+        }
+    }
+
     /**
      * Returns the available size in bytes of the encoded representation if
      * known, UNKNOWN_SIZE (-1) otherwise.
@@ -109,6 +280,8 @@ public class EncodeRepresentation extends WrapperRepresentation {
         if (canEncode()) {
             if (this.encoding.equals(Encoding.IDENTITY)) {
                 result = getWrappedRepresentation().getAvailableSize();
+            } else {
+                result = getContentSize();
             }
         } else {
             result = getWrappedRepresentation().getAvailableSize();
@@ -117,6 +290,61 @@ public class EncodeRepresentation extends WrapperRepresentation {
         return result;
     }
 
+    /**
+     * Returns the encoded content if the wrapped representation is a static
+     * entity whose compressed content can be cached by the encoder service.
+     * The content is taken from the cache or encoded and cached.
+     * 
+     * @return The encoded content or null.
+     * @throws IOException
+     */
+    private byte[] getContent() throws IOException {
+        byte[] result = this.content;
+
+        if ((result == null) && (this.encoderService != null) && canEncode()
+                && !this.encoding.equals(Encoding.IDENTITY)) {
+            Object key = this.encoderService.getCacheKey(this.encoding,
+                    getWrappedRepresentation());
+
+            if (key != null) {
+                result = this.encoderService.getCached(key);
+
+                if (result == null) {
+                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                    encode(baos);
+                    result = baos.toByteArray();
+                    this.encoderService.cache(key, result);
+                }
+
+                this.content = result;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the size of the encoded content if it can be cached,
+     * UNKNOWN_SIZE (-1) otherwise.
+     * 
+     * @return The size of the encoded content if it can be cached,
+     *         UNKNOWN_SIZE (-1) otherwise.
+     */
+    private long getContentSize() {
+        try {
+            byte[] content = getContent();
+
+            if (content != null) {
+                return content.length;
+            }
+        } catch (IOException ioe) {
+            Context.getCurrentLogger().debug(
+                    "Unable to encode the cached content", ioe);
+        }
+
+        return UNKNOWN_SIZE;
+    }
+
     /**
      * Returns the applied encodings.
      * 
@@ -212,6 +440,8 @@ public class EncodeRepresentation extends WrapperRepresentation {
         if (canEncode()) {
             if (this.encoding.equals(Encoding.IDENTITY)) {
                 result = getWrappedRepresentation().getSize();
+            } else {
+                result = getContentSize();
             }
         } else {
             result = getWrappedRepresentation().getSize();
@@ -220,9 +450,44 @@ public class EncodeRepresentation extends WrapperRepresentation {
         return result;
     }
 
+    /**
+     * Returns the encoded stream. Cached contents are directly read, while the
+     * DEFLATE encodings are computed while reading without the need for an
+     * additional thread.
+     */
     @Override
     public InputStream getStream() throws IOException {
         if (canEncode()) {
+            byte[] content = getContent();
+
+            if (content != null) {
+                return new ByteArrayInputStream(content);
+            } else if ((this.encoderService != null)
+                    && (this.encoding.equals(Encoding.DEFLATE) || this.encoding
+                            .equals(Encoding.DEFLATE_NOWRAP))) {
+                final boolean nowrap = this.encoding
+                        .equals(Encoding.DEFLATE_NOWRAP);
+                final Deflater deflater = acquireDeflater(nowrap);
+
+                return new DeflaterInputStream(getWrappedRepresentation()
+                        .getStream(), deflater,
+                        this.encoderService.getBufferSize()) {
+                    private boolean released = false;
+
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            if (!this.released) {
+                                this.released = true;
+                                releaseDeflater(deflater, nowrap);
+                            }
+                        }
+                    }
+                };
+            }
+
             return IoUtils.getStream(this);
         } else {
             return getWrappedRepresentation().getStream();
@@ -238,42 +503,31 @@ public class EncodeRepresentation extends WrapperRepresentation {
         }
     }
 
+    /**
+     * Gives back a deflater, to the encoder service pool if available.
+     * 
+     * @param deflater
+     *            The deflater to release.
+     * @param nowrap
+     *            True if the deflater produces raw deflate data.
+     */
+    private void releaseDeflater(Deflater deflater, boolean nowrap) {
+        if (this.encoderService != null) {
+            this.encoderService.release(deflater, nowrap);
+        } else {
+            deflater.end();
+        }
+    }
+
     @Override
     public void write(OutputStream outputStream) throws IOException {
         if (canEncode()) {
-            DeflaterOutputStream encoderOutputStream = null;
-
-            if (this.encoding.equals(Encoding.GZIP)) {
-                encoderOutputStream = new GZIPOutputStream(outputStream);
-            } else if (this.encoding.equals(Encoding.DEFLATE)) {
-                encoderOutputStream = new DeflaterOutputStream(outputStream);
-            } else if (this.encoding.equals(Encoding.DEFLATE_NOWRAP)) {
-                encoderOutputStream = new DeflaterOutputStream(outputStream,
-                        new Deflater(Deflater.DEFAULT_COMPRESSION, true));
-            } else if (this.encoding.equals(Encoding.ZIP)) {
-                final ZipOutputStream stream = new ZipOutputStream(outputStream);
-                String name = "entry";
-
-                if (getWrappedRepresentation().getDisposition() != null) {
-                    name = getWrappedRepresentation()
-                            .getDisposition()
-                            .getParameters()
-                            .getFirstValue(Disposition.NAME_FILENAME, true,
-                                    name);
-                }
+            byte[] content = getContent();
 
-                stream.putNextEntry(new ZipEntry(name));
-                encoderOutputStream = stream;
-            } else if (this.encoding.equals(Encoding.IDENTITY)) {
-                // Encoder unnecessary for identity encoding
-            }
-
-            if (encoderOutputStream != null) {
-                getWrappedRepresentation().write(encoderOutputStream);
-                encoderOutputStream.flush();
-                encoderOutputStream.finish();
+            if (content != null) {
+                outputStream.write(content);
             } else {
-                getWrappedRepresentation().write(outputStream);
+                encode(outputStream);
             }
         } else {
             getWrappedRepresentation().write(outputStream);
@@ -24,6 +24,7 @@
 
 package org.restlet.engine.application;
 
+import java.io.File;
 import java.util.Iterator;
 import java.util.List;
 
@@ -33,6 +34,7 @@ import org.restlet.message.Preference;
 import org.restlet.message.Request;
 import org.restlet.message.Response;
 import org.restlet.representation.Encoding;
+import org.restlet.representation.FileRepresentation;
 import org.restlet.representation.Representation;
 import org.restlet.routing.Filter;
 import org.restlet.service.EncoderService;
@@ -141,7 +143,12 @@ public class Encoder extends Filter {
         Encoding bestEncoding = getBestEncoding(client);
 
         if (bestEncoding != null) {
-            result = new EncodeRepresentation(bestEncoding, representation);
+            result = getPrecompressedVariant(bestEncoding, representation);
+
+            if (result == null) {
+                result = new EncodeRepresentation(bestEncoding,
+                        representation, getEncoderService());
+            }
         }
 
         return result;
@@ -191,6 +198,54 @@ public class Encoder extends Filter {
         return encoderService;
     }
 
+    /**
+     * Returns the precompressed sibling of a file representation, if enabled
+     * by the encoder service. For the GZIP encoding, a file with the
+     * additional ".gz" extension is looked up and returned if it isn't older
+     * than the original file. The metadata of the original representation are
+     * preserved.
+     * 
+     * @param encoding
+     *            The encoding to apply.
+     * @param representation
+     *            The representation to encode.
+     * @return The precompressed variant or null.
+     */
+    protected Representation getPrecompressedVariant(Encoding encoding,
+            Representation representation) {
+        if ((getEncoderService() == null)
+                || !getEncoderService().isPrecompressedVariants()
+                || !Encoding.GZIP.equals(encoding)
+                || !(representation instanceof FileRepresentation)
+                || (representation.getRange() != null)) {
+            return null;
+        }
+
+        File file = ((FileRepresentation) representation).getFile();
+
+        if (file == null) {
+            return null;
+        }
+
+        File sibling = new File(file.getPath() + ".gz");
+
+        if (!sibling.isFile() || (sibling.lastModified() < file.lastModified())) {
+            return null;
+        }
+
+        FileRepresentation result = new FileRepresentation(sibling,
+                representation.getMediaType());
+        result.setCharacterSet(representation.getCharacterSet());
+        result.setDisposition(representation.getDisposition());
+        result.setExpirationDate(representation.getExpirationDate());
+        result.getLanguages().addAll(representation.getLanguages());
+        result.setLocationRef(representation.getLocationRef());
+        result.setModificationDate(representation.getModificationDate());
+        result.setTag(representation.getTag());
+        result.getEncodings().add(Encoding.GZIP);
+        return result;
+    }
+
     /**
      * Returns the list of supported encodings. By default it calls
      * {@link EncodeRepresentation#getSupportedEncodings()} static method.
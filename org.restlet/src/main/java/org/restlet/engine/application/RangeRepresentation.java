@@ -24,20 +24,29 @@
 
 package org.restlet.engine.application;
 
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 
+import org.restlet.engine.io.FileChannelInputStream;
 import org.restlet.engine.io.IoUtils;
 import org.restlet.engine.io.RangeInputStream;
+import org.restlet.representation.FileRepresentation;
 import org.restlet.representation.Representation;
 import org.restlet.util.Range;
 import org.restlet.util.WrapperRepresentation;
 
 /**
  * Representation that exposes only a range of the content of a wrapped
- * representation.
+ * representation. When the wrapped representation is a
+ * {@link FileRepresentation}, the range is read with positional reads or
+ * transferred with {@link FileChannel#transferTo(long, long, WritableByteChannel)}
+ * instead of skipping the bytes located before it.
  * 
  * @author Jerome Louvel
  */
@@ -78,6 +87,25 @@ public class RangeRepresentation extends WrapperRepresentation {
         return IoUtils.getAvailableSize(this);
     }
 
+    /**
+     * Returns the wrapped file representation if the range can be served
+     * directly from the file, null otherwise.
+     * 
+     * @return The wrapped file representation or null.
+     */
+    public FileRepresentation getFileRepresentation() {
+        Representation wrapped = getWrappedRepresentation();
+
+        if ((wrapped instanceof FileRepresentation)
+                && (((FileRepresentation) wrapped).getFile() != null)
+                && (getRange() != null) && Range.isBytesRange(getRange())
+                && hasKnownSize()) {
+            return (FileRepresentation) wrapped;
+        }
+
+        return null;
+    }
+
     /**
      * Returns the range specific to this wrapper. The wrapped representation
      * must not have a range set itself.
@@ -94,8 +122,37 @@ public class RangeRepresentation extends WrapperRepresentation {
         return IoUtils.getReader(getStream(), getCharacterSet());
     }
 
+    /**
+     * Returns the index of the first byte of the range inside the wrapped
+     * representation. The size of the wrapped representation must be known
+     * when the range is relative to its end.
+     * 
+     * @return The index of the first byte of the range.
+     */
+    public long getStartIndex() {
+        Range range = getRange();
+
+        if (range == null) {
+            return 0;
+        } else if (range.getIndex() != Range.INDEX_LAST) {
+            return range.getIndex();
+        } else if (range.getSize() == Range.SIZE_MAX) {
+            return 0;
+        }
+
+        return Math.max(0, getSize() - range.getSize());
+    }
+
     @Override
     public InputStream getStream() throws IOException {
+        FileRepresentation fileRepresentation = getFileRepresentation();
+
+        if (fileRepresentation != null) {
+            return new FileChannelInputStream(
+                    fileRepresentation.getChannel(), getStartIndex(),
+                    Math.max(0, getAvailableSize()));
+        }
+
         return new RangeInputStream(super.getStream(), getSize(), getRange());
     }
 
@@ -125,7 +182,29 @@ public class RangeRepresentation extends WrapperRepresentation {
 
     @Override
     public void write(OutputStream outputStream) throws IOException {
-        IoUtils.copy(getStream(), outputStream);
+        if ((outputStream instanceof FileOutputStream)
+                && (getFileRepresentation() != null)) {
+            write(((FileOutputStream) outputStream).getChannel());
+        } else {
+            IoUtils.copy(getStream(), outputStream);
+        }
+    }
+
+    @Override
+    public void write(WritableByteChannel writableChannel) throws IOException {
+        FileRepresentation fileRepresentation = getFileRepresentation();
+
+        if (fileRepresentation != null) {
+            try (FileChannel fileChannel = fileRepresentation.getChannel()) {
+                IoUtils.copy(fileChannel, getStartIndex(),
+                        Math.max(0, getAvailableSize()), writableChannel);
+            }
+        } else {
+            OutputStream outputStream = Channels
+                    .newOutputStream(writableChannel);
+            write(outputStream);
+            outputStream.flush();
+        }
     }
 
 }
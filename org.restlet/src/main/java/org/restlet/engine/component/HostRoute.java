@@ -24,13 +24,14 @@
 
 package org.restlet.engine.component;
 
+import org.restlet.engine.util.MatchPattern;
 import org.restlet.message.Request;
 import org.restlet.message.Response;
+import org.restlet.message.ServerInfo;
 import org.restlet.routing.Route;
 import org.restlet.routing.Router;
 import org.restlet.routing.VirtualHost;
-
-import java.util.regex.Pattern;
+import org.restlet.util.Reference;
 
 /**
  * Route based on a target VirtualHost.
@@ -94,111 +95,162 @@ public class HostRoute extends Route {
     }
 
     /**
-     * Matches a formatted string against a regex pattern, in a case insensitive
-     * manner.
+     * Matches the host reference against the virtual host criteria.
      * 
-     * @param regex
-     *            The pattern to use.
-     * @param formattedString
-     *            The formatted string to match.
-     * @return True if the formatted string matched the pattern.
+     * @param vhost
+     *            The virtual host.
+     * @param hostRef
+     *            The host reference, possibly null.
+     * @return True if the host reference matched.
      */
-    private boolean matches(String regex, String formattedString) {
-        return Pattern.compile(regex, Pattern.CASE_INSENSITIVE)
-                .matcher(formattedString).matches();
-    }
+    private boolean matchesHostRef(VirtualHost vhost, Reference hostRef) {
+        MatchPattern pattern = vhost.getHostDomainPattern();
 
-    /**
-     * Returns the score for a given call (between 0 and 1.0).
-     * 
-     * @param request
-     *            The request to score.
-     * @param response
-     *            The response to score.
-     * @return The score for a given call (between 0 and 1.0).
-     */
-    @Override
-    public float score(Request request, Response response) {
-        float result = 0F;
+        if (!pattern.isWildcard()) {
+            String hostDomain = (hostRef == null) ? null : hostRef
+                    .getHostDomain();
 
-        // Prepare the value to be matched
-        String hostDomain = "";
-        String hostPort = "";
-        String hostScheme = "";
+            if (!pattern.matches((hostDomain == null) ? "" : hostDomain)) {
+                return false;
+            }
+        }
 
-        if (request.getHostRef() != null) {
-            hostDomain = request.getHostRef().getHostDomain();
+        pattern = vhost.getHostPortPattern();
 
-            if (hostDomain == null) {
-                hostDomain = "";
-            }
+        if (!pattern.isWildcard()) {
+            String hostPort = "";
 
-            int basePortValue = request.getHostRef().getHostPort();
+            if (hostRef != null) {
+                int hostPortValue = hostRef.getHostPort();
 
-            if (basePortValue == -1) {
-                basePortValue = request.getHostRef().getSchemeProtocol()
-                        .getDefaultPort();
+                if (hostPortValue == -1) {
+                    hostPortValue = hostRef.getSchemeProtocol()
+                            .getDefaultPort();
+                }
+
+                hostPort = Integer.toString(hostPortValue);
             }
 
-            hostPort = Integer.toString(basePortValue);
+            if (!pattern.matches(hostPort)) {
+                return false;
+            }
+        }
+
+        pattern = vhost.getHostSchemePattern();
 
-            hostScheme = request.getHostRef().getScheme();
+        if (!pattern.isWildcard()) {
+            String hostScheme = (hostRef == null) ? null : hostRef.getScheme();
 
-            if (hostScheme == null) {
-                hostScheme = "";
+            if (!pattern.matches((hostScheme == null) ? "" : hostScheme)) {
+                return false;
             }
         }
 
-        if (request.getResourceRef() != null) {
-            String resourceDomain = request.getResourceRef().getHostDomain();
+        return true;
+    }
 
-            if (resourceDomain == null) {
-                resourceDomain = "";
+    /**
+     * Matches the resource reference against the virtual host criteria.
+     * 
+     * @param vhost
+     *            The virtual host.
+     * @param resourceRef
+     *            The resource reference.
+     * @return True if the resource reference matched.
+     */
+    private boolean matchesResourceRef(VirtualHost vhost,
+            Reference resourceRef) {
+        MatchPattern pattern = vhost.getResourceDomainPattern();
+
+        if (!pattern.isWildcard()) {
+            String resourceDomain = resourceRef.getHostDomain();
+
+            if (!pattern.matches((resourceDomain == null) ? ""
+                    : resourceDomain)) {
+                return false;
             }
+        }
 
-            int resourcePortValue = request.getResourceRef().getHostPort();
+        pattern = vhost.getResourcePortPattern();
+
+        if (!pattern.isWildcard()) {
+            int resourcePortValue = resourceRef.getHostPort();
 
             if (resourcePortValue == -1
-                    && request.getResourceRef()
-                            .getSchemeProtocol() != null) {
-                resourcePortValue = request.getResourceRef()
-                        .getSchemeProtocol().getDefaultPort();
+                    && resourceRef.getSchemeProtocol() != null) {
+                resourcePortValue = resourceRef.getSchemeProtocol()
+                        .getDefaultPort();
             }
 
-            String resourcePort = (resourcePortValue == -1) ? "" : Integer.toString(resourcePortValue);
+            if (!pattern.matches((resourcePortValue == -1) ? "" : Integer
+                    .toString(resourcePortValue))) {
+                return false;
+            }
+        }
 
-            String resourceScheme = request.getResourceRef().getScheme();
+        pattern = vhost.getResourceSchemePattern();
 
-            if (resourceScheme == null) {
-                resourceScheme = "";
+        if (!pattern.isWildcard()) {
+            String resourceScheme = resourceRef.getScheme();
+
+            if (!pattern.matches((resourceScheme == null) ? ""
+                    : resourceScheme)) {
+                return false;
             }
+        }
 
-            String serverAddress = response.getServerInfo().getAddress();
+        return true;
+    }
 
-            if (serverAddress == null) {
-                serverAddress = "";
-            }
+    /**
+     * Matches the server information against the virtual host criteria.
+     * 
+     * @param vhost
+     *            The virtual host.
+     * @param serverInfo
+     *            The server information.
+     * @return True if the server information matched.
+     */
+    private boolean matchesServerInfo(VirtualHost vhost,
+            ServerInfo serverInfo) {
+        MatchPattern pattern = vhost.getServerAddressPattern();
 
-            int serverPortValue = response.getServerInfo().getPort();
+        if (!pattern.isWildcard()) {
+            String serverAddress = serverInfo.getAddress();
 
-            if (serverPortValue == -1) {
-                serverPortValue = request.getProtocol().getDefaultPort();
+            if (!pattern.matches((serverAddress == null) ? ""
+                    : serverAddress)) {
+                return false;
             }
+        }
 
-            String serverPort = Integer.toString(response.getServerInfo()
-                    .getPort());
-
-            // Check if all the criteria match
-            if (matches(getVirtualHost().getHostDomain(), hostDomain)
-                    && matches(getVirtualHost().getHostPort(), hostPort)
-                    && matches(getVirtualHost().getHostScheme(), hostScheme)
-                    && matches(getVirtualHost().getResourceDomain(), resourceDomain)
-                    && matches(getVirtualHost().getResourcePort(), resourcePort)
-                    && matches(getVirtualHost().getResourceScheme(), resourceScheme)
-                    && matches(getVirtualHost().getServerAddress(), serverAddress)
-                    && matches(getVirtualHost().getServerPort(), serverPort)) {
-                result = 1F;
-            }
+        pattern = vhost.getServerPortPattern();
+
+        return pattern.isWildcard()
+                || pattern.matches(Integer.toString(serverInfo.getPort()));
+    }
+
+    /**
+     * Returns the score for a given call (between 0 and 1.0).
+     * 
+     * @param request
+     *            The request to score.
+     * @param response
+     *            The response to score.
+     * @return The score for a given call (between 0 and 1.0).
+     */
+    @Override
+    public float score(Request request, Response response) {
+        float result = 0F;
+        VirtualHost vhost = getVirtualHost();
+
+        // Check if all the criteria match, only formatting the values to be
+        // matched when the criterion isn't a wildcard
+        if ((request.getResourceRef() != null)
+                && matchesHostRef(vhost, request.getHostRef())
+                && matchesResourceRef(vhost, request.getResourceRef())
+                && matchesServerInfo(vhost, response.getServerInfo())) {
+            result = 1F;
         }
 
         // Log the result of the matching
@@ -24,18 +24,29 @@
 
 package org.restlet.engine.component;
 
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
 import org.restlet.Component;
 import org.restlet.Restlet;
 import org.restlet.message.Request;
 import org.restlet.message.Response;
 import org.restlet.message.Status;
+import org.restlet.routing.Route;
 import org.restlet.routing.Router;
 import org.restlet.routing.VirtualHost;
 
 /**
  * Router that collects calls from all server connectors and dispatches them to
  * the appropriate host routers. The host routers then dispatch them to the user
- * applications.
+ * applications.<br>
+ * <br>
+ * Virtual hosts whose host domain is a plain literal, such as
+ * "www\\.example\\.com", are also indexed by lower case domain name when the
+ * router starts. In the default first match mode, a request for such a domain
+ * only scores the matching host route and the routes declared before it that
+ * can't be indexed, instead of all the routes.
  * 
  * Concurrency note: instances of this class or its subclasses can be invoked by
  * several threads at the same time and therefore must be thread-safe. You
@@ -48,6 +59,9 @@ public class ServerRouter extends Router {
     /** The parent component. */
     private volatile Component component;
 
+    /** The index of host routes by lower case literal host domain. */
+    private volatile Map<String, Integer> exactHosts;
+
     /**
      * Constructor.
      * 
@@ -58,6 +72,7 @@ public class ServerRouter extends Router {
         super((component == null) ? null : component.getContext()
                 .createChildContext());
         this.component = component;
+        this.exactHosts = null;
         setRoutingMode(MODE_FIRST_MATCH);
     }
 
@@ -70,6 +85,66 @@ public class ServerRouter extends Router {
         return this.component;
     }
 
+    /**
+     * Returns the route matching the request's host domain via the index of
+     * literal host domains. The routes declared before the indexed one are
+     * also scored unless their literal host domain differs, in order to
+     * preserve the first match semantics.
+     * 
+     * @param request
+     *            The request to handle.
+     * @param response
+     *            The response to update.
+     * @return The matching route or null if the index can't decide.
+     */
+    private Route getExactRoute(Request request, Response response) {
+        Map<String, Integer> hosts = this.exactHosts;
+
+        if ((hosts == null) || (getRoutingMode() != MODE_FIRST_MATCH)
+                || (request.getHostRef() == null)) {
+            return null;
+        }
+
+        String hostDomain = request.getHostRef().getHostDomain();
+        Integer index = (hostDomain == null) ? null : hosts.get(hostDomain
+                .toLowerCase(Locale.ENGLISH));
+
+        if ((index == null) || (index >= getRoutes().size())) {
+            return null;
+        }
+
+        Route result = null;
+
+        for (int i = 0; (result == null) && (i <= index); i++) {
+            Route route = getRoutes().get(i);
+            String literal = (route instanceof HostRoute) ? ((HostRoute) route)
+                    .getVirtualHost().getHostDomainPattern().getLiteral()
+                    : null;
+
+            if (((literal == null) || literal.equalsIgnoreCase(hostDomain))
+                    && (route.score(request, response) >= getRequiredScore())) {
+                result = route;
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public Restlet getNext(Request request, Response response) {
+        Route result = getExactRoute(request, response);
+
+        if (result == null) {
+            return super.getNext(request, response);
+        }
+
+        if (request.isLoggable()) {
+            logRoute(result);
+        }
+
+        return result;
+    }
+
     @Override
     protected void logRoute(org.restlet.routing.Route route) {
         if (getLogger().isDebugEnabled()) {
@@ -104,6 +179,22 @@ public class ServerRouter extends Router {
                     new HostRoute(this, getComponent().getDefaultHost()));
         }
 
+        // Index the host routes with a literal host domain
+        Map<String, Integer> hosts = new HashMap<>();
+
+        for (int i = 0; i < getRoutes().size(); i++) {
+            Route route = getRoutes().get(i);
+            String literal = (route instanceof HostRoute) ? ((HostRoute) route)
+                    .getVirtualHost().getHostDomainPattern().getLiteral()
+                    : null;
+
+            if ((literal != null) && !hosts.containsKey(literal)) {
+                hosts.put(literal, i);
+            }
+        }
+
+        this.exactHosts = hosts.isEmpty() ? null : hosts;
+
         // If no host matches, display and error page with a precise message
         final Restlet noHostMatched = new Restlet(getComponent().getContext()
                 .createChildContext()) {
@@ -124,6 +215,7 @@ public class ServerRouter extends Router {
     @Override
     public synchronized void stop() throws Exception {
         getRoutes().clear();
+        this.exactHosts = null;
         super.stop();
     }
 }
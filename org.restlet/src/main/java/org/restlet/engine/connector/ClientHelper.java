@@ -25,6 +25,7 @@
 package org.restlet.engine.connector;
 
 import org.restlet.Client;
+import org.restlet.message.Request;
 
 /**
  * Client connector helper. Base client helper based on NIO non blocking
@@ -43,6 +44,13 @@ import org.restlet.Client;
  */
 public class ClientHelper extends ConnectorHelper<Client> {
 
+    /**
+     * Name of the response attribute holding the response callback of an
+     * asynchronous call that a helper took over. It lets the caller know that
+     * the callback will be invoked later, once the response is received.
+     */
+    public static final String ATTRIBUTE_PENDING_CALLBACK = "org.restlet.engine.pendingCallback";
+
     /**
      * Constructor.
      * 
@@ -53,4 +61,17 @@ public class ClientHelper extends ConnectorHelper<Client> {
         super(client);
     }
 
+    /**
+     * Indicates if the helper invokes the {@link Request#getOnResponse()}
+     * callback of asynchronous calls itself, once the response is received.
+     * Otherwise, asynchronous calls are handled like synchronous ones and the
+     * callback is invoked by the {@link Client} after the handling. Returns
+     * false by default.
+     * 
+     * @return True if the helper invokes the response callbacks.
+     */
+    public boolean isAsynchronous() {
+        return false;
+    }
+
 }
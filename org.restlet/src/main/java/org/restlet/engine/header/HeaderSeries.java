@@ -0,0 +1,494 @@
+/**
+ * Copyright 2005-2016 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.header;
+
+import java.util.Vector;
+
+import org.restlet.util.Header;
+import org.restlet.util.Series;
+
+/**
+ * Series of headers with an index on the header names. Lookups by name, case
+ * sensitive or not, rely on a small open-addressing hash table instead of
+ * scanning the whole list, while the insertion order and the {@link Series}
+ * API are preserved.<br>
+ * <br>
+ * The index is built lazily once the series holds enough headers, kept up to
+ * date when headers are appended and rebuilt after any other structural
+ * change. Renaming a header already contained in the series isn't detected
+ * and shouldn't be done.<br>
+ * <br>
+ * Like the default {@link Series}, the headers are held by a synchronized
+ * {@link Vector}, so the series can be shared by several threads. The index is
+ * read, updated and rebuilt while holding the lock of this vector.
+ * 
+ * @author Jerome Louvel
+ */
+public class HeaderSeries extends Series<Header> {
+
+    /**
+     * List of headers exposing its modification count.
+     */
+    private static class HeaderList extends Vector<Header> {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Returns the modification count.
+         * 
+         * @return The modification count.
+         */
+        public synchronized int getModCount() {
+            return this.modCount;
+        }
+
+        /**
+         * Replaces a header and increments the modification count so that the
+         * index is rebuilt.
+         */
+        @Override
+        public synchronized Header set(int index, Header element) {
+            this.modCount++;
+            return super.set(index, element);
+        }
+    }
+
+    /**
+     * Index of the header positions by case insensitive name.
+     */
+    private static class Index {
+
+        /** The modification count of the indexed list. */
+        private volatile int modCount;
+
+        /** The next position with the same name, or -1, for each position. */
+        private final int[] next;
+
+        /** The first position with a given name, plus one, for each slot. */
+        private final int[] table;
+
+        /** The last position with a given name for each slot. */
+        private final int[] tails;
+
+        /**
+         * Constructor. Indexes all the headers of the given list.
+         * 
+         * @param list
+         *            The list of headers to index.
+         */
+        public Index(HeaderList list) {
+            int capacity = 16;
+
+            while (capacity < list.size() * 2) {
+                capacity <<= 1;
+            }
+
+            this.next = new int[capacity];
+            this.table = new int[capacity];
+            this.tails = new int[capacity];
+
+            for (int i = 0; i < list.size(); i++) {
+                add(list, i);
+            }
+
+            this.modCount = list.getModCount();
+        }
+
+        /**
+         * Indexes the header at the given position.
+         * 
+         * @param list
+         *            The list of headers.
+         * @param position
+         *            The position of the header to index.
+         */
+        public void add(HeaderList list, int position) {
+            String name = list.get(position).getName();
+            int mask = this.table.length - 1;
+            this.next[position] = -1;
+
+            for (int slot = hash(name) & mask;; slot = (slot + 1) & mask) {
+                if (this.table[slot] == 0) {
+                    this.table[slot] = position + 1;
+                    this.tails[slot] = position;
+                    return;
+                } else if (matches(list.get(this.table[slot] - 1), name, true)) {
+                    this.next[this.tails[slot]] = position;
+                    this.tails[slot] = position;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Indicates if a header can be appended and indexed without rebuilding
+         * the index.
+         * 
+         * @param size
+         *            The size of the list once the header is appended.
+         * @return True if a header can be appended and indexed.
+         */
+        public boolean canAdd(int size) {
+            return size * 2 <= this.table.length;
+        }
+
+        /**
+         * Returns the first position of a header with the given name, ignoring
+         * the case.
+         * 
+         * @param list
+         *            The list of headers.
+         * @param name
+         *            The header name.
+         * @return The first position or -1.
+         */
+        public int first(HeaderList list, String name) {
+            int mask = this.table.length - 1;
+
+            for (int slot = hash(name) & mask; this.table[slot] != 0; slot = (slot + 1)
+                    & mask) {
+                if (matches(list.get(this.table[slot] - 1), name, true)) {
+                    return this.table[slot] - 1;
+                }
+            }
+
+            return -1;
+        }
+
+        /**
+         * Returns the next position of a header with the same name.
+         * 
+         * @param position
+         *            The current position.
+         * @return The next position or -1.
+         */
+        public int next(int position) {
+            return this.next[position];
+        }
+    }
+
+    /** The minimum number of headers before the index is used. */
+    private static final int INDEX_THRESHOLD = 8;
+
+    /**
+     * Returns a case insensitive hash code of a header name, consistent with
+     * {@link String#equalsIgnoreCase(String)}.
+     * 
+     * @param name
+     *            The header name.
+     * @return The hash code.
+     */
+    private static int hash(String name) {
+        int result = 0;
+
+        if (name != null) {
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+
+                if ((c >= 'A') && (c <= 'Z')) {
+                    c += ('a' - 'A');
+                } else if (c >= 128) {
+                    c = Character.toLowerCase(Character.toUpperCase(c));
+                }
+
+                result = 31 * result + c;
+            }
+        }
+
+        return result ^ (result >>> 16);
+    }
+
+    /**
+     * Indicates if a header has the given name.
+     * 
+     * @param header
+     *            The header to test.
+     * @param name
+     *            The header name.
+     * @param ignoreCase
+     *            Indicates if the name comparison is case insensitive.
+     * @return True if the header has the given name.
+     */
+    private static boolean matches(Header header, String name,
+            boolean ignoreCase) {
+        String headerName = header.getName();
+
+        if ((headerName == null) || (name == null)) {
+            return headerName == name;
+        }
+
+        return ignoreCase ? headerName.equalsIgnoreCase(name) : headerName
+                .equals(name);
+    }
+
+    /** The current index or null, guarded by the lock of the delegate list. */
+    private volatile Index index;
+
+    /**
+     * Constructor.
+     */
+    public HeaderSeries() {
+        super(Header.class, new HeaderList());
+        this.index = null;
+    }
+
+    @Override
+    public boolean add(Header element) {
+        HeaderList list = getList();
+
+        synchronized (list) {
+            Index index = this.index;
+            boolean indexed = (index != null)
+                    && (index.modCount == list.getModCount());
+            boolean result = super.add(element);
+
+            if (indexed && index.canAdd(list.size())) {
+                index.add(list, list.size() - 1);
+                index.modCount = list.getModCount();
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * Creates a new header without relying on reflection.
+     */
+    @Override
+    public Header createEntry(String name, String value) {
+        return new Header(name, value);
+    }
+
+    @Override
+    public Header getFirst(String name, boolean ignoreCase) {
+        HeaderList list = getList();
+
+        synchronized (list) {
+            Index index = getIndex();
+
+            if (index == null) {
+                return super.getFirst(name, ignoreCase);
+            }
+
+            for (int i = index.first(list, name); i != -1; i = index.next(i)) {
+                Header header = list.get(i);
+
+                if (matches(header, name, ignoreCase)) {
+                    return header;
+                }
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * Returns the up-to-date index or null if the series is too small to be
+     * indexed. The caller must hold the lock of the delegate list.
+     * 
+     * @return The up-to-date index or null.
+     */
+    private Index getIndex() {
+        HeaderList list = getList();
+
+        if (list.size() < INDEX_THRESHOLD) {
+            return null;
+        }
+
+        Index result = this.index;
+
+        if ((result == null) || (result.modCount != list.getModCount())) {
+            this.index = result = new Index(list);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the delegate list of headers.
+     * 
+     * @return The delegate list of headers.
+     */
+    private HeaderList getList() {
+        return (HeaderList) getDelegate();
+    }
+
+    @Override
+    public String getValues(String name, String separator, boolean ignoreCase) {
+        HeaderList list = getList();
+
+        synchronized (list) {
+            Index index = getIndex();
+
+            if (index == null) {
+                return super.getValues(name, separator, ignoreCase);
+            }
+
+            String result = null;
+            StringBuilder sb = null;
+
+            for (int i = index.first(list, name); i != -1; i = index.next(i)) {
+                Header header = list.get(i);
+
+                if (matches(header, name, ignoreCase)) {
+                    if (sb == null) {
+                        if (result == null) {
+                            result = header.getValue();
+                        } else {
+                            sb = new StringBuilder();
+                            sb.append(result).append(separator)
+                                    .append(header.getValue());
+                        }
+                    } else {
+                        sb.append(separator).append(header.getValue());
+                    }
+                }
+            }
+
+            if (sb != null) {
+                result = sb.toString();
+            }
+
+            return result;
+        }
+    }
+
+    @Override
+    public String[] getValuesArray(String name, boolean ignoreCase,
+            String defaultValue) {
+        HeaderList list = getList();
+
+        synchronized (list) {
+            Index index = getIndex();
+
+            if (index == null) {
+                return super.getValuesArray(name, ignoreCase, defaultValue);
+            }
+
+            int count = 0;
+
+            for (int i = index.first(list, name); i != -1; i = index.next(i)) {
+                if (matches(list.get(i), name, ignoreCase)) {
+                    count++;
+                }
+            }
+
+            if ((count == 0) && (defaultValue != null)) {
+                return new String[] { defaultValue };
+            }
+
+            String[] result = new String[count];
+            count = 0;
+
+            for (int i = index.first(list, name); i != -1; i = index.next(i)) {
+                Header header = list.get(i);
+
+                if (matches(header, name, ignoreCase)) {
+                    result[count++] = header.getValue();
+                }
+            }
+
+            return result;
+        }
+    }
+
+    @Override
+    public boolean removeAll(String name, boolean ignoreCase) {
+        Index index = getIndex();
+
+        if ((index != null) && (index.first(getList(), name) == -1)) {
+            return false;
+        }
+
+        return super.removeAll(name, ignoreCase);
+    }
+
+    @Override
+    public boolean removeFirst(String name, boolean ignoreCase) {
+        Index index = getIndex();
+
+        if ((index != null) && (index.first(getList(), name) == -1)) {
+            return false;
+        }
+
+        return super.removeFirst(name, ignoreCase);
+    }
+
+    @Override
+    public Header set(String name, String value, boolean ignoreCase) {
+        Index index = getIndex();
+
+        if (index == null) {
+            return super.set(name, value, ignoreCase);
+        }
+
+        HeaderList list = getList();
+        Header result = null;
+
+        for (int i = index.first(list, name); i != -1; i = index.next(i)) {
+            Header header = list.get(i);
+
+            if (matches(header, name, ignoreCase)) {
+                if (result != null) {
+                    // Other entries with the same name need to be removed
+                    return super.set(name, value, ignoreCase);
+                }
+
+                result = header;
+            }
+        }
+
+        if (result == null) {
+            add(name, value);
+        } else {
+            result.setValue(value);
+        }
+
+        return result;
+    }
+
+    @Override
+    public Series<Header> subList(String name, boolean ignoreCase) {
+        Index index = getIndex();
+
+        if (index == null) {
+            return super.subList(name, ignoreCase);
+        }
+
+        HeaderList list = getList();
+        Series<Header> result = new HeaderSeries();
+
+        for (int i = index.first(list, name); i != -1; i = index.next(i)) {
+            Header header = list.get(i);
+
+            if (matches(header, name, ignoreCase)) {
+                result.add(header);
+            }
+        }
+
+        return result;
+    }
+
+}
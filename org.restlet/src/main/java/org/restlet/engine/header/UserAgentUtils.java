@@ -0,0 +1,232 @@
+/**
+ * Copyright 2005-2016 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+package org.restlet.engine.header;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.restlet.Context;
+import org.restlet.engine.Engine;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.representation.CharacterSet;
+import org.restlet.routing.Template;
+import org.restlet.routing.Variable;
+
+/**
+ * User-agent parsing utilities. The templates declared in the "agent.properties"
+ * file are compiled once into an ordered matcher, and the attributes parsed
+ * for each distinct user-agent string are kept in a bounded cache, evicting the
+ * least recently used entries.
+ * 
+ * @author Jerome Louvel
+ * @see org.restlet.message.ClientInfo#getAgentAttributes()
+ */
+public class UserAgentUtils {
+
+    /** The maximum number of parsed user-agent strings kept in the cache. */
+    public static final int MAX_CACHE_SIZE = 4096;
+
+    /** The parsed attributes by user-agent string, in access order. */
+    private static final Map<String, Map<String, String>> CACHE = new LinkedHashMap<String, Map<String, String>>(
+            256, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(
+                Map.Entry<String, Map<String, String>> eldest) {
+            return size() > MAX_CACHE_SIZE;
+        }
+    };
+
+    /** The compiled user-agent templates, in declaration order. */
+    private static volatile List<Template> templates;
+
+    /**
+     * Removes all the cached user-agent attributes.
+     */
+    public static void clearCache() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    /**
+     * Returns the attributes parsed from a user-agent string by the first
+     * matching template. The result is cached and shared, therefore it can't
+     * be modified.
+     * 
+     * @param agent
+     *            The user-agent string.
+     * @return The unmodifiable map of attributes, empty if no template matched.
+     */
+    public static Map<String, String> getAgentAttributes(String agent) {
+        if (agent == null) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, String> result;
+
+        synchronized (CACHE) {
+            result = CACHE.get(agent);
+        }
+
+        if (result == null) {
+            result = parse(agent);
+
+            synchronized (CACHE) {
+                CACHE.put(agent, result);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the compiled user-agent templates defined in the
+     * "agent.properties" file. The file is first looked up in the
+     * "org/restlet/data" classpath directory, then in the "org/restlet/message"
+     * one where the default file is provided.
+     * 
+     * @return The compiled user-agent templates.
+     */
+    private static List<Template> getTemplates() {
+        // Lazy initialization with double-check.
+        List<Template> t = templates;
+
+        if (t == null) {
+            synchronized (UserAgentUtils.class) {
+                t = templates;
+
+                if (t == null) {
+                    java.net.URL url = Engine
+                            .getResource("org/restlet/data/agent.properties");
+
+                    if (url == null) {
+                        url = Engine
+                                .getResource("org/restlet/message/agent.properties");
+                    }
+
+                    templates = t = (url == null) ? Collections
+                            .<Template> emptyList() : readTemplates(url);
+                }
+            }
+        }
+
+        return t;
+    }
+
+    /**
+     * Parses a user-agent string against each template until one matches.
+     * 
+     * @param agent
+     *            The user-agent string.
+     * @return The unmodifiable map of attributes.
+     */
+    private static Map<String, String> parse(String agent) {
+        Map<String, Object> variables = new HashMap<String, Object>();
+
+        for (Template template : getTemplates()) {
+            if (template.parse(agent, variables) > -1) {
+                Map<String, String> result = new HashMap<String, String>();
+
+                for (Map.Entry<String, Object> entry : variables.entrySet()) {
+                    result.put(entry.getKey(), (String) entry.getValue());
+                }
+
+                return Collections.unmodifiableMap(result);
+            }
+        }
+
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Reads and compiles the user-agent templates of an "agent.properties"
+     * file. Some predefined variables are used in order to catch the name,
+     * version and optional comment. Respectively, these variables are called
+     * "agentName", "agentVersion" and "agentComment".
+     * 
+     * @param url
+     *            The URL of the properties file.
+     * @return The compiled user-agent templates.
+     */
+    private static List<Template> readTemplates(java.net.URL url) {
+        List<Template> result = new ArrayList<Template>();
+
+        // Predefined variables.
+        Variable agentName = new Variable(Variable.TYPE_TOKEN);
+        Variable agentVersion = new Variable(Variable.TYPE_TOKEN);
+        Variable agentComment = new Variable(Variable.TYPE_COMMENT);
+        Variable agentCommentAttribute = new Variable(
+                Variable.TYPE_COMMENT_ATTRIBUTE);
+        Variable facultativeData = new Variable(Variable.TYPE_ALL, null,
+                false, false);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                url.openStream(), CharacterSet.UTF_8.getName()),
+                IoUtils.BUFFER_SIZE)) {
+            for (String line = reader.readLine(); line != null; line = reader
+                    .readLine()) {
+                if ((line.trim().length() > 0) && !line.trim().startsWith("#")) {
+                    Template template = new Template(line, Template.MODE_EQUALS);
+                    template.getVariables().put("agentName", agentName);
+                    template.getVariables().put("agentVersion", agentVersion);
+                    template.getVariables().put("agentComment", agentComment);
+                    template.getVariables().put("agentOs",
+                            agentCommentAttribute);
+                    template.getVariables().put("commentAttribute",
+                            agentCommentAttribute);
+                    template.getVariables().put("facultativeData",
+                            facultativeData);
+
+                    template.compile();
+                    result.add(template);
+                }
+            }
+        } catch (IOException e) {
+            if (Context.getCurrent() != null) {
+                Context.getCurrent()
+                        .getLogger()
+                        .warn("Cannot read '" + url + "' due to: "
+                                + e.getMessage());
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Private constructor to ensure that the class acts as a true utility class
+     * i.e. it isn't instantiable and extensible.
+     */
+    private UserAgentUtils() {
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright 2005-2016 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Input stream reading a region of a file channel with positional reads. The
+ * channel position isn't modified and no byte before the region is read, which
+ * makes it suitable to serve byte ranges of a file without skipping.
+ * 
+ * @author Jerome Louvel
+ */
+public class FileChannelInputStream extends InputStream {
+
+    /** The source file channel. */
+    private final FileChannel channel;
+
+    /** The end position, exclusive. */
+    private final long end;
+
+    /** The mark position. */
+    private volatile long mark;
+
+    /** The current position. */
+    private volatile long position;
+
+    /**
+     * Constructor.
+     * 
+     * @param channel
+     *            The source file channel, closed with the stream.
+     * @param position
+     *            The position of the first byte to read.
+     * @param count
+     *            The maximum number of bytes to read.
+     */
+    public FileChannelInputStream(FileChannel channel, long position,
+            long count) {
+        this.channel = channel;
+        this.position = position;
+        this.mark = position;
+        this.end = position + count;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(Integer.MAX_VALUE,
+                Math.max(0, Math.min(this.end, this.channel.size())
+                        - this.position));
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        this.mark = this.position;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return (read(b, 0, 1) == -1) ? -1 : (b[0] & 0xff);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        if (this.position >= this.end) {
+            return -1;
+        }
+
+        int count = (int) Math.min(len, this.end - this.position);
+        int result = this.channel.read(ByteBuffer.wrap(b, off, count),
+                this.position);
+
+        if (result > 0) {
+            this.position += result;
+        }
+
+        return result;
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        this.position = this.mark;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long result = Math.max(0,
+                Math.min(n, Math.min(this.end, this.channel.size())
+                        - this.position));
+        this.position += result;
+        return result;
+    }
+
+}
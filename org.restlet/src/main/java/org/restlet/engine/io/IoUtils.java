@@ -35,6 +35,9 @@ import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 
 import org.restlet.Context;
 import org.restlet.engine.Engine;
@@ -69,6 +72,59 @@ public class IoUtils {
     public final static int TIMEOUT_MS = getProperty(
             "org.restlet.engine.io.timeoutMs", 60000);
 
+    /**
+     * Writes the remaining bytes of a buffer to a writable byte channel.
+     * 
+     * @param buffer
+     *            The source buffer.
+     * @param writableChannel
+     *            The target channel.
+     * @throws IOException
+     */
+    public static void copy(ByteBuffer buffer,
+            WritableByteChannel writableChannel) throws IOException {
+        while (buffer.hasRemaining()) {
+            writableChannel.write(buffer);
+        }
+    }
+
+    /**
+     * Transfers a region of a file channel to a writable byte channel. It
+     * relies on {@link FileChannel#transferTo(long, long, WritableByteChannel)}
+     * which lets the operating system move the bytes directly when the target
+     * supports it, typically a socket or another file. The file channel isn't
+     * closed.
+     * 
+     * @param fileChannel
+     *            The source file channel.
+     * @param position
+     *            The position of the first byte to transfer.
+     * @param count
+     *            The number of bytes to transfer.
+     * @param writableChannel
+     *            The target channel.
+     * @throws IOException
+     */
+    public static void copy(FileChannel fileChannel, long position,
+            long count, WritableByteChannel writableChannel)
+            throws IOException {
+        long end = position + count;
+
+        while (position < end) {
+            long transferred = fileChannel.transferTo(position, end - position,
+                    writableChannel);
+
+            if (transferred <= 0) {
+                if (position >= fileChannel.size()) {
+                    // The file was truncated in the meantime
+                    break;
+                }
+            } else {
+                position += transferred;
+            }
+        }
+    }
+
     /**
      * Copies an input stream to an output stream. When the reading is done, the
      * input stream is closed.
@@ -26,14 +26,17 @@ package org.restlet.engine.io;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Pipe stream that pipes output streams into input streams. Implementation
- * based on a shared synchronized queue.
+ * based on a fixed-size byte ring buffer shared by a single writer and a single
+ * reader, with bulk reads and writes copying as many bytes as possible under
+ * one lock acquisition.
  * 
  * @author Jerome Louvel
  */
@@ -42,12 +45,91 @@ public class PipeStream {
     /** The queue timeout. */
     private static final long QUEUE_TIMEOUT = 5;
 
-    /** The supporting synchronized queue. */
-    private final BlockingQueue<Integer> queue;
+    /** The ring buffer. */
+    private final byte[] buffer;
 
-    /** Constructor. */
+    /** The number of bytes available for reading. */
+    private int count;
+
+    /** The lock guarding the ring buffer. */
+    private final ReentrantLock lock;
+
+    /** Signaled when bytes become available for reading. */
+    private final Condition notEmpty;
+
+    /** Signaled when space becomes available for writing. */
+    private final Condition notFull;
+
+    /** The index of the next byte to read. */
+    private int readIndex;
+
+    /** Indicates if the input stream was closed. */
+    private boolean readerClosed;
+
+    /** Indicates if the output stream was closed. */
+    private boolean writerClosed;
+
+    /** Constructor using a capacity of {@link IoUtils#BUFFER_SIZE} bytes. */
     public PipeStream() {
-        this.queue = new ArrayBlockingQueue<Integer>(1024);
+        this(IoUtils.BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param capacity
+     *            The capacity of the ring buffer in bytes.
+     */
+    public PipeStream(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The pipe capacity must be positive");
+        }
+
+        this.buffer = new byte[capacity];
+        this.count = 0;
+        this.lock = new ReentrantLock();
+        this.notEmpty = this.lock.newCondition();
+        this.notFull = this.lock.newCondition();
+        this.readIndex = 0;
+        this.readerClosed = false;
+        this.writerClosed = false;
+    }
+
+    /**
+     * Marks one side of the pipe as closed and wakes up the other side.
+     * 
+     * @param reader
+     *            True if the reader side was closed.
+     */
+    private void close(boolean reader) {
+        this.lock.lock();
+
+        try {
+            if (reader) {
+                this.readerClosed = true;
+                this.notFull.signalAll();
+            } else {
+                this.writerClosed = true;
+                this.notEmpty.signalAll();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of bytes that can be read without blocking.
+     * 
+     * @return The number of bytes that can be read without blocking.
+     */
+    private int available() {
+        this.lock.lock();
+
+        try {
+            return this.count;
+        } finally {
+            this.lock.unlock();
+        }
     }
 
     /**
@@ -57,29 +139,27 @@ public class PipeStream {
      */
     public InputStream getInputStream() {
         return new InputStream() {
-            private boolean endReached = false;
+            /** Array reused by single byte reads. */
+            private final byte[] single = new byte[1];
 
             @Override
-            public int read() throws IOException {
-                try {
-                    if (this.endReached) {
-                        return -1;
-                    }
+            public int available() throws IOException {
+                return PipeStream.this.available();
+            }
 
-                    final Integer value = queue.poll(QUEUE_TIMEOUT,
-                            TimeUnit.SECONDS);
-                    this.endReached = (value == -1);
+            @Override
+            public void close() throws IOException {
+                PipeStream.this.close(true);
+            }
 
-                    if (value == null) {
-                        throw new IOException(
-                                "Timeout while reading from the queue-based input stream");
-                    } else {
-                        return value.intValue();
-                    }
-                } catch (InterruptedException ie) {
-                    throw new IOException(
-                            "Interruption occurred while writing in the queue");
-                }
+            @Override
+            public int read() throws IOException {
+                return (PipeStream.this.read(this.single, 0, 1) == -1) ? -1 : (this.single[0] & 0xff);
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return PipeStream.this.read(b, off, len);
             }
         };
     }
@@ -91,32 +171,132 @@ public class PipeStream {
      */
     public OutputStream getOutputStream() {
         return new OutputStream() {
+            /** Array reused by single byte writes. */
+            private final byte[] single = new byte[1];
+
+            @Override
+            public void close() throws IOException {
+                PipeStream.this.close(false);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                PipeStream.this.write(b, off, len);
+            }
+
             @Override
             public void write(int b) throws IOException {
-                try {
-                    if (!queue.offer(b & 0xff, QUEUE_TIMEOUT, TimeUnit.SECONDS)) {
-                        throw new IOException(
-                                "Timeout while writing to the queue-based output stream");
-                    }
-                } catch (InterruptedException ie) {
-                    throw new IOException(
-                            "Interruption occurred while writing in the queue");
+                this.single[0] = (byte) b;
+                PipeStream.this.write(this.single, 0, 1);
+            }
+        };
+    }
+
+    /**
+     * Reads up to the given number of bytes, blocking until at least one byte
+     * is available or the writer side is closed.
+     * 
+     * @param b
+     *            The target array.
+     * @param off
+     *            The offset in the target array.
+     * @param len
+     *            The maximum number of bytes to read.
+     * @return The number of bytes read or -1 if the end was reached.
+     * @throws IOException
+     */
+    private int read(byte[] b, int off, int len) throws IOException {
+        if ((off < 0) || (len < 0) || (len > b.length - off)) {
+            throw new IndexOutOfBoundsException();
+        } else if (len == 0) {
+            return 0;
+        }
+
+        this.lock.lock();
+
+        try {
+            long nanos = TimeUnit.SECONDS.toNanos(QUEUE_TIMEOUT);
+
+            while (this.count == 0) {
+                if (this.writerClosed) {
+                    return -1;
+                } else if (nanos <= 0) {
+                    throw new IOException("Timeout while reading from the pipe-based input stream");
                 }
+
+                nanos = this.notEmpty.awaitNanos(nanos);
             }
 
-            @Override
-            public void close() throws IOException {
-                try {
-                    if (!queue.offer(-1, QUEUE_TIMEOUT, TimeUnit.SECONDS)) {
-                        throw new IOException(
-                                "Timeout while writing to the queue-based output stream");
+            int result = Math.min(len, this.count);
+            int first = Math.min(result, this.buffer.length - this.readIndex);
+            System.arraycopy(this.buffer, this.readIndex, b, off, first);
+            System.arraycopy(this.buffer, 0, b, off + first, result - first);
+            this.readIndex = (this.readIndex + result) % this.buffer.length;
+            this.count -= result;
+            this.notFull.signal();
+            return result;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interruption occurred while reading from the pipe");
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the given bytes, blocking while the ring buffer is full.
+     * 
+     * @param b
+     *            The source array.
+     * @param off
+     *            The offset in the source array.
+     * @param len
+     *            The number of bytes to write.
+     * @throws IOException
+     */
+    private void write(byte[] b, int off, int len) throws IOException {
+        if ((off < 0) || (len < 0) || (len > b.length - off)) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        this.lock.lock();
+
+        try {
+            while (len > 0) {
+                long nanos = TimeUnit.SECONDS.toNanos(QUEUE_TIMEOUT);
+
+                while (this.count == this.buffer.length) {
+                    if (this.readerClosed) {
+                        break;
+                    } else if (nanos <= 0) {
+                        throw new IOException("Timeout while writing to the pipe-based output stream");
                     }
-                } catch (InterruptedException ie) {
-                    throw new IOException(
-                            "Interruption occurred while writing in the queue");
+
+                    nanos = this.notFull.awaitNanos(nanos);
                 }
+
+                if (this.readerClosed) {
+                    throw new IOException("The pipe-based input stream was closed");
+                } else if (this.writerClosed) {
+                    throw new IOException("The pipe-based output stream was closed");
+                }
+
+                int writeIndex = (this.readIndex + this.count) % this.buffer.length;
+                int written = Math.min(len, this.buffer.length - this.count);
+                int first = Math.min(written, this.buffer.length - writeIndex);
+                System.arraycopy(b, off, this.buffer, writeIndex, first);
+                System.arraycopy(b, off + first, this.buffer, 0, written - first);
+                this.count += written;
+                off += written;
+                len -= written;
+                this.notEmpty.signal();
             }
-        };
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interruption occurred while writing to the pipe");
+        } finally {
+            this.lock.unlock();
+        }
     }
 
 }
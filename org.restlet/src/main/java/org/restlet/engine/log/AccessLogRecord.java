@@ -0,0 +1,292 @@
+/**
+ * Copyright 2005-2016 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+package org.restlet.engine.log;
+
+import org.restlet.engine.Engine;
+import org.restlet.message.Method;
+import org.restlet.message.Request;
+import org.restlet.message.Response;
+import org.restlet.message.Status;
+import org.restlet.service.LogService;
+
+/**
+ * Immutable snapshot of a call, captured after its handling, holding the
+ * fields of the default access log format. It allows the formatting to happen
+ * later, on another thread, without keeping references to the request and
+ * response.
+ * 
+ * @author Jerome Louvel
+ */
+public final class AccessLogRecord {
+
+    /**
+     * Appends a value or a dash if it is null.
+     * 
+     * @param sb
+     *            The string builder to append to.
+     * @param value
+     *            The value to append.
+     */
+    private static void append(StringBuilder sb, String value) {
+        sb.append((value == null) ? "-" : value);
+    }
+
+    /** The agent name. */
+    private final String agentName;
+
+    /** The client IP address. */
+    private final String clientAddress;
+
+    /** The client port, used by the identity check. */
+    private final int clientPort;
+
+    /** The call duration (in milliseconds). */
+    private final int duration;
+
+    /** The host reference. */
+    private final String hostRef;
+
+    /** Indicates if the user must be identified via the IDENT protocol. */
+    private final boolean identityCheck;
+
+    /** The preformatted message or null if the default format is used. */
+    private final String message;
+
+    /** The method name. */
+    private final String methodName;
+
+    /** The received size or null if unknown. */
+    private final String receivedSize;
+
+    /** The referrer reference. */
+    private final String referrerRef;
+
+    /** The resource path. */
+    private final String resourcePath;
+
+    /** The resource query. */
+    private final String resourceQuery;
+
+    /** The sent size or null if unknown. */
+    private final String sentSize;
+
+    /** The server IP address. */
+    private final String serverAddress;
+
+    /** The server port. */
+    private final int serverPort;
+
+    /** The status code. */
+    private final String statusCode;
+
+    /** The time of the call (in milliseconds since epoch). */
+    private final long time;
+
+    /** The user identifier. */
+    private final String userIdentifier;
+
+    /**
+     * Constructor capturing the fields of the default log format.
+     * 
+     * @param response
+     *            The response to log.
+     * @param duration
+     *            The call duration (in milliseconds).
+     * @param identityCheck
+     *            Indicates if the user must be identified via the IDENT
+     *            protocol (RFC 1413).
+     */
+    public AccessLogRecord(Response response, int duration,
+            boolean identityCheck) {
+        Request request = response.getRequest();
+        this.message = null;
+        this.time = System.currentTimeMillis();
+        this.duration = duration;
+        this.identityCheck = identityCheck;
+        this.clientAddress = request.getClientInfo().getUpstreamAddress();
+        this.clientPort = request.getClientInfo().getPort();
+        this.serverAddress = response.getServerInfo().getAddress();
+        this.serverPort = response.getServerInfo().getPort();
+
+        if (!identityCheck && (request.getChallengeResponse() != null)) {
+            this.userIdentifier = request.getChallengeResponse()
+                    .getIdentifier();
+        } else {
+            this.userIdentifier = null;
+        }
+
+        this.methodName = (request.getMethod() == null) ? null : request
+                .getMethod().getName();
+        this.resourcePath = (request.getResourceRef() == null) ? null
+                : request.getResourceRef().getPath();
+        this.resourceQuery = (request.getResourceRef() == null) ? null
+                : request.getResourceRef().getQuery();
+        this.statusCode = (response.getStatus() == null) ? null : Integer
+                .toString(response.getStatus().getCode());
+
+        if (!response.isEntityAvailable()
+                || Status.REDIRECTION_NOT_MODIFIED.equals(response.getStatus())
+                || Status.SUCCESS_NO_CONTENT.equals(response.getStatus())
+                || Method.HEAD.equals(request.getMethod())) {
+            this.sentSize = "0";
+        } else {
+            this.sentSize = (response.getEntity().getSize() == -1) ? null
+                    : Long.toString(response.getEntity().getSize());
+        }
+
+        String received;
+
+        try {
+            if (request.getEntity() == null) {
+                received = "0";
+            } else {
+                received = (request.getEntity().getSize() == -1) ? null : Long
+                        .toString(request.getEntity().getSize());
+            }
+        } catch (Throwable t) {
+            // Error while getting the request's entity, cf issue #931
+            Engine.getLogger(LogService.class).error(
+                    "Cannot retrieve size of request's entity", t);
+            received = null;
+        }
+
+        this.receivedSize = received;
+        this.hostRef = (request.getHostRef() == null) ? null : request
+                .getHostRef().toString();
+        this.agentName = request.getClientInfo().getAgent();
+        this.referrerRef = (request.getReferrerRef() == null) ? null
+                : request.getReferrerRef().getIdentifier();
+    }
+
+    /**
+     * Constructor for a preformatted message, typically based on a custom log
+     * format.
+     * 
+     * @param message
+     *            The preformatted message.
+     */
+    public AccessLogRecord(String message) {
+        this.message = message;
+        this.time = System.currentTimeMillis();
+        this.duration = 0;
+        this.identityCheck = false;
+        this.agentName = null;
+        this.clientAddress = null;
+        this.clientPort = -1;
+        this.hostRef = null;
+        this.methodName = null;
+        this.receivedSize = null;
+        this.referrerRef = null;
+        this.resourcePath = null;
+        this.resourceQuery = null;
+        this.sentSize = null;
+        this.serverAddress = null;
+        this.serverPort = -1;
+        this.statusCode = null;
+        this.userIdentifier = null;
+    }
+
+    /**
+     * Appends the log entry to a string builder, using the default IIS like
+     * log format unless the message was preformatted.
+     * 
+     * @param sb
+     *            The string builder to append to.
+     * @param date
+     *            The formatted date of the call (YYYY-MM-DD).
+     * @param time
+     *            The formatted time of the call (HH:MM:SS).
+     */
+    public void appendTo(StringBuilder sb, String date, String time) {
+        if (this.message != null) {
+            sb.append(this.message);
+            return;
+        }
+
+        sb.append(date).append('\t');
+        sb.append(time).append('\t');
+        append(sb, this.clientAddress);
+        sb.append('\t');
+
+        // Append the user name (via IDENT protocol)
+        if (this.identityCheck) {
+            IdentClient ic = new IdentClient(this.clientAddress,
+                    this.clientPort, this.serverPort);
+            append(sb, ic.getUserIdentifier());
+        } else {
+            append(sb, this.userIdentifier);
+        }
+
+        sb.append('\t');
+        append(sb, this.serverAddress);
+        sb.append('\t');
+        sb.append(this.serverPort);
+        sb.append('\t');
+        append(sb, this.methodName);
+        sb.append('\t');
+        append(sb, this.resourcePath);
+        sb.append('\t');
+        append(sb, this.resourceQuery);
+        sb.append('\t');
+        append(sb, this.statusCode);
+        sb.append('\t');
+        append(sb, this.sentSize);
+        sb.append('\t');
+        append(sb, this.receivedSize);
+        sb.append('\t');
+        sb.append(this.duration);
+        sb.append('\t');
+        append(sb, this.hostRef);
+        sb.append('\t');
+        append(sb, this.agentName);
+        sb.append('\t');
+        append(sb, this.referrerRef);
+    }
+
+    /**
+     * Formats the log entry, using the default IIS like log format unless the
+     * message was preformatted.
+     * 
+     * @return The formatted log entry.
+     */
+    public String format() {
+        if (this.message != null) {
+            return this.message;
+        }
+
+        StringBuilder sb = new StringBuilder(256);
+        appendTo(sb, String.format("%tF", this.time),
+                String.format("%tT", this.time));
+        return sb.toString();
+    }
+
+    /**
+     * Returns the time of the call (in milliseconds since epoch).
+     * 
+     * @return The time of the call.
+     */
+    public long getTime() {
+        return this.time;
+    }
+}
@@ -0,0 +1,279 @@
+/**
+ * Copyright 2005-2016 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+package org.restlet.engine.log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+
+/**
+ * Asynchronous access log writer. Records are captured on the calling threads
+ * and appended to a bounded queue, then formatted and logged in batches by a
+ * single writer thread. When the queue is full, records are either dropped and
+ * counted or the calling thread blocks until space is available.
+ * 
+ * @author Jerome Louvel
+ */
+public class AccessLogWriter implements Runnable {
+
+    /** The maximum number of records formatted per batch. */
+    private static final int BATCH_SIZE = 256;
+
+    /** Indicates if the calling threads block when the queue is full. */
+    private volatile boolean blocking;
+
+    /** The formatted date of the last second logged. */
+    private String date;
+
+    /** The number of dropped records. */
+    private final AtomicLong droppedCount;
+
+    /** The last second logged (in seconds since epoch). */
+    private long lastSecond;
+
+    /** The access logger. */
+    private final Logger logger;
+
+    /** The queue of records to log. */
+    private final BlockingQueue<AccessLogRecord> queue;
+
+    /** Indicates if the writer is running. */
+    private volatile boolean running;
+
+    /** The writer thread. */
+    private volatile Thread thread;
+
+    /** The formatted time of the last second logged. */
+    private String time;
+
+    /** The number of written records. */
+    private final AtomicLong writtenCount;
+
+    /**
+     * Constructor.
+     * 
+     * @param logger
+     *            The access logger.
+     * @param capacity
+     *            The maximum number of queued records.
+     * @param blocking
+     *            Indicates if the calling threads block when the queue is
+     *            full, otherwise records are dropped.
+     */
+    public AccessLogWriter(Logger logger, int capacity, boolean blocking) {
+        this.blocking = blocking;
+        this.date = null;
+        this.droppedCount = new AtomicLong();
+        this.lastSecond = -1;
+        this.logger = logger;
+        this.queue = new ArrayBlockingQueue<AccessLogRecord>(capacity);
+        this.running = false;
+        this.thread = null;
+        this.time = null;
+        this.writtenCount = new AtomicLong();
+    }
+
+    /**
+     * Returns the number of records dropped because the queue was full or the
+     * writer stopped.
+     * 
+     * @return The number of dropped records.
+     */
+    public long getDroppedCount() {
+        return this.droppedCount.get();
+    }
+
+    /**
+     * Returns the number of records waiting to be written.
+     * 
+     * @return The number of records waiting to be written.
+     */
+    public int getQueuedCount() {
+        return this.queue.size();
+    }
+
+    /**
+     * Returns the number of written records.
+     * 
+     * @return The number of written records.
+     */
+    public long getWrittenCount() {
+        return this.writtenCount.get();
+    }
+
+    /**
+     * Indicates if the calling threads block when the queue is full.
+     * 
+     * @return True if the calling threads block when the queue is full.
+     */
+    public boolean isBlocking() {
+        return this.blocking;
+    }
+
+    /**
+     * Indicates if the writer is running.
+     * 
+     * @return True if the writer is running.
+     */
+    public boolean isRunning() {
+        return this.running;
+    }
+
+    /**
+     * Queues a record to be logged.
+     * 
+     * @param record
+     *            The record to log.
+     * @return True if the record was queued, false if it was dropped.
+     */
+    public boolean log(AccessLogRecord record) {
+        boolean result = false;
+
+        if (isRunning()) {
+            if (isBlocking()) {
+                try {
+                    this.queue.put(record);
+                    result = true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else {
+                result = this.queue.offer(record);
+            }
+        }
+
+        if (!result) {
+            this.droppedCount.incrementAndGet();
+        }
+
+        return result;
+    }
+
+    /**
+     * Drains the queue until the writer is stopped and the queue is empty.
+     */
+    public void run() {
+        List<AccessLogRecord> batch = new ArrayList<AccessLogRecord>(
+                BATCH_SIZE);
+        StringBuilder sb = new StringBuilder(256);
+
+        try {
+            while (isRunning() || !this.queue.isEmpty()) {
+                AccessLogRecord record = this.queue.poll(100,
+                        TimeUnit.MILLISECONDS);
+
+                if (record != null) {
+                    batch.add(record);
+                    this.queue.drainTo(batch, BATCH_SIZE - 1);
+                    write(batch, sb);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Log what was already queued before exiting
+            this.queue.drainTo(batch);
+            write(batch, sb);
+        }
+    }
+
+    /**
+     * Indicates if the calling threads block when the queue is full. Can be
+     * changed while the writer is running.
+     * 
+     * @param blocking
+     *            True if the calling threads block when the queue is full.
+     */
+    public void setBlocking(boolean blocking) {
+        this.blocking = blocking;
+    }
+
+    /**
+     * Starts the writer thread.
+     */
+    public synchronized void start() {
+        if (!isRunning()) {
+            this.running = true;
+            this.thread = new LoggingThreadFactory(this.logger, true)
+                    .newThread(this);
+            this.thread.start();
+        }
+    }
+
+    /**
+     * Stops the writer thread after the queued records are logged.
+     * 
+     * @param timeout
+     *            The maximum time to wait for the queue to be drained (in
+     *            milliseconds).
+     */
+    public synchronized void stop(long timeout) {
+        if (isRunning()) {
+            this.running = false;
+
+            try {
+                this.thread.join(timeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            this.thread = null;
+        }
+    }
+
+    /**
+     * Formats and logs all the records of a batch.
+     * 
+     * @param batch
+     *            The batch of records.
+     * @param sb
+     *            The reusable string builder.
+     */
+    private void write(List<AccessLogRecord> batch, StringBuilder sb) {
+        for (AccessLogRecord record : batch) {
+            long second = record.getTime() / 1000L;
+
+            if (second != this.lastSecond) {
+                this.lastSecond = second;
+                this.date = String.format("%tF", record.getTime());
+                this.time = String.format("%tT", record.getTime());
+            }
+
+            try {
+                sb.setLength(0);
+                record.appendTo(sb, this.date, this.time);
+                this.logger.info(sb.toString());
+                this.writtenCount.incrementAndGet();
+            } catch (Throwable t) {
+                // Error while logging the call, cf issue #931
+                this.logger.error("Cannot log call", t);
+            }
+        }
+
+        batch.clear();
+    }
+}
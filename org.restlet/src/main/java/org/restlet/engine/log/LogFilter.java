@@ -25,7 +25,6 @@
 package org.restlet.engine.log;
 
 import org.restlet.Context;
-import org.restlet.engine.Engine;
 import org.restlet.message.Request;
 import org.restlet.message.Response;
 import org.restlet.routing.Filter;
@@ -63,11 +62,7 @@ public class LogFilter extends Filter {
         this.logService = logService;
 
         if (logService != null) {
-            if (logService.getLoggerName() != null) {
-                this.logLogger = Engine.getLogger(logService.getLoggerName());
-            } else {
-                this.logLogger = Engine.getLogger(LogUtils.getBestClassName(logService.getClass()));
-            }
+            this.logLogger = logService.getAccessLogger();
         }
     }
 
@@ -86,7 +81,15 @@ public class LogFilter extends Filter {
                 long startTime = (Long) request.getAttributes().get(
                         "org.restlet.startTime");
                 int duration = (int) (System.currentTimeMillis() - startTime);
-                this.logLogger.info(this.logService.getResponseLogMessage(response, duration));
+                AccessLogWriter writer = this.logService.getAccessLogWriter();
+
+                if (writer != null) {
+                    writer.log(this.logService.getResponseLogRecord(response,
+                            duration));
+                } else {
+                    this.logLogger.info(this.logService.getResponseLogMessage(
+                            response, duration));
+                }
             }
         } catch (Throwable e) {
             // Error while logging the call, cf issue #931
@@ -0,0 +1,63 @@
+/**
+ * Copyright 2005-2016 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+package org.restlet.engine.netty;
+
+import org.restlet.Client;
+import org.restlet.engine.adapter.ClientCall;
+import org.restlet.message.Request;
+import org.restlet.util.Protocol;
+
+/**
+ * Netty HTTP client connector. Connections are kept alive and pooled per host,
+ * see {@link NettyClientHelper} for the supported parameters.<br>
+ * <br>
+ * It is registered after the HttpURLConnection based connector, which stays
+ * the default HTTP client as this one doesn't support proxies nor the
+ * "followRedirects", "useCaches" and "allowUserInteraction" parameters yet.
+ * Select it explicitly by passing its class name to the
+ * {@link Client#Client(org.restlet.Context, java.util.List, String)}
+ * constructor.
+ * 
+ * @see <a href="http://netty.io/">Netty home page</a>
+ * @author Jerome Louvel
+ */
+public class HttpClientHelper extends NettyClientHelper {
+
+    /**
+     * Constructor.
+     * 
+     * @param client
+     *            The client to help.
+     */
+    public HttpClientHelper(Client client) {
+        super(client);
+        getProtocols().add(Protocol.HTTP);
+    }
+
+    @Override
+    public ClientCall create(Request request) {
+        return new NettyClientCall(this, request);
+    }
+
+}
@@ -24,111 +24,213 @@
 
 package org.restlet.engine.netty;
 
-import io.netty.buffer.ByteBuf;
-import io.netty.channel.ChannelHandlerContext;
-import org.restlet.engine.io.IoUtils;
-
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.concurrent.BrokenBarrierException;
-import java.util.concurrent.CyclicBarrier;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.restlet.engine.io.IoUtils;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpContent;
 
 /**
+ * Input stream subscribed to the HTTP content publisher of a request. Chunks
+ * are kept in a bounded queue, only as many chunks as the queue can hold are
+ * requested from the publisher, and a new one is requested each time a chunk
+ * has been fully read and released. Slow readers therefore stop the reading
+ * of their connection instead of accumulating content in memory.
  * 
  * @author Jerome Louvel
  */
-public class HttpContentInputStream extends InputStream {
+public class HttpContentInputStream extends InputStream implements Subscriber<HttpContent> {
+
+    /** Marker queued once the publisher has completed or failed. */
+    private static final ByteBuf END = Unpooled.EMPTY_BUFFER;
+
+    /** The maximum number of chunks requested in advance. */
+    private final int capacity;
+
+    /** The queue of received chunks. */
+    private final BlockingQueue<ByteBuf> chunks;
+
+    /** Indicates if the stream was closed. */
+    private volatile boolean closed;
+
+    /** The chunk currently read. */
+    private volatile ByteBuf current;
+
+    /** Indicates if the end of the content was reached. */
+    private volatile boolean ended;
+
+    /** The error reported by the publisher. */
+    private volatile Throwable error;
+
+    /** The subscription to the HTTP content publisher. */
+    private volatile Subscription subscription;
+
+    /**
+     * Constructor.
+     * 
+     * @param capacity
+     *            The maximum number of chunks requested in advance.
+     */
+    public HttpContentInputStream(int capacity) {
+        this.capacity = capacity;
+        this.chunks = new ArrayBlockingQueue<>(capacity + 1);
+        this.closed = false;
+        this.current = null;
+        this.ended = false;
+        this.error = null;
+        this.subscription = null;
+    }
 
-    private final CyclicBarrier barrier;
+    @Override
+    public int available() throws IOException {
+        ByteBuf content = this.current;
+        return (content == null) ? 0 : content.readableBytes();
+    }
 
-    private volatile ByteBuf content;
+    @Override
+    public void close() throws IOException {
+        if (!this.closed) {
+            this.closed = true;
 
-    private volatile boolean lastContent;
+            if (this.current != null) {
+                this.current.release();
+                this.current = null;
+            }
 
-    private final ChannelHandlerContext nettyContext;
+            ByteBuf chunk;
 
-    public HttpContentInputStream(ChannelHandlerContext nettyContext) {
-        this.nettyContext = nettyContext;
-        this.lastContent = false;
-        this.content = null;
-        this.barrier = new CyclicBarrier(2);
-    }
+            while ((chunk = this.chunks.poll()) != null) {
+                if (chunk != END) {
+                    chunk.release();
+                }
+            }
 
-    @Override
-    public int available() throws IOException {
-        return (content == null) ? 0 : content.readableBytes();
+            if (!this.ended && (this.subscription != null)) {
+                this.subscription.cancel();
+            }
+        }
     }
 
-    protected void getMoreContent() {
+    /**
+     * Returns the chunk to read, waiting for the next one if the current one
+     * was fully read.
+     * 
+     * @return The chunk to read or null if the end was reached.
+     * @throws IOException
+     */
+    protected ByteBuf getContent() throws IOException {
+        if (this.closed) {
+            throw new IOException("The request entity stream was closed");
+        }
+
+        if (this.current != null) {
+            if (this.current.isReadable()) {
+                return this.current;
+            }
+
+            // Release the exhausted chunk and ask for another one
+            this.current.release();
+            this.current = null;
+
+            if (!this.ended) {
+                this.subscription.request(1);
+            }
+        }
+
+        if (this.ended) {
+            return null;
+        }
+
+        ByteBuf next;
+
         try {
-            // Ask to read more content
-            nettyContext.channel().config().setAutoRead(true);
-
-            // Block until new content is available
-            barrier.await(IoUtils.TIMEOUT_MS, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        } catch (BrokenBarrierException e) {
-            e.printStackTrace();
-        } catch (TimeoutException e) {
-            e.printStackTrace();
+            next = this.chunks.poll(IoUtils.TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the request entity content");
         }
+
+        if (next == null) {
+            throw new SocketTimeoutException("Timeout while waiting for the request entity content");
+        } else if (next == END) {
+            this.ended = true;
+
+            if (this.error != null) {
+                throw new IOException("Unable to read the request entity content", this.error);
+            }
+
+            return null;
+        }
+
+        this.current = next;
+        return next;
     }
 
-    protected boolean isLastContent() {
-        return lastContent;
+    @Override
+    public void onComplete() {
+        this.chunks.offer(END);
     }
 
-    public void onContent(ByteBuf content, boolean lastContent)
-            throws IOException {
-        try {
-            // Set the new content
-            this.content = content;
-            this.lastContent = lastContent;
-
-            // Unblock waiting consumer thread
-            barrier.await(IoUtils.TIMEOUT_MS, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        } catch (BrokenBarrierException e) {
-            e.printStackTrace();
-        } catch (TimeoutException e) {
-            e.printStackTrace();
+    @Override
+    public void onError(Throwable t) {
+        this.error = t;
+        this.chunks.offer(END);
+    }
+
+    @Override
+    public void onNext(HttpContent httpContent) {
+        ByteBuf content = httpContent.content();
+
+        if (this.closed) {
+            httpContent.release();
+        } else if (!content.isReadable()) {
+            httpContent.release();
+            this.subscription.request(1);
+        } else if (!this.chunks.offer(content)) {
+            httpContent.release();
+            onError(new IllegalStateException("More request entity chunks received than requested"));
         }
     }
 
     @Override
-    public int read() throws IOException {
-        int available = available();
-
-        if (available == 0) {
-            if (isLastContent()) {
-                return -1;
-            } else {
-                getMoreContent();
-                available = available();
-            }
+    public void onSubscribe(Subscription s) {
+        if (this.closed) {
+            s.cancel();
+        } else {
+            this.subscription = s;
+            s.request(this.capacity);
         }
+    }
 
-        return content.readByte() & 0xff;
+    @Override
+    public int read() throws IOException {
+        ByteBuf content = getContent();
+        return (content == null) ? -1 : (content.readByte() & 0xff);
     }
 
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
-        int available = available();
-
-        if (available == 0) {
-            if (isLastContent()) {
-                return -1;
-            } else {
-                getMoreContent();
-                available = available();
-            }
+        if (len == 0) {
+            return 0;
+        }
+
+        ByteBuf content = getContent();
+
+        if (content == null) {
+            return -1;
         }
 
-        len = Math.min(available, len);
+        len = Math.min(content.readableBytes(), len);
         content.readBytes(b, off, len);
         return len;
     }
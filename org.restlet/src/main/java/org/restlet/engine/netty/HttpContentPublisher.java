@@ -0,0 +1,354 @@
+/**
+ * Copyright 2005-2016 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.netty;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.restlet.Context;
+import org.restlet.engine.application.RangeRepresentation;
+import org.restlet.representation.FileRepresentation;
+import org.restlet.representation.Representation;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.HttpContent;
+
+/**
+ * Publisher of the HTTP content frames of a response entity. Content is read
+ * on demand into pooled buffers obtained from the channel allocator, one
+ * buffer per requested frame, so the entity is never aggregated in memory.
+ * Complete {@link FileRepresentation} instances and byte ranges of them are
+ * published as a single {@link DefaultFileRegion} so that Netty can rely on
+ * zero-copy file transfer when the transport supports it.<br>
+ * <br>
+ * Reading the entity can block, so frames are produced by the given executor
+ * when available instead of the Netty event loop.
+ * 
+ * @author Jerome Louvel
+ */
+public class HttpContentPublisher implements Publisher<HttpContent> {
+
+    /**
+     * Subscription delivering the content frames to a single subscriber.
+     */
+    private class ContentSubscription implements Subscription {
+
+        /** Indicates if the subscription was cancelled. */
+        private volatile boolean cancelled;
+
+        /** The number of requested frames not yet delivered. */
+        private final AtomicLong demand;
+
+        /** Indicates if the last frame was delivered. */
+        private volatile boolean done;
+
+        /** The entity stream, lazily opened. */
+        private volatile InputStream stream;
+
+        /** The subscriber receiving the frames. */
+        private final Subscriber<? super HttpContent> subscriber;
+
+        /** The number of pending drain requests. */
+        private final AtomicInteger wip;
+
+        /**
+         * Constructor.
+         * 
+         * @param subscriber
+         *            The subscriber receiving the frames.
+         */
+        public ContentSubscription(Subscriber<? super HttpContent> subscriber) {
+            this.cancelled = false;
+            this.demand = new AtomicLong();
+            this.done = false;
+            this.stream = null;
+            this.subscriber = subscriber;
+            this.wip = new AtomicInteger();
+        }
+
+        @Override
+        public void cancel() {
+            this.cancelled = true;
+            schedule();
+        }
+
+        /**
+         * Completes the subscription with an optional error and releases the
+         * entity.
+         * 
+         * @param error
+         *            The error or null.
+         */
+        private void complete(Throwable error) {
+            this.done = true;
+
+            if (this.stream != null) {
+                try {
+                    this.stream.close();
+                } catch (IOException ioe) {
+                    Context.getCurrentLogger().debug("Unable to close the entity stream", ioe);
+                }
+            }
+
+            getEntity().release();
+
+            if (!this.cancelled) {
+                if (error == null) {
+                    this.subscriber.onComplete();
+                } else {
+                    this.subscriber.onError(error);
+                }
+            }
+        }
+
+        /**
+         * Delivers frames while there is demand. Only one thread drains at a
+         * time.
+         */
+        private void drain() {
+            if (this.wip.getAndIncrement() != 0) {
+                return;
+            }
+
+            do {
+                try {
+                    while (!this.done && !this.cancelled && (this.demand.get() > 0)) {
+                        if (!next()) {
+                            complete(null);
+                        } else {
+                            this.demand.decrementAndGet();
+                        }
+                    }
+
+                    if (this.cancelled && !this.done) {
+                        complete(null);
+                    }
+                } catch (Throwable t) {
+                    complete(t);
+                }
+            } while (this.wip.decrementAndGet() != 0);
+        }
+
+        /**
+         * Delivers the next frame.
+         * 
+         * @return False if the entity was exhausted.
+         * @throws IOException
+         */
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        private boolean next() throws IOException {
+            if (this.stream == null) {
+                if (isFileRegion()) {
+                    // The response encoder accepts file regions as content,
+                    // even though they aren't HttpContent instances
+                    DefaultFileRegion region;
+
+                    if (getEntity() instanceof RangeRepresentation) {
+                        RangeRepresentation range = (RangeRepresentation) getEntity();
+                        region = new DefaultFileRegion(range.getFileRepresentation().getChannel(),
+                                range.getStartIndex(), Math.max(0, range.getAvailableSize()));
+                    } else {
+                        FileChannel fileChannel = ((FileRepresentation) getEntity()).getChannel();
+                        region = new DefaultFileRegion(fileChannel, 0, getEntity().getSize());
+                    }
+
+                    this.done = true;
+                    ((Subscriber) this.subscriber).onNext(region);
+                    complete(null);
+                    return true;
+                }
+
+                this.stream = getEntity().getStream();
+
+                if (this.stream == null) {
+                    return false;
+                }
+            }
+
+            ByteBuf buffer = getAllocator().ioBuffer(getBufferSize());
+            boolean written = false;
+
+            try {
+                if (buffer.writeBytes(this.stream, getBufferSize()) < 0) {
+                    return false;
+                }
+
+                this.subscriber.onNext(new DefaultHttpContent(buffer));
+                written = true;
+            } finally {
+                if (!written) {
+                    buffer.release();
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                this.cancelled = true;
+                this.subscriber.onError(new IllegalArgumentException(
+                        "Non-positive number of content frames requested: " + n));
+                schedule();
+                return;
+            }
+
+            long current;
+            long updated;
+
+            do {
+                current = this.demand.get();
+                updated = current + n;
+
+                if (updated < 0) {
+                    updated = Long.MAX_VALUE;
+                }
+            } while (!this.demand.compareAndSet(current, updated));
+
+            schedule();
+        }
+
+        /**
+         * Schedules a drain of the pending demand. If the executor rejects
+         * the drain, for example because it is shutting down, the demand is
+         * drained in the calling thread so that the entity is still released.
+         */
+        private void schedule() {
+            if (getExecutor() == null) {
+                drain();
+            } else {
+                try {
+                    getExecutor().execute(this::drain);
+                } catch (RejectedExecutionException ree) {
+                    Context.getCurrentLogger().debug("Draining the content frames in the calling thread", ree);
+                    drain();
+                }
+            }
+        }
+    }
+
+    /** The allocator of the content buffers. */
+    private final ByteBufAllocator allocator;
+
+    /** The size of the content buffers. */
+    private final int bufferSize;
+
+    /** The entity to publish. */
+    private final Representation entity;
+
+    /** The executor reading the entity, or null to read in the caller. */
+    private final Executor executor;
+
+    /**
+     * Constructor.
+     * 
+     * @param entity
+     *            The entity to publish.
+     * @param allocator
+     *            The allocator of the content buffers.
+     * @param bufferSize
+     *            The size of the content buffers.
+     * @param executor
+     *            The executor reading the entity, or null to read in the
+     *            thread requesting content.
+     */
+    public HttpContentPublisher(Representation entity, ByteBufAllocator allocator, int bufferSize,
+            Executor executor) {
+        this.allocator = allocator;
+        this.bufferSize = bufferSize;
+        this.entity = entity;
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the allocator of the content buffers.
+     * 
+     * @return The allocator of the content buffers.
+     */
+    public ByteBufAllocator getAllocator() {
+        return allocator;
+    }
+
+    /**
+     * Returns the size of the content buffers.
+     * 
+     * @return The size of the content buffers.
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Returns the entity to publish.
+     * 
+     * @return The entity to publish.
+     */
+    public Representation getEntity() {
+        return entity;
+    }
+
+    /**
+     * Returns the executor reading the entity.
+     * 
+     * @return The executor reading the entity, or null to read in the thread
+     *         requesting content.
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Indicates if the entity can be published as a single file region. This
+     * is the case for complete file representations and their byte ranges.
+     * 
+     * @return True if the entity can be published as a single file region.
+     */
+    protected boolean isFileRegion() {
+        if (getEntity() instanceof RangeRepresentation) {
+            return ((RangeRepresentation) getEntity()).getFileRepresentation() != null;
+        }
+
+        return (getEntity() instanceof FileRepresentation)
+                && (((FileRepresentation) getEntity()).getFile() != null) && (getEntity().getRange() == null);
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super HttpContent> subscriber) {
+        subscriber.onSubscribe(new ContentSubscription(subscriber));
+    }
+
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright 2005-2016 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.netty;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.representation.StreamRepresentation;
+
+import io.netty.handler.codec.http.HttpContent;
+
+/**
+ * Request entity backed by the HTTP content publisher of a Netty request. The
+ * content can be consumed only once, either as a blocking stream via
+ * {@link #getStream()} or without blocking any thread via
+ * {@link #getPublisher()}.
+ * 
+ * @author Jerome Louvel
+ */
+public class HttpContentRepresentation extends StreamRepresentation {
+
+    /** The maximum number of chunks buffered by the stream view. */
+    private final int capacity;
+
+    /** Indicates if the content was already consumed. */
+    private final AtomicBoolean consumed;
+
+    /** The HTTP content publisher. */
+    private final Publisher<HttpContent> publisher;
+
+    /**
+     * Constructor.
+     * 
+     * @param publisher
+     *            The HTTP content publisher.
+     * @param expectedSize
+     *            The expected content size.
+     * @param capacity
+     *            The maximum number of chunks buffered by the stream view.
+     */
+    public HttpContentRepresentation(Publisher<HttpContent> publisher, long expectedSize, int capacity) {
+        super(null);
+        this.capacity = capacity;
+        this.consumed = new AtomicBoolean(false);
+        this.publisher = publisher;
+        setSize(expectedSize);
+        setTransient(true);
+    }
+
+    /**
+     * Returns a publisher of the content as NIO byte buffers. Each buffer is
+     * only valid during the {@link Subscriber#onNext(Object)} invocation that
+     * receives it and must be copied if it needs to be retained. Returns null
+     * if the content was already consumed.
+     * 
+     * @return The publisher of the content or null.
+     */
+    public Publisher<ByteBuffer> getPublisher() {
+        if (!this.consumed.compareAndSet(false, true)) {
+            return null;
+        }
+
+        return subscriber -> this.publisher.subscribe(new Subscriber<HttpContent>() {
+
+            @Override
+            public void onComplete() {
+                subscriber.onComplete();
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                subscriber.onError(t);
+            }
+
+            @Override
+            public void onNext(HttpContent httpContent) {
+                try {
+                    subscriber.onNext(httpContent.content().nioBuffer());
+                } finally {
+                    httpContent.release();
+                }
+            }
+
+            @Override
+            public void onSubscribe(Subscription s) {
+                subscriber.onSubscribe(s);
+            }
+        });
+    }
+
+    /**
+     * Returns a blocking stream on the content or null if the content was
+     * already consumed.
+     * 
+     * @return A blocking stream on the content or null.
+     */
+    @Override
+    public InputStream getStream() throws IOException {
+        if (!this.consumed.compareAndSet(false, true)) {
+            return null;
+        }
+
+        HttpContentInputStream result = new HttpContentInputStream(this.capacity);
+        this.publisher.subscribe(result);
+        return result;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return super.isAvailable() && !this.consumed.get();
+    }
+
+    @Override
+    public void write(OutputStream outputStream) throws IOException {
+        IoUtils.copy(getStream(), outputStream);
+    }
+
+}
@@ -24,12 +24,11 @@
 
 package org.restlet.engine.netty;
 
-import org.reactivestreams.Subscriber;
-import org.reactivestreams.Subscription;
 import org.restlet.Context;
 import org.restlet.Restlet;
 import org.restlet.Server;
 import org.restlet.engine.Engine;
+import org.restlet.engine.header.HeaderSeries;
 import org.restlet.engine.header.HeaderUtils;
 import org.restlet.message.Method;
 import org.restlet.message.Request;
@@ -40,18 +39,21 @@ import org.restlet.util.Header;
 import org.restlet.util.Protocol;
 import org.restlet.util.Series;
 
-import com.typesafe.netty.HandlerSubscriber;
+import com.typesafe.netty.http.DefaultStreamedHttpResponse;
 
-import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
-import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.HttpVersion;
 
 /**
- * Netty HTTP server connector.
+ * Netty HTTP server connector. Response entities are streamed as chunks of
+ * pooled buffers, or as file regions for complete file representations, see
+ * {@link HttpContentPublisher}.
  * 
  * @see <a href="http://netty.io/">Netty home page</a>
  * @author Jerome Louvel
@@ -72,10 +74,6 @@ public class HttpServerHelper extends NettyServerHelper {
         server.start();
     }
 
-    private volatile HandlerSubscriber<? super HttpResponse> subscriber;
-
-    private volatile Subscription publisherSubscription;
-
     /**
      * Constructor.
      * 
@@ -85,37 +83,16 @@ public class HttpServerHelper extends NettyServerHelper {
     public HttpServerHelper(Server server) {
         super(server);
         getProtocols().add(Protocol.HTTP);
-        this.subscriber = null;
-        this.publisherSubscription = null;
-    }
-
-    public Subscription getPublisherSubscription() {
-        return publisherSubscription;
-    }
-
-    public Subscriber<? super HttpResponse> getSubscriber() {
-        return subscriber;
-    }
-
-    @Override
-    public void onComplete() {
-        System.out.println("onComplete");
     }
 
     @Override
-    public void onError(Throwable t) {
-        System.out.println("onError: ");
-        t.printStackTrace();
-    }
-
-    @Override
-    public void onNext(HttpRequest nettyRequest) {
-        System.out.println("onNext: " + nettyRequest);
+    protected HttpResponse handle(Channel channel, HttpRequest nettyRequest) {
+        HttpResponse result = null;
         HttpServerRequest request = null;
         Response response = null;
 
         try {
-            request = new HttpServerRequest(getContext(), getServerChannel(), nettyRequest);
+            request = new HttpServerRequest(getContext(), channel, nettyRequest, getInboundQueueSize());
             response = new Response(request);
 
             // Effectively handle the request
@@ -126,9 +103,8 @@ public class HttpServerHelper extends NettyServerHelper {
             }
 
             if (response.isCommitted()) {
-                FullHttpResponse nettyResponse = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
-                        HttpResponseStatus.OK);
-                Series<Header> headers = new Series<>(Header.class);
+                HttpResponseStatus nettyStatus = HttpResponseStatus.OK;
+                Series<Header> headers = new HeaderSeries();
 
                 try {
                     // Add all the necessary headers
@@ -137,8 +113,8 @@ public class HttpServerHelper extends NettyServerHelper {
 
                     // Set the status code in the response
                     if (response.getStatus() != null) {
-                        nettyResponse.setStatus(new HttpResponseStatus(response.getStatus().getCode(),
-                                response.getStatus().getReasonPhrase()));
+                        nettyStatus = new HttpResponseStatus(response.getStatus().getCode(),
+                                response.getStatus().getReasonPhrase());
                     }
 
                     if ((response.getRequest().getMethod() != null)
@@ -211,26 +187,34 @@ public class HttpServerHelper extends NettyServerHelper {
                         }
                     }
 
-                    // Add the response headers
-                    HeaderUtils.addResponseHeaders(response, headers);
+                    HttpResponse nettyResponse;
+
+                    if (response.getEntity() == null) {
+                        nettyResponse = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, nettyStatus);
+                    } else {
+                        // Stream the content in chunks read on demand
+                        nettyResponse = new DefaultStreamedHttpResponse(HttpVersion.HTTP_1_1, nettyStatus,
+                                new HttpContentPublisher(response.getEntity(), channel.alloc(),
+                                        getOutboundBufferSize(), getContentService()));
+                    }
 
                     // Copy Restlet headers to Netty headers
                     for (Header header : headers) {
                         nettyResponse.headers().add(header.getName(), header.getValue());
                     }
 
-                    // Copy the content (NON OPTIMAL)
-                    if (response.getEntity() != null) {
-                        nettyResponse = nettyResponse
-                                .replace(Unpooled.wrappedBuffer(response.getEntity().getText().getBytes()));
+                    if ((response.getEntity() != null)
+                            && !nettyResponse.headers().contains(HttpHeaderNames.CONTENT_LENGTH)) {
+                        HttpUtil.setTransferEncodingChunked(nettyResponse, true);
                     }
 
                     // Send the response to the client
-                    subscriber.onNext(nettyResponse);
+                    result = nettyResponse;
                 } catch (Exception e) {
                     Context.getCurrentLogger().warn("Exception intercepted while adding the response headers",
                             e);
                     response.setStatus(Status.SERVER_ERROR_INTERNAL);
+                    result = createEmptyResponse(HttpResponseStatus.INTERNAL_SERVER_ERROR);
                 } finally {
                     if (response.getOnSent() != null) {
                         response.getOnSent().handle(response.getRequest(), response);
@@ -239,47 +223,17 @@ public class HttpServerHelper extends NettyServerHelper {
             }
         } catch (Throwable t) {
             getLogger().warn("Error while handling an HTTP server call", t);
-            response.setStatus(Status.SERVER_ERROR_INTERNAL, t);
-            onError(t);
-        } finally {
-            Engine.clearThreadLocalVariables();
-        }
-    }
-
-    @Override
-    public void onSubscribe(Subscription s) {
-        System.out.println("onSubscribe: " + s);
-        this.publisherSubscription = s;
-        s.request(Long.MAX_VALUE);
-    }
-
-    public void setPublisherSubscription(Subscription publisherSubscription) {
-        this.publisherSubscription = publisherSubscription;
-    }
-
-    public void setSubscriber(Subscriber<? super HttpResponse> subscriber) {
-        this.subscriber = (HandlerSubscriber<? super HttpResponse>) subscriber;
-    }
 
-    @Override
-    public void subscribe(Subscriber<? super HttpResponse> s) {
-        System.out.println("subscribe: " + s);
-        Subscription subscriberSubscription = new Subscription() {
-
-            @Override
-            public void cancel() {
-                System.out.println("cancel: " + this);
+            if (response != null) {
+                response.setStatus(Status.SERVER_ERROR_INTERNAL, t);
             }
 
-            @Override
-            public void request(long n) {
-                System.out.println("request: " + this);
-            }
-
-        };
+            result = createEmptyResponse(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+        } finally {
+            Engine.clearThreadLocalVariables();
+        }
 
-        this.subscriber = (HandlerSubscriber<? super HttpResponse>) s;
-        this.subscriber.onSubscribe(subscriberSubscription);
+        return result;
     }
 
 }
@@ -39,6 +39,7 @@ import org.restlet.engine.header.CookieReader;
 import org.restlet.engine.header.ExpectationReader;
 import org.restlet.engine.header.HeaderConstants;
 import org.restlet.engine.header.HeaderReader;
+import org.restlet.engine.header.HeaderUtils;
 import org.restlet.engine.header.PreferenceReader;
 import org.restlet.engine.header.RangeReader;
 import org.restlet.engine.header.RecipientInfoReader;
@@ -65,6 +66,8 @@ import org.restlet.util.Reference;
 import org.restlet.util.Series;
 import org.restlet.util.Tag;
 
+import com.typesafe.netty.http.StreamedHttpRequest;
+
 import io.netty.channel.Channel;
 import io.netty.handler.codec.http.HttpRequest;
 
@@ -111,6 +114,9 @@ public class HttpServerRequest extends Request {
     /** Indicates if the request entity was added. */
     private volatile boolean entityAdded;
 
+    /** The maximum number of HTTP content chunks of the entity read in advance. */
+    private final int inboundQueueSize;
+
     /** The low-level HTTP channel. */
     private Channel nettyChannel;
 
@@ -150,9 +156,13 @@ public class HttpServerRequest extends Request {
      *            The low-level HTTP request.
      * @param nettyChannel
      *            The low-level HTTP channel.
+     * @param inboundQueueSize
+     *            The maximum number of HTTP content chunks of the entity read in
+     *            advance.
      */
-    public HttpServerRequest(Context context, Channel nettyChannel, HttpRequest nettyRequest) {
+    public HttpServerRequest(Context context, Channel nettyChannel, HttpRequest nettyRequest, int inboundQueueSize) {
         this.context = context;
+        this.inboundQueueSize = inboundQueueSize;
         this.clientAdded = false;
         this.conditionAdded = false;
         this.cookiesAdded = false;
@@ -564,7 +574,12 @@ public class HttpServerRequest extends Request {
     @Override
     public Representation getEntity() {
         if (!this.entityAdded) {
-            // setEntity(((ServerCall) getHttpCall()).getRequestEntity());
+            if (getNettyRequest() instanceof StreamedHttpRequest) {
+                Representation entity = new HttpContentRepresentation((StreamedHttpRequest) getNettyRequest(),
+                        HeaderUtils.getContentLength(getHeaders()), this.inboundQueueSize);
+                super.setEntity(HeaderUtils.extractEntityHeaders(getHeaders(), entity));
+            }
+
             this.entityAdded = true;
         }
 
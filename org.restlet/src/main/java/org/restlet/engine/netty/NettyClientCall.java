@@ -0,0 +1,489 @@
+/**
+ * Copyright 2005-2016 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+package org.restlet.engine.netty;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.restlet.Uniform;
+import org.restlet.engine.adapter.ClientCall;
+import org.restlet.engine.connector.ConnectorHelper;
+import org.restlet.engine.header.HeaderUtils;
+import org.restlet.engine.util.ReferenceUtils;
+import org.restlet.message.Request;
+import org.restlet.message.Response;
+import org.restlet.message.Status;
+import org.restlet.representation.Representation;
+import org.restlet.service.ConnectorService;
+import org.restlet.util.Header;
+import org.restlet.util.Reference;
+
+import com.typesafe.netty.http.DefaultStreamedHttpRequest;
+import com.typesafe.netty.http.StreamedHttpResponse;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+
+/**
+ * HTTP client call sent over a pooled Netty connection. The request is written
+ * and the response head is read by the event loop of the connection, so that
+ * no thread is blocked while waiting for asynchronous calls. The connection
+ * is returned to its pool once the response entity has been fully read, or
+ * closed if the entity is released before.
+ * 
+ * @author Jerome Louvel
+ */
+public class NettyClientCall extends ClientCall {
+
+    /**
+     * Subscriber relaying the response content and returning the connection
+     * to its pool once the content has been fully read.
+     */
+    private class ContentSubscriber implements Subscriber<HttpContent>, Subscription {
+
+        /** The subscriber of the response entity. */
+        private final Subscriber<? super HttpContent> subscriber;
+
+        /** The subscription to the response content. */
+        private volatile Subscription subscription;
+
+        /**
+         * Constructor.
+         * 
+         * @param subscriber
+         *            The subscriber of the response entity.
+         */
+        public ContentSubscriber(Subscriber<? super HttpContent> subscriber) {
+            this.subscriber = subscriber;
+            this.subscription = null;
+        }
+
+        @Override
+        public void cancel() {
+            this.subscription.cancel();
+            releaseChannel(false);
+        }
+
+        @Override
+        public void onComplete() {
+            releaseChannel(true);
+            this.subscriber.onComplete();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            releaseChannel(false);
+            this.subscriber.onError(t);
+        }
+
+        @Override
+        public void onNext(HttpContent httpContent) {
+            this.subscriber.onNext(httpContent);
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            this.subscription = s;
+            this.subscriber.onSubscribe(this);
+        }
+
+        @Override
+        public void request(long n) {
+            this.subscription.request(n);
+        }
+    }
+
+    /** The remote address of the server. */
+    private final InetSocketAddress address;
+
+    /** The connection used by the call. */
+    private volatile Channel channel;
+
+    /** The handler of the connection used by the call. */
+    private volatile NettyClientHandler handler;
+
+    /** Indicates if the server wants a persistent connection. */
+    private volatile boolean keepAlive;
+
+    /** Indicates if the connection was released. */
+    private final AtomicBoolean released;
+
+    /** The content of the response if any. */
+    private volatile Publisher<HttpContent> responseContent;
+
+    /** The response entity if any. */
+    private volatile HttpContentRepresentation responseEntity;
+
+    /** Indicates if the response head was received. */
+    private volatile boolean responseReceived;
+
+    /** The status of the communication, completed with the response head. */
+    private final CompletableFuture<Status> status;
+
+    /** The target URI sent in the request line. */
+    private final String target;
+
+    /**
+     * Constructor.
+     * 
+     * @param helper
+     *            The parent HTTP client helper.
+     * @param request
+     *            The high-level request.
+     */
+    public NettyClientCall(NettyClientHelper helper, Request request) {
+        super(helper, request.getMethod().toString(),
+                ReferenceUtils.update(request.getResourceRef(), request).toString());
+        Reference resourceRef = new Reference(getRequestUri());
+        int port = resourceRef.getHostPort();
+
+        if (port == -1) {
+            port = (resourceRef.getSchemeProtocol() != null) ? resourceRef.getSchemeProtocol().getDefaultPort() : 80;
+        }
+
+        String path = resourceRef.getPath();
+
+        if ((path == null) || path.isEmpty()) {
+            path = "/";
+        }
+
+        if (resourceRef.hasQuery()) {
+            path += "?" + resourceRef.getQuery();
+        }
+
+        this.address = InetSocketAddress.createUnresolved(resourceRef.getHostDomain(), port);
+        this.channel = null;
+        this.handler = null;
+        this.keepAlive = false;
+        this.released = new AtomicBoolean(false);
+        this.responseContent = null;
+        this.responseEntity = null;
+        this.responseReceived = false;
+        this.status = new CompletableFuture<>();
+        this.target = path;
+    }
+
+    /**
+     * Completes the call with a connector error status.
+     * 
+     * @param error
+     *            The connector error status.
+     * @param cause
+     *            The cause of the error.
+     */
+    private void fail(Status error, Throwable cause) {
+        if (!this.status.isDone()) {
+            setStatusCode(error.getCode());
+            setReasonPhrase((cause.getMessage() != null) ? cause.getMessage() : error.getReasonPhrase());
+            this.status.complete(new Status(error, cause));
+        }
+    }
+
+    @Override
+    public NettyClientHelper getHelper() {
+        return (NettyClientHelper) super.getHelper();
+    }
+
+    /**
+     * Returns null as the request entity is published by an
+     * {@link HttpContentPublisher}.
+     * 
+     * @return Null.
+     */
+    @Override
+    public OutputStream getRequestEntityStream() {
+        return null;
+    }
+
+    /**
+     * Returns null as the request head is written by the Netty codec.
+     * 
+     * @return Null.
+     */
+    @Override
+    public OutputStream getRequestHeadStream() {
+        return null;
+    }
+
+    @Override
+    public Representation getResponseEntity(Response response) {
+        Representation result = null;
+
+        if ((this.responseEntity == null) && (this.responseContent != null)) {
+            long size = isResponseChunked() ? Representation.UNKNOWN_SIZE : getContentLength();
+            this.responseEntity = new HttpContentRepresentation(this.responseContent, size,
+                    getHelper().getInboundQueueSize()) {
+                @Override
+                public void release() {
+                    // Discard the unread content, which closes the connection
+                    if (isAvailable()) {
+                        try {
+                            InputStream stream = getStream();
+
+                            if (stream != null) {
+                                stream.close();
+                            }
+                        } catch (IOException ioe) {
+                            getLogger().debug("Unable to discard the response entity", ioe);
+                        }
+                    }
+
+                    super.release();
+                }
+            };
+            result = this.responseEntity;
+        }
+
+        return HeaderUtils.extractEntityHeaders(getResponseHeaders(), result);
+    }
+
+    @Override
+    public InputStream getResponseEntityStream(long size) {
+        try {
+            return (this.responseEntity == null) ? null : this.responseEntity.getStream();
+        } catch (IOException ioe) {
+            getLogger().debug("Unable to get the response entity stream", ioe);
+            return null;
+        }
+    }
+
+    /**
+     * Indicates if the response head was received.
+     * 
+     * @return True if the response head was received.
+     */
+    public boolean isResponseReceived() {
+        return this.responseReceived;
+    }
+
+    @Override
+    protected boolean isServerKeepAlive() {
+        return this.keepAlive;
+    }
+
+    /**
+     * Fails the call after an error of its connection. Invoked by the event
+     * loop of the connection.
+     * 
+     * @param cause
+     *            The cause of the failure.
+     */
+    public void onFailure(Throwable cause) {
+        getLogger().debug("An error occurred during the communication with the remote HTTP server.", cause);
+        fail(Status.CONNECTOR_ERROR_COMMUNICATION, cause);
+        releaseChannel(false);
+    }
+
+    /**
+     * Completes the call with the head of the response. Invoked by the event
+     * loop of the connection.
+     * 
+     * @param nettyResponse
+     *            The Netty response.
+     */
+    public void onResponse(HttpResponse nettyResponse) {
+        this.responseReceived = true;
+        this.keepAlive = HttpUtil.isKeepAlive(nettyResponse);
+        setStatusCode(nettyResponse.status().code());
+        setReasonPhrase(nettyResponse.status().reasonPhrase());
+        setVersion(nettyResponse.protocolVersion().text());
+
+        for (Map.Entry<String, String> header : nettyResponse.headers()) {
+            getResponseHeaders().add(header.getKey(), header.getValue());
+        }
+
+        if (this.channel.remoteAddress() instanceof InetSocketAddress) {
+            InetSocketAddress remoteAddress = (InetSocketAddress) this.channel.remoteAddress();
+            setServerAddress(remoteAddress.getHostString());
+            setServerPort(remoteAddress.getPort());
+        }
+
+        if (nettyResponse instanceof StreamedHttpResponse) {
+            StreamedHttpResponse streamedResponse = (StreamedHttpResponse) nettyResponse;
+            this.responseContent = subscriber -> streamedResponse.subscribe(new ContentSubscriber(subscriber));
+        } else {
+            ReferenceCountUtil.release(nettyResponse);
+            releaseChannel(true);
+        }
+
+        this.status.complete(new Status(nettyResponse.status().code(), nettyResponse.status().reasonPhrase()));
+    }
+
+    /**
+     * Returns the connection to its pool, or closes it if it can't be reused.
+     * 
+     * @param reusable
+     *            True if the connection is in a state that allows its reuse.
+     */
+    private void releaseChannel(boolean reusable) {
+        Channel ch = this.channel;
+
+        if ((ch != null) && this.released.compareAndSet(false, true)) {
+            this.handler.setCall(null);
+
+            if (!reusable || !this.keepAlive) {
+                ch.close();
+            }
+
+            getHelper().release(this.address, ch);
+        }
+    }
+
+    /**
+     * Acquires a connection from the pool of the server and writes the
+     * request. Returns immediately, the status of the call being completed by
+     * the event loop of the connection.
+     * 
+     * @param request
+     *            The high-level request.
+     */
+    protected void send(Request request) {
+        Representation entity = request.isEntityAvailable() ? request.getEntity() : null;
+
+        getHelper().acquire(this.address).addListener((Future<Channel> future) -> {
+            if (future.isSuccess()) {
+                write(future.getNow(), entity);
+            } else {
+                if (entity != null) {
+                    entity.release();
+                }
+
+                getLogger().debug("Unable to connect to the remote HTTP server.", future.cause());
+                fail(Status.CONNECTOR_ERROR_CONNECTION, future.cause());
+            }
+        });
+    }
+
+    @Override
+    public Status sendRequest(Request request) {
+        Status result = null;
+        Representation entity = request.isEntityAvailable() ? request.getEntity() : null;
+        ConnectorService connectorService = ConnectorHelper.getConnectorService();
+
+        if (connectorService != null) {
+            connectorService.beforeSend(entity);
+        }
+
+        try {
+            send(request);
+            result = this.status.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            result = new Status(Status.CONNECTOR_ERROR_COMMUNICATION, ie);
+        } catch (ExecutionException ee) {
+            result = new Status(Status.CONNECTOR_ERROR_COMMUNICATION, ee.getCause());
+        } finally {
+            if (connectorService != null) {
+                connectorService.afterSend(entity);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public void sendRequest(Request request, Response response, Uniform callback) throws Exception {
+        Representation entity = request.isEntityAvailable() ? request.getEntity() : null;
+        ConnectorService connectorService = ConnectorHelper.getConnectorService();
+
+        if (connectorService != null) {
+            connectorService.beforeSend(entity);
+        }
+
+        // The callback may block, so it is never invoked by the event loop
+        this.status.whenCompleteAsync((status, error) -> {
+            if (connectorService != null) {
+                connectorService.afterSend(entity);
+            }
+
+            callback.handle(request, response);
+        }, getHelper().getWorkerService());
+
+        send(request);
+    }
+
+    /**
+     * Writes the request on the acquired connection. Invoked by the event loop
+     * of the connection.
+     * 
+     * @param ch
+     *            The acquired connection.
+     * @param entity
+     *            The request entity or null.
+     */
+    private void write(Channel ch, Representation entity) {
+        this.channel = ch;
+        this.handler = (NettyClientHandler) ch.pipeline().get(NettyClientHandler.NAME);
+        this.handler.setCall(this);
+
+        HttpMethod method = HttpMethod.valueOf(getMethod());
+        HttpRequest nettyRequest;
+
+        if (entity == null) {
+            nettyRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, method, this.target);
+        } else {
+            nettyRequest = new DefaultStreamedHttpRequest(HttpVersion.HTTP_1_1, method, this.target,
+                    new HttpContentPublisher(entity, ch.alloc(), getHelper().getOutboundBufferSize(),
+                            getHelper().getWorkerService()));
+        }
+
+        // Copy Restlet headers to Netty headers
+        for (Header header : getRequestHeaders()) {
+            nettyRequest.headers().add(header.getName(), header.getValue());
+        }
+
+        if ((entity != null) && !nettyRequest.headers().contains(HttpHeaderNames.CONTENT_LENGTH)) {
+            HttpUtil.setTransferEncodingChunked(nettyRequest, true);
+        }
+
+        NettyClientHandler connectionHandler = this.handler;
+        ch.writeAndFlush(nettyRequest).addListener((ChannelFuture future) -> {
+            if (future.isSuccess()) {
+                connectionHandler.scheduleReadTimeout(ch, this, getHelper().getReadTimeout());
+            } else {
+                onFailure(future.cause());
+            }
+        });
+    }
+
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright 2005-2016 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+package org.restlet.engine.netty;
+
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.restlet.Context;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * Last handler of the pipeline of a pooled client connection. It dispatches
+ * the response heads and the connection failures to the call currently using
+ * the connection, fails the calls whose response doesn't arrive in time and
+ * closes the pooled connections that stay unused for too long. The response
+ * timeout of each call is measured from the moment its request was written,
+ * so that it doesn't depend on the previous uses of a pooled connection.
+ * 
+ * @author Jerome Louvel
+ */
+public class NettyClientHandler extends ChannelInboundHandlerAdapter {
+
+    /** The name of the handler in the pipeline. */
+    public static final String NAME = "clientHandler";
+
+    /** The call currently using the connection. */
+    private volatile NettyClientCall call;
+
+    /** The pending timeout of the response of the current call. */
+    private volatile ScheduledFuture<?> readTimeout;
+
+    /**
+     * Constructor.
+     */
+    public NettyClientHandler() {
+        this.call = null;
+        this.readTimeout = null;
+    }
+
+    /**
+     * Cancels the pending timeout of the response of the current call.
+     */
+    private void cancelReadTimeout() {
+        ScheduledFuture<?> timeout = this.readTimeout;
+
+        if (timeout != null) {
+            this.readTimeout = null;
+            timeout.cancel(false);
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        NettyClientCall current = getCall();
+        cancelReadTimeout();
+
+        if (current != null) {
+            current.onFailure(new ClosedChannelException());
+        }
+
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        NettyClientCall current = getCall();
+
+        if ((current != null) && (msg instanceof HttpResponse)) {
+            cancelReadTimeout();
+            current.onResponse((HttpResponse) msg);
+        } else {
+            Context.getCurrentLogger().debug("Ignoring an unexpected message received by a client connection");
+            ReferenceCountUtil.release(msg);
+        }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        NettyClientCall current = getCall();
+        cancelReadTimeout();
+
+        if (current != null) {
+            current.onFailure(cause);
+        } else {
+            Context.getCurrentLogger().debug("Error on an idle client connection", cause);
+        }
+
+        ctx.close();
+    }
+
+    /**
+     * Returns the call currently using the connection.
+     * 
+     * @return The call currently using the connection or null.
+     */
+    public NettyClientCall getCall() {
+        return call;
+    }
+
+    /**
+     * Starts waiting for the response of a call, once its request has been
+     * written. If the response head doesn't arrive in time, the call fails and
+     * the connection is closed. Does nothing if the call no longer uses the
+     * connection.
+     * 
+     * @param channel
+     *            The connection.
+     * @param call
+     *            The call whose request was written.
+     * @param timeoutMs
+     *            The maximum time to wait for the response head, or 0 for
+     *            unlimited wait.
+     */
+    public void scheduleReadTimeout(Channel channel, NettyClientCall call, long timeoutMs) {
+        if ((timeoutMs > 0) && (getCall() == call) && !call.isResponseReceived()) {
+            cancelReadTimeout();
+            this.readTimeout = channel.eventLoop().schedule(() -> {
+                if ((getCall() == call) && !call.isResponseReceived()) {
+                    call.onFailure(new SocketTimeoutException("Timeout while waiting for the response"));
+                    channel.close();
+                }
+            }, timeoutMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Sets the call currently using the connection. Cancels the pending
+     * response timeout of the previous call.
+     * 
+     * @param call
+     *            The call currently using the connection or null.
+     */
+    public void setCall(NettyClientCall call) {
+        cancelReadTimeout();
+        this.call = call;
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof IdleStateEvent) {
+            if ((getCall() == null) && (((IdleStateEvent) evt).state() == IdleState.ALL_IDLE)) {
+                // Evict the unused pooled connection
+                ctx.close();
+            }
+        } else {
+            super.userEventTriggered(ctx, evt);
+        }
+    }
+
+}
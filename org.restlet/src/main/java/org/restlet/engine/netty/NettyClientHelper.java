@@ -0,0 +1,449 @@
+/**
+ * Copyright 2005-2016 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+package org.restlet.engine.netty;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.restlet.Client;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.engine.log.LoggingThreadFactory;
+
+import com.typesafe.netty.http.HttpStreamsClientHandler;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.pool.AbstractChannelPoolHandler;
+import io.netty.channel.pool.AbstractChannelPoolMap;
+import io.netty.channel.pool.ChannelHealthChecker;
+import io.netty.channel.pool.FixedChannelPool;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.Future;
+
+/**
+ * Base Netty client connector. Connections are kept alive and pooled per
+ * remote host and port. Here is the list of parameters that are supported.
+ * They should be set in the Client's context before it is started:
+ * <table>
+ * <tr>
+ * <th>Parameter name</th>
+ * <th>Value type</th>
+ * <th>Default value</th>
+ * <th>Description</th>
+ * </tr>
+ * <tr>
+ * <td>adapter</td>
+ * <td>String</td>
+ * <td>org.restlet.engine.adapter.ClientAdapter</td>
+ * <td>Class name of the adapter of low-level HTTP calls into high level
+ * requests and responses.</td>
+ * </tr>
+ * <tr>
+ * <td>maxConnectionsPerHost</td>
+ * <td>int</td>
+ * <td>10</td>
+ * <td>Maximum number of concurrent connections per host (IP address and
+ * port).</td>
+ * </tr>
+ * <tr>
+ * <td>maxQueued</td>
+ * <td>int</td>
+ * <td>100</td>
+ * <td>Maximum number of calls per host waiting for a connection to be
+ * available. Additional calls are answered with a 1000 (Connector error)
+ * status.</td>
+ * </tr>
+ * <tr>
+ * <td>acquireTimeoutMs</td>
+ * <td>int</td>
+ * <td>60000</td>
+ * <td>Maximum time for a call to wait for a connection to be available.</td>
+ * </tr>
+ * <tr>
+ * <td>socketConnectTimeoutMs</td>
+ * <td>int</td>
+ * <td>15000</td>
+ * <td>The socket connection timeout or 0 for unlimited wait.</td>
+ * </tr>
+ * <tr>
+ * <td>readTimeout</td>
+ * <td>int</td>
+ * <td>60000</td>
+ * <td>Maximum time to wait for the head of a response once the request has
+ * been sent, or 0 for unlimited wait.</td>
+ * </tr>
+ * <tr>
+ * <td>idleTimeout</td>
+ * <td>int</td>
+ * <td>60000</td>
+ * <td>Time after which a pooled connection that was not used is closed, or 0
+ * to keep idle connections until the server closes them.</td>
+ * </tr>
+ * <tr>
+ * <td>inboundQueueSize</td>
+ * <td>int</td>
+ * <td>16</td>
+ * <td>The maximum number of HTTP content chunks of a response entity that are
+ * read from the connection in advance of the consumption of the entity.</td>
+ * </tr>
+ * <tr>
+ * <td>outboundBufferSize</td>
+ * <td>int</td>
+ * <td>{@link IoUtils#BUFFER_SIZE}</td>
+ * <td>The size of the buffers used to stream request entities, one buffer
+ * being sent per HTTP content chunk.</td>
+ * </tr>
+ * <tr>
+ * <td>maxThreads</td>
+ * <td>int</td>
+ * <td>10</td>
+ * <td>Maximum number of worker threads reading request entities and invoking
+ * the callbacks of asynchronous calls.</td>
+ * </tr>
+ * </table>
+ * A connection is returned to its pool once the response entity has been
+ * fully read. Response entities should therefore always be consumed or
+ * released, otherwise their connection is closed.
+ * 
+ * @author Jerome Louvel
+ */
+public abstract class NettyClientHelper extends org.restlet.engine.adapter.HttpClientHelper {
+
+    /** The bootstrap of the client connections. */
+    private volatile Bootstrap bootstrap;
+
+    /** The connection pools per remote address. */
+    private volatile AbstractChannelPoolMap<InetSocketAddress, FixedChannelPool> channelPools;
+
+    /** The event loops of the client connections. */
+    private volatile EventLoopGroup workerGroup;
+
+    /** The worker service handling the calls outside the event loops. */
+    private volatile ExecutorService workerService;
+
+    /**
+     * Constructor.
+     * 
+     * @param client
+     *            The client to help.
+     */
+    public NettyClientHelper(Client client) {
+        super(client);
+        this.bootstrap = null;
+        this.channelPools = null;
+        this.workerGroup = null;
+        this.workerService = null;
+    }
+
+    /**
+     * Acquires a connection to the given remote address from its pool.
+     * 
+     * @param address
+     *            The remote address.
+     * @return The future connection.
+     */
+    public Future<Channel> acquire(InetSocketAddress address) {
+        return getChannelPools().get(address).acquire();
+    }
+
+    /**
+     * Creates the pool of connections to a remote address.
+     * 
+     * @param address
+     *            The remote address.
+     * @return The new connection pool.
+     */
+    protected FixedChannelPool createChannelPool(InetSocketAddress address) {
+        return new FixedChannelPool(getBootstrap().clone().remoteAddress(address), new AbstractChannelPoolHandler() {
+            @Override
+            public void channelCreated(Channel ch) throws Exception {
+                initChannel(ch);
+            }
+        }, ChannelHealthChecker.ACTIVE, FixedChannelPool.AcquireTimeoutAction.FAIL, getAcquireTimeoutMs(),
+                getMaxConnectionsPerHost(), getMaxQueued());
+    }
+
+    /**
+     * Creates the worker service. By default, it is a thread pool, bounded by
+     * the "maxThreads" parameter, that queues tasks in excess.
+     * 
+     * @return The worker service.
+     */
+    protected ExecutorService createWorkerService() {
+        ThreadPoolExecutor result = new ThreadPoolExecutor(getMaxThreads(), getMaxThreads(), 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new LoggingThreadFactory(getLogger(), true));
+        result.allowCoreThreadTimeOut(true);
+        return result;
+    }
+
+    /**
+     * Returns the maximum time for a call to wait for a connection to be
+     * available.
+     * 
+     * @return The maximum time for a call to wait for a connection.
+     */
+    public long getAcquireTimeoutMs() {
+        return Long.parseLong(getHelpedParameters().getFirstValue("acquireTimeoutMs", "60000"));
+    }
+
+    /**
+     * Returns the bootstrap of the client connections.
+     * 
+     * @return The bootstrap of the client connections.
+     */
+    protected Bootstrap getBootstrap() {
+        return bootstrap;
+    }
+
+    /**
+     * Returns the connection pools per remote address.
+     * 
+     * @return The connection pools per remote address.
+     */
+    protected AbstractChannelPoolMap<InetSocketAddress, FixedChannelPool> getChannelPools() {
+        return channelPools;
+    }
+
+    /**
+     * Returns the time after which an unused pooled connection is closed.
+     * 
+     * @return The time after which an unused pooled connection is closed.
+     */
+    public int getIdleTimeout() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue("idleTimeout", "60000"));
+    }
+
+    /**
+     * Returns the maximum number of HTTP content chunks of a response entity
+     * that are read in advance.
+     * 
+     * @return The maximum number of chunks read in advance.
+     */
+    public int getInboundQueueSize() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue("inboundQueueSize", "16"));
+    }
+
+    /**
+     * Returns the maximum number of concurrent connections per host.
+     * 
+     * @return The maximum number of concurrent connections per host.
+     */
+    public int getMaxConnectionsPerHost() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue("maxConnectionsPerHost", "10"));
+    }
+
+    /**
+     * Returns the maximum number of calls per host waiting for a connection.
+     * 
+     * @return The maximum number of calls per host waiting for a connection.
+     */
+    public int getMaxQueued() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue("maxQueued", "100"));
+    }
+
+    /**
+     * Returns the maximum number of worker threads.
+     * 
+     * @return The maximum number of worker threads.
+     */
+    public int getMaxThreads() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue("maxThreads", "10"));
+    }
+
+    /**
+     * Returns the size of the buffers used to stream request entities.
+     * 
+     * @return The size of the buffers used to stream request entities.
+     */
+    public int getOutboundBufferSize() {
+        return Integer.parseInt(
+                getHelpedParameters().getFirstValue("outboundBufferSize", Integer.toString(IoUtils.BUFFER_SIZE)));
+    }
+
+    /**
+     * Returns the maximum time to wait for the head of a response.
+     * 
+     * @return The maximum time to wait for the head of a response.
+     */
+    public int getReadTimeout() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue("readTimeout", "60000"));
+    }
+
+    /**
+     * Returns the socket connection timeout. Defaults to 15000.
+     * 
+     * @return The socket connection timeout or 0 for unlimited wait.
+     */
+    @Override
+    public int getSocketConnectTimeoutMs() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue("socketConnectTimeoutMs", "15000"));
+    }
+
+    /**
+     * Returns the event loops of the client connections.
+     * 
+     * @return The event loops of the client connections.
+     */
+    protected EventLoopGroup getWorkerGroup() {
+        return workerGroup;
+    }
+
+    /**
+     * Returns the worker service handling the calls outside the event loops.
+     * 
+     * @return The worker service.
+     */
+    public ExecutorService getWorkerService() {
+        return workerService;
+    }
+
+    /**
+     * Initializes the pipeline of a new connection.
+     * 
+     * @param ch
+     *            The new connection.
+     */
+    protected void initChannel(Channel ch) {
+        ch.pipeline().addLast("idleStateHandler",
+                new IdleStateHandler(0, 0, getIdleTimeout(), TimeUnit.MILLISECONDS));
+        ch.pipeline().addLast("clientCodec", new HttpClientCodec());
+        ch.pipeline().addLast("clientStreamsHandler", new HttpStreamsClientHandler());
+        ch.pipeline().addLast(NettyClientHandler.NAME, new NettyClientHandler());
+    }
+
+    /**
+     * Releases a connection back to the pool of its remote address.
+     * 
+     * @param address
+     *            The remote address.
+     * @param channel
+     *            The connection to release.
+     */
+    public void release(InetSocketAddress address, Channel channel) {
+        AbstractChannelPoolMap<InetSocketAddress, FixedChannelPool> pools = getChannelPools();
+
+        if (pools != null) {
+            pools.get(address).release(channel);
+        } else {
+            channel.close();
+        }
+    }
+
+    /**
+     * Sets the bootstrap of the client connections.
+     * 
+     * @param bootstrap
+     *            The bootstrap of the client connections.
+     */
+    protected void setBootstrap(Bootstrap bootstrap) {
+        this.bootstrap = bootstrap;
+    }
+
+    /**
+     * Sets the connection pools per remote address.
+     * 
+     * @param channelPools
+     *            The connection pools per remote address.
+     */
+    protected void setChannelPools(AbstractChannelPoolMap<InetSocketAddress, FixedChannelPool> channelPools) {
+        this.channelPools = channelPools;
+    }
+
+    /**
+     * Sets the event loops of the client connections.
+     * 
+     * @param workerGroup
+     *            The event loops of the client connections.
+     */
+    protected void setWorkerGroup(EventLoopGroup workerGroup) {
+        this.workerGroup = workerGroup;
+    }
+
+    /**
+     * Sets the worker service handling the calls outside the event loops.
+     * 
+     * @param workerService
+     *            The worker service.
+     */
+    protected void setWorkerService(ExecutorService workerService) {
+        this.workerService = workerService;
+    }
+
+    @Override
+    public synchronized void start() throws Exception {
+        super.start();
+        setWorkerService(createWorkerService());
+        setWorkerGroup(new NioEventLoopGroup());
+        setBootstrap(new Bootstrap());
+        getBootstrap().group(getWorkerGroup()).channel(NioSocketChannel.class)
+                .option(ChannelOption.SO_KEEPALIVE, true).option(ChannelOption.TCP_NODELAY, true);
+
+        // Netty waits without limit when the timeout is 0
+        getBootstrap().option(ChannelOption.CONNECT_TIMEOUT_MILLIS, Math.max(0, getSocketConnectTimeoutMs()));
+
+        setChannelPools(new AbstractChannelPoolMap<InetSocketAddress, FixedChannelPool>() {
+            @Override
+            protected FixedChannelPool newPool(InetSocketAddress key) {
+                return createChannelPool(key);
+            }
+        });
+
+        getLogger().info("Starting the Netty " + getProtocols() + " client");
+    }
+
+    @Override
+    public synchronized void stop() throws Exception {
+        getLogger().info("Stopping the Netty " + getProtocols() + " client");
+        AbstractChannelPoolMap<InetSocketAddress, FixedChannelPool> pools = getChannelPools();
+        setChannelPools(null);
+
+        if (pools != null) {
+            for (Map.Entry<InetSocketAddress, FixedChannelPool> entry : pools) {
+                pools.remove(entry.getKey());
+            }
+        }
+
+        if (getWorkerGroup() != null) {
+            getWorkerGroup().shutdownGracefully();
+            setWorkerGroup(null);
+        }
+
+        if (getWorkerService() != null) {
+            getWorkerService().shutdown();
+            setWorkerService(null);
+        }
+
+        super.stop();
+    }
+
+}
@@ -39,7 +39,6 @@ import org.restlet.representation.Representation;
 import org.restlet.util.Header;
 import org.restlet.util.Series;
 
-import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFutureListener;
@@ -189,10 +188,10 @@ public class NettyServerCall extends ServerCall {
     }
 
     public void onContent(HttpContent httpContent) throws IOException {
-        ByteBuf content = httpContent.content();
+        getNettyEntityStream().onNext(httpContent);
 
-        if (content.isReadable()) {
-            getNettyEntityStream().onContent(content, httpContent instanceof LastHttpContent);
+        if (httpContent instanceof LastHttpContent) {
+            getNettyEntityStream().onComplete();
         }
     }
 
@@ -25,10 +25,20 @@
 package org.restlet.engine.netty;
 
 import java.net.InetSocketAddress;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
-import org.reactivestreams.Processor;
 import org.restlet.Server;
+import org.restlet.engine.Engine;
 import org.restlet.engine.connector.ServerHelper;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.engine.log.LoggingThreadFactory;
+import org.restlet.engine.util.SystemUtils;
 
 import com.typesafe.netty.HandlerPublisher;
 import com.typesafe.netty.HandlerSubscriber;
@@ -43,10 +53,15 @@ import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpRequestDecoder;
 import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseEncoder;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
 
 /**
  * Base Netty server connector. Here is the list of parameters that are
@@ -75,12 +90,103 @@ import io.netty.handler.codec.http.HttpResponseEncoder;
  * <td>Class name of the adapter of low-level HTTP calls into high level
  * requests and responses.</td>
  * </tr>
+ * <tr>
+ * <td>inboundQueueSize</td>
+ * <td>int</td>
+ * <td>16</td>
+ * <td>The maximum number of HTTP content chunks of a request entity that are
+ * read from the connection in advance of the consumption of the entity.</td>
+ * </tr>
+ * <tr>
+ * <td>maxInitialLineLength</td>
+ * <td>int</td>
+ * <td>4096</td>
+ * <td>The maximum length in bytes of the request line. Longer request lines
+ * are answered with a 400 (Bad request) status.</td>
+ * </tr>
+ * <tr>
+ * <td>maxHeaderSize</td>
+ * <td>int</td>
+ * <td>8192</td>
+ * <td>The maximum size in bytes of all the request headers. Larger request
+ * heads are answered with a 400 (Bad request) status.</td>
+ * </tr>
+ * <tr>
+ * <td>maxChunkSize</td>
+ * <td>int</td>
+ * <td>8192</td>
+ * <td>The maximum size in bytes of the request entity chunks decoded from the
+ * connection. Larger chunks are split.</td>
+ * </tr>
+ * <tr>
+ * <td>outboundBufferSize</td>
+ * <td>int</td>
+ * <td>{@link IoUtils#BUFFER_SIZE}</td>
+ * <td>The size of the buffers used to stream response entities, one buffer
+ * being sent per HTTP content chunk.</td>
+ * </tr>
+ * <tr>
+ * <td>workerThreads</td>
+ * <td>boolean</td>
+ * <td>true</td>
+ * <td>Indicates if the processing of calls should be done via threads provided
+ * by a worker service (i.e. a pool of worker threads). Note that if set to
+ * false, calls will be processed by the Netty event loop thread of the
+ * connection, which should never block, otherwise the other connections
+ * sharing the same event loop would hang.</td>
+ * </tr>
+ * <tr>
+ * <td>virtualThreads</td>
+ * <td>boolean</td>
+ * <td>{@link Engine#isVirtualThreads()}</td>
+ * <td>Indicates if each call should be processed by a new virtual thread
+ * instead of a pool of worker threads. Requires Java 21 or later, otherwise
+ * the pool of worker threads is used. When enabled, the "minThreads",
+ * "maxThreads", "maxQueued" and "threadMaxIdleTimeMs" parameters are ignored.
+ * Only relevant if "workerThreads" is true.</td>
+ * </tr>
+ * <tr>
+ * <td>minThreads</td>
+ * <td>int</td>
+ * <td>1</td>
+ * <td>Minimum number of worker threads waiting to service calls, even if they
+ * are idle.</td>
+ * </tr>
+ * <tr>
+ * <td>maxThreads</td>
+ * <td>int</td>
+ * <td>10</td>
+ * <td>Maximum number of worker threads that can service calls. If this number
+ * is reached then additional calls are queued if the "maxQueued" value hasn't
+ * been reached.</td>
+ * </tr>
+ * <tr>
+ * <td>maxQueued</td>
+ * <td>int</td>
+ * <td>10</td>
+ * <td>Maximum number of calls that can be queued if there aren't any worker
+ * thread available to service them. If the value is '0', then no queue is used
+ * and calls are rejected if no worker thread is immediately available.
+ * Rejected calls are answered with a 503 (Service unavailable) status.</td>
+ * </tr>
+ * <tr>
+ * <td>threadMaxIdleTimeMs</td>
+ * <td>int</td>
+ * <td>60000</td>
+ * <td>Time for an idle worker thread to wait for an operation before being
+ * collected.</td>
+ * </tr>
  * </table>
+ * Each connection reads a single request at a time from its channel. The next
+ * request is only read once the response of the previous one has been handed
+ * back to Netty, which propagates back-pressure to the clients. When worker
+ * threads are used, response entities are read by a separate content service
+ * that never rejects reads, so that a saturated worker service can't stall the
+ * responses already being sent.
  * 
  * @author Jerome Louvel
  */
-public abstract class NettyServerHelper extends ServerHelper
-        implements Processor<HttpRequest, HttpResponse> {
+public abstract class NettyServerHelper extends ServerHelper {
 
     private ServerBootstrap serverBootstrap;
 
@@ -90,7 +196,11 @@ public abstract class NettyServerHelper extends ServerHelper
 
     private EventLoopGroup workerGroup;
 
-    private Processor<HttpRequest, HttpResponse> processor;
+    /** The content service reading the response entities. */
+    private volatile ExecutorService contentService;
+
+    /** The worker service handling the calls outside the event loops. */
+    private volatile ExecutorService workerService;
 
     /**
      * Constructor.
@@ -102,12 +212,157 @@ public abstract class NettyServerHelper extends ServerHelper
         super(server);
     }
 
+    /**
+     * Creates the content service reading the response entities outside the
+     * event loops. By default, it is a thread pool bounded by the "maxThreads"
+     * parameter that queues reads in excess, or a new virtual thread per read
+     * if the "virtualThreads" parameter is true and the JVM supports them.
+     * 
+     * @return The content service.
+     */
+    protected ExecutorService createContentService() {
+        if (isVirtualThreads() && SystemUtils.isVirtualThreadsSupported()) {
+            return SystemUtils.createThreadPerTaskExecutor(
+                    SystemUtils.createVirtualThreadFactory("Restlet-content-"));
+        }
+
+        ThreadPoolExecutor result = new ThreadPoolExecutor(getMaxThreads(), getMaxThreads(),
+                getThreadMaxIdleTimeMs(), TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                new LoggingThreadFactory(getLogger(), true));
+        result.allowCoreThreadTimeOut(true);
+        return result;
+    }
+
+    /**
+     * Creates an empty HTTP response with the given status, used when the call
+     * can't be handed to the Restlet chain.
+     * 
+     * @param status
+     *            The HTTP status.
+     * @return The empty HTTP response.
+     */
+    protected FullHttpResponse createEmptyResponse(HttpResponseStatus status) {
+        FullHttpResponse result = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status);
+        HttpUtil.setContentLength(result, 0);
+        return result;
+    }
+
+    /**
+     * Creates the reactive processor of a new connection.
+     * 
+     * @param channel
+     *            The Netty channel of the connection.
+     * @return The reactive processor of the connection.
+     */
+    protected NettyServerProcessor createProcessor(Channel channel) {
+        return new NettyServerProcessor(this, channel);
+    }
+
+    /**
+     * Creates the worker service. By default, it is a bounded thread pool
+     * configured with the "minThreads", "maxThreads", "maxQueued" and
+     * "threadMaxIdleTimeMs" parameters. If the "virtualThreads" parameter is
+     * true and the JVM supports them, it starts a new virtual thread per call
+     * instead.
+     * 
+     * @return The worker service.
+     */
+    protected ExecutorService createWorkerService() {
+        if (isVirtualThreads()) {
+            if (SystemUtils.isVirtualThreadsSupported()) {
+                return SystemUtils.createThreadPerTaskExecutor(
+                        SystemUtils.createVirtualThreadFactory("Restlet-virtual-"));
+            }
+
+            getLogger().warn("Virtual threads require Java 21 or later. Using a pool of worker threads instead.");
+        }
+
+        int maxQueued = getMaxQueued();
+        BlockingQueue<Runnable> queue = (maxQueued > 0) ? new ArrayBlockingQueue<>(maxQueued)
+                : new SynchronousQueue<>();
+        return new ThreadPoolExecutor(getMinThreads(), getMaxThreads(), getThreadMaxIdleTimeMs(),
+                TimeUnit.MILLISECONDS, queue, new LoggingThreadFactory(getLogger(), true));
+    }
+
     protected EventLoopGroup getBossGroup() {
         return bossGroup;
     }
 
-    public Processor<HttpRequest, HttpResponse> getProcessor() {
-        return processor;
+    /**
+     * Returns the content service reading the response entities outside the
+     * event loops.
+     * 
+     * @return The content service or null if response entities are read by
+     *         the event loops.
+     */
+    public ExecutorService getContentService() {
+        return contentService;
+    }
+
+    /**
+     * Returns the maximum number of HTTP content chunks of a request entity
+     * that are read in advance.
+     * 
+     * @return The maximum number of chunks read in advance.
+     */
+    public int getInboundQueueSize() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue("inboundQueueSize", "16"));
+    }
+
+    /**
+     * Returns the maximum size of the request entity chunks decoded from the
+     * connection.
+     * 
+     * @return The maximum size of the request entity chunks.
+     */
+    public int getMaxChunkSize() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue("maxChunkSize", "8192"));
+    }
+
+    /**
+     * Returns the maximum size of all the request headers.
+     * 
+     * @return The maximum size of all the request headers.
+     */
+    public int getMaxHeaderSize() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue("maxHeaderSize", "8192"));
+    }
+
+    /**
+     * Returns the maximum length of the request line.
+     * 
+     * @return The maximum length of the request line.
+     */
+    public int getMaxInitialLineLength() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue("maxInitialLineLength", "4096"));
+    }
+
+    /**
+     * Returns the maximum number of calls that can be queued if there aren't
+     * any worker thread available to service them.
+     * 
+     * @return The maximum number of calls that can be queued.
+     */
+    public int getMaxQueued() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue("maxQueued", "10"));
+    }
+
+    /**
+     * Returns the maximum number of worker threads.
+     * 
+     * @return The maximum number of worker threads.
+     */
+    public int getMaxThreads() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue("maxThreads", "10"));
+    }
+
+    /**
+     * Returns the minimum number of worker threads.
+     * 
+     * @return The minimum number of worker threads.
+     */
+    public int getMinThreads() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue("minThreads", "1"));
     }
 
     protected ServerBootstrap getServerBootstrap() {
@@ -118,16 +373,88 @@ public abstract class NettyServerHelper extends ServerHelper
         return serverChannel;
     }
 
+    /**
+     * Returns the size of the buffers used to stream response entities.
+     * 
+     * @return The size of the buffers used to stream response entities.
+     */
+    public int getOutboundBufferSize() {
+        return Integer.parseInt(
+                getHelpedParameters().getFirstValue("outboundBufferSize", Integer.toString(IoUtils.BUFFER_SIZE)));
+    }
+
+    /**
+     * Returns the time for an idle worker thread to wait for an operation
+     * before being collected.
+     * 
+     * @return The time for an idle worker thread to wait for an operation
+     *         before being collected.
+     */
+    public int getThreadMaxIdleTimeMs() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue("threadMaxIdleTimeMs", "60000"));
+    }
+
     protected EventLoopGroup getWorkerGroup() {
         return workerGroup;
     }
 
+    /**
+     * Returns the worker service handling the calls outside the event loops.
+     * 
+     * @return The worker service or null if calls are handled by the event
+     *         loops.
+     */
+    public ExecutorService getWorkerService() {
+        return workerService;
+    }
+
+    /**
+     * Handles a Netty HTTP request and returns the Netty HTTP response to send
+     * back. This method is invoked by a worker thread unless the
+     * "workerThreads" parameter is false.
+     * 
+     * @param channel
+     *            The Netty channel of the connection.
+     * @param nettyRequest
+     *            The Netty HTTP request.
+     * @return The Netty HTTP response or null if the call wasn't committed.
+     */
+    protected abstract HttpResponse handle(Channel channel, HttpRequest nettyRequest);
+
+    /**
+     * Indicates if each call should be processed by a new virtual thread
+     * instead of a pool of worker threads.
+     * 
+     * @return True if virtual threads should be used.
+     */
+    public boolean isVirtualThreads() {
+        return Boolean.parseBoolean(getHelpedParameters().getFirstValue("virtualThreads",
+                Boolean.toString(Engine.getInstance().isVirtualThreads())));
+    }
+
+    /**
+     * Indicates if the processing of calls should be done via threads provided
+     * by a worker service.
+     * 
+     * @return True if a worker service should be used.
+     */
+    public boolean isWorkerThreads() {
+        return Boolean.parseBoolean(getHelpedParameters().getFirstValue("workerThreads", "true"));
+    }
+
     protected void setBossGroup(EventLoopGroup eventGroup) {
         this.bossGroup = eventGroup;
     }
 
-    public void setProcessor(Processor<HttpRequest, HttpResponse> processor) {
-        this.processor = processor;
+    /**
+     * Sets the content service reading the response entities outside the event
+     * loops.
+     * 
+     * @param contentService
+     *            The content service.
+     */
+    protected void setContentService(ExecutorService contentService) {
+        this.contentService = contentService;
     }
 
     protected void setServerBootstrap(ServerBootstrap serverBootstrap) {
@@ -142,9 +469,25 @@ public abstract class NettyServerHelper extends ServerHelper
         this.workerGroup = workerGroup;
     }
 
+    /**
+     * Sets the worker service handling the calls outside the event loops.
+     * 
+     * @param workerService
+     *            The worker service.
+     */
+    protected void setWorkerService(ExecutorService workerService) {
+        this.workerService = workerService;
+    }
+
     @Override
     public void start() throws Exception {
         super.start();
+
+        if (isWorkerThreads()) {
+            setWorkerService(createWorkerService());
+            setContentService(createContentService());
+        }
+
         setBossGroup(new NioEventLoopGroup());
         setWorkerGroup(new NioEventLoopGroup());
         setServerBootstrap(new ServerBootstrap());
@@ -156,7 +499,10 @@ public abstract class NettyServerHelper extends ServerHelper
                     protected void initChannel(SocketChannel ch) throws Exception {
                         ChannelPipeline pipeline = ch.pipeline();
 
-                        pipeline.addLast(new HttpRequestDecoder(), new HttpResponseEncoder())
+                        pipeline.addLast(
+                                new HttpRequestDecoder(getMaxInitialLineLength(), getMaxHeaderSize(),
+                                        getMaxChunkSize()),
+                                new HttpResponseEncoder())
                                 .addLast("serverStreamsHandler", new HttpStreamsServerHandler());
 
                         HandlerSubscriber<HttpResponse> subscriber = new HandlerSubscriber<>(ch.eventLoop(), 2, 4);
@@ -166,8 +512,9 @@ public abstract class NettyServerHelper extends ServerHelper
                         pipeline.addLast("serverSubscriber", subscriber);
                         pipeline.addLast("serverPublisher", publisher);
 
-                        publisher.subscribe(NettyServerHelper.this);
-                        NettyServerHelper.this.subscribe(subscriber);
+                        NettyServerProcessor processor = createProcessor(ch);
+                        publisher.subscribe(processor);
+                        processor.subscribe(subscriber);
                     }
                 });
 
@@ -182,6 +529,17 @@ public abstract class NettyServerHelper extends ServerHelper
         getServerChannel().close().sync();
         getBossGroup().shutdownGracefully();
         getWorkerGroup().shutdownGracefully();
+
+        if (getWorkerService() != null) {
+            getWorkerService().shutdown();
+            setWorkerService(null);
+        }
+
+        if (getContentService() != null) {
+            getContentService().shutdown();
+            setContentService(null);
+        }
+
         super.stop();
     }
 
@@ -0,0 +1,226 @@
+/**
+ * Copyright 2005-2016 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.netty;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.reactivestreams.Processor;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+
+/**
+ * Reactive processor bound to a single Netty channel. It requests one HTTP
+ * request at a time from the channel publisher, hands it over to the worker
+ * service of the parent helper and only requests the next one once the
+ * response has been published, so that a slow Restlet call never blocks the
+ * Netty event loop and naturally stops reading from its own connection.
+ * 
+ * @author Jerome Louvel
+ */
+public class NettyServerProcessor implements Processor<HttpRequest, HttpResponse> {
+
+    /** The Netty channel of the connection. */
+    private final Channel channel;
+
+    /** The parent server helper. */
+    private final NettyServerHelper helper;
+
+    /** The subscription to the HTTP request publisher. */
+    private volatile Subscription publisherSubscription;
+
+    /** The HTTP response subscriber. */
+    private volatile Subscriber<? super HttpResponse> subscriber;
+
+    /**
+     * Constructor.
+     * 
+     * @param helper
+     *            The parent server helper.
+     * @param channel
+     *            The Netty channel of the connection.
+     */
+    public NettyServerProcessor(NettyServerHelper helper, Channel channel) {
+        this.helper = helper;
+        this.channel = channel;
+        this.publisherSubscription = null;
+        this.subscriber = null;
+    }
+
+    /**
+     * Returns the Netty channel of the connection.
+     * 
+     * @return The Netty channel of the connection.
+     */
+    public Channel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Returns the parent server helper.
+     * 
+     * @return The parent server helper.
+     */
+    public NettyServerHelper getHelper() {
+        return helper;
+    }
+
+    /**
+     * Returns the subscription to the HTTP request publisher.
+     * 
+     * @return The subscription to the HTTP request publisher.
+     */
+    public Subscription getPublisherSubscription() {
+        return publisherSubscription;
+    }
+
+    /**
+     * Returns the HTTP response subscriber.
+     * 
+     * @return The HTTP response subscriber.
+     */
+    public Subscriber<? super HttpResponse> getSubscriber() {
+        return subscriber;
+    }
+
+    /**
+     * Handles the HTTP request in the current thread and publishes the
+     * resulting response.
+     * 
+     * @param nettyRequest
+     *            The HTTP request to handle.
+     */
+    protected void handle(HttpRequest nettyRequest) {
+        HttpResponse nettyResponse = null;
+
+        try {
+            nettyResponse = getHelper().handle(getChannel(), nettyRequest);
+        } finally {
+            publish(nettyResponse);
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        getHelper().getLogger().debug("HTTP request publisher completed for channel " + getChannel());
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        getHelper().getLogger().debug("HTTP request publisher failed for channel " + getChannel(), t);
+    }
+
+    @Override
+    public void onNext(final HttpRequest nettyRequest) {
+        ExecutorService workerService = getHelper().getWorkerService();
+
+        if (nettyRequest.decoderResult().isFailure()) {
+            // The head is malformed or exceeds the configured limits
+            getHelper().getLogger().info("Unable to decode the HTTP request head ("
+                    + nettyRequest.decoderResult().cause().getMessage() + "). Sending a 400 status.");
+            HttpResponse nettyResponse = getHelper().createEmptyResponse(HttpResponseStatus.BAD_REQUEST);
+            HttpUtil.setKeepAlive(nettyResponse, false);
+            publish(nettyResponse);
+        } else if (workerService == null) {
+            // Handle the call directly on the IO thread
+            handle(nettyRequest);
+        } else {
+            try {
+                workerService.execute(() -> handle(nettyRequest));
+            } catch (RejectedExecutionException ree) {
+                getHelper().getLogger().info(
+                        "Unable to handle the HTTP request, the worker service is saturated. Sending a 503 status.");
+                publish(getHelper().createEmptyResponse(HttpResponseStatus.SERVICE_UNAVAILABLE));
+            }
+        }
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        this.publisherSubscription = s;
+
+        // Only one request is in flight per connection
+        s.request(1);
+    }
+
+    /**
+     * Publishes the HTTP response from the Netty event loop then requests the
+     * next HTTP request from the channel publisher. When the call was not
+     * committed, a 500 status is sent and the connection is closed so that the
+     * client isn't left waiting for a response.
+     * 
+     * @param nettyResponse
+     *            The HTTP response to publish or null if the call was not
+     *            committed.
+     */
+    protected void publish(final HttpResponse nettyResponse) {
+        if (getChannel().eventLoop().inEventLoop()) {
+            HttpResponse response = nettyResponse;
+
+            if (response == null) {
+                getHelper().getLogger().warn(
+                        "The HTTP response wasn't committed for channel " + getChannel() + ". Sending a 500 status.");
+                response = getHelper().createEmptyResponse(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+                HttpUtil.setKeepAlive(response, false);
+            }
+
+            if (getSubscriber() != null) {
+                getSubscriber().onNext(response);
+            } else {
+                // The response can't be written
+                getChannel().close();
+            }
+
+            if (getPublisherSubscription() != null) {
+                getPublisherSubscription().request(1);
+            }
+        } else {
+            getChannel().eventLoop().execute(() -> publish(nettyResponse));
+        }
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super HttpResponse> s) {
+        this.subscriber = s;
+
+        // Responses are only published in reply to requests
+        s.onSubscribe(new Subscription() {
+            @Override
+            public void cancel() {
+            }
+
+            @Override
+            public void request(long n) {
+            }
+        });
+    }
+
+}
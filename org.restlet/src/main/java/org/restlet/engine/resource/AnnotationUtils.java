@@ -48,6 +48,9 @@ public class AnnotationUtils {
     /** Annotation info cache. */
     private static final ConcurrentMap<Class<?>, List<AnnotationInfo>> cache = new ConcurrentHashMap<Class<?>, List<AnnotationInfo>>();
 
+    /** Dispatch table cache. */
+    private static final ConcurrentMap<Class<?>, DispatchTable> dispatchTables = new ConcurrentHashMap<Class<?>, DispatchTable>();
+
     /** Current instance. */
     private static AnnotationUtils instance = new AnnotationUtils();
 
@@ -223,16 +226,18 @@ public class AnnotationUtils {
      */
     public void clearCache() {
         cache.clear();
+        dispatchTables.clear();
     }
 
     /**
-     * Returns the annotation descriptors for the given resource class.
+     * Returns the annotation descriptors for the given resource class. Once
+     * cached, they are returned without acquiring any lock.
      * 
      * @param clazz
      *            The resource class to introspect.
      * @return The list of annotation descriptors.
      */
-    public synchronized List<AnnotationInfo> getAnnotations(Class<?> clazz) {
+    public List<AnnotationInfo> getAnnotations(Class<?> clazz) {
         List<AnnotationInfo> result = cache.get(clazz);
 
         if (result == null) {
@@ -240,7 +245,8 @@ public class AnnotationUtils {
             result = addAnnotations(result, clazz, clazz);
 
             // Put the list in the cache if no one was previously present
-            List<AnnotationInfo> prev = cache.putIfAbsent(clazz, result);
+            List<AnnotationInfo> prev = (result == null) ? null : cache
+                    .putIfAbsent(clazz, result);
 
             if (prev != null) {
                 // Reuse the previous entry
@@ -263,6 +269,33 @@ public class AnnotationUtils {
         return addMethodAnnotationDescriptors(null, clazz, clazz, javaMethod);
     }
 
+    /**
+     * Returns the dispatch table of the annotated methods of the given resource
+     * class. It is built once per class and then returned without acquiring
+     * any lock.
+     * 
+     * @param clazz
+     *            The resource class to introspect.
+     * @return The dispatch table.
+     */
+    public DispatchTable getDispatchTable(Class<?> clazz) {
+        DispatchTable result = dispatchTables.get(clazz);
+
+        if (result == null) {
+            result = new DispatchTable(getAnnotations(clazz));
+
+            // Put the table in the cache if no one was previously present
+            DispatchTable prev = dispatchTables.putIfAbsent(clazz, result);
+
+            if (prev != null) {
+                // Reuse the previous entry
+                result = prev;
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Returns the first annotation descriptor matching the given Java method.
      *
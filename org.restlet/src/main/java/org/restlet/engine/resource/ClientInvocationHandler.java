@@ -29,6 +29,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.restlet.Context;
 import org.restlet.Uniform;
@@ -133,6 +134,86 @@ public class ClientInvocationHandler<T> implements InvocationHandler {
         return getClientResource().createRequest();
     }
 
+    /**
+     * Handles the response of a call, converting its entity into the output
+     * type or throwing the exception matching its error status.
+     * 
+     * @param javaMethod
+     *            The invoked Java method.
+     * @param outputType
+     *            The type of the result.
+     * @param response
+     *            The response received.
+     * @return The result of the call.
+     * @throws Throwable
+     */
+    protected Object handleResponse(java.lang.reflect.Method javaMethod,
+            Class<?> outputType, Response response) throws Throwable {
+        Object result = null;
+
+        if ((response != null) && response.getStatus().isError()) {
+            ThrowableAnnotationInfo tai = getAnnotationUtils()
+                    .getThrowableAnnotationInfo(javaMethod,
+                            response.getStatus().getCode());
+
+            if (tai != null) {
+                Class<?> throwableClazz = tai.getJavaClass();
+                Throwable t = null;
+
+                if (tai.isSerializable()
+                        && response.isEntityAvailable()) {
+                    t = (Throwable) getClientResource().toObject(
+                            response.getEntity(), throwableClazz);
+                } else {
+                    try {
+                        t = (Throwable) throwableClazz
+                                .newInstance();
+                    } catch (Exception e) {
+                        Context.getCurrentLogger()
+                                .debug("Unable to instantiate the client-side exception using the default constructor.");
+                    }
+
+                    if (response.isEntityAvailable()) {
+                        StatusInfo si = getClientResource()
+                                .toObject(response.getEntity(),
+                                        StatusInfo.class);
+
+                        if (si != null) {
+                            response.setStatus(new Status(si
+                                    .getCode(), si
+                                    .getReasonPhrase(), si
+                                    .getDescription()));
+                        }
+                    }
+                }
+
+                if (t != null) {
+                    throw t;
+                }
+                // TODO cf issues 1004 and 1018.
+                // this code has been commented as the automatic
+                // deserialization is problematic. We may rethink a
+                // way to recover the status info.
+                // } else if (response.isEntityAvailable()) {
+                // StatusInfo si = getClientResource().toObject(
+                // response.getEntity(), StatusInfo.class);
+                //
+                // if (si != null) {
+                // response.setStatus(new Status(si.getCode(), si
+                // .getReasonPhrase(), si.getDescription()));
+                // }
+            }
+
+            getClientResource().doError(response.getStatus());
+        } else if ((outputType != void.class) && (outputType != Void.class)) {
+            result = getClientResource().toObject(
+                    (response == null ? null : response.getEntity()),
+                    outputType);
+        }
+
+        return result;
+    }
+
     /**
      * Effectively invokes a Java method on the given proxy object.
      */
@@ -257,72 +338,34 @@ public class ClientInvocationHandler<T> implements InvocationHandler {
                     }
                 }
 
-                // Effectively handle the call
-                Response response = getClientResource().handleOutbound(request);
-
-                // Handle the response, synchronous call
-                if (getClientResource().getOnResponse() == null) {
-                    if ((response != null) && response.getStatus().isError()) {
-                        ThrowableAnnotationInfo tai = getAnnotationUtils()
-                                .getThrowableAnnotationInfo(javaMethod,
-                                        response.getStatus().getCode());
-
-                        if (tai != null) {
-                            Class<?> throwableClazz = tai.getJavaClass();
-                            Throwable t = null;
-
-                            if (tai.isSerializable()
-                                    && response.isEntityAvailable()) {
-                                t = (Throwable) getClientResource().toObject(
-                                        response.getEntity(), throwableClazz);
-                            } else {
+                if (annotationInfo.isAsynchronous()) {
+                    // Asynchronous call, completed by the response callback
+                    final Class<?> outputType = annotationInfo
+                            .getJavaOutputType();
+                    CompletableFuture<Object> future = new CompletableFuture<>();
+                    getClientResource().handleAsync(request).whenComplete(
+                            (response, error) -> {
                                 try {
-                                    t = (Throwable) throwableClazz
-                                            .newInstance();
-                                } catch (Exception e) {
-                                    Context.getCurrentLogger()
-                                            .debug("Unable to instantiate the client-side exception using the default constructor.");
-                                }
-
-                                if (response.isEntityAvailable()) {
-                                    StatusInfo si = getClientResource()
-                                            .toObject(response.getEntity(),
-                                                    StatusInfo.class);
-
-                                    if (si != null) {
-                                        response.setStatus(new Status(si
-                                                .getCode(), si
-                                                .getReasonPhrase(), si
-                                                .getDescription()));
+                                    if (error != null) {
+                                        throw error;
                                     }
-                                }
-                            }
-
-                            if (t != null) {
-                                throw t;
-                            }
-                            // TODO cf issues 1004 and 1018.
-                            // this code has been commented as the automatic
-                            // deserialization is problematic. We may rethink a
-                            // way to recover the status info.
-                            // } else if (response.isEntityAvailable()) {
-                            // StatusInfo si = getClientResource().toObject(
-                            // response.getEntity(), StatusInfo.class);
-                            //
-                            // if (si != null) {
-                            // response.setStatus(new Status(si.getCode(), si
-                            // .getReasonPhrase(), si.getDescription()));
-                            // }
-                        }
 
-                        getClientResource().doError(response.getStatus());
-                    } else if (!annotationInfo.getJavaOutputType().equals(
-                            void.class)) {
-                        result = getClientResource()
-                                .toObject(
-                                        (response == null ? null
-                                                : response.getEntity()),
-                                        annotationInfo.getJavaOutputType());
+                                    future.complete(handleResponse(javaMethod,
+                                            outputType, response));
+                                } catch (Throwable t) {
+                                    future.completeExceptionally(t);
+                                }
+                            });
+                    result = future;
+                } else {
+                    // Effectively handle the call
+                    Response response = getClientResource().handleOutbound(
+                            request);
+
+                    // Handle the response, synchronous call
+                    if (getClientResource().getOnResponse() == null) {
+                        result = handleResponse(javaMethod,
+                                annotationInfo.getJavaOutputType(), response);
                     }
                 }
             }
@@ -0,0 +1,575 @@
+/**
+ * Copyright 2005-2016 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.resource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.restlet.Context;
+import org.restlet.engine.Engine;
+import org.restlet.engine.converter.ConverterHelper;
+import org.restlet.message.Method;
+import org.restlet.representation.MediaType;
+import org.restlet.representation.Representation;
+import org.restlet.representation.Variant;
+import org.restlet.service.ConverterService;
+import org.restlet.service.MetadataService;
+import org.restlet.util.Form;
+
+/**
+ * Dispatch table of the annotated methods of a resource class, indexed by
+ * Restlet method. It is built once per class and then only read, so lookups
+ * don't acquire any lock. The compatibility of each annotated method with the
+ * variants of the request entities is cached as well, along with the response
+ * variants of each annotated method and the index of the preferred variant
+ * negotiated for recent sets of client preferences. These cached results are
+ * discarded when the registered converters or the defaults of the metadata
+ * service change. Changes to the extension mappings of the metadata service
+ * aren't detected, so they should be made before the application starts.
+ * 
+ * @author Jerome Louvel
+ * @see AnnotationUtils#getDispatchTable(Class)
+ */
+public class DispatchTable {
+
+    /**
+     * Annotated method of the dispatch table.
+     */
+    private static class Entry {
+
+        /** The annotation descriptor. */
+        private final MethodAnnotationInfo annotationInfo;
+
+        /** The compatibility with the request entities, per entity variant. */
+        private final ConcurrentMap<Variant, Boolean> compatibleEntities;
+
+        /** The cached media types of the input annotation value. */
+        private volatile List<MediaType> inputMediaTypes;
+
+        /** The cached response variants. */
+        private volatile List<Variant> responseVariants;
+
+        /**
+         * Constructor.
+         * 
+         * @param annotationInfo
+         *            The annotation descriptor.
+         */
+        public Entry(MethodAnnotationInfo annotationInfo) {
+            this.annotationInfo = annotationInfo;
+            this.compatibleEntities = new ConcurrentHashMap<Variant, Boolean>();
+            this.inputMediaTypes = null;
+            this.responseVariants = null;
+        }
+
+        /**
+         * Returns the media types of the input annotation value.
+         * 
+         * @param metadataService
+         *            The metadata service to use.
+         * @param cacheable
+         *            True if the result can be cached.
+         * @return The media types, possibly empty.
+         */
+        public List<MediaType> getInputMediaTypes(
+                MetadataService metadataService, boolean cacheable) {
+            List<MediaType> result = cacheable ? this.inputMediaTypes : null;
+
+            if (result == null) {
+                result = metadataService.getAllMediaTypes(this.annotationInfo
+                        .getInput());
+                result = (result == null) ? Collections.<MediaType> emptyList()
+                        : Collections.unmodifiableList(new ArrayList<MediaType>(
+                                result));
+
+                if (cacheable) {
+                    this.inputMediaTypes = result;
+                }
+            }
+
+            return result;
+        }
+
+        /**
+         * Returns the response variants of the annotated method.
+         * 
+         * @param metadataService
+         *            The metadata service to use.
+         * @param converterService
+         *            The converter service to use.
+         * @param cacheable
+         *            True if the result can be cached.
+         * @return The response variants, possibly empty.
+         * @throws IOException
+         */
+        public List<Variant> getResponseVariants(
+                MetadataService metadataService,
+                ConverterService converterService, boolean cacheable)
+                throws IOException {
+            List<Variant> result = cacheable ? this.responseVariants : null;
+
+            if (result == null) {
+                result = this.annotationInfo.getResponseVariants(
+                        metadataService, converterService);
+
+                if (result == null) {
+                    result = Collections.emptyList();
+                } else {
+                    for (Variant variant : result) {
+                        // Initialize the lists before sharing the variants
+                        variant.getEncodings();
+                        variant.getLanguages();
+                    }
+
+                    result = Collections
+                            .unmodifiableList(new ArrayList<Variant>(result));
+                }
+
+                if (cacheable) {
+                    this.responseVariants = result;
+                }
+            }
+
+            return result;
+        }
+
+        /**
+         * Indicates if the given request entity is compatible with the
+         * annotated method.
+         * 
+         * @param entity
+         *            The available request entity.
+         * @param entityVariant
+         *            The variant of the request entity, used as cache key.
+         * @param metadataService
+         *            The metadata service to use.
+         * @param converterService
+         *            The converter service to use.
+         * @param cacheable
+         *            True if the result can be cached.
+         * @return True if the request entity is compatible.
+         * @throws IOException
+         */
+        public boolean isCompatibleRequestEntity(Representation entity,
+                Variant entityVariant, MetadataService metadataService,
+                ConverterService converterService, boolean cacheable)
+                throws IOException {
+            Boolean result = cacheable ? this.compatibleEntities
+                    .get(entityVariant) : null;
+
+            if (result == null) {
+                result = this.annotationInfo.isCompatibleRequestEntity(entity,
+                        metadataService, converterService);
+
+                // Bound the cache as the variants come from the clients
+                if (cacheable
+                        && (this.compatibleEntities.size() < MAX_CACHED_VARIANTS)) {
+                    this.compatibleEntities.put(entityVariant, result);
+                }
+            }
+
+            return result;
+        }
+    }
+
+    /** Maximum number of negotiation results cached per resource class. */
+    private static final int MAX_CACHED_NEGOTIATIONS = 256;
+
+    /** Maximum number of entity variants cached per annotated method. */
+    private static final int MAX_CACHED_VARIANTS = 64;
+
+    /** The annotation descriptors of the resource class or null. */
+    private final List<AnnotationInfo> annotations;
+
+    /** The converter service used to compute the cached results. */
+    private volatile ConverterService converterService;
+
+    /** The registered converters used to compute the cached results. */
+    private volatile ConverterHelper[] converters;
+
+    /** The annotated methods, indexed by Restlet method. */
+    private volatile Map<Method, Entry[]> entries;
+
+    /** The metadata defaults used to compute the cached results. */
+    private volatile Object[] metadataDefaults;
+
+    /** The metadata service used to compute the cached results. */
+    private volatile MetadataService metadataService;
+
+    /** The index of the preferred variants by negotiation key. */
+    private volatile Map<String, Integer> preferredVariants;
+
+    /**
+     * Constructor.
+     * 
+     * @param annotations
+     *            The annotation descriptors of the resource class or null.
+     */
+    public DispatchTable(List<AnnotationInfo> annotations) {
+        this.annotations = annotations;
+        this.converterService = null;
+        this.converters = null;
+        this.entries = createEntries();
+        this.metadataDefaults = null;
+        this.metadataService = null;
+        this.preferredVariants = createPreferredVariants();
+    }
+
+    /**
+     * Creates the annotated methods with empty caches, indexed by Restlet
+     * method.
+     * 
+     * @return The annotated methods, indexed by Restlet method.
+     */
+    private Map<Method, Entry[]> createEntries() {
+        Map<Method, List<Entry>> lists = new HashMap<Method, List<Entry>>();
+
+        if (this.annotations != null) {
+            for (AnnotationInfo annotationInfo : this.annotations) {
+                if (annotationInfo instanceof MethodAnnotationInfo) {
+                    MethodAnnotationInfo methodAnnotationInfo = (MethodAnnotationInfo) annotationInfo;
+                    List<Entry> list = lists.get(methodAnnotationInfo
+                            .getRestletMethod());
+
+                    if (list == null) {
+                        list = new ArrayList<Entry>();
+                        lists.put(methodAnnotationInfo.getRestletMethod(), list);
+                    }
+
+                    list.add(new Entry(methodAnnotationInfo));
+                }
+            }
+        }
+
+        Map<Method, Entry[]> result = new HashMap<Method, Entry[]>();
+
+        for (Map.Entry<Method, List<Entry>> entry : lists.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().toArray(new Entry[0]));
+        }
+
+        return result;
+    }
+
+    /**
+     * Creates the empty cache of the preferred variants, evicting the least
+     * recently used keys beyond a fixed number of entries.
+     * 
+     * @return The empty cache of the preferred variants.
+     */
+    private Map<String, Integer> createPreferredVariants() {
+        return new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, Integer> eldest) {
+                return size() > MAX_CACHED_NEGOTIATIONS;
+            }
+        };
+    }
+
+    /**
+     * Returns the variant of an available request entity, used as a cache key.
+     * 
+     * @param entity
+     *            The request entity.
+     * @return The variant of the request entity.
+     */
+    private Variant getEntityVariant(Representation entity) {
+        Variant result = new Variant(entity.getMediaType());
+        result.setCharacterSet(entity.getCharacterSet());
+        result.setEncodings(new ArrayList<>(entity.getEncodings()));
+        result.setLanguages(new ArrayList<>(entity.getLanguages()));
+        return result;
+    }
+
+    /**
+     * Returns the defaults of a metadata service.
+     * 
+     * @param metadataService
+     *            The metadata service.
+     * @return The defaults of the metadata service.
+     */
+    private Object[] getMetadataDefaults(MetadataService metadataService) {
+        return new Object[] { metadataService.getDefaultCharacterSet(),
+                metadataService.getDefaultEncoding(),
+                metadataService.getDefaultLanguage(),
+                metadataService.getDefaultMediaType() };
+    }
+
+    /**
+     * Returns the first annotation descriptor matching the given Restlet
+     * method, in the order of the annotation descriptors of the class.
+     * 
+     * @param restletMethod
+     *            The method to match.
+     * @param query
+     *            The query parameters.
+     * @param entity
+     *            The request entity to match or null if no entity is provided.
+     * @param metadataService
+     *            The metadata service to use.
+     * @param converterService
+     *            The converter service to use.
+     * @return The annotation descriptor or null.
+     * @throws IOException
+     */
+    public MethodAnnotationInfo getMethodAnnotation(Method restletMethod,
+            Form query, Representation entity, MetadataService metadataService,
+            ConverterService converterService) throws IOException {
+        boolean cacheable = isCacheable(metadataService, converterService);
+        Entry[] candidates = this.entries.get(restletMethod);
+
+        if (candidates != null) {
+            Variant entityVariant = ((entity != null) && entity.isAvailable()) ? getEntityVariant(entity)
+                    : null;
+
+            for (Entry candidate : candidates) {
+                if (candidate.annotationInfo.isCompatibleQuery(query)
+                        && ((entityVariant == null) || candidate
+                                .isCompatibleRequestEntity(entity,
+                                        entityVariant, metadataService,
+                                        converterService, cacheable))) {
+                    return candidate.annotationInfo;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the cached index of the preferred variant for a negotiation key.
+     * 
+     * @param key
+     *            The negotiation key, covering the candidate variants and the
+     *            client preferences.
+     * @return The index of the preferred variant, -1 if none was acceptable or
+     *         null if not cached.
+     * @see #putPreferredVariant(String, int)
+     */
+    public Integer getPreferredVariant(String key) {
+        Map<String, Integer> preferredVariants = this.preferredVariants;
+
+        synchronized (preferredVariants) {
+            return preferredVariants.get(key);
+        }
+    }
+
+    /**
+     * Returns the exposed variants of the annotated methods compatible with the
+     * given Restlet method, query and request entity. Each variant is a new
+     * {@link VariantInfo} scored against the media type of the request entity.
+     * 
+     * @param restletMethod
+     *            The method to match.
+     * @param query
+     *            The query parameters.
+     * @param entity
+     *            The request entity to match or null if no entity is provided.
+     * @param metadataService
+     *            The metadata service to use.
+     * @param converterService
+     *            The converter service to use.
+     * @return The modifiable list of variants.
+     */
+    public List<Variant> getVariants(Method restletMethod, Form query,
+            Representation entity, MetadataService metadataService,
+            ConverterService converterService) {
+        List<Variant> result = new ArrayList<Variant>();
+        boolean cacheable = isCacheable(metadataService, converterService);
+        Entry[] candidates = this.entries.get(restletMethod);
+
+        if (candidates != null) {
+            boolean available = (entity != null) && entity.isAvailable();
+            Variant entityVariant = available ? getEntityVariant(entity) : null;
+
+            for (Entry candidate : candidates) {
+                try {
+                    if (candidate.annotationInfo.isCompatibleQuery(query)
+                            && ((entityVariant == null) || candidate
+                                    .isCompatibleRequestEntity(entity,
+                                            entityVariant, metadataService,
+                                            converterService, cacheable))) {
+                        // Compute an affinity score between this annotation
+                        // and the input entity.
+                        float score = 0.5f;
+
+                        if (available) {
+                            MediaType emt = entity.getMediaType();
+
+                            for (MediaType amt : candidate.getInputMediaTypes(
+                                    metadataService, cacheable)) {
+                                if (amt.equals(emt)) {
+                                    score = 1.0f;
+                                } else if (amt.includes(emt)) {
+                                    score = Math.max(0.8f, score);
+                                } else if (amt.isCompatible(emt)) {
+                                    score = Math.max(0.6f, score);
+                                }
+                            }
+                        }
+
+                        for (Variant v : candidate.getResponseVariants(
+                                metadataService, converterService, cacheable)) {
+                            VariantInfo vi = new VariantInfo(v.getMediaType(),
+                                    candidate.annotationInfo);
+                            vi.setCharacterSet(v.getCharacterSet());
+
+                            if (!v.getEncodings().isEmpty()) {
+                                vi.getEncodings().addAll(v.getEncodings());
+                            }
+
+                            if (!v.getLanguages().isEmpty()) {
+                                vi.getLanguages().addAll(v.getLanguages());
+                            }
+
+                            vi.setInputScore(score);
+                            result.add(vi);
+                        }
+                    }
+                } catch (IOException e) {
+                    Context.getCurrentLogger().debug(
+                            "Unable to get variants from annotation", e);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Indicates if the entity compatibility can be cached with the given
+     * services. This is the case if they are the services used to compute the
+     * already cached results, typically those of the parent application. The
+     * cached results are discarded first if the registered converters or the
+     * defaults of the metadata service changed since they were computed.
+     * 
+     * @param metadataService
+     *            The metadata service to use.
+     * @param converterService
+     *            The converter service to use.
+     * @return True if the entity compatibility can be cached.
+     */
+    public boolean isCacheable(MetadataService metadataService,
+            ConverterService converterService) {
+        if (this.converterService == null) {
+            this.metadataService = metadataService;
+            this.converterService = converterService;
+        }
+
+        boolean result = (this.metadataService == metadataService)
+                && (this.converterService == converterService);
+
+        if (result && !isUpToDate(metadataService)) {
+            reset(metadataService);
+        }
+
+        return result;
+    }
+
+    /**
+     * Indicates if the cached results were computed with the currently
+     * registered converters and with the current defaults of the metadata
+     * service.
+     * 
+     * @param metadataService
+     *            The metadata service used to compute the cached results.
+     * @return True if the cached results are up to date.
+     */
+    private boolean isUpToDate(MetadataService metadataService) {
+        ConverterHelper[] converters = this.converters;
+        Object[] defaults = this.metadataDefaults;
+        boolean result = (converters != null) && (defaults != null)
+                && (defaults[0] == metadataService.getDefaultCharacterSet())
+                && (defaults[1] == metadataService.getDefaultEncoding())
+                && (defaults[2] == metadataService.getDefaultLanguage())
+                && (defaults[3] == metadataService.getDefaultMediaType());
+
+        if (result) {
+            List<ConverterHelper> registered = Engine.getInstance()
+                    .getRegisteredConverters();
+            result = (registered.size() == converters.length);
+
+            for (int i = 0; result && (i < converters.length); i++) {
+                try {
+                    result = (registered.get(i) == converters[i]);
+                } catch (IndexOutOfBoundsException e) {
+                    // Concurrently modified
+                    result = false;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Caches the index of the preferred variant for a negotiation key. The
+     * least recently used keys are evicted beyond a fixed number of entries.
+     * 
+     * @param key
+     *            The negotiation key, covering the candidate variants and the
+     *            client preferences.
+     * @param index
+     *            The index of the preferred variant or -1 if none was
+     *            acceptable.
+     */
+    public void putPreferredVariant(String key, int index) {
+        Map<String, Integer> preferredVariants = this.preferredVariants;
+
+        synchronized (preferredVariants) {
+            preferredVariants.put(key, index);
+        }
+    }
+
+    /**
+     * Discards the cached results by replacing the annotated methods and the
+     * cache of the preferred variants, then records the registered converters
+     * and the metadata defaults that the next results will be computed with.
+     * Calls in progress keep using the replaced annotated methods, so their
+     * results aren't stored with the new ones.
+     * 
+     * @param metadataService
+     *            The metadata service used to compute the cached results.
+     */
+    private synchronized void reset(MetadataService metadataService) {
+        if (!isUpToDate(metadataService)) {
+            this.converters = Engine.getInstance().getRegisteredConverters()
+                    .toArray(new ConverterHelper[0]);
+            this.metadataDefaults = getMetadataDefaults(metadataService);
+            this.entries = createEntries();
+            this.preferredVariants = createPreferredVariants();
+        }
+    }
+
+}
@@ -25,11 +25,17 @@
 package org.restlet.engine.resource;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
 import java.util.StringTokenizer;
+import java.util.concurrent.CompletionStage;
 
 import org.restlet.Context;
 import org.restlet.engine.util.StringUtils;
@@ -55,12 +61,21 @@ public class MethodAnnotationInfo extends AnnotationInfo {
     /** The input part of the annotation value. */
     private final String input;
 
+    /** The method handle invoking the Java method, lazily created. */
+    private volatile MethodHandle invoker;
+
+    /** The input types of the Java method, lazily resolved. */
+    private volatile Class<?>[] javaInputTypes;
+
     /** The output part of the annotation value. */
     private final String output;
 
     /** The optional query part of the annotation value. */
     private final String query;
 
+    /** The query parameters required by the annotation value or null. */
+    private final Form queryParams;
+
     /** The matching Restlet method. */
     private final Method restletMethod;
 
@@ -107,6 +122,8 @@ public class MethodAnnotationInfo extends AnnotationInfo {
             this.input = null;
             this.output = null;
         }
+
+        this.queryParams = (this.query != null) ? new Form(this.query) : null;
     }
 
     /**
@@ -154,31 +171,69 @@ public class MethodAnnotationInfo extends AnnotationInfo {
     }
 
     /**
-     * Returns the input types of the Java method.
+     * Returns the input types of the Java method. They are resolved once, so
+     * the returned array must not be modified.
      * 
      * @return The input types of the Java method.
      */
     public Class<?>[] getJavaInputTypes() {
-        int count = getJavaMethod().getParameterTypes().length;
-        Class<?>[] classes = new Class[count];
+        Class<?>[] result = this.javaInputTypes;
+
+        if (result == null) {
+            int count = getJavaMethod().getParameterTypes().length;
+            result = new Class[count];
+
+            for (int i = 0; i < count; i++) {
+                result[i] = getJavaInputType(i);
+            }
 
-        for (int i = 0; i < count; i++) {
-            classes[i] = getJavaInputType(i);
+            this.javaInputTypes = result;
         }
 
-        return classes;
+        return result;
     }
 
     /**
-     * Returns the output type of the Java method.
+     * Returns the output type of the Java method. For asynchronous methods,
+     * this is the type of the result of the returned completion stage.
      * 
      * @return The output type of the Java method.
      */
     public Class<?> getJavaOutputType() {
+        if (isAsynchronous()) {
+            Type genericReturnType = javaMethodImpl.getGenericReturnType();
+            Class<?> result = (genericReturnType instanceof ParameterizedType) ? getTypeClass(((ParameterizedType) genericReturnType)
+                    .getActualTypeArguments()[0]) : null;
+            return (result == null) ? Void.class : result;
+        }
+
         return getJavaActualType(javaMethodImpl.getReturnType(),
                 javaMethodImpl.getGenericReturnType());
     }
 
+    /**
+     * Returns the method handle invoking the Java method. It takes the target
+     * object and the array of arguments, and returns the result object or null
+     * for void methods.
+     * 
+     * @return The method handle invoking the Java method.
+     * @throws IllegalAccessException
+     *             If the Java method isn't accessible.
+     */
+    private MethodHandle getInvoker() throws IllegalAccessException {
+        MethodHandle result = this.invoker;
+
+        if (result == null) {
+            int count = getJavaMethod().getParameterTypes().length;
+            result = MethodHandles.lookup().unreflect(getJavaMethod())
+                    .asType(MethodType.genericMethodType(count + 1))
+                    .asSpreader(Object[].class, count);
+            this.invoker = result;
+        }
+
+        return result;
+    }
+
     /**
      * Returns the output part of the annotation value.
      * 
@@ -364,6 +419,34 @@ public class MethodAnnotationInfo extends AnnotationInfo {
         return SystemUtils.hashCode(super.hashCode(), restletMethod);
     }
 
+    /**
+     * Indicates if the Java method is asynchronous, that is if it returns a
+     * {@link CompletionStage} of its result.
+     * 
+     * @return True if the Java method is asynchronous.
+     */
+    public boolean isAsynchronous() {
+        return CompletionStage.class.isAssignableFrom(javaMethodImpl
+                .getReturnType());
+    }
+
+    /**
+     * Invokes the Java method on the given target via a method handle, which
+     * avoids the overhead of reflective calls once the method handle has been
+     * created.
+     * 
+     * @param target
+     *            The target object.
+     * @param args
+     *            The method arguments.
+     * @return The result object or null for void methods.
+     * @throws Throwable
+     *             The exception thrown by the Java method, unwrapped.
+     */
+    public Object invoke(Object target, Object... args) throws Throwable {
+        return (Object) getInvoker().invokeExact(target, args);
+    }
+
     /**
      * Indicates if the annotated method described is compatible with the given
      * parameters.
@@ -383,17 +466,8 @@ public class MethodAnnotationInfo extends AnnotationInfo {
             Representation requestEntity, MetadataService metadataService,
             org.restlet.service.ConverterService converterService)
             throws IOException {
-        boolean result = true;
-
         // Verify query parameters
-        if (getQuery() != null) {
-            Form requiredParams = new Form(getQuery());
-
-            for (Iterator<Parameter> iter = requiredParams.iterator(); iter
-                    .hasNext() && result;) {
-                result = queryParams.contains(iter.next());
-            }
-        }
+        boolean result = isCompatibleQuery(queryParams);
 
         // Verify HTTP method
         if (result) {
@@ -410,6 +484,27 @@ public class MethodAnnotationInfo extends AnnotationInfo {
         return result;
     }
 
+    /**
+     * Indicates if the given query parameters contain the ones required by the
+     * annotation value, if any.
+     * 
+     * @param queryParams
+     *            The query parameters.
+     * @return True if the query parameters are compatible.
+     */
+    public boolean isCompatibleQuery(Form queryParams) {
+        boolean result = true;
+
+        if (this.queryParams != null) {
+            for (Iterator<Parameter> iter = this.queryParams.iterator(); iter
+                    .hasNext() && result;) {
+                result = queryParams.contains(iter.next());
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Indicates if the given request entity is compatible with the annotated
      * method described.
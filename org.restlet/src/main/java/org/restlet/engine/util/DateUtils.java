@@ -24,18 +24,61 @@
 
 package org.restlet.engine.util;
 
+import java.text.DateFormat;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Date manipulation utilities.
+ * Date manipulation utilities.<br>
+ * <br>
+ * Formatting of the standard HTTP and W3C date formats relies on shared and
+ * thread-safe {@link DateTimeFormatter} instances, and the RFC 1123 format of
+ * the current second is cached as it is written in each "Date" header. Other
+ * date formats and parsing rely on {@link SimpleDateFormat} instances cached
+ * per thread. Parsing doesn't rely on exceptions to try the next format, and
+ * has a fast path for well-formed RFC 1123 dates.
  * 
  * @author Jerome Louvel
  */
 public final class DateUtils {
 
+    /**
+     * Date formatted for a given second.
+     */
+    private static final class FormattedSecond {
+        /** The second (in seconds since epoch). */
+        private final long second;
+
+        /** The formatted date. */
+        private final String value;
+
+        /**
+         * Constructor.
+         * 
+         * @param second
+         *            The second (in seconds since epoch).
+         * @param value
+         *            The formatted date.
+         */
+        private FormattedSecond(long second, String value) {
+            this.second = second;
+            this.value = value;
+        }
+    }
+
     /**
      * Obsoleted HTTP date format (ANSI C asctime() format). Pattern:
      * "EEE MMM dd HH:mm:ss yyyy".
@@ -68,9 +111,51 @@ public final class DateUtils {
             "EEE, dd MMM yy HH:mm:ss z", "EEE, dd MMM yy HH:mm z",
             "dd MMM yy HH:mm:ss z", "dd MMM yy HH:mm z");
 
+    /** The shared java.time formatters, per date format. */
+    private static final Map<String, DateTimeFormatter> FORMATTERS = new ConcurrentHashMap<String, DateTimeFormatter>();
+
+    /** The shared RFC 3339 date format, which is thread-safe. */
+    private static final DateFormat INTERNET_DATE_FORMAT;
+
+    /** The month abbreviations, as used by the RFC 1123 format. */
+    private static final String[] MONTHS = { "Jan", "Feb", "Mar", "Apr",
+            "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec" };
+
+    /** The legacy date formats, per thread and per date format. */
+    private static final ThreadLocal<Map<String, DateFormat>> SIMPLE_FORMATS = new ThreadLocal<Map<String, DateFormat>>() {
+        @Override
+        protected Map<String, DateFormat> initialValue() {
+            return new HashMap<String, DateFormat>();
+        }
+    };
+
     /** Remember the often used GMT time zone. */
     private static final java.util.TimeZone TIMEZONE_GMT = java.util.TimeZone.getTimeZone("GMT");
 
+    /** The RFC 1123 formatted date of the last second formatted. */
+    private static volatile FormattedSecond lastRfc1123 = new FormattedSecond(
+            Long.MIN_VALUE, null);
+
+    /** The day of week abbreviations, as used by the RFC 1123 format. */
+    private static final String[] WEEK_DAYS = { "Mon", "Tue", "Wed", "Thu",
+            "Fri", "Sat", "Sun" };
+
+    /** The GMT zone identifier. */
+    private static final ZoneId ZONE_GMT = ZoneId.of("GMT");
+
+    static {
+        INTERNET_DATE_FORMAT = new InternetDateFormat(TIMEZONE_GMT);
+
+        for (List<String> formats : Arrays.asList(FORMAT_ASC_TIME,
+                FORMAT_ISO_8601, FORMAT_RFC_1036, FORMAT_RFC_1123,
+                FORMAT_RFC_822)) {
+            for (String format : formats) {
+                FORMATTERS.put(format, DateTimeFormatter
+                        .ofPattern(format, Locale.US).withZone(ZONE_GMT));
+            }
+        }
+    }
+
     /**
      * Compares two date with a precision of one second.
      * 
@@ -169,17 +254,88 @@ public final class DateUtils {
             throw new IllegalArgumentException("Date is null");
         }
 
-        java.text.DateFormat formatter = null;
+        String result = null;
 
-        if (FORMAT_RFC_3339.get(0).equals(format)) {
-            formatter = new InternetDateFormat(TIMEZONE_GMT);
+        if (FORMAT_RFC_1123.get(0).equals(format)) {
+            result = formatRfc1123(date.getTime());
+        } else if (FORMAT_RFC_3339.get(0).equals(format)) {
+            result = INTERNET_DATE_FORMAT.format(date);
         } else {
-            formatter = new java.text.SimpleDateFormat(format,
-                    java.util.Locale.US);
-            formatter.setTimeZone(TIMEZONE_GMT);
+            DateTimeFormatter formatter = FORMATTERS.get(format);
+
+            if (formatter != null) {
+                result = formatter.format(Instant.ofEpochMilli(date.getTime()));
+            } else {
+                result = getSimpleFormat(format).format(date);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Formats a time in the RFC 1123 format, reusing the last result when
+     * formatting the same second again, like the current date of successive
+     * responses.
+     * 
+     * @param time
+     *            The time to format (in milliseconds since epoch).
+     * @return The formatted date.
+     */
+    private static String formatRfc1123(long time) {
+        long second = Math.floorDiv(time, 1000L);
+        FormattedSecond last = lastRfc1123;
+
+        if (last.second == second) {
+            return last.value;
         }
 
-        return formatter.format(date);
+        String result = FORMATTERS.get(FORMAT_RFC_1123.get(0)).format(
+                Instant.ofEpochMilli(time));
+        lastRfc1123 = new FormattedSecond(second, result);
+        return result;
+    }
+
+    /**
+     * Returns the legacy date format of the current thread for a given
+     * pattern.
+     * 
+     * @param format
+     *            The date format pattern.
+     * @return The legacy date format.
+     */
+    private static DateFormat getSimpleFormat(String format) {
+        Map<String, DateFormat> formats = SIMPLE_FORMATS.get();
+        DateFormat result = formats.get(format);
+
+        if (result == null) {
+            result = new SimpleDateFormat(format, Locale.US);
+            result.setTimeZone(TIMEZONE_GMT);
+            formats.put(format, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the index of a three letters name in a list of names.
+     * 
+     * @param date
+     *            The string containing the name.
+     * @param start
+     *            The start index of the name.
+     * @param names
+     *            The list of names.
+     * @return The index of the name or -1.
+     */
+    private static int indexOf(String date, int start, String[] names) {
+        for (int i = 0; i < names.length; i++) {
+            if (date.regionMatches(start, names[i], 0, 3)) {
+                return i;
+            }
+        }
+
+        return -1;
     }
 
     /**
@@ -215,19 +371,91 @@ public final class DateUtils {
 
         for (int i = 0; (result == null) && (i < formatsSize); i++) {
             format = formats.get(i);
-            java.text.DateFormat parser = null;
 
-            if (FORMAT_RFC_3339.get(0).equals(format)) {
-                parser = new InternetDateFormat(TIMEZONE_GMT);
+            if (FORMAT_RFC_1123.get(0).equals(format)) {
+                result = parseRfc1123(date);
+
+                if (result == null) {
+                    result = getSimpleFormat(format).parse(date,
+                            new ParsePosition(0));
+                }
+            } else if (FORMAT_RFC_3339.get(0).equals(format)) {
+                try {
+                    result = INTERNET_DATE_FORMAT.parse(date,
+                            new ParsePosition(0));
+                } catch (RuntimeException e) {
+                    // Ignores error as the next format may work better
+                }
             } else {
-                parser = new java.text.SimpleDateFormat(format, java.util.Locale.US);
-                parser.setTimeZone(TIMEZONE_GMT);
+                result = getSimpleFormat(format).parse(date,
+                        new ParsePosition(0));
             }
-            try {
-                result = parser.parse(date);
-            } catch (Exception e) {
-                // Ignores error as the next format may work better
+        }
+
+        return result;
+    }
+
+    /**
+     * Parses a well-formed RFC 1123 date such as
+     * "Sun, 06 Nov 1994 08:49:37 GMT", without allocating intermediary
+     * objects. Other forms accepted by the lenient legacy parser are left to
+     * it.
+     * 
+     * @param date
+     *            The date to parse.
+     * @return The parsed date or null.
+     */
+    private static Date parseRfc1123(String date) {
+        if ((date.length() != 29) || (date.charAt(3) != ',')
+                || (date.charAt(4) != ' ') || (date.charAt(7) != ' ')
+                || (date.charAt(11) != ' ') || (date.charAt(16) != ' ')
+                || (date.charAt(19) != ':') || (date.charAt(22) != ':')
+                || (date.charAt(25) != ' ') || !date.endsWith("GMT")
+                || (indexOf(date, 0, WEEK_DAYS) == -1)) {
+            return null;
+        }
+
+        int month = indexOf(date, 8, MONTHS) + 1;
+        int day = parseDigits(date, 5, 2);
+        int year = parseDigits(date, 12, 4);
+        int hour = parseDigits(date, 17, 2);
+        int minute = parseDigits(date, 20, 2);
+        int second = parseDigits(date, 23, 2);
+
+        if ((month < 1) || (day < 1) || (year < 1) || (hour < 0)
+                || (hour > 23) || (minute < 0) || (minute > 59)
+                || (second < 0) || (second > 59)
+                || (day > YearMonth.of(year, month).lengthOfMonth())) {
+            return null;
+        }
+
+        long epochDay = LocalDate.of(year, month, day).toEpochDay();
+        return new Date(((epochDay * 86400L) + (hour * 3600L)
+                + (minute * 60L) + second) * 1000L);
+    }
+
+    /**
+     * Parses a fixed number of decimal digits.
+     * 
+     * @param date
+     *            The string containing the digits.
+     * @param start
+     *            The index of the first digit.
+     * @param count
+     *            The number of digits.
+     * @return The parsed value or -1 if a character isn't a digit.
+     */
+    private static int parseDigits(String date, int start, int count) {
+        int result = 0;
+
+        for (int i = start; i < start + count; i++) {
+            char c = date.charAt(i);
+
+            if ((c < '0') || (c > '9')) {
+                return -1;
             }
+
+            result = (result * 10) + (c - '0');
         }
 
         return result;
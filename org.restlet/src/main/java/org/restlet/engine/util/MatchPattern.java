@@ -0,0 +1,224 @@
+/**
+ * Copyright 2005-2016 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+package org.restlet.engine.util;
+
+import java.util.regex.Pattern;
+
+/**
+ * Case insensitive regular expression, compiled once and matched many times.
+ * The common ".*" wildcard always matches without running the regex engine and
+ * plain ASCII literals, such as "www\\.example\\.com" or "8080", are compared
+ * character by character. Other expressions fall back to a compiled
+ * {@link Pattern}. A null expression never matches.
+ * 
+ * @author Jerome Louvel
+ */
+public final class MatchPattern {
+
+    /** The wildcard expression matching any value. */
+    public static final String WILDCARD = ".*";
+
+    /**
+     * Returns the ASCII lower case version of a character.
+     * 
+     * @param c
+     *            The character to convert.
+     * @return The lower case character.
+     */
+    private static char toLowerCase(char c) {
+        return ((c >= 'A') && (c <= 'Z')) ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    /**
+     * Parses a regular expression into a lower case literal where unescaped
+     * dots are marked in the given array.
+     * 
+     * @param regex
+     *            The regular expression to parse.
+     * @param anyChars
+     *            The array marking the positions of unescaped dots.
+     * @return The literal or null if the expression is not a plain literal.
+     */
+    private static String toLiteral(String regex, boolean[] anyChars) {
+        StringBuilder sb = new StringBuilder(regex.length());
+
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+
+            if (c >= 128) {
+                return null;
+            } else if (c == '\\') {
+                if (++i == regex.length()) {
+                    return null;
+                }
+
+                c = regex.charAt(i);
+
+                if ((c >= 128) || Character.isLetterOrDigit(c)) {
+                    // Character classes such as \d or back references
+                    return null;
+                }
+
+                sb.append(c);
+            } else if (c == '.') {
+                anyChars[sb.length()] = true;
+                sb.append(c);
+            } else if ("^$|?*+()[]{}".indexOf(c) != -1) {
+                return null;
+            } else {
+                sb.append(toLowerCase(c));
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /** The positions of the literal matching any character. */
+    private final boolean[] anyChars;
+
+    /** Indicates if the literal contains positions matching any character. */
+    private final boolean exact;
+
+    /** The lower case literal or null if the expression is not a literal. */
+    private final String literal;
+
+    /** The compiled pattern or null if not needed. */
+    private final Pattern pattern;
+
+    /** The source regular expression. */
+    private final String regex;
+
+    /** Indicates if the expression is the wildcard. */
+    private final boolean wildcard;
+
+    /**
+     * Constructor.
+     * 
+     * @param regex
+     *            The regular expression to compile. See the {@link Pattern}
+     *            class for details on the syntax.
+     */
+    public MatchPattern(String regex) {
+        this.regex = regex;
+        this.wildcard = WILDCARD.equals(regex);
+
+        if ((regex == null) || this.wildcard) {
+            this.anyChars = null;
+            this.literal = null;
+            this.pattern = null;
+        } else {
+            boolean[] dots = new boolean[regex.length()];
+            String parsed = toLiteral(regex, dots);
+
+            if (parsed == null) {
+                this.anyChars = null;
+                this.literal = null;
+                this.pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+            } else {
+                this.anyChars = dots;
+                this.literal = parsed;
+                this.pattern = null;
+            }
+        }
+
+        boolean hasAnyChar = false;
+
+        if (this.anyChars != null) {
+            for (int i = 0; !hasAnyChar && (i < this.anyChars.length); i++) {
+                hasAnyChar = this.anyChars[i];
+            }
+        }
+
+        this.exact = (this.literal != null) && !hasAnyChar;
+    }
+
+    /**
+     * Returns the lower case literal value matched when the expression only
+     * matches a single value, ignoring case.
+     * 
+     * @return The lower case literal value or null.
+     */
+    public String getLiteral() {
+        return this.exact ? this.literal : null;
+    }
+
+    /**
+     * Returns the source regular expression.
+     * 
+     * @return The source regular expression.
+     */
+    public String getRegex() {
+        return this.regex;
+    }
+
+    /**
+     * Indicates if the expression is the ".*" wildcard matching any value.
+     * 
+     * @return True if the expression is the wildcard.
+     */
+    public boolean isWildcard() {
+        return this.wildcard;
+    }
+
+    /**
+     * Matches a value against the expression, in a case insensitive manner.
+     * 
+     * @param value
+     *            The value to match.
+     * @return True if the value matched the expression.
+     */
+    public boolean matches(String value) {
+        boolean result;
+
+        if (this.wildcard) {
+            result = true;
+        } else if (this.literal != null) {
+            result = (value.length() == this.literal.length());
+
+            for (int i = 0; result && (i < this.literal.length()); i++) {
+                char c = value.charAt(i);
+
+                if (this.anyChars[i]) {
+                    // Same line terminators as the regex "." default mode
+                    result = (c != '\n') && (c != '\r') && (c != '\u0085')
+                            && (c != '\u2028') && (c != '\u2029');
+                } else {
+                    result = (c < 128)
+                            && (toLowerCase(c) == this.literal.charAt(i));
+                }
+            }
+        } else if (this.pattern != null) {
+            result = this.pattern.matcher(value).matches();
+        } else {
+            result = false;
+        }
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return this.regex;
+    }
+}
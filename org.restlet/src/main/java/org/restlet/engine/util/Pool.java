@@ -26,9 +26,11 @@ package org.restlet.engine.util;
 
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Generic object pool.
+ * Generic object pool. It can be bounded, in which case the objects checked in
+ * while the pool is full are dropped.
  * 
  * @author Jerome Louvel
  * 
@@ -36,6 +38,12 @@ import java.util.concurrent.ConcurrentLinkedQueue;
  */
 public abstract class Pool<T> {
 
+    /** The maximum number of reusable objects stored or 0 if unbounded. */
+    private final int maxSize;
+
+    /** The number of reusable objects stored. */
+    private final AtomicInteger size;
+
     /** Store of reusable objects. */
     private final Queue<T> store;
 
@@ -43,6 +51,8 @@ public abstract class Pool<T> {
      * Default constructor.
      */
     public Pool() {
+        this.maxSize = 0;
+        this.size = new AtomicInteger();
         this.store = createStore();
     }
 
@@ -59,7 +69,25 @@ public abstract class Pool<T> {
     }
 
     /**
-     * Checks in an object into the pool.
+     * Constructor. Pre-creates the minimum number of objects if needed using
+     * the {@link #preCreate(int)} method.
+     * 
+     * @param initialSize
+     *            The initial number of objects in the pool.
+     * @param maxSize
+     *            The maximum number of reusable objects stored or 0 if
+     *            unbounded.
+     */
+    public Pool(int initialSize, int maxSize) {
+        this.maxSize = maxSize;
+        this.size = new AtomicInteger();
+        this.store = createStore();
+        preCreate(initialSize);
+    }
+
+    /**
+     * Checks in an object into the pool. If the pool is bounded and full, the
+     * object is dropped.
      * 
      * @param object
      *            The object to check in.
@@ -67,7 +95,15 @@ public abstract class Pool<T> {
     public void checkin(T object) {
         if (object != null) {
             clear(object);
-            this.store.offer(object);
+
+            int newSize = this.size.incrementAndGet();
+
+            if ((getMaxSize() <= 0) || (newSize <= getMaxSize())) {
+                this.store.offer(object);
+            } else {
+                // The pool is full, let the object be garbage collected
+                this.size.decrementAndGet();
+            }
         }
     }
 
@@ -82,6 +118,8 @@ public abstract class Pool<T> {
 
         if ((result = this.store.poll()) == null) {
             result = createObject();
+        } else {
+            this.size.decrementAndGet();
         }
 
         return result;
@@ -91,7 +129,9 @@ public abstract class Pool<T> {
      * Clears the store of reusable objects.
      */
     public void clear() {
-        getStore().clear();
+        while (getStore().poll() != null) {
+            this.size.decrementAndGet();
+        }
     }
 
     /**
@@ -121,6 +161,24 @@ public abstract class Pool<T> {
         return new ConcurrentLinkedQueue<T>();
     }
 
+    /**
+     * Returns the maximum number of reusable objects stored.
+     * 
+     * @return The maximum number of reusable objects stored or 0 if unbounded.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of reusable objects stored.
+     * 
+     * @return The number of reusable objects stored.
+     */
+    public int getSize() {
+        return this.size.get();
+    }
+
     /**
      * Returns the store containing the reusable objects.
      * 
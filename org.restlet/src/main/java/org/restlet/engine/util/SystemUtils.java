@@ -24,13 +24,129 @@
 
 package org.restlet.engine.util;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
 /**
- * System utilities.
+ * System utilities.<br>
+ * <br>
+ * Virtual threads are only available since Java 21 and are accessed by
+ * reflection so that the engine keeps running on earlier versions.
  * 
  * @author Jerome Louvel
  */
 public class SystemUtils {
 
+    /** The "Thread.Builder.factory()" method. */
+    private static final Method BUILDER_FACTORY;
+
+    /** The "Thread.Builder.name(String)" method. */
+    private static final Method BUILDER_NAME;
+
+    /** The "Thread.Builder.name(String, long)" method. */
+    private static final Method BUILDER_NAME_COUNTER;
+
+    /** The "Thread.Builder.unstarted(Runnable)" method. */
+    private static final Method BUILDER_UNSTARTED;
+
+    /** The "Executors.newThreadPerTaskExecutor(ThreadFactory)" method. */
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+    /**
+     * The "Thread.ofVirtual()" method or null if virtual threads aren't
+     * supported.
+     */
+    private static final Method OF_VIRTUAL;
+
+    static {
+        Method builderFactory = null;
+        Method builderName = null;
+        Method builderNameCounter = null;
+        Method builderUnstarted = null;
+        Method newThreadPerTaskExecutor = null;
+        Method ofVirtual = null;
+
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builderFactory = builderClass.getMethod("factory");
+            builderName = builderClass.getMethod("name", String.class);
+            builderNameCounter = builderClass.getMethod("name", String.class,
+                    long.class);
+            builderUnstarted = builderClass.getMethod("unstarted",
+                    Runnable.class);
+            newThreadPerTaskExecutor = Executors.class.getMethod(
+                    "newThreadPerTaskExecutor", ThreadFactory.class);
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+
+            // Fails on Java 19 and 20 unless preview features are enabled
+            ofVirtual.invoke(null);
+        } catch (Throwable t) {
+            ofVirtual = null;
+        }
+
+        BUILDER_FACTORY = builderFactory;
+        BUILDER_NAME = builderName;
+        BUILDER_NAME_COUNTER = builderNameCounter;
+        BUILDER_UNSTARTED = builderUnstarted;
+        NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+        OF_VIRTUAL = ofVirtual;
+    }
+
+    /**
+     * Creates an executor service starting a new thread for each task, using
+     * the given thread factory. Requires Java 21 or later.
+     * 
+     * @param threadFactory
+     *            The factory of the threads running the tasks.
+     * @return The executor service.
+     * @throws UnsupportedOperationException
+     *             If virtual threads aren't supported.
+     * @see #isVirtualThreadsSupported()
+     */
+    public static ExecutorService createThreadPerTaskExecutor(
+            ThreadFactory threadFactory) {
+        return (ExecutorService) invokeVirtual(NEW_THREAD_PER_TASK_EXECUTOR,
+                null, threadFactory);
+    }
+
+    /**
+     * Creates an unstarted virtual thread. Requires Java 21 or later.
+     * 
+     * @param runnable
+     *            The runnable task to execute.
+     * @param name
+     *            The thread name.
+     * @return The unstarted virtual thread.
+     * @throws UnsupportedOperationException
+     *             If virtual threads aren't supported.
+     * @see #isVirtualThreadsSupported()
+     */
+    public static Thread createVirtualThread(Runnable runnable, String name) {
+        Object builder = invokeVirtual(OF_VIRTUAL, null);
+        builder = invokeVirtual(BUILDER_NAME, builder, name);
+        return (Thread) invokeVirtual(BUILDER_UNSTARTED, builder, runnable);
+    }
+
+    /**
+     * Creates a factory of virtual threads named with the given prefix
+     * followed by a counter. Requires Java 21 or later.
+     * 
+     * @param prefix
+     *            The prefix of the thread names.
+     * @return The factory of virtual threads.
+     * @throws UnsupportedOperationException
+     *             If virtual threads aren't supported.
+     * @see #isVirtualThreadsSupported()
+     */
+    public static ThreadFactory createVirtualThreadFactory(String prefix) {
+        Object builder = invokeVirtual(OF_VIRTUAL, null);
+        builder = invokeVirtual(BUILDER_NAME_COUNTER, builder, prefix, 0L);
+        return (ThreadFactory) invokeVirtual(BUILDER_FACTORY, builder);
+    }
+
     /**
      * Parses the "java.version" system property and returns the first digit of
      * the version number of the Java Runtime Environment (e.g. "1" for
@@ -117,6 +233,51 @@ public class SystemUtils {
         return result;
     }
 
+    /**
+     * Invokes a method of the virtual threads API.
+     * 
+     * @param method
+     *            The method to invoke.
+     * @param target
+     *            The target object or null for static methods.
+     * @param args
+     *            The method arguments.
+     * @return The result of the invocation.
+     * @throws UnsupportedOperationException
+     *             If virtual threads aren't supported.
+     */
+    private static Object invokeVirtual(Method method, Object target,
+            Object... args) {
+        if (!isVirtualThreadsSupported()) {
+            throw new UnsupportedOperationException(
+                    "Virtual threads require Java 21 or later");
+        }
+
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new UnsupportedOperationException(
+                    "Unable to use the virtual threads", e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new UnsupportedOperationException(
+                    "Unable to use the virtual threads", e);
+        }
+    }
+
+    /**
+     * Indicates if virtual threads are supported by the Java Runtime
+     * Environment, which requires Java 21 or later.
+     * 
+     * @return True if virtual threads are supported.
+     */
+    public static boolean isVirtualThreadsSupported() {
+        return OF_VIRTUAL != null;
+    }
+
     /**
      * Indicates if the current operating system is in the Windows family.
      * 
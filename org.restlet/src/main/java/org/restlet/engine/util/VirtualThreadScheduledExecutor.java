@@ -0,0 +1,181 @@
+/**
+ * Copyright 2005-2016 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.util;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Scheduled executor service running each task on a new virtual thread.
+ * Requires Java 21 or later.<br>
+ * <br>
+ * A single scheduling thread waits for the tasks to be due, then hands them to
+ * a thread-per-task executor. As a result, the number of tasks running
+ * concurrently isn't bounded by a pool size, while blocking tasks don't
+ * monopolize platform threads.
+ * 
+ * @author Jerome Louvel
+ * @see SystemUtils#isVirtualThreadsSupported()
+ */
+public class VirtualThreadScheduledExecutor extends
+        ScheduledThreadPoolExecutor {
+
+    /**
+     * Scheduled task handed to the thread-per-task executor when due.
+     * 
+     * @param <V>
+     *            The result type.
+     */
+    private class HandOffTask<V> implements RunnableScheduledFuture<V> {
+
+        /** The task scheduled by the parent executor. */
+        private final RunnableScheduledFuture<V> task;
+
+        /**
+         * Constructor.
+         * 
+         * @param task
+         *            The task scheduled by the parent executor.
+         */
+        public HandOffTask(RunnableScheduledFuture<V> task) {
+            this.task = task;
+        }
+
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return task.cancel(mayInterruptIfRunning);
+        }
+
+        public int compareTo(Delayed other) {
+            // Preserve the FIFO ordering of the tasks due at the same time
+            return task.compareTo((other instanceof HandOffTask)
+                    ? ((HandOffTask<?>) other).task : other);
+        }
+
+        public V get() throws InterruptedException, ExecutionException {
+            return task.get();
+        }
+
+        public V get(long timeout, TimeUnit unit) throws InterruptedException,
+                ExecutionException, TimeoutException {
+            return task.get(timeout, unit);
+        }
+
+        public long getDelay(TimeUnit unit) {
+            return task.getDelay(unit);
+        }
+
+        public boolean isCancelled() {
+            return task.isCancelled();
+        }
+
+        public boolean isDone() {
+            return task.isDone();
+        }
+
+        public boolean isPeriodic() {
+            return task.isPeriodic();
+        }
+
+        public void run() {
+            // Periodic tasks are scheduled again once their run completes
+            getTaskExecutor().execute(task);
+        }
+    }
+
+    /** The executor running each task on a new virtual thread. */
+    private final ExecutorService taskExecutor;
+
+    /**
+     * Constructor.
+     * 
+     * @param threadFactory
+     *            The factory of virtual threads, used both for the scheduling
+     *            thread and the task threads.
+     * @see SystemUtils#createVirtualThreadFactory(String)
+     */
+    public VirtualThreadScheduledExecutor(ThreadFactory threadFactory) {
+        super(1, threadFactory);
+        this.taskExecutor = SystemUtils
+                .createThreadPerTaskExecutor(threadFactory);
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        return super.awaitTermination(timeout, unit)
+                && getTaskExecutor().awaitTermination(
+                        deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    protected <V> RunnableScheduledFuture<V> decorateTask(
+            Callable<V> callable, RunnableScheduledFuture<V> task) {
+        return new HandOffTask<V>(task);
+    }
+
+    @Override
+    protected <V> RunnableScheduledFuture<V> decorateTask(Runnable runnable,
+            RunnableScheduledFuture<V> task) {
+        return new HandOffTask<V>(task);
+    }
+
+    /**
+     * Returns the executor running each task on a new virtual thread.
+     * 
+     * @return The executor running each task on a new virtual thread.
+     */
+    protected ExecutorService getTaskExecutor() {
+        return taskExecutor;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return super.isTerminated() && getTaskExecutor().isTerminated();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> result = super.shutdownNow();
+        getTaskExecutor().shutdownNow();
+        return result;
+    }
+
+    @Override
+    protected void terminated() {
+        // Tasks due after a shutdown may still be handed off until now
+        super.terminated();
+        getTaskExecutor().shutdown();
+    }
+
+}
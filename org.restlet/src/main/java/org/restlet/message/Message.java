@@ -34,6 +34,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.restlet.Context;
 import org.restlet.Uniform;
+import org.restlet.engine.header.HeaderSeries;
 import org.restlet.representation.MediaType;
 import org.restlet.representation.Representation;
 import org.restlet.representation.StringRepresentation;
@@ -263,7 +264,7 @@ public abstract class Message {
             synchronized (this) {
                 h = this.headers;
                 if (h == null) {
-                    this.headers = h = new Series<Header>(Header.class);
+                    this.headers = h = new HeaderSeries();
                 }
             }
         }
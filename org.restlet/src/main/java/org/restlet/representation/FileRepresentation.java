@@ -27,11 +27,17 @@ package org.restlet.representation;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Date;
 
 import org.restlet.engine.io.IoUtils;
@@ -41,7 +47,14 @@ import org.restlet.util.LocalReference;
  * Representation based on a static file. Note that in order for Web clients to
  * display a download box upon reception of a file representation, it needs an
  * additional call to {@link Disposition#setType(String)} with a
- * {@link Disposition#TYPE_ATTACHMENT} value.
+ * {@link Disposition#TYPE_ATTACHMENT} value.<br>
+ * <br>
+ * When written to a {@link WritableByteChannel} or to a
+ * {@link FileOutputStream}, the content is transferred with
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)}, letting the
+ * operating system avoid copies in the Java heap. Small and frequently served
+ * files can also be memory-mapped when written to a channel, see
+ * {@link #setMapped(boolean)}.
  * 
  * @author Jerome Louvel
  */
@@ -72,6 +85,12 @@ public class FileRepresentation extends Representation {
     /** The file handle. */
     private volatile File file;
 
+    /** Indicates if the file should be memory-mapped when written. */
+    private volatile boolean mapped;
+
+    /** The memory mapping of the file, reused by successive writes. */
+    private volatile MappedByteBuffer mapping;
+
     /**
      * Constructor that does not set an expiration date for {@code file}
      * 
@@ -101,7 +120,10 @@ public class FileRepresentation extends Representation {
      */
     public FileRepresentation(File file, MediaType mediaType, int timeToLive) {
         super(mediaType);
+        this.autoDeleting = false;
         this.file = file;
+        this.mapped = false;
+        this.mapping = null;
         setModificationDate(new Date(file.lastModified()));
 
         if (timeToLive == 0) {
@@ -147,6 +169,17 @@ public class FileRepresentation extends Representation {
         this(createFile(path), mediaType, timeToLive);
     }
 
+    /**
+     * Opens a new read-only channel on the file. It is up to the caller to
+     * close it.
+     * 
+     * @return A new read-only file channel.
+     * @throws IOException
+     */
+    public FileChannel getChannel() throws IOException {
+        return FileChannel.open(this.file.toPath(), StandardOpenOption.READ);
+    }
+
     /**
      * Returns the file handle.
      * 
@@ -156,6 +189,34 @@ public class FileRepresentation extends Representation {
         return this.file;
     }
 
+    /**
+     * Returns a view of the memory mapping of the file, mapping it if it isn't
+     * mapped yet or if its size changed.
+     * 
+     * @return A view of the memory mapping or null if the file is too large to
+     *         be mapped.
+     * @throws IOException
+     */
+    private ByteBuffer getMapping() throws IOException {
+        MappedByteBuffer result = this.mapping;
+        long size = this.file.length();
+
+        if ((result == null) || (result.capacity() != size)) {
+            if (size > Integer.MAX_VALUE) {
+                return null;
+            }
+
+            try (FileChannel fileChannel = getChannel()) {
+                result = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0,
+                        fileChannel.size());
+            }
+
+            this.mapping = result;
+        }
+
+        return result.duplicate();
+    }
+
     @Override
     public Reader getReader() throws IOException {
         return new FileReader(this.file);
@@ -199,6 +260,19 @@ public class FileRepresentation extends Representation {
         return autoDeleting;
     }
 
+    /**
+     * Indicates if the file should be memory-mapped when written to a
+     * {@link WritableByteChannel}. The mapping is kept and reused by the next
+     * writes until the file changes of size or is released. This avoids system
+     * calls for small files that are frequently served, but mapping large files
+     * can exhaust the virtual address space. Default value is false.
+     * 
+     * @return True if the file should be memory-mapped when written.
+     */
+    public boolean isMapped() {
+        return mapped;
+    }
+
     /**
      * Releases the file handle.
      */
@@ -212,6 +286,7 @@ public class FileRepresentation extends Representation {
         }
 
         setFile(null);
+        this.mapping = null;
         super.release();
     }
 
@@ -227,6 +302,21 @@ public class FileRepresentation extends Representation {
         this.autoDeleting = autoDeleting;
     }
 
+    /**
+     * Indicates if the file should be memory-mapped when written.
+     * 
+     * @param mapped
+     *            True if the file should be memory-mapped when written.
+     * @see #isMapped()
+     */
+    public void setMapped(boolean mapped) {
+        this.mapped = mapped;
+
+        if (!mapped) {
+            this.mapping = null;
+        }
+    }
+
     /**
      * Sets the file handle.
      * 
@@ -235,11 +325,35 @@ public class FileRepresentation extends Representation {
      */
     public void setFile(File file) {
         this.file = file;
+        this.mapping = null;
     }
 
     @Override
     public void write(OutputStream outputStream) throws IOException {
-        IoUtils.copy(getStream(), outputStream);
+        if (outputStream instanceof FileOutputStream) {
+            write(((FileOutputStream) outputStream).getChannel());
+        } else {
+            IoUtils.copy(getStream(), outputStream);
+        }
+    }
+
+    /**
+     * Writes the file to a writable byte channel. The content is either
+     * memory-mapped or transferred with
+     * {@link FileChannel#transferTo(long, long, WritableByteChannel)}.
+     */
+    @Override
+    public void write(WritableByteChannel writableChannel) throws IOException {
+        ByteBuffer buffer = isMapped() ? getMapping() : null;
+
+        if (buffer != null) {
+            IoUtils.copy(buffer, writableChannel);
+        } else {
+            try (FileChannel fileChannel = getChannel()) {
+                IoUtils.copy(fileChannel, 0, fileChannel.size(),
+                        writableChannel);
+            }
+        }
     }
 
     @Override
@@ -28,6 +28,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.Date;
 
 import org.restlet.engine.io.IoUtils;
@@ -550,4 +552,25 @@ public abstract class Representation extends RepresentationInfo {
      */
     public abstract void write(OutputStream outputStream) throws IOException;
 
+    /**
+     * Writes the representation to a writable byte channel. By default, it
+     * adapts the channel to an output stream and calls
+     * {@link #write(OutputStream)}. Subclasses able to move their content more
+     * efficiently, for example without copying it in the Java heap, should
+     * override this method.<br>
+     * <br>
+     * Note that the class implementing this method shouldn't close the given
+     * {@link WritableByteChannel} after writing to it as this will be handled
+     * by the Restlet connectors automatically.
+     * 
+     * @param writableChannel
+     *            The writable byte channel.
+     * @throws IOException
+     */
+    public void write(WritableByteChannel writableChannel) throws IOException {
+        OutputStream outputStream = Channels.newOutputStream(writableChannel);
+        write(outputStream);
+        outputStream.flush();
+    }
+
 }
@@ -27,11 +27,16 @@ package org.restlet.resource;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.restlet.Client;
 import org.restlet.Context;
 import org.restlet.Restlet;
 import org.restlet.Uniform;
+import org.restlet.engine.connector.ClientHelper;
 import org.restlet.message.ChallengeResponse;
 import org.restlet.message.ChallengeScheme;
 import org.restlet.message.ClientInfo;
@@ -65,6 +70,11 @@ import org.restlet.util.Series;
  * once. Some others, such as {@link StringRepresentation} stored the entity in
  * memory which can be read several times but has the drawback to consume
  * memory.<br>
+ * The "xxxAsync" methods, such as {@link #getAsync(Class)}, return a
+ * {@link CompletableFuture} completed once the response is received. When the
+ * connector supports it, no thread waits for the response in the meantime. The
+ * callback set with {@link #setOnResponse(Uniform)}, if any, is invoked with
+ * the final response before the future is completed.<br>
  * Concurrency note: instances of the class are not designed to be shared among
  * several threads. If thread-safety is necessary, consider using the
  * lower-level {@link Client} class instead.
@@ -523,6 +533,53 @@ public class ClientResource extends Resource {
         return new Request(getRequest());
     }
 
+    /**
+     * Creates a request by cloning the prototype request, setting the method
+     * and an object entity. Automatically serializes the object using the
+     * {@link org.restlet.service.ConverterService}.
+     * 
+     * @param method
+     *            The request method to use.
+     * @param entity
+     *            The object entity to send.
+     * @param resultClass
+     *            The class of the response entity.
+     * @return The new request.
+     * @throws ResourceException
+     */
+    protected Request createRequest(Method method, Object entity,
+            Class<?> resultClass) throws ResourceException {
+        org.restlet.service.ConverterService cs = getConverterService();
+        ClientInfo clientInfo = getClientInfo();
+
+        if (clientInfo.getAcceptedMediaTypes().isEmpty()) {
+            cs.updatePreferences(clientInfo.getAcceptedMediaTypes(),
+                    resultClass);
+        }
+
+        // Prepare the request by cloning the prototype request
+        Request request = createRequest();
+        request.setMethod(method);
+        request.setClientInfo(clientInfo);
+
+        if (entity != null) {
+            List<? extends Variant> entityVariants;
+            try {
+                entityVariants = cs.getVariants(entity.getClass(), null);
+                request.setEntity(toRepresentation(
+                        entity,
+                        getConnegService().getPreferredVariant(entityVariants,
+                                request, getMetadataService())));
+            } catch (IOException e) {
+                throw new ResourceException(e);
+            }
+        } else {
+            request.setEntity(null);
+        }
+
+        return request;
+    }
+
     /**
      * Creates a new response for the given request.
      * 
@@ -580,6 +637,34 @@ public class ClientResource extends Resource {
         return handle(Method.DELETE, mediaType);
     }
 
+    /**
+     * Asynchronously deletes the target resource and all its representations.
+     * If a success status is not received, then the future completes
+     * exceptionally with a resource exception.
+     * 
+     * @return The future optional response entity.
+     * @see #delete()
+     */
+    public CompletableFuture<Representation> deleteAsync() {
+        return handleAsync(Method.DELETE, (Representation) null);
+    }
+
+    /**
+     * Asynchronously deletes the target resource and all its representations.
+     * If a success status is not received, then the future completes
+     * exceptionally with a resource exception.
+     * 
+     * @param <T>
+     *            The expected type for the response entity.
+     * @param resultClass
+     *            The expected class for the response entity object.
+     * @return The future response entity object.
+     * @see #delete(Class)
+     */
+    public <T> CompletableFuture<T> deleteAsync(Class<T> resultClass) {
+        return handleAsync(Method.DELETE, null, resultClass);
+    }
+
     /**
      * By default, it throws a new resource exception.
      * 
@@ -610,6 +695,19 @@ public class ClientResource extends Resource {
         }
     }
 
+    /**
+     * Returns a future already completed with the given failure.
+     * 
+     * @param failure
+     *            The failure.
+     * @return The failed future.
+     */
+    private <T> CompletableFuture<T> failedFuture(Throwable failure) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        result.completeExceptionally(failure);
+        return result;
+    }
+
     /**
      * Attempts to {@link #release()} the resource.
      */
@@ -680,6 +778,35 @@ public class ClientResource extends Resource {
         return handle(Method.GET, mediaType);
     }
 
+    /**
+     * Asynchronously represents the resource using content negotiation to
+     * select the best variant based on the client preferences. If a success
+     * status is not received, then the future completes exceptionally with a
+     * resource exception.
+     * 
+     * @return The future best representation.
+     * @see #get()
+     */
+    public CompletableFuture<Representation> getAsync() {
+        return handleAsync(Method.GET, (Representation) null);
+    }
+
+    /**
+     * Asynchronously represents the resource in the given object class. If a
+     * success status is not received, then the future completes exceptionally
+     * with a resource exception.
+     * 
+     * @param <T>
+     *            The expected type for the response entity.
+     * @param resultClass
+     *            The expected class for the response entity object.
+     * @return The future response entity object.
+     * @see #get(Class)
+     */
+    public <T> CompletableFuture<T> getAsync(Class<T> resultClass) {
+        return handleAsync(Method.GET, null, resultClass);
+    }
+
     /**
      * Returns the attribute value by looking up the given name in the response
      * attributes maps. The toString() method is then invoked on the attribute
@@ -975,36 +1102,9 @@ public class ClientResource extends Resource {
      */
     protected <T> T handle(Method method, Object entity, Class<T> resultClass)
             throws ResourceException {
-        org.restlet.service.ConverterService cs = getConverterService();
-        ClientInfo clientInfo = getClientInfo();
-
-        if (clientInfo.getAcceptedMediaTypes().isEmpty()) {
-            cs.updatePreferences(clientInfo.getAcceptedMediaTypes(),
-                    resultClass);
-        }
-
-        // Prepare the request by cloning the prototype request
-        Request request = createRequest();
-        request.setMethod(method);
-        request.setClientInfo(clientInfo);
-
-        if (entity != null) {
-            List<? extends Variant> entityVariants;
-            try {
-                entityVariants = cs.getVariants(entity.getClass(), null);
-                request.setEntity(toRepresentation(
-                        entity,
-                        getConnegService().getPreferredVariant(entityVariants,
-                                request, getMetadataService())));
-            } catch (IOException e) {
-                throw new ResourceException(e);
-            }
-        } else {
-            request.setEntity(null);
-        }
-
         // Actually handle the call
-        Response response = handleOutbound(request);
+        Response response = handleOutbound(createRequest(method, entity,
+                resultClass));
         Representation responseEntity = handleInbound(response);
         return toObject(responseEntity, resultClass);
     }
@@ -1091,38 +1191,10 @@ public class ClientResource extends Resource {
             // Actually handle the call
             next.handle(request, response);
 
-            if (isRetryOnError()
-                    && response.getStatus().isRecoverableError()
-                    && request.getMethod().isIdempotent()
-                    && (retryAttempt < getRetryAttempts())
-                    && ((request.getEntity() == null) || request.getEntity()
-                            .isAvailable())) {
+            if (isRetryNeeded(request, response, retryAttempt)) {
                 retry(request, response, references, retryAttempt, next);
-            } else if (isFollowingRedirects()
-                    && response.getStatus().isRedirection()
-                    && (response.getLocationRef() != null)) {
-                boolean doRedirection = false;
-
-                if (request.getMethod().isSafe()) {
-                    doRedirection = true;
-                } else {
-                    if (Status.REDIRECTION_SEE_OTHER.equals(response
-                            .getStatus())) {
-                        // The user agent is redirected using the GET method
-                        request.setMethod(Method.GET);
-                        request.setEntity(null);
-                        doRedirection = true;
-                    } else if (Status.REDIRECTION_USE_PROXY.equals(response
-                            .getStatus())) {
-                        doRedirection = true;
-                    }
-                }
-
-                if (doRedirection) {
-                    redirect(request, response, references, retryAttempt, next);
-                } else {
-                    getLogger().debug("Unable to redirect the client call after a response" + response);
-                }
+            } else if (isRedirectionNeeded(request, response)) {
+                redirect(request, response, references, retryAttempt, next);
             }
 
             // Check if response entity buffering must be done
@@ -1134,6 +1206,181 @@ public class ClientResource extends Resource {
         }
     }
 
+    /**
+     * Asynchronously handles the call by cloning the prototype request, setting
+     * the method and entity.
+     * 
+     * @param method
+     *            The request method to use.
+     * @param entity
+     *            The request entity to set.
+     * @return The future optional response entity.
+     */
+    protected CompletableFuture<Representation> handleAsync(Method method,
+            Representation entity) {
+        // Prepare the request by cloning the prototype request
+        Request request = createRequest();
+        request.setMethod(method);
+        request.setEntity(entity);
+        request.setClientInfo(getClientInfo());
+
+        return handleAsync(request).thenApply(this::handleInboundAsync);
+    }
+
+    /**
+     * Asynchronously handles an object entity. Automatically serializes the
+     * object using the {@link org.restlet.service.ConverterService}.
+     * 
+     * @param method
+     *            The request method to use.
+     * @param entity
+     *            The object entity to send.
+     * @param resultClass
+     *            The class of the response entity.
+     * @return The future response object entity.
+     */
+    protected <T> CompletableFuture<T> handleAsync(Method method,
+            Object entity, Class<T> resultClass) {
+        Request request;
+
+        try {
+            request = createRequest(method, entity, resultClass);
+        } catch (ResourceException re) {
+            return failedFuture(re);
+        }
+
+        return handleAsync(request).thenApply(
+                response -> toObject(handleInboundAsync(response), resultClass));
+    }
+
+    /**
+     * Asynchronously handles the outbound call by invoking the next handler.
+     * The returned future is completed once the final response is received,
+     * after the retries and redirections.
+     * 
+     * @param request
+     *            The request to handle.
+     * @return The future response.
+     * @see #getNext()
+     */
+    public CompletableFuture<Response> handleAsync(Request request) {
+        CompletableFuture<Response> result = new CompletableFuture<>();
+        Uniform next = getNext();
+
+        if (next != null) {
+            handleAsync(request, createResponse(request), null, 0, next,
+                    result);
+        } else {
+            getLogger().warn(
+                            "Unable to process the call for a client resource. No next Restlet has been provided.");
+            result.completeExceptionally(new ResourceException(new Status(
+                    Status.CONNECTOR_ERROR_INTERNAL,
+                    "No next Restlet has been provided"), this));
+        }
+
+        return result;
+    }
+
+    /**
+     * Asynchronously handles the call and follows redirection for safe
+     * methods. The response callback of the request is temporarily replaced by
+     * one completing the given future, which invokes the original callback, if
+     * any, with the final response. If the next handler returns without having
+     * invoked the callback and without having handed it over to an
+     * asynchronous connector, for example when the call is dispatched to an
+     * internal resource, the future is completed in the current thread.
+     * 
+     * @param request
+     *            The request to send.
+     * @param response
+     *            The response to update.
+     * @param references
+     *            The references that caused a redirection to prevent infinite
+     *            loops.
+     * @param retryAttempt
+     *            The number of remaining attempts.
+     * @param next
+     *            The next handler handling the call.
+     * @param result
+     *            The future response to complete.
+     */
+    protected void handleAsync(Request request, Response response,
+            List<Reference> references, int retryAttempt, Uniform next,
+            CompletableFuture<Response> result) {
+        // Check if request entity buffering must be done
+        if (isRequestEntityBuffering()) {
+            request.bufferEntity();
+        }
+
+        Uniform userCallback = request.getOnResponse();
+        AtomicBoolean invoked = new AtomicBoolean();
+        Uniform callback = (callRequest, callResponse) -> {
+            if (!invoked.compareAndSet(false, true)) {
+                return;
+            }
+
+            // Restore the original callback before retrying or completing
+            request.setOnResponse(userCallback);
+            response.getAttributes().remove(
+                    ClientHelper.ATTRIBUTE_PENDING_CALLBACK);
+
+            try {
+                List<Reference> redirections = null;
+
+                if (isRetryNeeded(request, response, retryAttempt)) {
+                    retryAsync(request, response, references, retryAttempt,
+                            next, result);
+                } else if (isRedirectionNeeded(request, response)
+                        && ((redirections = prepareRedirection(request,
+                                response, references)) != null)) {
+                    handleAsync(request, response, redirections, 0, next,
+                            result);
+                } else {
+                    // Check if response entity buffering must be done
+                    if (isResponseEntityBuffering()) {
+                        response.bufferEntity();
+                    }
+
+                    setResponse(response);
+
+                    if (userCallback != null) {
+                        try {
+                            userCallback.handle(request, response);
+                        } catch (Throwable t) {
+                            getLogger().warn(
+                                    "Unexpected error or exception inside the user call back",
+                                    t);
+                        }
+                    }
+
+                    result.complete(response);
+                }
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        };
+
+        request.setOnResponse(callback);
+
+        try {
+            // Actually handle the call
+            next.handle(request, response);
+        } catch (Throwable t) {
+            if (invoked.compareAndSet(false, true)) {
+                request.setOnResponse(userCallback);
+                result.completeExceptionally(t);
+            }
+
+            return;
+        }
+
+        if (response.getAttributes().get(
+                ClientHelper.ATTRIBUTE_PENDING_CALLBACK) != callback) {
+            // The callback wasn't taken over by an asynchronous connector
+            callback.handle(request, response);
+        }
+    }
+
     /**
      * Handles the inbound call. Note that only synchronous calls are processed.
      * 
@@ -1157,6 +1404,23 @@ public class ClientResource extends Resource {
         return null;
     }
 
+    /**
+     * Handles the inbound call of an asynchronous request, once its response
+     * has been received.
+     * 
+     * @param response
+     *            The response received.
+     * @return The response's entity, if any.
+     */
+    protected Representation handleInboundAsync(Response response) {
+        if (response.getStatus().isError()) {
+            doError(response.getStatus());
+            return null;
+        }
+
+        return response.getEntity();
+    }
+
     /**
      * Handles the outbound call by invoking the next handler.
      * 
@@ -1246,6 +1510,45 @@ public class ClientResource extends Resource {
         return followingRedirects;
     }
 
+    /**
+     * Indicates if the redirection of a response should be followed. When the
+     * method is unsafe, only 303 (See other) and 305 (Use proxy) redirections
+     * are followed, the former being done with the GET method and without
+     * entity.
+     * 
+     * @param request
+     *            The request sent.
+     * @param response
+     *            The response received.
+     * @return True if the redirection should be followed.
+     */
+    protected boolean isRedirectionNeeded(Request request, Response response) {
+        boolean result = false;
+
+        if (isFollowingRedirects() && response.getStatus().isRedirection()
+                && (response.getLocationRef() != null)) {
+            if (request.getMethod().isSafe()) {
+                result = true;
+            } else {
+                if (Status.REDIRECTION_SEE_OTHER.equals(response.getStatus())) {
+                    // The user agent is redirected using the GET method
+                    request.setMethod(Method.GET);
+                    request.setEntity(null);
+                    result = true;
+                } else if (Status.REDIRECTION_USE_PROXY.equals(response
+                        .getStatus())) {
+                    result = true;
+                }
+            }
+
+            if (!result) {
+                getLogger().debug("Unable to redirect the client call after a response" + response);
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Indicates if transient or unknown size response entities should be
      * buffered after being received. This is useful to increase the chance of
@@ -1272,6 +1575,30 @@ public class ClientResource extends Resource {
         return responseEntityBuffering;
     }
 
+    /**
+     * Indicates if a failed call should be retried. This is the case for
+     * recoverable errors of idempotent requests, as long as the number of
+     * retry attempts isn't reached and the request entity is still
+     * available.
+     * 
+     * @param request
+     *            The request sent.
+     * @param response
+     *            The response received.
+     * @param retryAttempt
+     *            The number of attempts already made.
+     * @return True if the call should be retried.
+     */
+    protected boolean isRetryNeeded(Request request, Response response,
+            int retryAttempt) {
+        return isRetryOnError()
+                && response.getStatus().isRecoverableError()
+                && request.getMethod().isIdempotent()
+                && (retryAttempt < getRetryAttempts())
+                && ((request.getEntity() == null) || request.getEntity()
+                        .isAvailable());
+    }
+
     /**
      * Indicates if idempotent requests should be retried on error. Default
      * value is true.
@@ -1482,6 +1809,81 @@ public class ClientResource extends Resource {
         return handle(Method.POST, entity);
     }
 
+    /**
+     * Asynchronously posts an object entity. Automatically serializes the
+     * object using the {@link org.restlet.service.ConverterService}.
+     * 
+     * @param entity
+     *            The object entity to post.
+     * @return The future optional result entity.
+     * @see #post(Object)
+     */
+    public CompletableFuture<Representation> postAsync(Object entity) {
+        try {
+            return handleAsync(Method.POST, toRepresentation(entity));
+        } catch (IOException e) {
+            return failedFuture(new ResourceException(e));
+        }
+    }
+
+    /**
+     * Asynchronously posts an object entity. Automatically serializes the
+     * object using the {@link org.restlet.service.ConverterService}.
+     * 
+     * @param entity
+     *            The object entity to post.
+     * @param resultClass
+     *            The class of the response entity.
+     * @return The future response object entity.
+     * @see #post(Object, Class)
+     */
+    public <T> CompletableFuture<T> postAsync(Object entity,
+            Class<T> resultClass) {
+        return handleAsync(Method.POST, entity, resultClass);
+    }
+
+    /**
+     * Prepares the request to follow the redirection of a response by updating
+     * its target resource reference.
+     * 
+     * @param request
+     *            The request to redirect.
+     * @param response
+     *            The redirection response.
+     * @param references
+     *            The references that caused a redirection to prevent infinite
+     *            loops.
+     * @return The updated references that caused a redirection or null if the
+     *         redirection can't be followed.
+     */
+    protected List<Reference> prepareRedirection(Request request,
+            Response response, List<Reference> references) {
+        List<Reference> result = null;
+        Reference newTargetRef = response.getLocationRef();
+
+        if ((references != null) && references.contains(newTargetRef)) {
+            getLogger().warn("Infinite redirection loop detected with URI: " + newTargetRef);
+        } else if (request.getEntity() != null && !request.isEntityAvailable()) {
+            getLogger().warn("Unable to follow the redirection because the request entity isn't available anymore.");
+        } else {
+            result = (references == null) ? new ArrayList<Reference>()
+                    : references;
+
+            if (result.size() >= getMaxRedirects()) {
+                getLogger().warn(
+                                "Unable to follow the redirection because the request the maximum number of redirections for a single call has been reached.");
+                result = null;
+            } else {
+                // Add to the list of redirection reference
+                // to prevent infinite loops
+                result.add(request.getResourceRef());
+                request.setResourceRef(newTargetRef);
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Puts an object entity. Automatically serializes the object using the
      * {@link org.restlet.service.ConverterService}.
@@ -1561,6 +1963,39 @@ public class ClientResource extends Resource {
         return handle(Method.PUT, entity);
     }
 
+    /**
+     * Asynchronously puts an object entity. Automatically serializes the
+     * object using the {@link org.restlet.service.ConverterService}.
+     * 
+     * @param entity
+     *            The object entity to put.
+     * @return The future optional result entity.
+     * @see #put(Object)
+     */
+    public CompletableFuture<Representation> putAsync(Object entity) {
+        try {
+            return handleAsync(Method.PUT, toRepresentation(entity));
+        } catch (IOException e) {
+            return failedFuture(new ResourceException(e));
+        }
+    }
+
+    /**
+     * Asynchronously puts an object entity. Automatically serializes the
+     * object using the {@link org.restlet.service.ConverterService}.
+     * 
+     * @param entity
+     *            The object entity to put.
+     * @param resultClass
+     *            The class of the response entity.
+     * @return The future response object entity.
+     * @see #put(Object, Class)
+     */
+    public <T> CompletableFuture<T> putAsync(Object entity,
+            Class<T> resultClass) {
+        return handleAsync(Method.PUT, entity, resultClass);
+    }
+
     /**
      * Effectively redirects a client call. By default, it checks for infinite
      * loops and unavailable entities, the references list is updated and the
@@ -1580,27 +2015,50 @@ public class ClientResource extends Resource {
      */
     protected void redirect(Request request, Response response,
             List<Reference> references, int retryAttempt, Uniform next) {
-        Reference newTargetRef = response.getLocationRef();
+        List<Reference> redirections = prepareRedirection(request, response,
+                references);
 
-        if ((references != null) && references.contains(newTargetRef)) {
-            getLogger().warn("Infinite redirection loop detected with URI: " + newTargetRef);
-        } else if (request.getEntity() != null && !request.isEntityAvailable()) {
-            getLogger().warn("Unable to follow the redirection because the request entity isn't available anymore.");
-        } else {
-            if (references == null) {
-                references = new ArrayList<Reference>();
-            }
+        if (redirections != null) {
+            handle(request, response, redirections, 0, next);
+        }
+    }
 
-            if (references.size() >= getMaxRedirects()) {
-                getLogger().warn(
-                                "Unable to follow the redirection because the request the maximum number of redirections for a single call has been reached.");
-            } else {
-                // Add to the list of redirection reference
-                // to prevent infinite loops
-                references.add(request.getResourceRef());
-                request.setResourceRef(newTargetRef);
-                handle(request, response, references, 0, next);
-            }
+    /**
+     * Effectively retries a failed asynchronous client call. The retry attempt
+     * is scheduled after the retry delay with the executor service of the
+     * context if available, otherwise it is immediately sent.
+     * 
+     * @param request
+     *            The request to send.
+     * @param response
+     *            The response to update.
+     * @param references
+     *            The references that caused a redirection to prevent infinite
+     *            loops.
+     * @param retryAttempt
+     *            The number of remaining attempts.
+     * @param next
+     *            The next handler handling the call.
+     * @param result
+     *            The future response to complete.
+     */
+    protected void retryAsync(Request request, Response response,
+            List<Reference> references, int retryAttempt, Uniform next,
+            CompletableFuture<Response> result) {
+        getLogger().info("A recoverable error was detected ("
+                        + response.getStatus().getCode()
+                        + "), attempting again in " + getRetryDelay() + " ms.");
+        ScheduledExecutorService executorService = (getContext() == null) ? null
+                : getContext().getExecutorService();
+
+        if ((getRetryDelay() > 0) && (executorService != null)) {
+            executorService.schedule(
+                    () -> handleAsync(request, response, references,
+                            retryAttempt + 1, next, result), getRetryDelay(),
+                    TimeUnit.MILLISECONDS);
+        } else {
+            handleAsync(request, response, references, retryAttempt + 1,
+                    next, result);
         }
     }
 
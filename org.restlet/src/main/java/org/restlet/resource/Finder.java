@@ -24,10 +24,16 @@
 
 package org.restlet.resource;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.restlet.Context;
 import org.restlet.Restlet;
+import org.restlet.engine.util.Pool;
 import org.restlet.message.Request;
 import org.restlet.message.Response;
 import org.restlet.message.Status;
@@ -47,6 +53,14 @@ import org.slf4j.Logger;
  * Once the call is handled, the {@link ServerResource#release()} method is
  * invoked to permit clean-up actions.<br>
  * <br>
+ * The default constructors of the target classes are resolved once into
+ * method handles. In addition, the released resources can be recycled through
+ * a bounded pool per target class by setting the "maxPooledResources"
+ * property. This is only safe for resources whose state is entirely reset by
+ * the {@link ServerResource#doRecycle()} method. Resources whose response
+ * isn't automatically committed aren't recycled as they may still be in use
+ * after the call returns.<br>
+ * <br>
  * Concurrency note: instances of this class or its subclasses can be invoked by
  * several threads at the same time and therefore must be thread-safe. You
  * should be especially careful when storing state in member variables.
@@ -54,6 +68,22 @@ import org.slf4j.Logger;
  * @author Jerome Louvel
  */
 public class Finder extends Restlet {
+
+    /** The default constructors of the target classes or null if unavailable. */
+    private static final ClassValue<MethodHandle> CONSTRUCTORS = new ClassValue<MethodHandle>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> type) {
+            try {
+                return MethodHandles.lookup()
+                        .findConstructor(type, MethodType.methodType(void.class))
+                        .asType(MethodType.methodType(ServerResource.class));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // Fall back to the reflective instantiation
+                return null;
+            }
+        }
+    };
+
     /**
      * Creates a new finder instance based on the "targetClass" property.
      * 
@@ -90,6 +120,12 @@ public class Finder extends Restlet {
         return result;
     }
 
+    /** The maximum number of recycled resources pooled per target class. */
+    private volatile int maxPooledResources;
+
+    /** The pools of recycled resources, per target class. */
+    private final ConcurrentMap<Class<? extends ServerResource>, Pool<ServerResource>> pools;
+
     /** Target {@link ServerResource} subclass. */
     private volatile Class<? extends ServerResource> targetClass;
 
@@ -107,8 +143,7 @@ public class Finder extends Restlet {
      *            The context.
      */
     public Finder(Context context) {
-        super(context);
-        this.targetClass = null;
+        this(context, null);
     }
 
     /**
@@ -121,14 +156,16 @@ public class Finder extends Restlet {
      */
     public Finder(Context context, Class<? extends ServerResource> targetClass) {
         super(context);
+        this.maxPooledResources = 0;
+        this.pools = new ConcurrentHashMap<>();
         this.targetClass = targetClass;
     }
 
     /**
-     * Creates a new instance of a given {@link ServerResource} subclass. Note
-     * that {@link Error} and {@link RuntimeException} thrown by
-     * {@link ServerResource} constructors are re-thrown by this method. Other
-     * exception are caught and logged.
+     * Creates a new instance of a given {@link ServerResource} subclass, or
+     * reuses a recycled one if resources are pooled. Note that {@link Error}
+     * thrown by {@link ServerResource} constructors are re-thrown by this
+     * method. Other exception are caught and logged.
      * 
      * @param request
      *            The request to handle.
@@ -140,12 +177,7 @@ public class Finder extends Restlet {
         ServerResource result = null;
 
         if (targetClass != null) {
-            try {
-                // Invoke the default constructor
-                result = targetClass.newInstance();
-            } catch (Exception e) {
-                getLogger().warn("Exception while instantiating the target server resource.", e);
-            }
+            result = (getMaxPooledResources() > 0) ? getPool(targetClass).checkout() : newInstance(targetClass);
         }
 
         return result;
@@ -187,6 +219,44 @@ public class Finder extends Restlet {
         return create(request, response);
     }
 
+    /**
+     * Returns the maximum number of recycled resources pooled per target
+     * class. Pooling is disabled when set to 0, which is the default.
+     * 
+     * @return The maximum number of recycled resources pooled per target class.
+     */
+    public int getMaxPooledResources() {
+        return maxPooledResources;
+    }
+
+    /**
+     * Returns the pool of recycled resources for the given target class.
+     * 
+     * @param targetClass
+     *            The target class.
+     * @return The pool of recycled resources.
+     */
+    private Pool<ServerResource> getPool(final Class<? extends ServerResource> targetClass) {
+        Pool<ServerResource> result = this.pools.get(targetClass);
+
+        if (result == null) {
+            result = new Pool<ServerResource>(0, getMaxPooledResources()) {
+                @Override
+                protected ServerResource createObject() {
+                    return newInstance(targetClass);
+                }
+            };
+
+            Pool<ServerResource> prev = this.pools.putIfAbsent(targetClass, result);
+
+            if (prev != null) {
+                result = prev;
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Returns the target resource class which must be either a subclass of
      * {@link ServerResource}.
@@ -233,10 +303,71 @@ public class Finder extends Restlet {
                 }
 
                 targetResource.release();
+
+                if ((getMaxPooledResources() > 0) && ((response == null) || response.isAutoCommitting())) {
+                    recycle(targetResource);
+                }
             }
         }
     }
 
+    /**
+     * Instantiates a given {@link ServerResource} subclass using its default
+     * constructor. {@link Error} thrown by the constructor are re-thrown, other
+     * exceptions are caught and logged.
+     * 
+     * @param targetClass
+     *            The target class.
+     * @return The created resource or null.
+     */
+    private ServerResource newInstance(Class<? extends ServerResource> targetClass) {
+        ServerResource result = null;
+
+        try {
+            MethodHandle constructor = CONSTRUCTORS.get(targetClass);
+
+            // Invoke the default constructor
+            result = (constructor != null) ? (ServerResource) constructor.invokeExact()
+                    : targetClass.newInstance();
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable t) {
+            getLogger().warn("Exception while instantiating the target server resource.", t);
+        }
+
+        return result;
+    }
+
+    /**
+     * Recycles a released resource into the pool of its class, if this finder
+     * pools the resources of this class.
+     * 
+     * @param resource
+     *            The released resource.
+     */
+    protected void recycle(ServerResource resource) {
+        Pool<ServerResource> pool = this.pools.get(resource.getClass());
+
+        if (pool != null) {
+            resource.recycle();
+            pool.checkin(resource);
+        }
+    }
+
+    /**
+     * Sets the maximum number of recycled resources pooled per target class.
+     * Pooling is disabled when set to 0, which is the default. The current
+     * pools are discarded.
+     * 
+     * @param maxPooledResources
+     *            The maximum number of recycled resources pooled per target
+     *            class.
+     */
+    public void setMaxPooledResources(int maxPooledResources) {
+        this.maxPooledResources = maxPooledResources;
+        this.pools.clear();
+    }
+
     /**
      * Sets the target resource class which must be a subclass of
      * {@link ServerResource}.
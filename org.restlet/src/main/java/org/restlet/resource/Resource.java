@@ -781,6 +781,17 @@ public abstract class Resource {
         return getRequest() == null ? null : getRequest().isLoggable();
     }
 
+    /**
+     * Clears the parent application, context, request and response so that
+     * the resource can be recycled to handle another call.
+     */
+    void recycle() {
+        this.application = null;
+        this.context = null;
+        this.request = null;
+        this.response = null;
+    }
+
     /**
      * Releases the resource by calling {@link #doRelease()}.
      */
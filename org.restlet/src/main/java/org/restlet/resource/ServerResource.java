@@ -29,30 +29,33 @@ import org.restlet.Restlet;
 import org.restlet.Uniform;
 import org.restlet.engine.resource.AnnotationInfo;
 import org.restlet.engine.resource.AnnotationUtils;
+import org.restlet.engine.resource.DispatchTable;
 import org.restlet.engine.resource.MethodAnnotationInfo;
 import org.restlet.engine.resource.VariantInfo;
 import org.restlet.message.ChallengeRequest;
 import org.restlet.message.CookieSetting;
 import org.restlet.message.Dimension;
 import org.restlet.message.Method;
+import org.restlet.message.Preference;
 import org.restlet.message.Request;
 import org.restlet.message.Response;
 import org.restlet.message.ServerInfo;
 import org.restlet.message.Status;
 import org.restlet.representation.MediaType;
+import org.restlet.representation.Metadata;
 import org.restlet.representation.Representation;
 import org.restlet.representation.RepresentationInfo;
 import org.restlet.representation.Variant;
 import org.restlet.routing.Filter;
 import org.restlet.routing.Router;
 import org.restlet.security.Role;
+import org.restlet.service.ConnegService;
 import org.restlet.service.ConverterService;
 import org.restlet.util.Form;
 import org.restlet.util.Reference;
 import org.restlet.util.Series;
 
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -77,13 +80,24 @@ import java.util.concurrent.CopyOnWriteArraySet;
  * this life cycle, if any exception is caught, then the
  * {@link #doCatch(Throwable)} method is invoked.<br>
  * <br>
+ * If the {@link Finder} is configured to pool its resources, an instance is
+ * recycled once released instead of being garbage collected. In this case, the
+ * {@link #doRecycle()} method is invoked to let the subclass reset its own
+ * state, then the properties of this class are reset to their default values.
+ * As a result, the properties that differ from their default should be set in
+ * the {@link #doInit()} method rather than in the constructor.<br>
+ * <br>
  * Note that when an annotated method manually sets the response entity, if this
  * entity is available then it will be preserved and the result of the annotated
  * method ignored.<br>
  * <br>
  * In addition, there are two ways to declare representation variants, one is
  * based on the {@link #getVariants()} method and another one on the annotated
- * methods. Both approaches can't however be used at the same time for now.<br>
+ * methods. Both approaches can't however be used at the same time for now.
+ * The annotation-based variants are computed once per resource class and the
+ * preferred variant is cached for recent sets of client preferences, as long as
+ * the default {@link ConnegService} is used and the list returned by
+ * {@link #getVariants()} isn't modified.<br>
  * <br>
  * Concurrency note: contrary to the {@link org.restlet.Uniform} class and its
  * main {@link Restlet} subclass where a single instance can handle several
@@ -112,6 +126,15 @@ public abstract class ServerResource extends Resource {
     /** Indicates if content negotiation of response entities is enabled. */
     private volatile boolean negotiated;
 
+    /**
+     * The negotiation key of the annotation-based variants, or null if the
+     * negotiation result can't be cached.
+     */
+    private volatile String negotiationKey;
+
+    /** The annotation-based variants as initially computed. */
+    private volatile Variant[] negotiationVariants;
+
     /** Modifiable list of variants. */
     private volatile List<Variant> variants;
 
@@ -124,6 +147,8 @@ public abstract class ServerResource extends Resource {
         this.conditional = true;
         this.existing = true;
         this.negotiated = true;
+        this.negotiationKey = null;
+        this.negotiationVariants = null;
         this.variants = null;
     }
 
@@ -485,57 +510,40 @@ public abstract class ServerResource extends Resource {
         Object resultObject = null;
 
         try {
-            if (parameterTypes.length > 0) {
-                List<Object> parameters = new ArrayList<Object>();
-                Object parameter = null;
+            Object[] parameters = new Object[parameterTypes.length];
 
-                for (Class<?> parameterType : parameterTypes) {
-                    if (Variant.class.equals(parameterType)) {
-                        parameters.add(variant);
-                    } else {
-                        if (getRequestEntity() != null
-                                && getRequestEntity().isAvailable()
-                                && getRequestEntity().getSize() != 0) {
-                            // Assume there is content to be read.
-                            // NB: it does not handle the case where the size is
-                            // unknown, but there is no content.
-                            parameter = toObject(getRequestEntity(),
-                                    parameterType);
-
-                            if (parameter == null) {
-                                throw new ResourceException(
-                                        Status.CLIENT_ERROR_UNSUPPORTED_MEDIA_TYPE);
-                            }
-                        } else {
-                            parameter = null;
-                        }
+            for (int i = 0; i < parameterTypes.length; i++) {
+                Class<?> parameterType = parameterTypes[i];
+                Object parameter = null;
 
-                        parameters.add(parameter);
+                if (Variant.class.equals(parameterType)) {
+                    parameter = variant;
+                } else if (getRequestEntity() != null
+                        && getRequestEntity().isAvailable()
+                        && getRequestEntity().getSize() != 0) {
+                    // Assume there is content to be read.
+                    // NB: it does not handle the case where the size is
+                    // unknown, but there is no content.
+                    parameter = toObject(getRequestEntity(), parameterType);
+
+                    if (parameter == null) {
+                        throw new ResourceException(
+                                Status.CLIENT_ERROR_UNSUPPORTED_MEDIA_TYPE);
                     }
                 }
 
-                resultObject = annotationInfo.getJavaMethod().invoke(this,
-                        parameters.toArray());
-            } else {
-                resultObject = annotationInfo.getJavaMethod().invoke(this);
+                parameters[i] = parameter;
             }
 
+            resultObject = annotationInfo.invoke(this, parameters);
+
             if (resultObject != null) {
                 result = toRepresentation(resultObject, variant);
             }
-
-        } catch (IllegalArgumentException e) {
-            throw new ResourceException(e);
-        } catch (IllegalAccessException e) {
-            throw new ResourceException(e);
-        } catch (InvocationTargetException e) {
-            if (e.getTargetException() instanceof ResourceException) {
-                throw (ResourceException) e.getTargetException();
-            }
-
-            throw new ResourceException(e.getTargetException());
-        } catch (IOException e) {
-            throw new ResourceException(e);
+        } catch (ResourceException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new ResourceException(t);
         }
 
         return result;
@@ -682,6 +690,16 @@ public abstract class ServerResource extends Resource {
         return result;
     }
 
+    /**
+     * Clean-up method that can be overridden in order to reset the state of
+     * the resource before it is recycled to handle another call. Only invoked
+     * if the {@link Finder} pools its resources. By default it does nothing.
+     * 
+     * @see Finder#setMaxPooledResources(int)
+     */
+    protected void doRecycle() throws ResourceException {
+    }
+
     /**
      * Returns a full representation. This method is only invoked if content
      * negotiation has been disabled as indicated by the {@link #isNegotiated()}
@@ -773,9 +791,9 @@ public abstract class ServerResource extends Resource {
     private MethodAnnotationInfo getAnnotation(Method method, Form query,
             Representation entity) throws IOException {
         if (isAnnotated()) {
-            return AnnotationUtils.getInstance().getMethodAnnotation(
-                    getAnnotations(), method, query, entity,
-                    getMetadataService(), getConverterService());
+            return AnnotationUtils.getInstance().getDispatchTable(getClass())
+                    .getMethodAnnotation(method, query, entity,
+                            getMetadataService(), getConverterService());
         }
 
         return null;
@@ -873,6 +891,79 @@ public abstract class ServerResource extends Resource {
         return getResponse().getOnSent();
     }
 
+    /**
+     * Returns the key identifying the annotation-based variants computed for
+     * the current request, based on the method, the query and the request
+     * entity variant.
+     * 
+     * @param method
+     *            The method matched by the variants.
+     * @return The key identifying the annotation-based variants.
+     */
+    private String getNegotiationKey(Method method) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(method.getName()).append('\n');
+
+        if (getReference() != null) {
+            sb.append(getReference().getQuery());
+        }
+
+        sb.append('\n');
+        Representation entity = getRequestEntity();
+
+        if ((entity != null) && entity.isAvailable()) {
+            appendMetadata(sb, entity.getMediaType(), 1F);
+            appendMetadata(sb, entity.getCharacterSet(), 1F);
+
+            for (Metadata metadata : entity.getEncodings()) {
+                appendMetadata(sb, metadata, 1F);
+            }
+
+            for (Metadata metadata : entity.getLanguages()) {
+                appendMetadata(sb, metadata, 1F);
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns the key identifying a negotiation among the given variants with
+     * the current client preferences, normalized from the "Accept",
+     * "Accept-Language", "Accept-Charset" and "Accept-Encoding" headers.
+     * Returns null if the variants aren't the unmodified annotation-based
+     * variants or if a custom {@link ConnegService} is used.
+     * 
+     * @param variants
+     *            The variants to negotiate.
+     * @return The negotiation key or null.
+     */
+    private String getNegotiationKey(List<Variant> variants) {
+        String key = this.negotiationKey;
+        Variant[] initial = this.negotiationVariants;
+
+        if ((key == null) || (initial == null) || (variants != this.variants)
+                || (variants.size() != initial.length)
+                || (getConnegService().getClass() != ConnegService.class)
+                || (getClientInfo() == null)) {
+            return null;
+        }
+
+        for (int i = 0; i < initial.length; i++) {
+            if (variants.get(i) != initial[i]) {
+                return null;
+            }
+        }
+
+        StringBuilder sb = new StringBuilder(key);
+        sb.append('\n').append(getConnegService().isStrict());
+        appendPreferences(sb, getClientInfo().getAcceptedMediaTypes());
+        appendPreferences(sb, getClientInfo().getAcceptedLanguages());
+        appendPreferences(sb, getClientInfo().getAcceptedCharacterSets());
+        appendPreferences(sb, getClientInfo().getAcceptedEncodings());
+        return sb.toString();
+    }
+
     /**
      * Returns the preferred variant among a list of available variants. The
      * selection is based on the client preferences using the
@@ -888,8 +979,33 @@ public abstract class ServerResource extends Resource {
 
         // If variants were found, select the best matching one
         if ((variants != null) && (!variants.isEmpty())) {
-            result = getConnegService().getPreferredVariant(variants,
-                    getRequest(), getMetadataService());
+            String key = getNegotiationKey(variants);
+            DispatchTable table = (key == null) ? null : AnnotationUtils
+                    .getInstance().getDispatchTable(getClass());
+            Integer index = (table == null) ? null : table
+                    .getPreferredVariant(key);
+
+            if (index != null) {
+                result = (index < 0) ? null : variants.get(index);
+            } else {
+                result = getConnegService().getPreferredVariant(variants,
+                        getRequest(), getMetadataService());
+
+                if (table != null) {
+                    int resultIndex = -1;
+
+                    for (int i = 0; (resultIndex < 0)
+                            && (i < variants.size()); i++) {
+                        if (variants.get(i) == result) {
+                            resultIndex = i;
+                        }
+                    }
+
+                    if ((result == null) || (resultIndex >= 0)) {
+                        table.putPreferredVariant(key, resultIndex);
+                    }
+                }
+            }
         }
 
         return result;
@@ -935,71 +1051,28 @@ public abstract class ServerResource extends Resource {
         List<Variant> result = this.variants;
 
         if (result == null) {
-            result = new ArrayList<Variant>();
-
             // Add annotation-based variants in priority
             if (isAnnotated() && hasAnnotations()) {
-                List<Variant> annoVariants = null;
                 method = (Method.HEAD.equals(method)) ? Method.GET : method;
-
-                for (AnnotationInfo annotationInfo : getAnnotations()) {
-                    try {
-                        if (annotationInfo instanceof MethodAnnotationInfo) {
-                            MethodAnnotationInfo methodAnnotationInfo = (MethodAnnotationInfo) annotationInfo;
-
-                            if (methodAnnotationInfo
-                                    .isCompatible(method, getQuery(),
-                                            getRequestEntity(),
-                                            getMetadataService(),
-                                            getConverterService())) {
-                                annoVariants = methodAnnotationInfo
-                                        .getResponseVariants(
-                                                getMetadataService(),
-                                                getConverterService());
-
-                                if (annoVariants != null) {
-                                    // Compute an affinity score between this
-                                    // annotation and the input entity.
-                                    float score = 0.5f;
-                                    if ((getRequest().getEntity() != null)
-                                            && getRequest().getEntity()
-                                                    .isAvailable()) {
-                                        MediaType emt = getRequest()
-                                                .getEntity().getMediaType();
-                                        List<MediaType> amts = getMetadataService()
-                                                .getAllMediaTypes(
-                                                        methodAnnotationInfo
-                                                                .getInput());
-                                        if (amts != null) {
-                                            for (MediaType amt : amts) {
-                                                if (amt.equals(emt)) {
-                                                    score = 1.0f;
-                                                } else if (amt.includes(emt)) {
-                                                    score = Math.max(0.8f,
-                                                            score);
-                                                } else if (amt
-                                                        .isCompatible(emt)) {
-                                                    score = Math.max(0.6f,
-                                                            score);
-                                                }
-                                            }
-                                        }
-                                    }
-
-                                    for (Variant v : annoVariants) {
-                                        VariantInfo vi = new VariantInfo(v,
-                                                methodAnnotationInfo);
-                                        vi.setInputScore(score);
-                                        result.add(vi);
-                                    }
-                                }
-                            }
-                        }
-                    } catch (IOException e) {
-                        getLogger().debug("Unable to get variants from annotation", e);
-
-                    }
+                DispatchTable table = AnnotationUtils.getInstance()
+                        .getDispatchTable(getClass());
+                result = table.getVariants(method, getQuery(),
+                        getRequestEntity(), getMetadataService(),
+                        getConverterService());
+
+                if (table.isCacheable(getMetadataService(),
+                        getConverterService())) {
+                    this.negotiationKey = getNegotiationKey(method);
+                    this.negotiationVariants = result
+                            .toArray(new Variant[result.size()]);
+                } else {
+                    this.negotiationKey = null;
+                    this.negotiationVariants = null;
                 }
+            } else {
+                result = new ArrayList<Variant>();
+                this.negotiationKey = null;
+                this.negotiationVariants = null;
             }
 
             this.variants = result;
@@ -1438,6 +1511,72 @@ public abstract class ServerResource extends Resource {
         return result;
     }
 
+    /**
+     * Appends a metadata and its quality to a negotiation key.
+     * 
+     * @param sb
+     *            The key to append to.
+     * @param metadata
+     *            The metadata or null.
+     * @param quality
+     *            The quality.
+     */
+    private static void appendMetadata(StringBuilder sb, Metadata metadata,
+            float quality) {
+        if (metadata != null) {
+            sb.append(metadata.getName());
+
+            if (metadata instanceof MediaType) {
+                sb.append(((MediaType) metadata).getParameters());
+            }
+        }
+
+        sb.append(";q=").append(quality).append(',');
+    }
+
+    /**
+     * Appends a list of preferences to a negotiation key.
+     * 
+     * @param sb
+     *            The key to append to.
+     * @param preferences
+     *            The preferences.
+     */
+    private static <T extends Metadata> void appendPreferences(
+            StringBuilder sb, List<Preference<T>> preferences) {
+        sb.append('\n');
+
+        for (Preference<T> preference : preferences) {
+            appendMetadata(sb, preference.getMetadata(),
+                    preference.getQuality());
+        }
+    }
+
+    /**
+     * Recycles the resource so that it can handle another call. Invokes
+     * {@link #doRecycle()}, then clears the context, request and response and
+     * resets the properties of this class to their default values.
+     */
+    @Override
+    void recycle() {
+        try {
+            doRecycle();
+        } catch (Throwable t) {
+            doCatch(t);
+        }
+
+        super.recycle();
+        this.annotated = true;
+        this.conditional = true;
+        this.description = null;
+        this.existing = true;
+        this.name = null;
+        this.negotiated = true;
+        this.negotiationKey = null;
+        this.negotiationVariants = null;
+        this.variants = null;
+    }
+
     /**
      * Permanently redirects the client to a target URI. The client is expected
      * to reuse the same method for the new request.
@@ -36,6 +36,7 @@ import org.restlet.message.Status;
 import org.restlet.representation.Representation;
 import org.restlet.util.Reference;
 import org.restlet.util.Resolver;
+import org.slf4j.Logger;
 
 /**
  * Rewrites URIs then redirects the call or the client to a new destination.
@@ -67,6 +68,37 @@ import org.restlet.util.Resolver;
  * @author Jerome Louvel
  */
 public class Redirector extends Restlet {
+
+    /**
+     * Internal class holding a compiled target URI template, so that the
+     * template and its relativity are always read together.
+     */
+    private static final class CompiledTemplate {
+        /** The target URI pattern the template was compiled from. */
+        protected final String pattern;
+
+        /** Indicates if the target URI pattern is relative. */
+        protected final boolean relative;
+
+        /** The compiled target URI template. */
+        protected final Template template;
+
+        /**
+         * Constructor.
+         * 
+         * @param pattern
+         *            The target URI pattern.
+         * @param logger
+         *            The logger of the template.
+         */
+        public CompiledTemplate(String pattern, Logger logger) {
+            this.pattern = pattern;
+            this.relative = new Reference(pattern).isRelative();
+            this.template = new Template(pattern);
+            this.template.setLogger(logger);
+        }
+    }
+
     /**
      * In this mode, the client is simply redirected to the URI generated from
      * the target URI pattern using the {@link Status#REDIRECTION_FOUND} status.
@@ -161,6 +193,9 @@ public class Redirector extends Restlet {
     /** The target URI pattern. */
     protected volatile String targetTemplate;
 
+    /** The compiled target URI template. */
+    private volatile CompiledTemplate template;
+
     /**
      * Constructor for the client dispatcher mode.
      * 
@@ -188,6 +223,7 @@ public class Redirector extends Restlet {
     public Redirector(Context context, String targetPattern, int mode) {
         super(context);
         this.targetTemplate = targetPattern;
+        this.template = null;
         this.mode = mode;
         this.headersCleaning = true;
     }
@@ -207,8 +243,7 @@ public class Redirector extends Restlet {
         Reference resourceRef = request.getResourceRef();
         Reference baseRef = resourceRef.getBaseRef();
 
-        Template rt = new Template(this.targetTemplate);
-        rt.setLogger(getLogger());
+        Template rt = getTemplate().template;
         int matched = rt.parse(locationRef.toString(), request);
 
         if (matched > 0) {
@@ -243,12 +278,12 @@ public class Redirector extends Restlet {
      * @return The target reference to redirect to.
      */
     protected Reference getTargetRef(Request request, Response response) {
-        // Create the template
-        Template rt = new Template(this.targetTemplate);
-        rt.setLogger(getLogger());
+        // Get the compiled template
+        CompiledTemplate ct = getTemplate();
+        Template rt = ct.template;
 
         // Return the formatted target URI
-        if (new Reference(this.targetTemplate).isRelative()) {
+        if (ct.relative) {
             // Be sure to keep the resource's base reference.
             return new Reference(request.getResourceRef(), rt.format(request,
                     response));
@@ -257,6 +292,25 @@ public class Redirector extends Restlet {
         return new Reference(rt.format(request, response));
     }
 
+    /**
+     * Returns the compiled target URI template. It is created once and
+     * recreated when the target URI pattern changes, so that the pattern isn't
+     * parsed again on each request.
+     * 
+     * @return The compiled target URI template.
+     */
+    private CompiledTemplate getTemplate() {
+        CompiledTemplate result = this.template;
+        String targetTemplate = this.targetTemplate;
+
+        if ((result == null) || (result.pattern != targetTemplate)) {
+            result = new CompiledTemplate(targetTemplate, getLogger());
+            this.template = result;
+        }
+
+        return result;
+    }
+
     /**
      * Returns the target URI pattern.
      * 
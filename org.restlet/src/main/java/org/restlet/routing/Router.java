@@ -57,6 +57,10 @@ import org.restlet.util.RouteList;
  * patterns. Finally, you can modify the list of routes while handling incoming
  * calls as the delegation code is ensured to be thread-safe.<br>
  * <br>
+ * For routers with many URI patterns, the best and first match modes can rely
+ * on a compiled index of the literal pattern prefixes instead of scoring every
+ * route. See {@link RouteList#setIndexed(boolean)} for details.<br>
+ * <br>
  * Concurrency note: instances of this class or its subclasses can be invoked by
  * several threads at the same time and therefore must be thread-safe. You
  * should be especially careful when storing state in member variables.
@@ -49,6 +49,10 @@ import org.slf4j.Logger;
  * Note that the variable descriptors can be changed before the first parsing or
  * matching call. After that point, changes won't be taken into account.<br>
  * <br>
+ * The pattern string is scanned once into a list of literal and variable
+ * segments, shared by the formatting methods and by the Regex pattern used for
+ * parsing and matching.<br>
+ * <br>
  * Format and parsing methods are specially available to deal with requests and
  * response. See {@link #format(Request, Response)} and
  * {@link #parse(String, Request)}.
@@ -66,6 +70,32 @@ public class Template {
     /** Mode where characters at the beginning must match the template. */
     public static final int MODE_STARTS_WITH = 1;
 
+    /**
+     * Compiled segment of the pattern, either a literal text or a variable
+     * reference.
+     */
+    private static final class Segment {
+
+        /** The literal text or null for a variable segment. */
+        private final String literal;
+
+        /** The variable name or null for a literal segment. */
+        private final String variable;
+
+        /**
+         * Constructor.
+         * 
+         * @param literal
+         *            The literal text or null for a variable segment.
+         * @param variable
+         *            The variable name or null for a literal segment.
+         */
+        private Segment(String literal, String variable) {
+            this.literal = literal;
+            this.variable = variable;
+        }
+    }
+
     /**
      * Appends to a pattern a repeating group of a given content based on a
      * class of characters.
@@ -252,6 +282,12 @@ public class Template {
     /** The sequence of Regex variable names as found in the pattern string. */
     private volatile List<String> regexVariables;
 
+    /** The compiled segments of the pattern, in order. */
+    private volatile Segment[] segments;
+
+    /** The estimated length of a formatted string. */
+    private volatile int formattedLength;
+
     /** The map of variables associated to the route's template. */
     private final Map<String, Variable> variables;
 
@@ -332,9 +368,21 @@ public class Template {
         this.matchingMode = matchingMode;
         this.variables = new ConcurrentHashMap<String, Variable>();
         this.regexPattern = null;
+        this.segments = null;
+        this.formattedLength = 0;
         this.encodingVariables = encodingVariables;
     }
 
+    /**
+     * Compiles the regular expression used to match and parse formatted
+     * strings, unless already done. Otherwise it is compiled on first use.
+     * The variables must be set before, as they aren't taken into account
+     * once the expression is compiled.
+     */
+    public void compile() {
+        getRegexPattern();
+    }
+
     /**
      * Creates a formatted string based on the given map of values.
      * 
@@ -369,82 +417,74 @@ public class Template {
      * @return The formatted string.
      */
     public String format(Resolver<?> resolver) {
-        final StringBuilder result = new StringBuilder();
-        StringBuilder varBuffer = null;
-        char next;
-        boolean inVariable = false;
-        final int patternLength = getPattern().length();
-        for (int i = 0; i < patternLength; i++) {
-            next = getPattern().charAt(i);
-
-            if (inVariable) {
-                if (Reference.isUnreserved(next)) {
-                    // Append to the variable name
-                    varBuffer.append(next);
-                } else if (next == '}') {
-                    // End of variable detected
-                    if (varBuffer.length() == 0) {
-                        getLogger().warn(
-                                "Empty pattern variables are not allowed : "
-                                        + this.regexPattern);
-                    } else {
-                        final String varName = varBuffer.toString();
-                        Object varValue = resolver.resolve(varName);
+        Segment[] segments = getSegments();
+        StringBuilder result = new StringBuilder(this.formattedLength);
+        format(segments, resolver, result);
+        return result.toString();
+    }
 
-                        Variable var = getVariables().get(varName);
+    /**
+     * Appends a formatted string based on the given variable resolver to a
+     * buffer. This allows callers to reuse or pre-size the buffer.
+     * 
+     * @param resolver
+     *            The variable resolver to use.
+     * @param buffer
+     *            The buffer to append to.
+     */
+    public void format(Resolver<?> resolver, StringBuilder buffer) {
+        format(getSegments(), resolver, buffer);
+    }
 
-                        // Use the default values instead
-                        if (varValue == null) {
-                            if (var == null) {
-                                var = getDefaultVariable();
-                            }
+    /**
+     * Appends the formatted segments to a buffer.
+     * 
+     * @param segments
+     *            The compiled segments of the pattern.
+     * @param resolver
+     *            The variable resolver to use.
+     * @param result
+     *            The buffer to append to.
+     */
+    private void format(Segment[] segments, Resolver<?> resolver,
+            StringBuilder result) {
+        for (Segment segment : segments) {
+            if (segment.literal != null) {
+                result.append(segment.literal);
+            } else {
+                Object varValue = resolver.resolve(segment.variable);
+                Variable var = this.variables.get(segment.variable);
 
-                            if (var != null) {
-                                varValue = var.getDefaultValue();
-                            }
-                        }
+                // Use the default values instead
+                if (varValue == null) {
+                    if (var == null) {
+                        var = getDefaultVariable();
+                    }
 
-                        String varValueString = (varValue == null) ? null
-                                : varValue.toString();
+                    if (var != null) {
+                        varValue = var.getDefaultValue();
+                    }
+                }
 
-                        if (this.encodingVariables) {
-                            // In case the values must be encoded.
-                            if (var != null) {
-                                result.append(var.encode(varValueString));
-                            } else {
-                                result.append(Reference.encode(varValueString));
-                            }
-                        } else {
-                            if ((var != null) && var.isEncodingOnFormat()) {
-                                result.append(Reference.encode(varValueString));
-                            } else {
-                                result.append(varValueString);
-                            }
-                        }
+                String varValueString = (varValue == null) ? null : varValue
+                        .toString();
 
-                        // Reset the variable name buffer
-                        varBuffer = new StringBuilder();
+                if (this.encodingVariables) {
+                    // In case the values must be encoded.
+                    if (var != null) {
+                        result.append(var.encode(varValueString));
+                    } else {
+                        result.append(Reference.encode(varValueString));
                     }
-                    inVariable = false;
                 } else {
-                    getLogger().warn(
-                            "An invalid character was detected inside a pattern variable : "
-                                    + this.regexPattern);
-                }
-            } else {
-                if (next == '{') {
-                    inVariable = true;
-                    varBuffer = new StringBuilder();
-                } else if (next == '}') {
-                    getLogger().warn(
-                            "An invalid character was detected inside a pattern variable : "
-                                    + this.regexPattern);
-                } else {
-                    result.append(next);
+                    if ((var != null) && var.isEncodingOnFormat()) {
+                        result.append(Reference.encode(varValueString));
+                    } else {
+                        result.append(varValueString);
+                    }
                 }
             }
         }
-        return result.toString();
     }
 
     /**
@@ -494,11 +534,93 @@ public class Template {
                 if (this.regexPattern == null) {
                     getRegexVariables().clear();
                     final StringBuilder patternBuffer = new StringBuilder();
+
+                    for (Segment segment : getSegments()) {
+                        if (segment.literal != null) {
+                            for (int i = 0; i < segment.literal.length(); i++) {
+                                patternBuffer.append(quote(segment.literal
+                                        .charAt(i)));
+                            }
+                        } else {
+                            final int varIndex = getRegexVariables().indexOf(
+                                    segment.variable);
+
+                            if (varIndex != -1) {
+                                // The variable is used several times in the
+                                // pattern, ensure that this constraint is
+                                // enforced when parsing.
+                                patternBuffer.append("\\" + (varIndex + 1));
+                            } else {
+                                // New variable detected. Insert a capturing
+                                // group.
+                                getRegexVariables().add(segment.variable);
+                                Variable var = getVariables().get(
+                                        segment.variable);
+
+                                if (var == null) {
+                                    var = getDefaultVariable();
+                                }
+
+                                patternBuffer.append(getVariableRegex(var));
+                            }
+                        }
+                    }
+
+                    this.regexPattern = Pattern.compile(patternBuffer
+                            .toString());
+                }
+            }
+        }
+
+        return this.regexPattern;
+    }
+
+    /**
+     * Returns the sequence of Regex variable names as found in the pattern
+     * string.
+     * 
+     * @return The sequence of Regex variable names as found in the pattern
+     *         string.
+     */
+    private List<String> getRegexVariables() {
+        // Lazy initialization with double-check.
+        List<String> rv = this.regexVariables;
+        if (rv == null) {
+            synchronized (this) {
+                rv = this.regexVariables;
+                if (rv == null) {
+                    this.regexVariables = rv = new CopyOnWriteArrayList<String>();
+                }
+            }
+        }
+        return rv;
+    }
+
+    /**
+     * Returns the compiled segments of the pattern. The pattern string is only
+     * scanned once, until it is changed.
+     * 
+     * @return The compiled segments of the pattern.
+     */
+    private Segment[] getSegments() {
+        // Lazy initialization with double-check.
+        Segment[] result = this.segments;
+
+        if (result == null) {
+            synchronized (this) {
+                result = this.segments;
+
+                if (result == null) {
+                    final String pattern = getPattern();
+                    final List<Segment> list = new ArrayList<Segment>();
+                    final StringBuilder literalBuffer = new StringBuilder();
                     StringBuilder varBuffer = null;
+                    int length = 0;
                     char next;
                     boolean inVariable = false;
-                    for (int i = 0; i < getPattern().length(); i++) {
-                        next = getPattern().charAt(i);
+
+                    for (int i = 0; i < pattern.length(); i++) {
+                        next = pattern.charAt(i);
 
                         if (inVariable) {
                             if (Reference.isUnreserved(next)) {
@@ -509,40 +631,27 @@ public class Template {
                                 if (varBuffer.length() == 0) {
                                     getLogger().warn(
                                             "Empty pattern variables are not allowed : "
-                                                    + this.regexPattern);
+                                                    + pattern);
                                 } else {
-                                    final String varName = varBuffer.toString();
-                                    final int varIndex = getRegexVariables()
-                                            .indexOf(varName);
-
-                                    if (varIndex != -1) {
-                                        // The variable is used several times in
-                                        // the pattern, ensure that this
-                                        // constraint is enforced when parsing.
-                                        patternBuffer.append("\\"
-                                                + (varIndex + 1));
-                                    } else {
-                                        // New variable detected. Insert a
-                                        // capturing group.
-                                        getRegexVariables().add(varName);
-                                        Variable var = getVariables().get(
-                                                varName);
-                                        if (var == null) {
-                                            var = getDefaultVariable();
-                                        }
-                                        patternBuffer
-                                                .append(getVariableRegex(var));
+                                    if (literalBuffer.length() > 0) {
+                                        list.add(new Segment(literalBuffer
+                                                .toString(), null));
+                                        literalBuffer.setLength(0);
                                     }
 
+                                    list.add(new Segment(null, varBuffer
+                                            .toString()));
+
                                     // Reset the variable name buffer
                                     varBuffer = new StringBuilder();
+                                    length += 16;
                                 }
-                                inVariable = false;
 
+                                inVariable = false;
                             } else {
                                 getLogger().warn(
                                         "An invalid character was detected inside a pattern variable : "
-                                                + this.regexPattern);
+                                                + pattern);
                             }
                         } else {
                             if (next == '{') {
@@ -551,41 +660,26 @@ public class Template {
                             } else if (next == '}') {
                                 getLogger().warn(
                                         "An invalid character was detected inside a pattern variable : "
-                                                + this.regexPattern);
+                                                + pattern);
                             } else {
-                                patternBuffer.append(quote(next));
+                                literalBuffer.append(next);
+                                length++;
                             }
                         }
                     }
 
-                    this.regexPattern = Pattern.compile(patternBuffer
-                            .toString());
-                }
-            }
-        }
-
-        return this.regexPattern;
-    }
+                    if (literalBuffer.length() > 0) {
+                        list.add(new Segment(literalBuffer.toString(), null));
+                    }
 
-    /**
-     * Returns the sequence of Regex variable names as found in the pattern
-     * string.
-     * 
-     * @return The sequence of Regex variable names as found in the pattern
-     *         string.
-     */
-    private List<String> getRegexVariables() {
-        // Lazy initialization with double-check.
-        List<String> rv = this.regexVariables;
-        if (rv == null) {
-            synchronized (this) {
-                rv = this.regexVariables;
-                if (rv == null) {
-                    this.regexVariables = rv = new CopyOnWriteArrayList<String>();
+                    this.formattedLength = length;
+                    this.segments = result = list.toArray(new Segment[list
+                            .size()]);
                 }
             }
         }
-        return rv;
+
+        return result;
     }
 
     /**
@@ -595,46 +689,10 @@ public class Template {
      */
     public List<String> getVariableNames() {
         final List<String> result = new ArrayList<String>();
-        StringBuilder varBuffer = null;
-        char next;
-        boolean inVariable = false;
-        final String pattern = getPattern();
-
-        for (int i = 0; i < pattern.length(); i++) {
-            next = pattern.charAt(i);
-
-            if (inVariable) {
-                if (Reference.isUnreserved(next)) {
-                    // Append to the variable name
-                    varBuffer.append(next);
-                } else if (next == '}') {
-                    // End of variable detected
-                    if (varBuffer.length() == 0) {
-                        getLogger().warn(
-                                "Empty pattern variables are not allowed : "
-                                        + this.pattern);
-                    } else {
-                        result.add(varBuffer.toString());
-
-                        // Reset the variable name buffer
-                        varBuffer = new StringBuilder();
-                    }
 
-                    inVariable = false;
-                } else {
-                    getLogger().warn(
-                            "An invalid character was detected inside a pattern variable : "
-                                    + this.pattern);
-                }
-            } else {
-                if (next == '{') {
-                    inVariable = true;
-                    varBuffer = new StringBuilder();
-                } else if (next == '}') {
-                    getLogger().warn(
-                            "An invalid character was detected inside a pattern variable : "
-                                    + this.pattern);
-                }
+        for (Segment segment : getSegments()) {
+            if (segment.variable != null) {
+                result.add(segment.variable);
             }
         }
 
@@ -889,8 +947,9 @@ public class Template {
      * @param pattern
      *            The pattern to use for formatting or parsing.
      */
-    public void setPattern(String pattern) {
+    public synchronized void setPattern(String pattern) {
         this.pattern = pattern;
+        this.segments = null;
         this.regexPattern = null;
     }
 
@@ -29,6 +29,7 @@ import java.net.UnknownHostException;
 
 import org.restlet.Context;
 import org.restlet.Restlet;
+import org.restlet.engine.util.MatchPattern;
 import org.restlet.message.Request;
 import org.restlet.message.Response;
 import org.restlet.resource.Finder;
@@ -143,31 +144,31 @@ public class VirtualHost extends Router {
     }
 
     /** The hostRef host domain pattern to match. */
-    private volatile String hostDomain;
+    private volatile MatchPattern hostDomain;
 
     /** The hostRef host port pattern to match. */
-    private volatile String hostPort;
+    private volatile MatchPattern hostPort;
 
     /** The hostRef scheme pattern to match. */
-    private volatile String hostScheme;
+    private volatile MatchPattern hostScheme;
 
     /** The parent component's context. */
     private volatile Context parentContext;
 
     /** The resourceRef host domain pattern to match. */
-    private volatile String resourceDomain;
+    private volatile MatchPattern resourceDomain;
 
     /** The resourceRef host port pattern to match. */
-    private volatile String resourcePort;
+    private volatile MatchPattern resourcePort;
 
     /** The resourceRef scheme pattern to match. */
-    private volatile String resourceScheme;
+    private volatile MatchPattern resourceScheme;
 
     /** The listening server address pattern to match. */
-    private volatile String serverAddress;
+    private volatile MatchPattern serverAddress;
 
     /** The listening server port pattern to match. */
-    private volatile String serverPort;
+    private volatile MatchPattern serverPort;
 
     /**
      * Constructor. Note that usage of this constructor is not recommended as
@@ -226,16 +227,16 @@ public class VirtualHost extends Router {
 
         this.parentContext = parentContext;
 
-        this.hostDomain = hostDomain;
-        this.hostPort = hostPort;
-        this.hostScheme = hostScheme;
+        this.hostDomain = new MatchPattern(hostDomain);
+        this.hostPort = new MatchPattern(hostPort);
+        this.hostScheme = new MatchPattern(hostScheme);
 
-        this.resourceDomain = resourceDomain;
-        this.resourcePort = resourcePort;
-        this.resourceScheme = resourceScheme;
+        this.resourceDomain = new MatchPattern(resourceDomain);
+        this.resourcePort = new MatchPattern(resourcePort);
+        this.resourceScheme = new MatchPattern(resourceScheme);
 
-        this.serverAddress = serverAddress;
-        this.serverPort = serverPort;
+        this.serverAddress = new MatchPattern(serverAddress);
+        this.serverPort = new MatchPattern(serverPort);
     }
 
     /**
@@ -357,6 +358,16 @@ public class VirtualHost extends Router {
      * @return The hostRef host domain to match.
      */
     public String getHostDomain() {
+        return this.hostDomain.getRegex();
+    }
+
+    /**
+     * Returns the compiled hostRef host domain pattern, matched in a case
+     * insensitive manner.
+     * 
+     * @return The compiled hostRef host domain pattern.
+     */
+    public MatchPattern getHostDomainPattern() {
         return this.hostDomain;
     }
 
@@ -367,6 +378,16 @@ public class VirtualHost extends Router {
      * @return The hostRef host port to match.
      */
     public String getHostPort() {
+        return this.hostPort.getRegex();
+    }
+
+    /**
+     * Returns the compiled hostRef host port pattern, matched in a case
+     * insensitive manner.
+     * 
+     * @return The compiled hostRef host port pattern.
+     */
+    public MatchPattern getHostPortPattern() {
         return this.hostPort;
     }
 
@@ -377,6 +398,16 @@ public class VirtualHost extends Router {
      * @return The hostRef scheme to match.
      */
     public String getHostScheme() {
+        return this.hostScheme.getRegex();
+    }
+
+    /**
+     * Returns the compiled hostRef scheme pattern, matched in a case
+     * insensitive manner.
+     * 
+     * @return The compiled hostRef scheme pattern.
+     */
+    public MatchPattern getHostSchemePattern() {
         return this.hostScheme;
     }
 
@@ -387,6 +418,16 @@ public class VirtualHost extends Router {
      * @return The resourceRef host domain to match.
      */
     public String getResourceDomain() {
+        return this.resourceDomain.getRegex();
+    }
+
+    /**
+     * Returns the compiled resourceRef host domain pattern, matched in a case
+     * insensitive manner.
+     * 
+     * @return The compiled resourceRef host domain pattern.
+     */
+    public MatchPattern getResourceDomainPattern() {
         return this.resourceDomain;
     }
 
@@ -397,6 +438,16 @@ public class VirtualHost extends Router {
      * @return The resourceRef host port to match.
      */
     public String getResourcePort() {
+        return this.resourcePort.getRegex();
+    }
+
+    /**
+     * Returns the compiled resourceRef host port pattern, matched in a case
+     * insensitive manner.
+     * 
+     * @return The compiled resourceRef host port pattern.
+     */
+    public MatchPattern getResourcePortPattern() {
         return this.resourcePort;
     }
 
@@ -407,6 +458,16 @@ public class VirtualHost extends Router {
      * @return The resourceRef scheme to match.
      */
     public String getResourceScheme() {
+        return this.resourceScheme.getRegex();
+    }
+
+    /**
+     * Returns the compiled resourceRef scheme pattern, matched in a case
+     * insensitive manner.
+     * 
+     * @return The compiled resourceRef scheme pattern.
+     */
+    public MatchPattern getResourceSchemePattern() {
         return this.resourceScheme;
     }
 
@@ -417,6 +478,16 @@ public class VirtualHost extends Router {
      * @return The listening server address.
      */
     public String getServerAddress() {
+        return this.serverAddress.getRegex();
+    }
+
+    /**
+     * Returns the compiled listening server address pattern, matched in a case
+     * insensitive manner.
+     * 
+     * @return The compiled listening server address pattern.
+     */
+    public MatchPattern getServerAddressPattern() {
         return this.serverAddress;
     }
 
@@ -427,6 +498,16 @@ public class VirtualHost extends Router {
      * @return The listening server port.
      */
     public String getServerPort() {
+        return this.serverPort.getRegex();
+    }
+
+    /**
+     * Returns the compiled listening server port pattern, matched in a case
+     * insensitive manner.
+     * 
+     * @return The compiled listening server port pattern.
+     */
+    public MatchPattern getServerPortPattern() {
         return this.serverPort;
     }
 
@@ -445,7 +526,7 @@ public class VirtualHost extends Router {
      *            The hostRef host domain to match.
      */
     public void setHostDomain(String hostDomain) {
-        this.hostDomain = hostDomain;
+        this.hostDomain = new MatchPattern(hostDomain);
     }
 
     /**
@@ -456,7 +537,7 @@ public class VirtualHost extends Router {
      *            The hostRef host port to match.
      */
     public void setHostPort(String hostPort) {
-        this.hostPort = hostPort;
+        this.hostPort = new MatchPattern(hostPort);
     }
 
     /**
@@ -467,7 +548,7 @@ public class VirtualHost extends Router {
      *            The hostRef scheme to match.
      */
     public void setHostScheme(String hostScheme) {
-        this.hostScheme = hostScheme;
+        this.hostScheme = new MatchPattern(hostScheme);
     }
 
     /**
@@ -478,7 +559,7 @@ public class VirtualHost extends Router {
      *            The resourceRef host domain to match.
      */
     public void setResourceDomain(String resourceDomain) {
-        this.resourceDomain = resourceDomain;
+        this.resourceDomain = new MatchPattern(resourceDomain);
     }
 
     /**
@@ -489,7 +570,7 @@ public class VirtualHost extends Router {
      *            The resourceRef host port to match.
      */
     public void setResourcePort(String resourcePort) {
-        this.resourcePort = resourcePort;
+        this.resourcePort = new MatchPattern(resourcePort);
     }
 
     /**
@@ -500,7 +581,7 @@ public class VirtualHost extends Router {
      *            The resourceRef scheme to match.
      */
     public void setResourceScheme(String resourceScheme) {
-        this.resourceScheme = resourceScheme;
+        this.resourceScheme = new MatchPattern(resourceScheme);
     }
 
     /**
@@ -511,7 +592,7 @@ public class VirtualHost extends Router {
      *            The listening server address.
      */
     public void setServerAddress(String serverAddress) {
-        this.serverAddress = serverAddress;
+        this.serverAddress = new MatchPattern(serverAddress);
     }
 
     /**
@@ -522,7 +603,7 @@ public class VirtualHost extends Router {
      *            The listening server port.
      */
     public void setServerPort(String serverPort) {
-        this.serverPort = serverPort;
+        this.serverPort = new MatchPattern(serverPort);
     }
 
 }
@@ -0,0 +1,366 @@
+/**
+ * Copyright 2005-2016 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.restlet.Context;
+import org.restlet.engine.application.CacheEntry;
+import org.restlet.engine.application.CacheFilter;
+import org.restlet.message.ClientInfo;
+import org.restlet.message.Preference;
+import org.restlet.message.Request;
+import org.restlet.representation.MediaType;
+import org.restlet.representation.Metadata;
+import org.restlet.routing.Filter;
+import org.restlet.util.Reference;
+
+/**
+ * Application service caching the responses to GET requests on the server
+ * side. Cached responses are answered before reaching the inbound root of the
+ * application, which saves the invocation of the target resource for:
+ * <ul>
+ * <li>conditional requests, based on the tag and modification date of the
+ * cached representation, answered with a "304 Not modified" or a
+ * "412 Precondition failed" status,</li>
+ * <li>plain requests when the content of the cached representation has been
+ * stored, answered with a "200 OK" status.</li>
+ * </ul>
+ * Only the successful responses with an explicit freshness, given by a
+ * "max-age" or "s-maxage" cache directive or by an expiration date, are
+ * cached, unless a default maximum age is set. Responses with "no-store",
+ * "no-cache" or "private" directives, setting cookies, varying on other
+ * dimensions than the client preferences or answering requests with
+ * credentials (except when marked as "public") are never cached. The cached
+ * entries of a resource are invalidated when an unsafe method is successfully
+ * handled by the application for this resource.<br>
+ * <br>
+ * As the cache is shared by all the clients of the application, responses
+ * depending on anything else than the resource reference and the client
+ * preferences, such as the client address, must be marked as private. This
+ * service is disabled by default.
+ * 
+ * @author Jerome Louvel
+ */
+public class CacheService extends Service {
+
+    /** The default maximum number of cached entries. */
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    /**
+     * Appends the client preferences for a kind of metadata to a cache key.
+     * 
+     * @param sb
+     *            The cache key builder.
+     * @param preferences
+     *            The client preferences.
+     */
+    private static void appendPreferences(StringBuilder sb,
+            List<? extends Preference<? extends Metadata>> preferences) {
+        sb.append('\n');
+
+        for (Preference<? extends Metadata> preference : preferences) {
+            Metadata metadata = preference.getMetadata();
+
+            if (metadata != null) {
+                sb.append(metadata.getName());
+
+                if (metadata instanceof MediaType) {
+                    sb.append(((MediaType) metadata).getParameters());
+                }
+            }
+
+            sb.append(";q=").append(preference.getQuality()).append(',');
+        }
+    }
+
+    /** The cached entries, in access order. */
+    private final Map<String, CacheEntry> cache;
+
+    /** The total size of the cached contents. */
+    private long cacheSize;
+
+    /** The freshness lifetime in seconds of responses without explicit one. */
+    private volatile int defaultMaxAge;
+
+    /** The maximum size of the entities whose content is cached. */
+    private volatile long maxCachedEntrySize;
+
+    /** The maximum total size of the cached contents. */
+    private volatile long maxCacheSize;
+
+    /** The maximum number of cached entries. */
+    private volatile int maxEntries;
+
+    /**
+     * Constructor.
+     */
+    public CacheService() {
+        this(true);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param enabled
+     *            True if the service has been enabled.
+     */
+    public CacheService(boolean enabled) {
+        super(enabled);
+        this.cache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+        this.cacheSize = 0;
+        this.defaultMaxAge = 0;
+        this.maxCachedEntrySize = 64 * 1024;
+        this.maxCacheSize = 16 * 1024 * 1024;
+        this.maxEntries = DEFAULT_MAX_ENTRIES;
+    }
+
+    /**
+     * Stores an entry in the cache, evicting the least recently used entries
+     * if needed.
+     * 
+     * @param key
+     *            The cache key returned by {@link #getCacheKey(Request)}.
+     * @param entry
+     *            The entry to cache.
+     */
+    public void cache(String key, CacheEntry entry) {
+        synchronized (this.cache) {
+            CacheEntry previous = this.cache.put(key, entry);
+
+            if (previous != null) {
+                this.cacheSize -= previous.getContentSize();
+            }
+
+            this.cacheSize += entry.getContentSize();
+
+            for (Iterator<CacheEntry> iter = this.cache.values().iterator(); ((this.cacheSize > getMaxCacheSize()) || (this.cache
+                    .size() > getMaxEntries())) && iter.hasNext();) {
+                this.cacheSize -= iter.next().getContentSize();
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all the cached entries.
+     */
+    public void clearCache() {
+        synchronized (this.cache) {
+            this.cache.clear();
+            this.cacheSize = 0;
+        }
+    }
+
+    @Override
+    public Filter createInboundFilter(Context context) {
+        return new CacheFilter(context, this);
+    }
+
+    /**
+     * Returns the fresh cached entry for a given key. An expired entry is
+     * removed from the cache.
+     * 
+     * @param key
+     *            The cache key returned by {@link #getCacheKey(Request)}.
+     * @return The fresh cached entry or null.
+     */
+    public CacheEntry getCached(String key) {
+        synchronized (this.cache) {
+            CacheEntry result = this.cache.get(key);
+
+            if ((result != null)
+                    && result.isExpired(System.currentTimeMillis())) {
+                this.cache.remove(key);
+                this.cacheSize -= result.getContentSize();
+                result = null;
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * Returns the key identifying the cached response to a request. It is
+     * composed of the resource reference, without fragment, followed by the
+     * client preferences normalized from the "Accept", "Accept-Language",
+     * "Accept-Charset" and "Accept-Encoding" headers.
+     * 
+     * @param request
+     *            The request to identify.
+     * @return The cache key or null if the request has no resource reference.
+     */
+    public String getCacheKey(Request request) {
+        String result = null;
+        Reference resourceRef = request.getResourceRef();
+
+        if (resourceRef != null) {
+            ClientInfo clientInfo = request.getClientInfo();
+            StringBuilder sb = new StringBuilder(getResourceKey(resourceRef));
+            appendPreferences(sb, clientInfo.getAcceptedMediaTypes());
+            appendPreferences(sb, clientInfo.getAcceptedLanguages());
+            appendPreferences(sb, clientInfo.getAcceptedCharacterSets());
+            appendPreferences(sb, clientInfo.getAcceptedEncodings());
+            result = sb.toString();
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the total size of the cached contents.
+     * 
+     * @return The total size of the cached contents.
+     */
+    public long getCacheSize() {
+        synchronized (this.cache) {
+            return this.cacheSize;
+        }
+    }
+
+    /**
+     * Returns the freshness lifetime in seconds given to the responses without
+     * explicit one. Defaults to 0, meaning that those responses aren't cached.
+     * 
+     * @return The freshness lifetime in seconds given to the responses without
+     *         explicit one.
+     */
+    public int getDefaultMaxAge() {
+        return this.defaultMaxAge;
+    }
+
+    /**
+     * Returns the maximum size of the entities whose content is cached. Larger
+     * entities or entities of unknown size only have their metadata cached,
+     * allowing conditional requests to be answered. Defaults to 64 KB.
+     * 
+     * @return The maximum size of the entities whose content is cached.
+     */
+    public long getMaxCachedEntrySize() {
+        return this.maxCachedEntrySize;
+    }
+
+    /**
+     * Returns the maximum total size of the cached contents. Defaults to 16
+     * MB.
+     * 
+     * @return The maximum total size of the cached contents.
+     */
+    public long getMaxCacheSize() {
+        return this.maxCacheSize;
+    }
+
+    /**
+     * Returns the maximum number of cached entries. Defaults to
+     * {@link #DEFAULT_MAX_ENTRIES}.
+     * 
+     * @return The maximum number of cached entries.
+     */
+    public int getMaxEntries() {
+        return this.maxEntries;
+    }
+
+    /**
+     * Returns the part of the cache keys identifying a resource.
+     * 
+     * @param resourceRef
+     *            The resource reference.
+     * @return The part of the cache keys identifying a resource.
+     */
+    private String getResourceKey(Reference resourceRef) {
+        return resourceRef.getTargetRef().toString(true, false);
+    }
+
+    /**
+     * Removes all the cached entries of a resource, whatever the client
+     * preferences.
+     * 
+     * @param resourceRef
+     *            The resource reference.
+     */
+    public void invalidate(Reference resourceRef) {
+        if (resourceRef != null) {
+            String prefix = getResourceKey(resourceRef) + '\n';
+
+            synchronized (this.cache) {
+                for (Iterator<Map.Entry<String, CacheEntry>> iter = this.cache
+                        .entrySet().iterator(); iter.hasNext();) {
+                    Map.Entry<String, CacheEntry> entry = iter.next();
+
+                    if (entry.getKey().startsWith(prefix)) {
+                        this.cacheSize -= entry.getValue().getContentSize();
+                        iter.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the freshness lifetime in seconds given to the responses without
+     * explicit one. A value of 0 prevents those responses from being cached.
+     * 
+     * @param defaultMaxAge
+     *            The freshness lifetime in seconds given to the responses
+     *            without explicit one.
+     */
+    public void setDefaultMaxAge(int defaultMaxAge) {
+        this.defaultMaxAge = defaultMaxAge;
+    }
+
+    /**
+     * Sets the maximum size of the entities whose content is cached.
+     * 
+     * @param maxCachedEntrySize
+     *            The maximum size of the entities whose content is cached.
+     */
+    public void setMaxCachedEntrySize(long maxCachedEntrySize) {
+        this.maxCachedEntrySize = maxCachedEntrySize;
+    }
+
+    /**
+     * Sets the maximum total size of the cached contents.
+     * 
+     * @param maxCacheSize
+     *            The maximum total size of the cached contents.
+     */
+    public void setMaxCacheSize(long maxCacheSize) {
+        this.maxCacheSize = maxCacheSize;
+    }
+
+    /**
+     * Sets the maximum number of cached entries.
+     * 
+     * @param maxEntries
+     *            The maximum number of cached entries.
+     */
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+}
@@ -26,7 +26,12 @@ package org.restlet.service;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.restlet.Context;
 import org.restlet.engine.Engine;
@@ -47,17 +52,143 @@ import org.restlet.resource.Resource;
  * Root object classes used for conversion shouldn't be generic classes
  * otherwise important contextual type information will be missing at runtime
  * due to Java type erasure mechanism. If needed, create a fully resolved
- * subclasses and/or a container classes.
+ * subclasses and/or a container classes.<br>
+ * <br>
+ * The converter helper selected for a given source class, target class or
+ * variant and resource class is cached, so that the registered helpers don't
+ * need to be scored again for similar conversions. The cache is automatically
+ * cleared when the list of registered converters changes. Custom helpers whose
+ * score depends on more than those classes and the variant metadata should
+ * disable it with {@link #setMaxCachedHelpers(int)}.
  * 
  * @author Jerome Louvel
  */
 public class ConverterService extends Service {
 
+    /**
+     * Key of the converter helper cache, based on the classes and metadata
+     * taken into account by the helper scores.
+     */
+    private static final class HelperKey {
+        /** The character set of the representation side. */
+        private final Object characterSet;
+
+        /** The encodings of the representation side. */
+        private final List<?> encodings;
+
+        /** The hash code, computed once. */
+        private final int hashCode;
+
+        /** The languages of the representation side. */
+        private final List<?> languages;
+
+        /** The media type of the representation side. */
+        private final Object mediaType;
+
+        /** The class of the parent resource. */
+        private final Class<?> resourceClass;
+
+        /** The class of the source object or representation. */
+        private final Class<?> sourceClass;
+
+        /** The target class of a conversion to object. */
+        private final Class<?> targetClass;
+
+        /** True for a conversion to object, false to representation. */
+        private final boolean toObject;
+
+        /**
+         * Constructor.
+         * 
+         * @param sourceClass
+         *            The class of the source object or representation.
+         * @param targetClass
+         *            The target class of a conversion to object.
+         * @param variant
+         *            The variant of the representation side.
+         * @param resource
+         *            The parent resource.
+         * @param toObject
+         *            True for a conversion to object, false to
+         *            representation.
+         */
+        private HelperKey(Class<?> sourceClass, Class<?> targetClass,
+                Variant variant, Resource resource, boolean toObject) {
+            this.sourceClass = sourceClass;
+            this.targetClass = targetClass;
+            this.toObject = toObject;
+            this.resourceClass = (resource == null) ? null : resource
+                    .getClass();
+
+            if (variant == null) {
+                this.mediaType = null;
+                this.characterSet = null;
+                this.encodings = null;
+                this.languages = null;
+            } else {
+                this.mediaType = variant.getMediaType();
+                this.characterSet = variant.getCharacterSet();
+                this.encodings = variant.getEncodings().isEmpty() ? Collections
+                        .emptyList() : new ArrayList<Object>(
+                        variant.getEncodings());
+                this.languages = variant.getLanguages().isEmpty() ? Collections
+                        .emptyList() : new ArrayList<Object>(
+                        variant.getLanguages());
+            }
+
+            this.hashCode = Objects.hash(this.toObject, this.sourceClass,
+                    this.targetClass, this.resourceClass, this.mediaType, this.characterSet,
+                    this.encodings, this.languages);
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (this == object) {
+                return true;
+            }
+
+            if (!(object instanceof HelperKey)) {
+                return false;
+            }
+
+            HelperKey other = (HelperKey) object;
+            return (this.hashCode == other.hashCode)
+                    && (this.toObject == other.toObject)
+                    && (this.sourceClass == other.sourceClass)
+                    && (this.targetClass == other.targetClass)
+                    && (this.resourceClass == other.resourceClass)
+                    && Objects.equals(this.mediaType, other.mediaType)
+                    && Objects.equals(this.characterSet, other.characterSet)
+                    && Objects.equals(this.encodings, other.encodings)
+                    && Objects.equals(this.languages, other.languages);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+    }
+
+    /** The cache of selected converter helpers. */
+    private final Map<HelperKey, ConverterHelper> helperCache;
+
+    /** The number of helper lookups served by the cache. */
+    private final AtomicLong helperCacheHits;
+
+    /** The number of helper lookups that required scoring the helpers. */
+    private final AtomicLong helperCacheMisses;
+
+    /** The registered converters the cache was populated with. */
+    private volatile ConverterHelper[] helperCacheRegistrations;
+
+    /** The maximum number of cached helper selections. */
+    private volatile int maxCachedHelpers;
+
     /**
      * Constructor.
      */
     public ConverterService() {
-        super();
+        this(true);
     }
 
     /**
@@ -68,6 +199,11 @@ public class ConverterService extends Service {
      */
     public ConverterService(boolean enabled) {
         super(enabled);
+        this.helperCache = new ConcurrentHashMap<HelperKey, ConverterHelper>();
+        this.helperCacheHits = new AtomicLong();
+        this.helperCacheMisses = new AtomicLong();
+        this.helperCacheRegistrations = new ConverterHelper[0];
+        this.maxCachedHelpers = 256;
     }
 
     /**
@@ -88,6 +224,16 @@ public class ConverterService extends Service {
         return null;
     }
 
+    /**
+     * Clears the cache of selected converter helpers. The cache is already
+     * cleared when the list of registered converters changes.
+     */
+    public void clearHelperCache() {
+        this.helperCacheRegistrations = Engine.getInstance()
+                .getRegisteredConverters().toArray(new ConverterHelper[0]);
+        this.helperCache.clear();
+    }
+
     /**
      * Creates a patch representation by calculating a diff between initial and
      * modified representations.
@@ -106,6 +252,89 @@ public class ConverterService extends Service {
         return null;
     }
 
+    /**
+     * Returns the best converter helper for a given conversion, using the
+     * cache when possible.
+     * 
+     * @param key
+     *            The cache key.
+     * @param source
+     *            The source object or representation.
+     * @param target
+     *            The target class or variant.
+     * @param resource
+     *            The parent resource.
+     * @return The matched converter helper or null.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private ConverterHelper getBestHelper(HelperKey key, Object source,
+            Object target, Resource resource) {
+        ConverterHelper result = null;
+        boolean caching = (getMaxCachedHelpers() > 0);
+
+        if (caching) {
+            if (!isHelperCacheValid()) {
+                clearHelperCache();
+            }
+
+            result = this.helperCache.get(key);
+        }
+
+        if (result != null) {
+            this.helperCacheHits.incrementAndGet();
+        } else {
+            this.helperCacheMisses.incrementAndGet();
+
+            if (key.toObject) {
+                result = ConverterUtils.getBestHelper(
+                        (Representation) source, (Class) target, resource);
+            } else {
+                result = ConverterUtils.getBestHelper(source,
+                        (Variant) target, resource);
+            }
+
+            if (caching && (result != null)) {
+                if (this.helperCache.size() >= getMaxCachedHelpers()) {
+                    this.helperCache.clear();
+                }
+
+                this.helperCache.put(key, result);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the number of helper lookups served by the cache.
+     * 
+     * @return The number of helper lookups served by the cache.
+     */
+    public long getHelperCacheHits() {
+        return this.helperCacheHits.get();
+    }
+
+    /**
+     * Returns the number of helper lookups that required scoring the
+     * registered converters.
+     * 
+     * @return The number of helper lookups that required scoring the
+     *         registered converters.
+     */
+    public long getHelperCacheMisses() {
+        return this.helperCacheMisses.get();
+    }
+
+    /**
+     * Returns the maximum number of cached helper selections. Zero disables the
+     * cache. Default value is 256.
+     * 
+     * @return The maximum number of cached helper selections.
+     */
+    public int getMaxCachedHelpers() {
+        return this.maxCachedHelpers;
+    }
+
     /**
      * Returns the list of object classes that can be converted from a given
      * variant.
@@ -163,6 +392,30 @@ public class ConverterService extends Service {
         return ConverterUtils.getVariants(source, target);
     }
 
+    /**
+     * Indicates if the cached helpers were selected among the currently
+     * registered converters.
+     * 
+     * @return True if the cache is still valid.
+     */
+    private boolean isHelperCacheValid() {
+        List<ConverterHelper> registered = Engine.getInstance()
+                .getRegisteredConverters();
+        ConverterHelper[] registrations = this.helperCacheRegistrations;
+        boolean result = (registered.size() == registrations.length);
+
+        for (int i = 0; result && (i < registrations.length); i++) {
+            try {
+                result = (registered.get(i) == registrations[i]);
+            } catch (IndexOutOfBoundsException e) {
+                // Concurrently modified
+                result = false;
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Reverts a patch representation from a modified representation in order to
      * obtain the initial one. The patch must have a recognized media type in
@@ -182,6 +435,21 @@ public class ConverterService extends Service {
         return null;
     }
 
+    /**
+     * Sets the maximum number of cached helper selections. Zero disables the
+     * cache.
+     * 
+     * @param maxCachedHelpers
+     *            The maximum number of cached helper selections.
+     */
+    public void setMaxCachedHelpers(int maxCachedHelpers) {
+        this.maxCachedHelpers = maxCachedHelpers;
+
+        if (maxCachedHelpers <= 0) {
+            this.helperCache.clear();
+        }
+    }
+
     /**
      * Converts a Representation into a regular Java object.
      * 
@@ -214,8 +482,9 @@ public class ConverterService extends Service {
         boolean loggable = (resource == null) ? true : resource.isLoggable();
 
         if ((source != null) && source.isAvailable() && (source.getSize() != 0)) {
-            ConverterHelper ch = ConverterUtils.getBestHelper(source, target,
-                    resource);
+            ConverterHelper ch = getBestHelper(new HelperKey(
+                    source.getClass(), target, source, resource, true),
+                    source, target, resource);
 
             if (ch != null) {
                 if (loggable
@@ -310,8 +579,9 @@ public class ConverterService extends Service {
             Resource resource) throws IOException {
         Representation result = null;
         boolean loggable = (resource == null) ? true : resource.isLoggable();
-        ConverterHelper ch = ConverterUtils.getBestHelper(source, target,
-                resource);
+        ConverterHelper ch = getBestHelper(new HelperKey(
+                (source == null) ? null : source.getClass(), null, target,
+                resource, false), source, target, resource);
 
         if (ch != null) {
             if (loggable && Context.getCurrentLogger().isDebugEnabled()) {
@@ -24,31 +24,130 @@
 
 package org.restlet.service;
 
+import java.io.File;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
 
 import org.restlet.Context;
 import org.restlet.engine.application.Encoder;
+import org.restlet.engine.io.IoUtils;
 import org.restlet.representation.Encoding;
+import org.restlet.representation.FileRepresentation;
 import org.restlet.representation.MediaType;
 import org.restlet.representation.Representation;
 import org.restlet.routing.Filter;
 
 /**
  * Application service automatically encoding or compressing request entities.
+ * <br>
+ * <br>
+ * The native {@link Deflater} instances used for compression are pooled and
+ * reset between entities. Compressed bytes of static entities, such as files or
+ * representations with a location and a tag or modification date, can also be
+ * kept in a bounded cache, see {@link #setMaxCacheSize(long)}. Finally,
+ * precompressed files (for example "style.css.gz" next to "style.css") can be
+ * served instead of compressing the original file, see
+ * {@link #setPrecompressedVariants(boolean)}.
  * 
  * @author Jerome Louvel
  */
 public class EncoderService extends Service {
 
+    /**
+     * Key of a cached compressed content.
+     */
+    private static final class CacheKey {
+
+        /** The compression level. */
+        private final int compressionLevel;
+
+        /** The encoding applied. */
+        private final Encoding encoding;
+
+        /** The identifier of the source entity, a file path or a URI. */
+        private final String identifier;
+
+        /** The modification time of the source entity or -1. */
+        private final long modificationTime;
+
+        /** The size of the source entity. */
+        private final long size;
+
+        /** The entity tag of the source entity or null. */
+        private final String tag;
+
+        /**
+         * Constructor.
+         * 
+         * @param encoding
+         *            The encoding applied.
+         * @param compressionLevel
+         *            The compression level.
+         * @param identifier
+         *            The identifier of the source entity.
+         * @param modificationTime
+         *            The modification time of the source entity or -1.
+         * @param size
+         *            The size of the source entity.
+         * @param tag
+         *            The entity tag of the source entity or null.
+         */
+        private CacheKey(Encoding encoding, int compressionLevel,
+                String identifier, long modificationTime, long size, String tag) {
+            this.compressionLevel = compressionLevel;
+            this.encoding = encoding;
+            this.identifier = identifier;
+            this.modificationTime = modificationTime;
+            this.size = size;
+            this.tag = tag;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (this == object) {
+                return true;
+            }
+
+            if (!(object instanceof CacheKey)) {
+                return false;
+            }
+
+            CacheKey key = (CacheKey) object;
+            return (this.compressionLevel == key.compressionLevel)
+                    && (this.modificationTime == key.modificationTime)
+                    && (this.size == key.size)
+                    && this.encoding.equals(key.encoding)
+                    && this.identifier.equals(key.identifier)
+                    && Objects.equals(this.tag, key.tag);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.encoding, this.identifier,
+                    this.modificationTime, this.size, this.tag)
+                    + this.compressionLevel;
+        }
+    }
+
     /** Indicates if the encoding should always occur, regardless of the size. */
     public static final int ANY_SIZE = -1;
 
     /** Indicates if the default minimum size for encoding to occur. */
     public static final int DEFAULT_MINIMUM_SIZE = 1000;
 
+    /** The default maximum number of pooled deflaters per kind. */
+    public static final int DEFAULT_MAX_POOLED_DEFLATERS = 32;
+
     /**
      * Returns the list of default encoded media types. This can be overridden
      * by subclasses. By default, all media types are encoded (except those
@@ -83,16 +182,52 @@ public class EncoderService extends Service {
      */
     private final List<MediaType> acceptedMediaTypes;
 
+    /** The size of the buffers used by the compression streams. */
+    private volatile int bufferSize;
+
+    /** The cached compressed contents, in access order. */
+    private final Map<CacheKey, byte[]> cache;
+
+    /** The total size of the cached compressed contents. */
+    private long cacheSize;
+
+    /** The compression level, see {@link Deflater#setLevel(int)}. */
+    private volatile int compressionLevel;
+
+    /** The pooled deflaters producing the ZLIB format. */
+    private final Queue<Deflater> deflaters;
+
     /**
      * The media types that should be ignored.
      */
     private final List<MediaType> ignoredMediaTypes;
 
+    /** The maximum size of the entities whose compressed content is cached. */
+    private volatile long maxCachedEntrySize;
+
+    /** The maximum total size of the cached compressed contents. */
+    private volatile long maxCacheSize;
+
+    /** The maximum number of pooled deflaters per kind. */
+    private volatile int maxPooledDeflaters;
+
     /**
      * The minimal size necessary for encoding.
      */
     private volatile long mininumSize;
 
+    /** The pooled deflaters producing raw deflate data, without wrapper. */
+    private final Queue<Deflater> nowrapDeflaters;
+
+    /** The number of pooled deflaters producing the ZLIB format. */
+    private final AtomicInteger pooledDeflaters;
+
+    /** The number of pooled deflaters producing raw deflate data. */
+    private final AtomicInteger pooledNowrapDeflaters;
+
+    /** Indicates if precompressed files should be looked up. */
+    private volatile boolean precompressedVariants;
+
     /**
      * Constructor.
      */
@@ -111,8 +246,75 @@ public class EncoderService extends Service {
         this.mininumSize = DEFAULT_MINIMUM_SIZE;
         this.acceptedMediaTypes = new CopyOnWriteArrayList<MediaType>(
                 getDefaultAcceptedMediaTypes());
+        this.bufferSize = IoUtils.BUFFER_SIZE;
+        this.cache = new LinkedHashMap<CacheKey, byte[]>(16, 0.75f, true);
+        this.cacheSize = 0;
+        this.compressionLevel = Deflater.DEFAULT_COMPRESSION;
+        this.deflaters = new ConcurrentLinkedQueue<Deflater>();
         this.ignoredMediaTypes = new CopyOnWriteArrayList<MediaType>(
                 getDefaultIgnoredMediaTypes());
+        this.maxCachedEntrySize = 256 * 1024;
+        this.maxCacheSize = 0;
+        this.maxPooledDeflaters = DEFAULT_MAX_POOLED_DEFLATERS;
+        this.nowrapDeflaters = new ConcurrentLinkedQueue<Deflater>();
+        this.pooledDeflaters = new AtomicInteger();
+        this.pooledNowrapDeflaters = new AtomicInteger();
+        this.precompressedVariants = false;
+    }
+
+    /**
+     * Returns a deflater configured with the current compression level, either
+     * taken from the pool or newly created. It must be given back with
+     * {@link #release(Deflater, boolean)}.
+     * 
+     * @param nowrap
+     *            True to produce raw deflate data, as used by the GZIP format,
+     *            false to produce the ZLIB format.
+     * @return A deflater ready to compress a new content.
+     */
+    public Deflater acquireDeflater(boolean nowrap) {
+        Deflater result = (nowrap ? this.nowrapDeflaters : this.deflaters)
+                .poll();
+
+        if (result == null) {
+            result = new Deflater(getCompressionLevel(), nowrap);
+        } else {
+            (nowrap ? this.pooledNowrapDeflaters : this.pooledDeflaters)
+                    .decrementAndGet();
+            result.setLevel(getCompressionLevel());
+        }
+
+        return result;
+    }
+
+    /**
+     * Stores a compressed content in the cache, evicting the least recently
+     * used contents if needed.
+     * 
+     * @param key
+     *            The cache key returned by
+     *            {@link #getCacheKey(Encoding, Representation)}.
+     * @param content
+     *            The compressed content.
+     */
+    public void cache(Object key, byte[] content) {
+        if (key instanceof CacheKey) {
+            synchronized (this.cache) {
+                byte[] previous = this.cache.put((CacheKey) key, content);
+
+                if (previous != null) {
+                    this.cacheSize -= previous.length;
+                }
+
+                this.cacheSize += content.length;
+
+                for (Iterator<byte[]> iter = this.cache.values().iterator(); (this.cacheSize > getMaxCacheSize())
+                        && iter.hasNext();) {
+                    this.cacheSize -= iter.next().length;
+                    iter.remove();
+                }
+            }
+        }
     }
 
     /**
@@ -174,6 +376,16 @@ public class EncoderService extends Service {
         return result;
     }
 
+    /**
+     * Removes all the cached compressed contents.
+     */
+    public void clearCache() {
+        synchronized (this.cache) {
+            this.cache.clear();
+            this.cacheSize = 0;
+        }
+    }
+
     @Override
     public Filter createInboundFilter(Context context) {
         return new Encoder(context, false, true, this);
@@ -193,6 +405,92 @@ public class EncoderService extends Service {
         return this.acceptedMediaTypes;
     }
 
+    /**
+     * Returns the size of the buffers used by the compression streams.
+     * 
+     * @return The size of the buffers used by the compression streams.
+     */
+    public int getBufferSize() {
+        return this.bufferSize;
+    }
+
+    /**
+     * Returns the cached compressed content for a given key.
+     * 
+     * @param key
+     *            The cache key returned by
+     *            {@link #getCacheKey(Encoding, Representation)}.
+     * @return The cached compressed content or null.
+     */
+    public byte[] getCached(Object key) {
+        if (key instanceof CacheKey) {
+            synchronized (this.cache) {
+                return this.cache.get(key);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the key identifying the compressed content of a static entity in
+     * the cache. This is the case of file representations and of
+     * representations with a location and either a tag or a modification date.
+     * 
+     * @param encoding
+     *            The encoding to apply.
+     * @param representation
+     *            The entity to encode.
+     * @return The cache key or null if the content shouldn't be cached.
+     */
+    public Object getCacheKey(Encoding encoding, Representation representation) {
+        if ((getMaxCacheSize() <= 0) || (representation == null)
+                || representation.isTransient()
+                || (representation.getRange() != null)) {
+            return null;
+        }
+
+        String identifier = null;
+        long modificationTime = -1;
+        long size = representation.getSize();
+        String tag = (representation.getTag() == null) ? null
+                : representation.getTag().format();
+
+        if (representation instanceof FileRepresentation) {
+            File file = ((FileRepresentation) representation).getFile();
+
+            if (file != null) {
+                identifier = file.getAbsolutePath();
+                modificationTime = file.lastModified();
+                size = file.length();
+            }
+        } else if ((representation.getLocationRef() != null)
+                && ((tag != null) || (representation.getModificationDate() != null))) {
+            Date modificationDate = representation.getModificationDate();
+            identifier = representation.getLocationRef().toString();
+            modificationTime = (modificationDate == null) ? -1
+                    : modificationDate.getTime();
+        }
+
+        if ((identifier == null) || (size == Representation.UNKNOWN_SIZE)
+                || (size > getMaxCachedEntrySize())) {
+            return null;
+        }
+
+        return new CacheKey(encoding, getCompressionLevel(), identifier,
+                modificationTime, size, tag);
+    }
+
+    /**
+     * Returns the compression level, between 0 and 9, or
+     * {@link Deflater#DEFAULT_COMPRESSION}.
+     * 
+     * @return The compression level.
+     */
+    public int getCompressionLevel() {
+        return this.compressionLevel;
+    }
+
     /**
      * Returns the media types that should be ignored.
      * 
@@ -202,6 +500,36 @@ public class EncoderService extends Service {
         return this.ignoredMediaTypes;
     }
 
+    /**
+     * Returns the maximum size of the entities whose compressed content is
+     * cached. Defaults to 256 KB.
+     * 
+     * @return The maximum size of the entities whose compressed content is
+     *         cached.
+     */
+    public long getMaxCachedEntrySize() {
+        return this.maxCachedEntrySize;
+    }
+
+    /**
+     * Returns the maximum total size of the cached compressed contents.
+     * Defaults to 0, disabling the cache.
+     * 
+     * @return The maximum total size of the cached compressed contents.
+     */
+    public long getMaxCacheSize() {
+        return this.maxCacheSize;
+    }
+
+    /**
+     * Returns the maximum number of pooled deflaters per kind.
+     * 
+     * @return The maximum number of pooled deflaters per kind.
+     */
+    public int getMaxPooledDeflaters() {
+        return this.maxPooledDeflaters;
+    }
+
     /**
      * Returns the minimum size a representation must have before compression is
      * done.
@@ -213,6 +541,107 @@ public class EncoderService extends Service {
         return this.mininumSize;
     }
 
+    /**
+     * Indicates if precompressed files should be looked up. When a file
+     * representation, typically returned by a
+     * {@link org.restlet.resource.Directory}, is to be encoded with GZIP and a
+     * sibling file with the additional ".gz" extension exists and isn't older,
+     * this sibling is returned instead of compressing the original file.
+     * Defaults to false.
+     * 
+     * @return True if precompressed files should be looked up.
+     */
+    public boolean isPrecompressedVariants() {
+        return this.precompressedVariants;
+    }
+
+    /**
+     * Gives back a deflater obtained with {@link #acquireDeflater(boolean)}.
+     * It is reset and pooled, or ended if the pool is full.
+     * 
+     * @param deflater
+     *            The deflater to release.
+     * @param nowrap
+     *            The kind of deflater, as given when it was acquired.
+     */
+    public void release(Deflater deflater, boolean nowrap) {
+        AtomicInteger pooled = nowrap ? this.pooledNowrapDeflaters
+                : this.pooledDeflaters;
+
+        if (pooled.incrementAndGet() <= getMaxPooledDeflaters()) {
+            deflater.reset();
+            (nowrap ? this.nowrapDeflaters : this.deflaters).offer(deflater);
+        } else {
+            pooled.decrementAndGet();
+            deflater.end();
+        }
+    }
+
+    /**
+     * Sets the size of the buffers used by the compression streams.
+     * 
+     * @param bufferSize
+     *            The size of the buffers used by the compression streams.
+     */
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Sets the compression level, between 0 and 9, or
+     * {@link Deflater#DEFAULT_COMPRESSION}. The cached contents compressed with
+     * another level are no longer used.
+     * 
+     * @param compressionLevel
+     *            The compression level.
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        if (((compressionLevel < 0) || (compressionLevel > 9))
+                && (compressionLevel != Deflater.DEFAULT_COMPRESSION)) {
+            throw new IllegalArgumentException("Invalid compression level: "
+                    + compressionLevel);
+        }
+
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Sets the maximum size of the entities whose compressed content is
+     * cached.
+     * 
+     * @param maxCachedEntrySize
+     *            The maximum size of the entities whose compressed content is
+     *            cached.
+     */
+    public void setMaxCachedEntrySize(long maxCachedEntrySize) {
+        this.maxCachedEntrySize = maxCachedEntrySize;
+    }
+
+    /**
+     * Sets the maximum total size of the cached compressed contents. A value
+     * of 0 disables the cache.
+     * 
+     * @param maxCacheSize
+     *            The maximum total size of the cached compressed contents.
+     */
+    public void setMaxCacheSize(long maxCacheSize) {
+        this.maxCacheSize = maxCacheSize;
+
+        if (maxCacheSize <= 0) {
+            clearCache();
+        }
+    }
+
+    /**
+     * Sets the maximum number of pooled deflaters per kind.
+     * 
+     * @param maxPooledDeflaters
+     *            The maximum number of pooled deflaters per kind.
+     */
+    public void setMaxPooledDeflaters(int maxPooledDeflaters) {
+        this.maxPooledDeflaters = maxPooledDeflaters;
+    }
+
     /**
      * Sets the minimum size a representation must have before compression is
      * done.
@@ -225,4 +654,34 @@ public class EncoderService extends Service {
         this.mininumSize = mininumSize;
     }
 
+    /**
+     * Indicates if precompressed files should be looked up.
+     * 
+     * @param precompressedVariants
+     *            True if precompressed files should be looked up.
+     * @see #isPrecompressedVariants()
+     */
+    public void setPrecompressedVariants(boolean precompressedVariants) {
+        this.precompressedVariants = precompressedVariants;
+    }
+
+    /**
+     * Ends the pooled deflaters and clears the cache.
+     */
+    @Override
+    public synchronized void stop() throws Exception {
+        for (Deflater deflater; (deflater = this.deflaters.poll()) != null;) {
+            this.pooledDeflaters.decrementAndGet();
+            deflater.end();
+        }
+
+        for (Deflater deflater; (deflater = this.nowrapDeflaters.poll()) != null;) {
+            this.pooledNowrapDeflaters.decrementAndGet();
+            deflater.end();
+        }
+
+        clearCache();
+        super.stop();
+    }
+
 }
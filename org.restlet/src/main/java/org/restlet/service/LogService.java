@@ -26,16 +26,19 @@ package org.restlet.service;
 
 import org.restlet.Context;
 import org.restlet.engine.Engine;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.engine.log.AccessLogRecord;
+import org.restlet.engine.log.AccessLogWriter;
 import org.restlet.engine.log.LogFilter;
-import org.restlet.message.Method;
+import org.restlet.engine.log.LogUtils;
 import org.restlet.message.Request;
 import org.restlet.message.Response;
-import org.restlet.message.Status;
 import org.restlet.representation.Representation;
 import org.restlet.resource.ClientResource;
 import org.restlet.routing.Filter;
 import org.restlet.routing.Template;
 import org.restlet.util.Reference;
+import org.slf4j.Logger;
 
 /**
  * Service providing access logging service. The implementation is fully based
@@ -70,6 +73,12 @@ import org.restlet.util.Reference;
  * <br>
  * For custom access log format, see the syntax to use and the list of available
  * variable names in {@link org.restlet.routing.Template}. <br>
+ * <br>
+ * In asynchronous mode, see {@link #setAsynchronous(boolean)}, the calls are
+ * captured as {@link AccessLogRecord} instances and logged in batches by a
+ * dedicated writer thread instead of the request threads. When the queue of
+ * pending records is full, records are dropped and counted unless
+ * {@link #setBlocking(boolean)} is enabled. <br>
  * 
  * @see <a href="http://wiki.restlet.org/docs_2.2/201-restlet.html">User Guide -
  *      Access logging</a>
@@ -79,6 +88,18 @@ import org.restlet.util.Reference;
  */
 public class LogService extends Service {
 
+    /** The asynchronous access log writer. */
+    private volatile AccessLogWriter accessLogWriter;
+
+    /** Indicates if the calls are logged asynchronously. */
+    private volatile boolean asynchronous;
+
+    /** Indicates if the request threads block when the log queue is full. */
+    private volatile boolean blocking;
+
+    /** Indicates if a subclass overrides the formatting of the log entries. */
+    private final boolean formattingOverridden;
+
     /** Indicates if the identity check (as specified by RFC1413) is enabled. */
     private volatile boolean identityCheck;
 
@@ -91,6 +112,9 @@ public class LogService extends Service {
     /** The URI reference of the log properties. */
     private volatile Reference logPropertiesRef;
 
+    /** The maximum number of records waiting to be logged asynchronously. */
+    private volatile int queueCapacity;
+
     /** The response log entry format. */
     private volatile String responseLogFormat;
 
@@ -112,6 +136,12 @@ public class LogService extends Service {
      */
     public LogService(boolean enabled) {
         super(enabled);
+        this.accessLogWriter = null;
+        this.asynchronous = false;
+        this.blocking = false;
+        this.formattingOverridden = isOverridden("getResponseLogMessage")
+                || isOverridden("getDefaultResponseLogMessage");
+        this.queueCapacity = 8192;
         this.loggableTemplate = null;
         this.loggerName = null;
         this.responseLogFormat = null;
@@ -124,6 +154,27 @@ public class LogService extends Service {
         return new LogFilter(context, this);
     }
 
+    /**
+     * Returns the access logger, named after {@link #getLoggerName()} if set,
+     * otherwise after the class of this service.
+     * 
+     * @return The access logger.
+     */
+    public Logger getAccessLogger() {
+        return (getLoggerName() != null) ? Engine.getLogger(getLoggerName())
+                : Engine.getLogger(LogUtils.getBestClassName(getClass()));
+    }
+
+    /**
+     * Returns the asynchronous access log writer, available when the service
+     * is started in asynchronous mode.
+     * 
+     * @return The asynchronous access log writer or null.
+     */
+    public AccessLogWriter getAccessLogWriter() {
+        return this.accessLogWriter;
+    }
+
     /**
      * Format a log entry using the default IIS log format.
      * 
@@ -135,121 +186,19 @@ public class LogService extends Service {
      */
     protected String getDefaultResponseLogMessage(Response response,
             int duration) {
-        StringBuilder sb = new StringBuilder();
-        Request request = response.getRequest();
-        long currentTime = System.currentTimeMillis();
-
-        // Append the date of the request
-        sb.append(String.format("%tF", currentTime));
-        sb.append('\t');
-
-        // Append the time of the request
-        sb.append(String.format("%tT", currentTime));
-        sb.append('\t');
-
-        // Append the client IP address
-        String clientAddress = request.getClientInfo().getUpstreamAddress();
-        sb.append((clientAddress == null) ? "-" : clientAddress);
-        sb.append('\t');
-
-        // Append the user name (via IDENT protocol)
-        if (isIdentityCheck()) {
-            org.restlet.engine.log.IdentClient ic = new org.restlet.engine.log.IdentClient(
-                    request.getClientInfo().getUpstreamAddress(), request
-                            .getClientInfo().getPort(), response
-                            .getServerInfo().getPort());
-            sb.append((ic.getUserIdentifier() == null) ? "-" : ic
-                    .getUserIdentifier());
-        } else if ((request.getChallengeResponse() != null)
-                && (request.getChallengeResponse().getIdentifier() != null)) {
-            sb.append(request.getChallengeResponse().getIdentifier());
-        } else {
-            sb.append('-');
-        }
-
-        sb.append('\t');
-
-        // Append the server IP address
-        String serverAddress = response.getServerInfo().getAddress();
-        sb.append((serverAddress == null) ? "-" : serverAddress);
-        sb.append('\t');
-
-        // Append the server port
-        Integer serverport = response.getServerInfo().getPort();
-        sb.append((serverport == null) ? "-" : serverport.toString());
-        sb.append('\t');
-
-        // Append the method name
-        String methodName = (request.getMethod() == null) ? "-" : request
-                .getMethod().getName();
-        sb.append((methodName == null) ? "-" : methodName);
-
-        // Append the resource path
-        sb.append('\t');
-        String resourcePath = (request.getResourceRef() == null) ? "-"
-                : request.getResourceRef().getPath();
-        sb.append((resourcePath == null) ? "-" : resourcePath);
-
-        // Append the resource query
-        sb.append('\t');
-        String resourceQuery = (request.getResourceRef() == null) ? "-"
-                : request.getResourceRef().getQuery();
-        sb.append((resourceQuery == null) ? "-" : resourceQuery);
-
-        // Append the status code
-        sb.append('\t');
-        sb.append((response.getStatus() == null) ? "-" : Integer
-                .toString(response.getStatus().getCode()));
-
-        // Append the returned size
-        sb.append('\t');
-
-        if (!response.isEntityAvailable()
-                || Status.REDIRECTION_NOT_MODIFIED.equals(response.getStatus())
-                || Status.SUCCESS_NO_CONTENT.equals(response.getStatus())
-                || Method.HEAD.equals(request.getMethod())) {
-            sb.append('0');
-        } else {
-            sb.append((response.getEntity().getSize() == -1) ? "-" : Long
-                    .toString(response.getEntity().getSize()));
-        }
-
-        // Append the received size
-        sb.append('\t');
-
-        try {
-            if (request.getEntity() == null) {
-                sb.append('0');
-            } else {
-                sb.append((request.getEntity().getSize() == -1) ? "-" : Long
-                        .toString(request.getEntity().getSize()));
-            }
-        } catch (Throwable t) {
-            // Error while getting the request's entity, cf issue #931
-            Engine.getLogger(LogService.class).error("Cannot retrieve size of request's entity", t);
-            sb.append("-");
-        }
-
-        // Append the duration
-        sb.append('\t');
-        sb.append(duration);
-
-        // Append the host reference
-        sb.append('\t');
-        sb.append((request.getHostRef() == null) ? "-" : request.getHostRef()
-                .toString());
-
-        // Append the agent name
-        sb.append('\t');
-        String agentName = request.getClientInfo().getAgent();
-        sb.append((agentName == null) ? "-" : agentName);
-
-        // Append the referrer
-        sb.append('\t');
-        sb.append((request.getReferrerRef() == null) ? "-" : request
-                .getReferrerRef().getIdentifier());
+        return new AccessLogRecord(response, duration, isIdentityCheck())
+                .format();
+    }
 
-        return sb.toString();
+    /**
+     * Returns the number of log entries dropped in asynchronous mode, because
+     * the queue was full.
+     * 
+     * @return The number of dropped log entries.
+     */
+    public long getDroppedEntries() {
+        AccessLogWriter writer = getAccessLogWriter();
+        return (writer == null) ? 0L : writer.getDroppedCount();
     }
 
     /**
@@ -286,6 +235,16 @@ public class LogService extends Service {
         return logPropertiesRef;
     }
 
+    /**
+     * Returns the maximum number of records waiting to be logged in
+     * asynchronous mode. Default value is 8192.
+     * 
+     * @return The maximum number of records waiting to be logged.
+     */
+    public int getQueueCapacity() {
+        return this.queueCapacity;
+    }
+
     /**
      * Returns the format used when logging responses.
      * 
@@ -320,6 +279,48 @@ public class LogService extends Service {
         return result;
     }
 
+    /**
+     * Captures an access log record for asynchronous logging. With the default
+     * format, only the logged fields are captured and the formatting is
+     * deferred to the writer thread. With a custom format, or when a subclass
+     * overrides {@link #getResponseLogMessage(Response, int)} or
+     * {@link #getDefaultResponseLogMessage(Response, int)}, the entry is
+     * formatted immediately by those methods.
+     * 
+     * @param response
+     *            The response to log.
+     * @param duration
+     *            The call duration.
+     * @return The access log record.
+     */
+    public AccessLogRecord getResponseLogRecord(Response response, int duration) {
+        boolean formatted = (this.responseLogTemplate != null)
+                || this.formattingOverridden;
+        return formatted ? new AccessLogRecord(getResponseLogMessage(response,
+                duration)) : new AccessLogRecord(response, duration,
+                isIdentityCheck());
+    }
+
+    /**
+     * Indicates if the calls are logged asynchronously by a dedicated writer
+     * thread. Default value is false.
+     * 
+     * @return True if the calls are logged asynchronously.
+     */
+    public boolean isAsynchronous() {
+        return this.asynchronous;
+    }
+
+    /**
+     * Indicates if the request threads block when the asynchronous log queue
+     * is full, instead of dropping the entries. Default value is false.
+     * 
+     * @return True if the request threads block when the log queue is full.
+     */
+    public boolean isBlocking() {
+        return this.blocking;
+    }
+
     /**
      * Indicates if the identity check (as specified by RFC1413) is enabled.
      * Default value is false.
@@ -344,6 +345,60 @@ public class LogService extends Service {
                 .match(request.getResourceRef().getTargetRef().toString()) > 0;
     }
 
+    /**
+     * Indicates if a formatting method is overridden by the class of this
+     * service.
+     * 
+     * @param methodName
+     *            The name of the formatting method.
+     * @return True if the formatting method is overridden.
+     */
+    private boolean isOverridden(String methodName) {
+        for (Class<?> clazz = getClass(); clazz != LogService.class; clazz = clazz
+                .getSuperclass()) {
+            try {
+                clazz.getDeclaredMethod(methodName, Response.class, int.class);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // Look in the parent class
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Indicates if the calls are logged asynchronously by a dedicated writer
+     * thread. Must be set before the service is started. Note that in this
+     * mode the default format is applied by the {@link AccessLogRecord} class
+     * on the writer thread, unless a subclass overrides
+     * {@link #getResponseLogMessage(Response, int)} or
+     * {@link #getDefaultResponseLogMessage(Response, int)}.
+     * 
+     * @param asynchronous
+     *            True if the calls are logged asynchronously.
+     */
+    public void setAsynchronous(boolean asynchronous) {
+        this.asynchronous = asynchronous;
+    }
+
+    /**
+     * Indicates if the request threads block when the asynchronous log queue
+     * is full, instead of dropping the entries. Also applies to the writer of
+     * a started service.
+     * 
+     * @param blocking
+     *            True if the request threads block when the log queue is full.
+     */
+    public void setBlocking(boolean blocking) {
+        this.blocking = blocking;
+        AccessLogWriter writer = getAccessLogWriter();
+
+        if (writer != null) {
+            writer.setBlocking(blocking);
+        }
+    }
+
     /**
      * Indicates if the identity check (as specified by RFC1413) is enabled.
      * 
@@ -409,6 +464,17 @@ public class LogService extends Service {
         setLogPropertiesRef(new Reference(logPropertiesUri));
     }
 
+    /**
+     * Sets the maximum number of records waiting to be logged in asynchronous
+     * mode. Must be set before the service is started.
+     * 
+     * @param queueCapacity
+     *            The maximum number of records waiting to be logged.
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
     /**
      * Sets the format to use when logging responses. The default format matches
      * the one of IIS 6.
@@ -440,5 +506,27 @@ public class LogService extends Service {
                         logProperties.getStream());
             }
         }
+
+        if (isAsynchronous()) {
+            this.accessLogWriter = new AccessLogWriter(getAccessLogger(),
+                    getQueueCapacity(), isBlocking());
+            this.accessLogWriter.start();
+        }
+    }
+
+    /**
+     * Stops the log service, waiting for the asynchronous access log writer to
+     * log the pending entries.
+     */
+    @Override
+    public synchronized void stop() throws Exception {
+        AccessLogWriter writer = this.accessLogWriter;
+
+        if (writer != null) {
+            writer.stop(IoUtils.TIMEOUT_MS);
+            this.accessLogWriter = null;
+        }
+
+        super.stop();
     }
 }
@@ -24,6 +24,7 @@
 
 package org.restlet.service;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -43,6 +44,8 @@ import org.restlet.Application;
 import org.restlet.Context;
 import org.restlet.engine.Engine;
 import org.restlet.engine.util.ContextualRunnable;
+import org.restlet.engine.util.SystemUtils;
+import org.restlet.engine.util.VirtualThreadScheduledExecutor;
 import org.restlet.message.Response;
 import org.restlet.routing.VirtualHost;
 
@@ -60,7 +63,12 @@ import org.restlet.routing.VirtualHost;
  * Resources that are part of your context. In general this context corresponds
  * to a parent Application's context. If you want to have your own service
  * instance, you can use the {@link TaskService#wrap(ScheduledExecutorService)}
- * method to ensure that thread local variables are correctly set.
+ * method to ensure that thread local variables are correctly set.<br>
+ * <br>
+ * When the "virtualThreads" property is set and the JVM supports them (Java 21
+ * or later), each task runs on a new virtual thread and the core pool size no
+ * longer bounds the number of tasks running concurrently. The thread local
+ * variables are copied in the same way.
  * 
  * @author Jerome Louvel
  * @author Doug Lea (docs of ExecutorService in public domain)
@@ -119,68 +127,33 @@ public class TaskService extends Service implements ScheduledExecutorService {
             }
 
             public void execute(final Runnable runnable) {
-                // Save the thread local variables
-                final Application currentApplication = Application.getCurrent();
-                final Context currentContext = Context.getCurrent();
-                final Integer currentVirtualHost = VirtualHost.getCurrent();
-                final Response currentResponse = Response.getCurrent();
-
-                executorService.execute(new Runnable() {
-                    public void run() {
-                        // Copy the thread local variables
-                        Response.setCurrent(currentResponse);
-                        Context.setCurrent(currentContext);
-                        VirtualHost.setCurrent(currentVirtualHost);
-                        Application.setCurrent(currentApplication);
-
-                        if (runnable instanceof ContextualRunnable) {
-                            ClassLoader tccl = Thread.currentThread()
-                                    .getContextClassLoader();
-                            try {
-                                // Run the user task
-                                Thread.currentThread().setContextClassLoader(
-                                        ((ContextualRunnable) runnable)
-                                                .getContextClassLoader());
-                                runnable.run();
-                            } finally {
-                                Engine.clearThreadLocalVariables();
-                                Thread.currentThread().setContextClassLoader(
-                                        tccl);
-                            }
-                        } else {
-                            try {
-                                // Run the user task
-                                runnable.run();
-                            } finally {
-                                Engine.clearThreadLocalVariables();
-                            }
-                        }
-                    }
-                });
+                executorService.execute(wrapTask(runnable));
             }
 
             @SuppressWarnings({ "rawtypes", "unchecked" })
             public List invokeAll(Collection tasks) throws InterruptedException {
-                return executorService.invokeAll(tasks);
+                return executorService.invokeAll(wrapTasks(tasks));
             }
 
             @SuppressWarnings({ "rawtypes", "unchecked" })
             public List invokeAll(Collection tasks, long timeout, TimeUnit unit)
                     throws InterruptedException {
-                return executorService.invokeAll(tasks, timeout, unit);
+                return executorService.invokeAll(wrapTasks(tasks), timeout,
+                        unit);
             }
 
             @SuppressWarnings({ "rawtypes", "unchecked" })
             public Object invokeAny(Collection tasks)
                     throws InterruptedException, ExecutionException {
-                return executorService.invokeAny(tasks);
+                return executorService.invokeAny(wrapTasks(tasks));
             }
 
             @SuppressWarnings({ "rawtypes", "unchecked" })
             public Object invokeAny(Collection tasks, long timeout,
                     TimeUnit unit) throws InterruptedException,
                     ExecutionException, TimeoutException {
-                return executorService.invokeAny(tasks, timeout, unit);
+                return executorService.invokeAny(wrapTasks(tasks), timeout,
+                        unit);
             }
 
             public boolean isShutdown() {
@@ -193,24 +166,25 @@ public class TaskService extends Service implements ScheduledExecutorService {
 
             public <V> ScheduledFuture<V> schedule(Callable<V> callable,
                     long delay, TimeUnit unit) {
-                return executorService.schedule(callable, delay, unit);
+                return executorService.schedule(wrapTask(callable), delay,
+                        unit);
             }
 
             public ScheduledFuture<?> schedule(Runnable command, long delay,
                     TimeUnit unit) {
-                return executorService.schedule(command, delay, unit);
+                return executorService.schedule(wrapTask(command), delay, unit);
             }
 
             public ScheduledFuture<?> scheduleAtFixedRate(Runnable command,
                     long initialDelay, long period, TimeUnit unit) {
-                return executorService.scheduleAtFixedRate(command,
+                return executorService.scheduleAtFixedRate(wrapTask(command),
                         initialDelay, period, unit);
             }
 
             public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command,
                     long initialDelay, long delay, TimeUnit unit) {
-                return executorService.scheduleWithFixedDelay(command,
-                        initialDelay, delay, unit);
+                return executorService.scheduleWithFixedDelay(
+                        wrapTask(command), initialDelay, delay, unit);
             }
 
             public void shutdown() {
@@ -222,19 +196,119 @@ public class TaskService extends Service implements ScheduledExecutorService {
             }
 
             public <T> Future<T> submit(Callable<T> task) {
-                return executorService.submit(task);
+                return executorService.submit(wrapTask(task));
             }
 
             public Future<?> submit(Runnable task) {
-                return executorService.submit(task);
+                return executorService.submit(wrapTask(task));
             }
 
             public <T> Future<T> submit(Runnable task, T result) {
-                return executorService.submit(task, result);
+                return executorService.submit(wrapTask(task), result);
+            }
+        };
+    }
+
+    /**
+     * Wraps a callable task to ensure that the thread executing it will have
+     * the thread local variables copied from the calling thread.
+     * 
+     * @param callable
+     *            The callable task to wrap.
+     * @return The wrapper task.
+     */
+    private static <V> Callable<V> wrapTask(final Callable<V> callable) {
+        // Save the thread local variables
+        final Application currentApplication = Application.getCurrent();
+        final Context currentContext = Context.getCurrent();
+        final Integer currentVirtualHost = VirtualHost.getCurrent();
+        final Response currentResponse = Response.getCurrent();
+
+        return new Callable<V>() {
+            public V call() throws Exception {
+                // Copy the thread local variables
+                Response.setCurrent(currentResponse);
+                Context.setCurrent(currentContext);
+                VirtualHost.setCurrent(currentVirtualHost);
+                Application.setCurrent(currentApplication);
+
+                try {
+                    // Run the user task
+                    return callable.call();
+                } finally {
+                    Engine.clearThreadLocalVariables();
+                }
             }
         };
     }
 
+    /**
+     * Wraps a runnable task to ensure that the thread executing it will have
+     * the thread local variables copied from the calling thread.
+     * 
+     * @param runnable
+     *            The runnable task to wrap.
+     * @return The wrapper task.
+     */
+    private static Runnable wrapTask(final Runnable runnable) {
+        // Save the thread local variables
+        final Application currentApplication = Application.getCurrent();
+        final Context currentContext = Context.getCurrent();
+        final Integer currentVirtualHost = VirtualHost.getCurrent();
+        final Response currentResponse = Response.getCurrent();
+
+        return new Runnable() {
+            public void run() {
+                // Copy the thread local variables
+                Response.setCurrent(currentResponse);
+                Context.setCurrent(currentContext);
+                VirtualHost.setCurrent(currentVirtualHost);
+                Application.setCurrent(currentApplication);
+
+                if (runnable instanceof ContextualRunnable) {
+                    ClassLoader tccl = Thread.currentThread()
+                            .getContextClassLoader();
+                    try {
+                        // Run the user task
+                        Thread.currentThread().setContextClassLoader(
+                                ((ContextualRunnable) runnable)
+                                        .getContextClassLoader());
+                        runnable.run();
+                    } finally {
+                        Engine.clearThreadLocalVariables();
+                        Thread.currentThread().setContextClassLoader(tccl);
+                    }
+                } else {
+                    try {
+                        // Run the user task
+                        runnable.run();
+                    } finally {
+                        Engine.clearThreadLocalVariables();
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Wraps a collection of callable tasks to ensure that the threads executing
+     * them will have the thread local variables copied from the calling thread.
+     * 
+     * @param tasks
+     *            The callable tasks to wrap.
+     * @return The list of wrapper tasks.
+     */
+    private static <V> List<Callable<V>> wrapTasks(
+            Collection<? extends Callable<V>> tasks) {
+        List<Callable<V>> result = new ArrayList<Callable<V>>(tasks.size());
+
+        for (Callable<V> task : tasks) {
+            result.add(wrapTask(task));
+        }
+
+        return result;
+    }
+
     /** The core pool size defining the maximum number of threads. */
     private volatile int corePoolSize;
 
@@ -249,6 +323,12 @@ public class TaskService extends Service implements ScheduledExecutorService {
      */
     private volatile boolean shutdownAllowed;
 
+    /**
+     * Indicates whether or not the tasks run on virtual threads, when supported
+     * by the JVM.
+     */
+    private volatile boolean virtualThreads;
+
     /** The wrapped JDK executor service. */
     private volatile ScheduledExecutorService wrapped;
 
@@ -295,6 +375,7 @@ public class TaskService extends Service implements ScheduledExecutorService {
         super(enabled);
         this.corePoolSize = corePoolSize;
         this.shutdownAllowed = false;
+        this.virtualThreads = Engine.getInstance().isVirtualThreads();
     }
 
     /**
@@ -327,25 +408,43 @@ public class TaskService extends Service implements ScheduledExecutorService {
 
     /**
      * Creates a new JDK executor service that will be wrapped. By default it
-     * calls {@link Executors#newCachedThreadPool(ThreadFactory)}, passing the
-     * result of {@link #createThreadFactory()} as a parameter.
+     * calls {@link Executors#newScheduledThreadPool(int, ThreadFactory)},
+     * passing the result of {@link #createThreadFactory()} as a parameter. If
+     * virtual threads are used, it returns a
+     * {@link VirtualThreadScheduledExecutor} instead.
      * 
      * @param corePoolSize
      *            The core pool size defining the maximum number of threads.
      * @return A new JDK executor service.
      */
     protected ScheduledExecutorService createExecutorService(int corePoolSize) {
-        return Executors.newScheduledThreadPool(corePoolSize,
-                createThreadFactory());
+        ThreadFactory threadFactory = createThreadFactory();
+
+        if (isVirtualThreads() && SystemUtils.isVirtualThreadsSupported()) {
+            return new VirtualThreadScheduledExecutor(threadFactory);
+        }
+
+        return Executors.newScheduledThreadPool(corePoolSize, threadFactory);
     }
 
     /**
      * Creates a new thread factory that will properly name the Restlet created
-     * threads with a "restlet-" prefix.
+     * threads with a "restlet-" prefix. If virtual threads are used, the
+     * threads are named with a "restlet-virtual-" prefix instead.
      * 
      * @return A new thread factory.
      */
     protected ThreadFactory createThreadFactory() {
+        if (isVirtualThreads()) {
+            if (SystemUtils.isVirtualThreadsSupported()) {
+                return SystemUtils
+                        .createVirtualThreadFactory("restlet-virtual-");
+            }
+
+            Context.getCurrentLogger().warn(
+                    "Virtual threads require Java 21 or later. Using platform threads instead.");
+        }
+
         return new RestletThreadFactory(daemon);
     }
 
@@ -505,6 +604,16 @@ public class TaskService extends Service implements ScheduledExecutorService {
         return shutdownAllowed;
     }
 
+    /**
+     * Indicates whether or not the tasks run on virtual threads, when supported
+     * by the JVM. Defaults to the {@link Engine#isVirtualThreads()} value.
+     * 
+     * @return True if the tasks run on virtual threads.
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
     /**
      * Returns true if all tasks have completed following shut down. Note that
      * isTerminated is never true unless either shutdown or shutdownNow was
@@ -658,6 +767,17 @@ public class TaskService extends Service implements ScheduledExecutorService {
         this.shutdownAllowed = allowShutdown;
     }
 
+    /**
+     * Indicates whether or not the tasks run on virtual threads, when supported
+     * by the JVM. Only taken into account when the service is started.
+     * 
+     * @param virtualThreads
+     *            True if the tasks run on virtual threads.
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
     /**
      * Sets the wrapped JDK executor service.
      * 
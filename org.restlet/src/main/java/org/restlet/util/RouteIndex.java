@@ -0,0 +1,321 @@
+/**
+ * Copyright 2005-2016 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+package org.restlet.util;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import org.restlet.message.Request;
+import org.restlet.message.Response;
+import org.restlet.routing.Route;
+import org.restlet.routing.Template;
+import org.restlet.routing.TemplateRoute;
+
+/**
+ * Compiled index of a {@link RouteList} snapshot. The literal prefix of each
+ * {@link TemplateRoute} URI pattern (the characters preceding the first
+ * variable) is inserted into a character trie, so that only the routes whose
+ * prefix matches the beginning of the remaining part need to be scored by
+ * their Regex pattern. Routes that can't be indexed, such as routes that
+ * aren't template routes or that override the scoring logic, are always
+ * returned as candidates.<br>
+ * <br>
+ * Candidates are returned in their original list order so that the first and
+ * best match semantics are preserved. A route skipped by the index would have
+ * scored zero anyway.
+ * 
+ * @author Jerome Louvel
+ */
+final class RouteIndex {
+
+    /**
+     * Node of the literal prefix trie.
+     */
+    private static final class Node {
+        /** The child nodes, aligned with the keys. */
+        private Node[] children;
+
+        /** The characters leading to the child nodes. */
+        private char[] keys;
+
+        /** The positions of the routes whose prefix ends at this node. */
+        private int[] positions;
+
+        /**
+         * Constructor.
+         */
+        private Node() {
+            this.children = new Node[0];
+            this.keys = new char[0];
+            this.positions = new int[0];
+        }
+
+        /**
+         * Adds a route position to this node.
+         * 
+         * @param position
+         *            The route position.
+         */
+        private void addPosition(int position) {
+            this.positions = Arrays.copyOf(this.positions,
+                    this.positions.length + 1);
+            this.positions[this.positions.length - 1] = position;
+        }
+
+        /**
+         * Returns the child node for a given character.
+         * 
+         * @param key
+         *            The character.
+         * @return The child node or null.
+         */
+        private Node getChild(char key) {
+            for (int i = 0; i < this.keys.length; i++) {
+                if (this.keys[i] == key) {
+                    return this.children[i];
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Returns the child node for a given character, creating it if
+         * necessary.
+         * 
+         * @param key
+         *            The character.
+         * @return The child node.
+         */
+        private Node getOrCreateChild(char key) {
+            Node result = getChild(key);
+
+            if (result == null) {
+                result = new Node();
+                this.keys = Arrays.copyOf(this.keys, this.keys.length + 1);
+                this.keys[this.keys.length - 1] = key;
+                this.children = Arrays.copyOf(this.children,
+                        this.children.length + 1);
+                this.children[this.children.length - 1] = result;
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * Returns the literal prefix of a URI pattern, that is to say the
+     * characters that the compiled Regex pattern must match verbatim at the
+     * beginning of the remaining part.
+     * 
+     * @param pattern
+     *            The URI pattern.
+     * @return The literal prefix.
+     */
+    private static String getLiteralPrefix(String pattern) {
+        int end = 0;
+
+        while (end < pattern.length()) {
+            char next = pattern.charAt(end);
+
+            if ((next == '{') || (next == '}')) {
+                break;
+            } else if (next == '+') {
+                // Not quoted by the template, it repeats the previous
+                // character which is therefore not literal either.
+                end = Math.max(0, end - 1);
+                break;
+            }
+
+            end++;
+        }
+
+        return pattern.substring(0, end);
+    }
+
+    /**
+     * Indicates if a route can be indexed, based on its template and its
+     * scoring logic.
+     * 
+     * @param route
+     *            The route to test.
+     * @return True if the route can be indexed.
+     */
+    private static boolean isIndexable(Route route) {
+        boolean result = false;
+
+        if ((route instanceof TemplateRoute)
+                && (((TemplateRoute) route).getTemplate() != null)
+                && (((TemplateRoute) route).getTemplate().getPattern() != null)) {
+            try {
+                Method score = route.getClass().getMethod("score",
+                        Request.class, Response.class);
+                result = (score.getDeclaringClass() == TemplateRoute.class);
+            } catch (NoSuchMethodException e) {
+                result = false;
+            }
+        }
+
+        return result;
+    }
+
+    /** The positions of the routes that are always candidates. */
+    private final int[] always;
+
+    /** The trie of routes matching the remaining part with its query. */
+    private final Node queryRoot;
+
+    /** The indexed routes snapshot. */
+    private final Route[] routes;
+
+    /** The trie of routes matching the remaining part without its query. */
+    private final Node root;
+
+    /** The version of the route list when the snapshot was taken. */
+    private final int version;
+
+    /**
+     * Constructor.
+     * 
+     * @param routes
+     *            The routes snapshot to index.
+     * @param version
+     *            The version of the route list.
+     */
+    RouteIndex(Route[] routes, int version) {
+        this.routes = routes;
+        this.version = version;
+        this.queryRoot = new Node();
+        this.root = new Node();
+        int[] always = new int[routes.length];
+        int alwaysCount = 0;
+
+        for (int i = 0; i < routes.length; i++) {
+            if (isIndexable(routes[i])) {
+                TemplateRoute route = (TemplateRoute) routes[i];
+                Template template = route.getTemplate();
+                String prefix = getLiteralPrefix(template.getPattern());
+                Node node = route.isMatchingQuery() ? this.queryRoot
+                        : this.root;
+
+                for (int j = 0; j < prefix.length(); j++) {
+                    node = node.getOrCreateChild(prefix.charAt(j));
+                }
+
+                node.addPosition(i);
+            } else {
+                always[alwaysCount++] = i;
+            }
+        }
+
+        this.always = Arrays.copyOf(always, alwaysCount);
+    }
+
+    /**
+     * Marks the positions of the routes whose literal prefix matches the
+     * beginning of the given remaining part.
+     * 
+     * @param node
+     *            The trie root.
+     * @param remainingPart
+     *            The remaining part to walk.
+     * @param candidates
+     *            The candidate flags to update.
+     */
+    private void collect(Node node, String remainingPart, boolean[] candidates) {
+        for (int i = 0; node != null; i++) {
+            for (int position : node.positions) {
+                candidates[position] = true;
+            }
+
+            node = (i < remainingPart.length()) ? node.getChild(remainingPart
+                    .charAt(i)) : null;
+        }
+    }
+
+    /**
+     * Returns the routes that may score above zero for a given call, in their
+     * original list order.
+     * 
+     * @param request
+     *            The request to route.
+     * @return The candidate routes.
+     */
+    Route[] getCandidates(Request request) {
+        boolean[] candidates = new boolean[this.routes.length];
+        int count = 0;
+
+        for (int position : this.always) {
+            candidates[position] = true;
+        }
+
+        Reference resourceRef = request.getResourceRef();
+
+        if (resourceRef != null) {
+            String remainingPart;
+
+            if (this.root.keys.length > 0 || this.root.positions.length > 0) {
+                remainingPart = resourceRef.getRemainingPart(false, false);
+
+                if (remainingPart != null) {
+                    collect(this.root, remainingPart, candidates);
+                }
+            }
+
+            if (this.queryRoot.keys.length > 0
+                    || this.queryRoot.positions.length > 0) {
+                remainingPart = resourceRef.getRemainingPart(false, true);
+
+                if (remainingPart != null) {
+                    collect(this.queryRoot, remainingPart, candidates);
+                }
+            }
+        }
+
+        for (boolean candidate : candidates) {
+            if (candidate) {
+                count++;
+            }
+        }
+
+        Route[] result = new Route[count];
+
+        for (int i = 0, j = 0; j < count; i++) {
+            if (candidates[i]) {
+                result[j++] = this.routes[i];
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the version of the route list when the snapshot was taken.
+     * 
+     * @return The version of the route list.
+     */
+    int getVersion() {
+        return this.version;
+    }
+}
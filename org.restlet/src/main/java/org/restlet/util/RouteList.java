@@ -24,10 +24,13 @@
 
 package org.restlet.util;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.restlet.Restlet;
 import org.restlet.message.Request;
@@ -41,22 +44,39 @@ import org.restlet.routing.Route;
  * {@link List}, in particular all the helper methods in {@link Collections}.<br>
  * <br>
  * Note that structural changes to this list are thread-safe, using an
- * underlying {@link CopyOnWriteArrayList}.
+ * underlying {@link CopyOnWriteArrayList}.<br>
+ * <br>
+ * When indexing is enabled, the best and first match lookups only score the
+ * template routes whose literal URI prefix matches the remaining part, using a
+ * compiled index rebuilt after each structural change. Templates modified in
+ * place after being attached require a call to {@link #invalidateIndex()}.
  * 
  * @author Jerome Louvel
  * @see java.util.Collections
  * @see java.util.List
  */
 public final class RouteList extends WrapperList<Route> {
+    /** The compiled route index, lazily built. */
+    private volatile RouteIndex index;
+
+    /** Indicates if the compiled route index should be used. */
+    private volatile boolean indexed;
+
     /** The index of the last route used in the round robin mode. */
     private volatile int lastIndex;
 
+    /** The structural version of the list, incremented on each change. */
+    private final AtomicInteger version;
+
     /**
      * Constructor.
      */
     public RouteList() {
         super(new CopyOnWriteArrayList<Route>());
+        this.index = null;
+        this.indexed = false;
         this.lastIndex = -1;
+        this.version = new AtomicInteger();
     }
 
     /**
@@ -67,7 +87,55 @@ public final class RouteList extends WrapperList<Route> {
      */
     public RouteList(List<Route> delegate) {
         super(new CopyOnWriteArrayList<Route>(delegate));
+        this.index = null;
+        this.indexed = false;
         this.lastIndex = -1;
+        this.version = new AtomicInteger();
+    }
+
+    @Override
+    public boolean add(Route element) {
+        try {
+            return super.add(element);
+        } finally {
+            invalidateIndex();
+        }
+    }
+
+    @Override
+    public void add(int index, Route element) {
+        try {
+            super.add(index, element);
+        } finally {
+            invalidateIndex();
+        }
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Route> elements) {
+        try {
+            return super.addAll(elements);
+        } finally {
+            invalidateIndex();
+        }
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends Route> elements) {
+        try {
+            return super.addAll(index, elements);
+        } finally {
+            invalidateIndex();
+        }
+    }
+
+    @Override
+    public void clear() {
+        try {
+            super.clear();
+        } finally {
+            invalidateIndex();
+        }
     }
 
     /**
@@ -86,7 +154,7 @@ public final class RouteList extends WrapperList<Route> {
         float bestScore = 0F;
         float score;
 
-        for (Route current : this) {
+        for (Route current : getCandidates(request)) {
             score = current.score(request, response);
 
             if ((score > bestScore) && (score >= requiredScore)) {
@@ -98,6 +166,33 @@ public final class RouteList extends WrapperList<Route> {
         return result;
     }
 
+    /**
+     * Returns the routes that may match a given call, in their list order.
+     * Uses the compiled route index if enabled, otherwise returns this list.
+     * 
+     * @param request
+     *            The request to route.
+     * @return The candidate routes.
+     */
+    private Iterable<Route> getCandidates(Request request) {
+        if (!isIndexed()) {
+            return this;
+        }
+
+        RouteIndex result = this.index;
+        int currentVersion = this.version.get();
+
+        if ((result == null) || (result.getVersion() != currentVersion)) {
+            result = new RouteIndex(toArray(new Route[0]), currentVersion);
+
+            if (this.version.get() == currentVersion) {
+                this.index = result;
+            }
+        }
+
+        return Arrays.asList(result.getCandidates(request));
+    }
+
     /**
      * Returns the first route match for a given call.
      * 
@@ -111,7 +206,12 @@ public final class RouteList extends WrapperList<Route> {
      */
     public Route getFirst(Request request, Response response,
             float requiredScore) {
-        for (Route current : this) {
+        // Routes skipped by the index score zero, which is only a miss when
+        // the required score is positive
+        Iterable<Route> routes = (requiredScore > 0F) ? getCandidates(request)
+                : this;
+
+        for (Route current : routes) {
             if (current.score(request, response) >= requiredScore) {
                 return current;
             }
@@ -220,6 +320,55 @@ public final class RouteList extends WrapperList<Route> {
         return null;
     }
 
+    /**
+     * Invalidates the compiled route index. It is automatically called after
+     * each structural change of the list, but must be explicitly called when
+     * the template of an attached route is modified in place.
+     */
+    public void invalidateIndex() {
+        this.version.incrementAndGet();
+        this.index = null;
+    }
+
+    /**
+     * Indicates if the compiled route index should be used by the
+     * {@link #getBest(Request, Response, float)} and
+     * {@link #getFirst(Request, Response, float)} methods. Default value is
+     * false.
+     * 
+     * @return True if the compiled route index should be used.
+     */
+    public boolean isIndexed() {
+        return this.indexed;
+    }
+
+    @Override
+    public Route remove(int index) {
+        try {
+            return super.remove(index);
+        } finally {
+            invalidateIndex();
+        }
+    }
+
+    @Override
+    public boolean remove(Object element) {
+        try {
+            return super.remove(element);
+        } finally {
+            invalidateIndex();
+        }
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> elements) {
+        try {
+            return super.removeAll(elements);
+        } finally {
+            invalidateIndex();
+        }
+    }
+
     /**
      * Removes all routes routing to a given target.
      * 
@@ -234,6 +383,36 @@ public final class RouteList extends WrapperList<Route> {
         }
     }
 
+    @Override
+    public boolean retainAll(Collection<?> elements) {
+        try {
+            return super.retainAll(elements);
+        } finally {
+            invalidateIndex();
+        }
+    }
+
+    @Override
+    public Route set(int index, Route element) {
+        try {
+            return super.set(index, element);
+        } finally {
+            invalidateIndex();
+        }
+    }
+
+    /**
+     * Indicates if the compiled route index should be used by the
+     * {@link #getBest(Request, Response, float)} and
+     * {@link #getFirst(Request, Response, float)} methods.
+     * 
+     * @param indexed
+     *            True if the compiled route index should be used.
+     */
+    public void setIndexed(boolean indexed) {
+        this.indexed = indexed;
+    }
+
     /**
      * Returns a view of the portion of this list between the specified
      * fromIndex, inclusive, and toIndex, exclusive.
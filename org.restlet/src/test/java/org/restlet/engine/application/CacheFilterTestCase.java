@@ -0,0 +1,380 @@
+/**
+ * Copyright 2005-2016 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.restlet.Restlet;
+import org.restlet.Uniform;
+import org.restlet.message.CacheDirective;
+import org.restlet.message.ChallengeResponse;
+import org.restlet.message.ChallengeScheme;
+import org.restlet.message.Cookie;
+import org.restlet.message.CookieSetting;
+import org.restlet.message.Method;
+import org.restlet.message.Request;
+import org.restlet.message.Response;
+import org.restlet.message.Status;
+import org.restlet.message.Warning;
+import org.restlet.representation.MediaType;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.service.CacheService;
+import org.restlet.util.Tag;
+
+/**
+ * Unit tests for the {@link CacheFilter} and {@link CacheService} classes.
+ * 
+ * @author Jerome Louvel
+ */
+public class CacheFilterTestCase {
+
+    /** The number of calls handled by the resource. */
+    private int calls;
+
+    /** The cache service tested. */
+    private CacheService cacheService;
+
+    /** Optional callback updating the responses of the resource. */
+    private Uniform customizer;
+
+    /** The cache directives of the responses of the resource. */
+    private List<CacheDirective> directives;
+
+    /** The expiration date of the entities of the resource. */
+    private Date expirationDate;
+
+    /** The cache filter tested. */
+    private CacheFilter filter;
+
+    /**
+     * Creates a GET request on a resource.
+     * 
+     * @param path
+     *            The path of the resource.
+     * @return The GET request.
+     */
+    private Request get(String path) {
+        return new Request(Method.GET, "http://localhost" + path);
+    }
+
+    /**
+     * Handles a request with the cache filter.
+     * 
+     * @param request
+     *            The request to handle.
+     * @return The response.
+     */
+    private Response handle(Request request) {
+        Response response = new Response(request);
+        this.filter.handle(request, response);
+        return response;
+    }
+
+    @Before
+    public void setUp() {
+        this.calls = 0;
+        this.cacheService = new CacheService();
+        this.customizer = null;
+        this.directives = new ArrayList<CacheDirective>();
+        this.expirationDate = null;
+        this.filter = new CacheFilter(null, this.cacheService);
+        this.filter.setNext(new Restlet() {
+            @Override
+            public void handle(Request request, Response response) {
+                calls++;
+
+                if (Method.GET.equals(request.getMethod())) {
+                    StringRepresentation entity = new StringRepresentation(
+                            "content " + calls, MediaType.TEXT_PLAIN);
+                    entity.setTag(new Tag("v" + calls));
+                    entity.setExpirationDate(expirationDate);
+                    response.setEntity(entity);
+                    response.getCacheDirectives().addAll(directives);
+
+                    if (customizer != null) {
+                        customizer.handle(request, response);
+                    }
+                } else {
+                    response.setStatus(Status.SUCCESS_NO_CONTENT);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testCachedContent() throws Exception {
+        this.directives.add(CacheDirective.maxAge(60));
+        assertEquals("content 1", handle(get("/r")).getEntity().getText());
+
+        Response response = handle(get("/r"));
+        assertEquals(1, this.calls);
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+        assertEquals("content 1", response.getEntity().getText());
+        assertEquals(new Tag("v1"), response.getEntity().getTag());
+        assertEquals(1, response.getCacheDirectives().size());
+
+        response = handle(new Request(Method.HEAD, "http://localhost/r"));
+        assertEquals(1, this.calls);
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+    }
+
+    @Test
+    public void testConditionalRequests() throws Exception {
+        this.directives.add(CacheDirective.maxAge(60));
+        handle(get("/r"));
+
+        Request request = get("/r");
+        request.getConditions().getNoneMatch().add(new Tag("v1"));
+        assertEquals(Status.REDIRECTION_NOT_MODIFIED, handle(request)
+                .getStatus());
+
+        request = get("/r");
+        request.getConditions().getMatch().add(new Tag("v0"));
+        assertEquals(Status.CLIENT_ERROR_PRECONDITION_FAILED, handle(request)
+                .getStatus());
+        assertEquals(1, this.calls);
+    }
+
+    @Test
+    public void testCookies() {
+        this.directives.add(CacheDirective.maxAge(60));
+        handle(get("/r"));
+
+        Request request = get("/r");
+        request.getCookies().add(new Cookie("session", "1234"));
+        handle(request);
+        assertEquals(2, this.calls);
+
+        this.customizer = new Uniform() {
+            @Override
+            public void handle(Request request, Response response) {
+                response.getCookieSettings().add(
+                        new CookieSetting("session", "1234"));
+            }
+        };
+        handle(get("/s"));
+        handle(get("/s"));
+        assertEquals(4, this.calls);
+    }
+
+    @Test
+    public void testCredentials() {
+        this.directives.add(CacheDirective.maxAge(60));
+        Request request = get("/r");
+        request.setChallengeResponse(new ChallengeResponse(
+                ChallengeScheme.HTTP_BASIC, "login", "secret".toCharArray()));
+        handle(request);
+        handle(get("/r"));
+        assertEquals(2, this.calls);
+
+        // Cached responses aren't given to requests with credentials
+        request = get("/r");
+        request.setChallengeResponse(new ChallengeResponse(
+                ChallengeScheme.HTTP_BASIC, "login", "secret".toCharArray()));
+        handle(request);
+        assertEquals(3, this.calls);
+
+        // Unless they are marked as public
+        this.directives.add(CacheDirective.publicInfo());
+        request = get("/s");
+        request.setChallengeResponse(new ChallengeResponse(
+                ChallengeScheme.HTTP_BASIC, "login", "secret".toCharArray()));
+        handle(request);
+        handle(get("/s"));
+        assertEquals(4, this.calls);
+    }
+
+    @Test
+    public void testDefaultMaxAge() {
+        handle(get("/r"));
+        handle(get("/r"));
+        assertEquals(2, this.calls);
+
+        this.cacheService.setDefaultMaxAge(60);
+        handle(get("/s"));
+        handle(get("/s"));
+        assertEquals(3, this.calls);
+    }
+
+    @Test
+    public void testEviction() {
+        this.directives.add(CacheDirective.maxAge(60));
+        this.cacheService.setMaxEntries(2);
+        handle(get("/a"));
+        handle(get("/b"));
+        assertEquals(18, this.cacheService.getCacheSize());
+
+        // Makes "/a" the most recently used entry
+        handle(get("/a"));
+        handle(get("/c"));
+        assertEquals(3, this.calls);
+        assertEquals(18, this.cacheService.getCacheSize());
+        assertNotNull(this.cacheService.getCached(this.cacheService
+                .getCacheKey(get("/a"))));
+        assertNull(this.cacheService.getCached(this.cacheService
+                .getCacheKey(get("/b"))));
+
+        this.cacheService.setMaxEntries(CacheService.DEFAULT_MAX_ENTRIES);
+        this.cacheService.setMaxCacheSize(20);
+        handle(get("/d"));
+        assertEquals(18, this.cacheService.getCacheSize());
+        assertNull(this.cacheService.getCached(this.cacheService
+                .getCacheKey(get("/c"))));
+
+        this.cacheService.clearCache();
+        assertEquals(0, this.cacheService.getCacheSize());
+    }
+
+    @Test
+    public void testExpiredEntry() {
+        long now = System.currentTimeMillis();
+        Response response = new Response(get("/r"));
+        response.setEntity(new StringRepresentation("content",
+                MediaType.TEXT_PLAIN));
+        String key = this.cacheService.getCacheKey(get("/r"));
+        this.cacheService.cache(key, new CacheEntry(response,
+                "content".getBytes(), now - 2000, now - 1000));
+        assertEquals(7, this.cacheService.getCacheSize());
+
+        assertNull(this.cacheService.getCached(key));
+        assertEquals(0, this.cacheService.getCacheSize());
+    }
+
+    @Test
+    public void testFreshnessPrecedence() {
+        // "s-maxage" takes precedence over "max-age"
+        this.directives.add(CacheDirective.maxAge(0));
+        this.directives.add(CacheDirective.sharedMaxAge(60));
+        handle(get("/a"));
+        handle(get("/a"));
+        assertEquals(1, this.calls);
+
+        // "max-age" takes precedence over the expiration date
+        this.directives.clear();
+        this.directives.add(CacheDirective.maxAge(60));
+        this.expirationDate = new Date(System.currentTimeMillis() - 1000);
+        handle(get("/b"));
+        handle(get("/b"));
+        assertEquals(2, this.calls);
+
+        // An expiration date in the past prevents caching
+        this.directives.clear();
+        handle(get("/c"));
+        handle(get("/c"));
+        assertEquals(4, this.calls);
+
+        // An expiration date in the future allows caching
+        this.expirationDate = new Date(System.currentTimeMillis() + 60000);
+        handle(get("/d"));
+        handle(get("/d"));
+        assertEquals(5, this.calls);
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        this.directives.add(CacheDirective.maxAge(60));
+        handle(get("/r"));
+        handle(get("/r"));
+        assertEquals(1, this.calls);
+
+        handle(new Request(Method.PUT, "http://localhost/r"));
+        assertEquals(2, this.calls);
+        assertEquals(0, this.cacheService.getCacheSize());
+
+        assertEquals("content 3", handle(get("/r")).getEntity().getText());
+    }
+
+    @Test
+    public void testNotCached() {
+        this.directives.add(CacheDirective.maxAge(60));
+        this.directives.add(CacheDirective.noStore());
+        handle(get("/a"));
+        handle(get("/a"));
+        assertEquals(2, this.calls);
+
+        this.directives.remove(1);
+        this.directives.add(CacheDirective.privateInfo());
+        handle(get("/b"));
+        handle(get("/b"));
+        assertEquals(4, this.calls);
+
+        this.directives.remove(1);
+        this.customizer = new Uniform() {
+            @Override
+            public void handle(Request request, Response response) {
+                response.getWarnings().add(new Warning());
+            }
+        };
+        handle(get("/c"));
+        handle(get("/c"));
+        assertEquals(6, this.calls);
+    }
+
+    @Test
+    public void testResponseFields() {
+        this.directives.add(CacheDirective.maxAge(60));
+        this.customizer = new Uniform() {
+            @Override
+            public void handle(Request request, Response response) {
+                response.getHeaders().add("X-Custom", "value " + calls);
+                response.getAllowedMethods().add(Method.GET);
+                response.getAllowedMethods().add(Method.PUT);
+            }
+        };
+        handle(get("/r"));
+
+        Response response = handle(get("/r"));
+        assertEquals(1, this.calls);
+        assertEquals("value 1", response.getHeaders().getFirstValue(
+                "X-Custom"));
+        assertTrue(response.getAllowedMethods().contains(Method.PUT));
+        assertFalse(response.getAllowedMethods().contains(Method.DELETE));
+    }
+
+    @Test
+    public void testRevalidation() throws Exception {
+        this.directives.add(CacheDirective.maxAge(60));
+        handle(get("/r"));
+
+        Request request = get("/r");
+        request.getCacheDirectives().add(CacheDirective.noCache());
+        assertEquals("content 2", handle(request).getEntity().getText());
+
+        // The revalidated response replaced the cached one
+        assertEquals("content 2", handle(get("/r")).getEntity().getText());
+        assertEquals(2, this.calls);
+    }
+
+}